@@ -223,6 +223,9 @@ APP_IMAGE_ARGS=(
   --description 'JSignPdf adds digital signatures to PDF documents'
   --icon "$ICONS_DIR/logojsignpdf.png"
   --add-modules ALL-MODULE-PATH
+  # jpackage's default jlink options plus the base CDS archive (lib/server/classes.jsa): the dynamic
+  # jsignpdf.jsa is layered on top of it and can't be dumped without it
+  --jlink-options "--strip-native-commands --strip-debug --no-man-pages --no-header-files --generate-cds-archive"
   --dest "$OUT"
   "${MAIN_JVM_OPTS[@]}"
   --add-launcher "JSignPdf-swing=$SWING_PROPS"
@@ -243,6 +246,38 @@ if [[ ! -d "$APP_IMAGE" ]]; then
   exit 72
 fi
 
+# 1b. Train the class data sharing (AppCDS) archive. The launchers already
+# carry -XX:SharedArchiveFile=$APPDIR/jsignpdf.jsa (common-jvm-options.txt);
+# one console signing run with AutoCreateSharedArchive dumps the classes it
+# loaded into that file. The archive is bound to the bundled runtime and the
+# launcher classpath, both fixed from here on. The launchers switch the CDS
+# logging off on stdout only, so the training logs it to a file, and a build
+# without the archive fails. Set JSIGNPDF_SKIP_CDS=1 to skip.
+if [[ "${JSIGNPDF_SKIP_CDS:-0}" != "1" && "$DEMO_FOUND" -eq 1 ]]; then
+  echo "==> training the AppCDS archive"
+  CDS_OUT="$GENERATED/cds-training"
+  CDS_LOG="$GENERATED/cds-training.log"
+  CDS_ARCHIVE="$APP_IMAGE/lib/app/jsignpdf.jsa"
+  mkdir -p "$CDS_OUT"
+  rm -f "$CDS_LOG"
+  if [[ ! -s "$APP_IMAGE/lib/runtime/lib/server/classes.jsa" ]]; then
+    echo "The bundled runtime has no base CDS archive (lib/server/classes.jsa)." >&2
+    exit 73
+  fi
+  if JAVA_TOOL_OPTIONS="-XX:+AutoCreateSharedArchive -Xlog:cds=warning,cds+dynamic=info:file=$CDS_LOG" \
+      "$APP_IMAGE/bin/JSignPdfC" \
+      -q -kst PKCS12 -ksf "$DEMO_SRC/jsmith.p12" -ksp 123456 \
+      -d "$CDS_OUT" "$DEMO_SRC/service-agreement.pdf" \
+      && [[ -s "$CDS_ARCHIVE" ]]; then
+    echo "  archive    : lib/app/jsignpdf.jsa ($(du -h "$CDS_ARCHIVE" | cut -f1))"
+  else
+    echo "AppCDS training did not create lib/app/jsignpdf.jsa; the CDS log follows." >&2
+    cat "$CDS_LOG" >&2 || true
+    rm -f "$CDS_ARCHIVE"
+    exit 73
+  fi
+fi
+
 # 2. Zip the app-image (portable distribution).
 ZIP_PATH="$UPLOAD/jsignpdf-${VERSION}-linux-${ARCH_LABEL}.zip"
 echo "==> creating $ZIP_PATH"
@@ -205,6 +205,8 @@ APP_IMAGE_ARGS=(
   --copyright 'Josef Cacek'
   --description 'JSignPdf adds digital signatures to PDF documents'
   --add-modules ALL-MODULE-PATH
+  # jpackage's default jlink options plus the base CDS archive; see the Linux script
+  --jlink-options "--strip-native-commands --strip-debug --no-man-pages --no-header-files --generate-cds-archive"
   --dest "$OUT"
   "${MAIN_JVM_OPTS[@]}"
   --add-launcher "JSignPdf-swing=$SWING_PROPS"
@@ -230,6 +232,33 @@ if [[ ! -d "$APP_IMAGE" ]]; then
   exit 72
 fi
 
+# Train the class data sharing (AppCDS) archive; see the Linux script for the
+# details. A build without the archive fails. Set JSIGNPDF_SKIP_CDS=1 to skip.
+if [[ "${JSIGNPDF_SKIP_CDS:-0}" != "1" && "$DEMO_FOUND" -eq 1 ]]; then
+  echo "==> training the AppCDS archive"
+  CDS_OUT="$GENERATED/cds-training"
+  CDS_LOG="$GENERATED/cds-training.log"
+  CDS_ARCHIVE="$APP_IMAGE/Contents/app/jsignpdf.jsa"
+  mkdir -p "$CDS_OUT"
+  rm -f "$CDS_LOG"
+  if [[ ! -s "$APP_IMAGE/Contents/runtime/Contents/Home/lib/server/classes.jsa" ]]; then
+    echo "The bundled runtime has no base CDS archive (lib/server/classes.jsa)." >&2
+    exit 73
+  fi
+  if JAVA_TOOL_OPTIONS="-XX:+AutoCreateSharedArchive -Xlog:cds=warning,cds+dynamic=info:file=$CDS_LOG" \
+      "$APP_IMAGE/Contents/MacOS/JSignPdfC" \
+      -q -kst PKCS12 -ksf "$DEMO_SRC/jsmith.p12" -ksp 123456 \
+      -d "$CDS_OUT" "$DEMO_SRC/service-agreement.pdf" \
+      && [[ -s "$CDS_ARCHIVE" ]]; then
+    echo "  archive    : Contents/app/jsignpdf.jsa ($(du -h "$CDS_ARCHIVE" | cut -f1))"
+  else
+    echo "AppCDS training did not create Contents/app/jsignpdf.jsa; the CDS log follows." >&2
+    cat "$CDS_LOG" >&2 || true
+    rm -f "$CDS_ARCHIVE"
+    exit 73
+  fi
+fi
+
 ZIP_PATH="$UPLOAD/jsignpdf-${VERSION}-macos-${ARCH_LABEL}.zip"
 echo "==> creating $ZIP_PATH"
 rm -f "$ZIP_PATH"
@@ -208,6 +208,9 @@ $appImageArgs = @(
     '--description','JSignPdf adds digital signatures to PDF documents',
     '--icon',(Join-Path $iconsDir 'icons.ico'),
     '--add-modules','ALL-MODULE-PATH',
+    # jpackage's default jlink options plus the base CDS archive (bin\server\classes.jsa): the dynamic
+    # jsignpdf.jsa is layered on top of it and can't be dumped without it
+    '--jlink-options','--strip-native-commands --strip-debug --no-man-pages --no-header-files --generate-cds-archive',
     '--dest',$out
 ) + $mainJvmOptions + @(
     '--add-launcher',"JSignPdf-swing=$swingLauncherProps",
@@ -226,6 +229,43 @@ if ($LASTEXITCODE -ne 0) { throw "jpackage app-image failed with exit code $LAST
 $appImage = Join-Path $out 'JSignPdf'
 if (-not (Test-Path $appImage)) { throw "Expected app-image directory not found: $appImage" }
 
+# 1b. Train the class data sharing (AppCDS) archive. The launchers already
+# carry -XX:SharedArchiveFile=$APPDIR/jsignpdf.jsa (common-jvm-options.txt);
+# one console signing run with AutoCreateSharedArchive dumps the classes it
+# loaded into that file. The launchers switch the CDS logging off on stdout
+# only, so the training logs it to a file, and a build without the archive
+# fails. Set JSIGNPDF_SKIP_CDS=1 to skip.
+if ($env:JSIGNPDF_SKIP_CDS -ne '1' -and $demoFound) {
+    Write-Host "==> training the AppCDS archive"
+    $cdsOut = Join-Path $generated 'cds-training'
+    $cdsLog = Join-Path $generated 'cds-training.log'
+    New-Item -ItemType Directory -Force -Path $cdsOut | Out-Null
+    if (Test-Path $cdsLog) { Remove-Item -Force $cdsLog }
+    $cdsArchive = Join-Path $appImage 'app\jsignpdf.jsa'
+    $baseArchive = Join-Path $appImage 'runtime\bin\server\classes.jsa'
+    if (-not (Test-Path $baseArchive) -or (Get-Item $baseArchive).Length -eq 0) {
+        throw "The bundled runtime has no base CDS archive ($baseArchive)"
+    }
+    # -Xlog takes the file name up to the next ':', so the log path is relative to the working directory
+    Push-Location $generated
+    $env:JAVA_TOOL_OPTIONS = '-XX:+AutoCreateSharedArchive -Xlog:cds=warning,cds+dynamic=info:file=cds-training.log'
+    try {
+        & (Join-Path $appImage 'JSignPdfC.exe') -q -kst PKCS12 -ksf (Join-Path $demoSrc 'jsmith.p12') -ksp 123456 `
+            -d $cdsOut (Join-Path $demoSrc 'service-agreement.pdf')
+        $cdsExit = $LASTEXITCODE
+    } finally {
+        Remove-Item Env:\JAVA_TOOL_OPTIONS -ErrorAction SilentlyContinue
+        Pop-Location
+    }
+    if ($cdsExit -eq 0 -and (Test-Path $cdsArchive) -and (Get-Item $cdsArchive).Length -gt 0) {
+        Write-Host "  archive   : app\jsignpdf.jsa"
+    } else {
+        if (Test-Path $cdsLog) { Get-Content $cdsLog | Write-Host }
+        if (Test-Path $cdsArchive) { Remove-Item -Force $cdsArchive }
+        throw "AppCDS training did not create app\jsignpdf.jsa; see the CDS log above"
+    }
+}
+
 # 2. Zip the app-image (portable distribution).
 $zipPath = Join-Path $upload "jsignpdf-$Version-windows-x64.zip"
 Write-Host "==> Compress-Archive -> $zipPath"
@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.Locale;
 import java.util.Objects;
 
+import net.sf.jsignpdf.types.BufferingMode;
 import net.sf.jsignpdf.types.CertificationLevel;
 import net.sf.jsignpdf.types.HashAlgorithm;
 import net.sf.jsignpdf.types.PadesLevel;
@@ -14,6 +15,7 @@ import net.sf.jsignpdf.types.PrintRight;
 import net.sf.jsignpdf.types.RenderMode;
 import net.sf.jsignpdf.types.ServerAuthentication;
 import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.PrivateKeyCache;
 import net.sf.jsignpdf.utils.PropertyProvider;
 import net.sf.jsignpdf.utils.PropertyStoreFactory;
 
@@ -38,11 +40,15 @@ public class BasicSignerOptions {
     private char[] keyPasswd;
     private String inFile;
     private String outFile;
+    // SHA-256 of the output written for the current input file, set by the engine - not a setting
+    private String outputSha256;
     private String signerName;
     private String reason;
     private String location;
     private String contact;
     private SignResultListener listener;
+    // keys resolved during a batch run, shared by the options of its documents - not a setting
+    private PrivateKeyCache privateKeyCache;
     private boolean append = Constants.DEFVAL_APPEND;
     private boolean advanced;
     private PDFEncryption pdfEncryption;
@@ -115,6 +121,11 @@ public class BasicSignerOptions {
     // advanced.properties (see AppConfig#defaultEngineId()).
     private String engine;
 
+    // Buffering mode for the current document. Transient per-document override, set when the batch memory admission
+    // decides buffering.mode=auto or moves a large document to temporary files; not persisted. When null, the engines
+    // use AppConfig#bufferingMode().
+    private BufferingMode bufferingMode;
+
     /**
      * Loads options from PropertyProvider
      */
@@ -490,10 +501,44 @@ public class BasicSignerOptions {
         return listener;
     }
 
+    /**
+     * @return the hex-encoded SHA-256 digest of the output the engine wrote for the current input file, {@code null}
+     *         when nothing was written yet or the engine doesn't report it
+     */
+    public String getOutputSha256() {
+        return outputSha256;
+    }
+
+    /**
+     * Records the digest of the written output; the engines set it from {@code AtomicOutputFile.sha256()} after the
+     * commit.
+     *
+     * @param outputSha256 the digest, or {@code null} to drop the one of a previous file
+     */
+    public void setOutputSha256(final String outputSha256) {
+        this.outputSha256 = outputSha256;
+    }
+
     public void setListener(final SignResultListener listener) {
         this.listener = listener;
     }
 
+    /**
+     * @return the keys resolved during the current batch run, {@code null} when every signing loads its key
+     */
+    public PrivateKeyCache getPrivateKeyCache() {
+        return privateKeyCache;
+    }
+
+    /**
+     * Shares the resolved keys between the documents of a batch run, see {@link PrivateKeyCache}.
+     *
+     * @param privateKeyCache the cache of the run, {@code null} to load the key for every signing
+     */
+    public void setPrivateKeyCache(final PrivateKeyCache privateKeyCache) {
+        this.privateKeyCache = privateKeyCache;
+    }
+
     public char[] getKeyPasswd() {
         return keyPasswd;
     }
@@ -1361,6 +1406,21 @@ public class BasicSignerOptions {
         this.engine = engine;
     }
 
+    /**
+     * @return the buffering mode chosen for the current document, or {@code null} to use the configured one (see
+     *         {@link AppConfig#bufferingMode(BasicSignerOptions)})
+     */
+    public BufferingMode getBufferingMode() {
+        return bufferingMode;
+    }
+
+    /**
+     * @param bufferingMode the buffering mode for the current document, {@code null} for the configured one
+     */
+    public void setBufferingMode(final BufferingMode bufferingMode) {
+        this.bufferingMode = bufferingMode;
+    }
+
     protected String[] getCmdLine() {
         return cmdLine;
     }
@@ -1391,6 +1451,7 @@ public class BasicSignerOptions {
         copy.setLocation(getLocation());
         copy.setContact(getContact());
         copy.setListener(getListener());
+        copy.setPrivateKeyCache(getPrivateKeyCache());
         copy.setAppend(isAppend());
         copy.setAdvanced(isAdvanced());
         copy.setPdfEncryption(getPdfEncryption());
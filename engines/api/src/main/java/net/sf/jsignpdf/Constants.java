@@ -411,6 +411,20 @@ public class Constants {
 
     public static final String ARG_GUI = "gui";
 
+    public static final String ARG_MANIFEST = "mf";
+    public static final String ARG_MANIFEST_LONG = "manifest";
+    public static final String ARG_PARALLELISM_LONG = "parallelism";
+    public static final String ARG_RESULTS_LONG = "results";
+    public static final String ARG_JOURNAL_LONG = "journal";
+    public static final String ARG_RESUME_LONG = "resume";
+    public static final String ARG_BUILD_REVOCATION_BUNDLE_LONG = "build-revocation-bundle";
+    public static final String ARG_AUGMENT_LONG = "augment";
+    public static final String ARG_VERIFY_LONG = "verify";
+    public static final String ARG_VERIFY_TIER_LONG = "verify-tier";
+    public static final String ARG_SIGNATURES_LONG = "signatures";
+    public static final String ARG_WATCH_LONG = "watch";
+    public static final String ARG_WATCH_ERRORS_LONG = "watch-errors";
+
     public static final Set<String> SUPPORTED_CRITICAL_EXTENSION_OIDS;
 
     static {
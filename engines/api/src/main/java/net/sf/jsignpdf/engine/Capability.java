@@ -53,6 +53,9 @@ public enum Capability {
     OCSP_EMBED,
     CRL_EMBED,
     DSS_DICTIONARY, // PAdES-LT/LTA prerequisite
+    AUGMENT_SIGNATURES, // extend the existing signatures of a document to a higher PAdES level (--augment)
+    VALIDATE_SIGNATURES, // full validation: chain, trust anchor and revocation (--verify)
+    MULTI_SIGNATURE, // several signatures as consecutive incremental updates in one pass (--signatures)
 
     // transport
     PROXY_SUPPORT,
@@ -0,0 +1,39 @@
+package net.sf.jsignpdf.engine;
+
+import java.util.Set;
+
+/**
+ * Lightweight, class-loading-cheap description of a {@link SigningEngine}. The registry reads the engine
+ * metadata from the descriptor and creates the engine itself only when it is first asked to sign, so
+ * listing the engines or signing with one of them never loads the class graph (PDF library, HTTP
+ * clients, ...) of the others.
+ *
+ * <p>
+ * Descriptors are discovered via {@link java.util.ServiceLoader}; each engine jar registers its descriptor
+ * through a {@code META-INF/services/net.sf.jsignpdf.engine.EngineDescriptor} file. An implementation must
+ * not reference the engine's dependencies anywhere except in {@link #createEngine()}. The returned metadata
+ * must be identical to what the created engine reports.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public interface EngineDescriptor {
+
+    /** Stable, lower-case identifier used in config files and CLI args; see {@link SigningEngine#id()}. */
+    String id();
+
+    /** Human-readable name; see {@link SigningEngine#displayName()}. */
+    String displayName();
+
+    /**
+     * @return the supported capabilities; see {@link SigningEngine#capabilities()}
+     */
+    Set<Capability> capabilities();
+
+    /**
+     * Creates the engine. Called at most once per JVM by the registry.
+     *
+     * @return a new engine instance
+     */
+    SigningEngine createEngine();
+}
@@ -0,0 +1,29 @@
+package net.sf.jsignpdf.engine;
+
+/**
+ * The verdict of an engine's full validation ({@link SigningEngine#validate}) for one signature or document timestamp:
+ * cryptographic integrity together with the certificate chain, trust anchor and revocation status.
+ *
+ * @param id the engine's identifier of the signature
+ * @param signedBy subject of the signing certificate, may be {@code null}
+ * @param indication the overall verdict
+ * @param subIndication the engine's reason for a verdict other than {@link Indication#PASSED}, may be {@code null}
+ * @param level the achieved signature format (e.g. {@code PAdES-BASELINE-LT}), may be {@code null}
+ *
+ * @author Josef Cacek
+ */
+public record SignatureValidation(String id, String signedBy, Indication indication, String subIndication,
+        String level) {
+
+    /**
+     * Overall verdict, following the ETSI EN 319 102-1 main indications.
+     */
+    public enum Indication {
+        /** The signature is valid. */
+        PASSED,
+        /** Validity couldn't be established, e.g. revocation data is missing or the chain isn't trusted. */
+        INDETERMINATE,
+        /** The signature is invalid. */
+        FAILED
+    }
+}
@@ -1,13 +1,22 @@
 package net.sf.jsignpdf.engine;
 
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.types.BufferingMode;
 
 /**
  * A pluggable PDF signing backend. Implementations are discovered at runtime via
- * {@link java.util.ServiceLoader}; each engine jar registers itself through a
- * {@code META-INF/services/net.sf.jsignpdf.engine.SigningEngine} file.
+ * {@link java.util.ServiceLoader}; each engine jar registers an {@link EngineDescriptor} through a
+ * {@code META-INF/services/net.sf.jsignpdf.engine.EngineDescriptor} file, so the engine itself is only
+ * created when it signs. A direct {@code META-INF/services/net.sf.jsignpdf.engine.SigningEngine}
+ * registration still works but instantiates the engine at startup.
  *
  * @author Josef Cacek
  */
@@ -37,4 +46,62 @@ public interface SigningEngine {
      *         for unrecoverable problems
      */
     boolean sign(BasicSignerOptions options, EngineConfig engineConfig);
+
+    /**
+     * Extends the signatures already present in the file described by {@code options} to the PAdES level it
+     * selects, adding the timestamps and validation data that level needs as an incremental update. Nothing is
+     * signed with the options' key. Only engines declaring {@link Capability#AUGMENT_SIGNATURES} implement it.
+     *
+     * @param options the options - input / output file, PAdES level, TSA and proxy settings
+     * @param engineConfig engine-scoped view of the advanced configuration
+     * @return {@code true} on success, {@code false} on a recoverable error (already logged)
+     */
+    default boolean augment(BasicSignerOptions options, EngineConfig engineConfig) {
+        LOGGER.severe(RES.get("console.augment.unsupported", id()));
+        return false;
+    }
+
+    /**
+     * Applies several signatures to one document as consecutive incremental updates. All steps share the input and
+     * output file; the input is read once, the revisions in between stay with the engine and only the last one is
+     * written to the output. Steps after the first one are in append mode. Only engines declaring
+     * {@link Capability#MULTI_SIGNATURE} implement it.
+     *
+     * @param signatures the options of the signatures, in signing order
+     * @param engineConfig engine-scoped view of the advanced configuration
+     * @return {@code true} when all signatures were applied and the output written, {@code false} on a recoverable
+     *         error (already logged); nothing is written then
+     */
+    default boolean signAll(List<? extends BasicSignerOptions> signatures, EngineConfig engineConfig) {
+        LOGGER.severe(RES.get("console.multiSign.unsupported", id()));
+        return false;
+    }
+
+    /**
+     * Rough peak heap use of one signature per byte of the input document, used to admit concurrent jobs against the
+     * {@code memory.budgetPercent} heap budget. Only an estimate - it should rather be too high than too low. The
+     * default suits an engine which parses the whole document and stages the output in the given mode.
+     *
+     * @param mode where the engine stages the document
+     * @return heap bytes per input byte
+     */
+    default double heapPerInputByte(BufferingMode mode) {
+        return mode.isStaged() ? 2.0 : 4.0;
+    }
+
+    /**
+     * Validates all signatures of a PDF: integrity, certificate chain, trust anchor and revocation status, using the
+     * trust configuration of {@code engineConfig}. Only engines declaring {@link Capability#VALIDATE_SIGNATURES}
+     * implement it. Safe to call concurrently.
+     *
+     * @param pdf the document
+     * @param options options providing the proxy settings
+     * @param engineConfig engine-scoped view of the advanced configuration
+     * @return one verdict per signature, in document order
+     * @throws IOException when the document or the trust material can't be read, or the engine can't validate
+     */
+    default List<SignatureValidation> validate(File pdf, BasicSignerOptions options, EngineConfig engineConfig)
+            throws IOException {
+        throw new IOException(RES.get("console.verify.unsupported", id()));
+    }
 }
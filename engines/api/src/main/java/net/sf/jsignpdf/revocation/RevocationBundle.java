@@ -0,0 +1,397 @@
+package net.sf.jsignpdf.revocation;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+import net.sf.jsignpdf.Constants;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.AtomicOutputFile;
+
+/**
+ * Pre-fetched revocation data of a signer chain: the CRLs and OCSP responses, and the CA certificates behind the AIA
+ * URLs. A bundle is collected once by {@link RevocationBundleBuilder} (the {@code --build-revocation-bundle} command)
+ * and configured with {@code revocation.bundle}; both signing engines then take their revocation data from it instead
+ * of the network, so signing with embedded revocation data (OpenPDF CRL / OCSP, DSS LT / LTA) needs no round trips
+ * and works on an air-gapped host.
+ * <p>
+ * The bundle is indexed in memory when it is loaded - CRLs and certificates by their URL, OCSP responses by the
+ * serial number of the certificate - so every lookup is a hash lookup. A CRL or OCSP response is only handed out
+ * while it is current: {@code thisUpdate} has passed and {@code nextUpdate} has not (an OCSP response without
+ * {@code nextUpdate} counts as current for {@code revocation.bundle.ocspMaxAge} seconds). A stale entry is reported
+ * and treated as missing, so the caller falls back to the network.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class RevocationBundle {
+
+    /** File signature, {@code JSRB}. */
+    static final int MAGIC = 0x4A535242;
+    static final int VERSION = 1;
+
+    static final byte TYPE_CERTIFICATE = 1;
+    static final byte TYPE_CRL = 2;
+    static final byte TYPE_OCSP = 3;
+
+    /** How far a {@code thisUpdate} may lie in the future, for a responder whose clock is slightly ahead. */
+    private static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static volatile RevocationBundle configured;
+    private static volatile String configuredKey;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, UrlEntry> byUrl = new HashMap<>();
+    private final Map<BigInteger, List<OcspEntry>> ocspBySerial = new HashMap<>();
+
+    /**
+     * One record of the bundle.
+     *
+     * @param type {@link #TYPE_CERTIFICATE}, {@link #TYPE_CRL} or {@link #TYPE_OCSP}
+     * @param url where it was downloaded from
+     * @param data the DER encoded certificate, CRL or OCSP response
+     * @param issuer for an OCSP response the DER encoded issuer of the checked certificate, otherwise empty
+     */
+    record Entry(byte type, String url, byte[] data, byte[] issuer) {
+    }
+
+    /** A certificate or CRL; the update window is only set for a CRL. */
+    private record UrlEntry(Entry entry, Date thisUpdate, Date nextUpdate) {
+    }
+
+    private record OcspEntry(Entry entry, BasicOCSPResp basic, X509CertificateHolder issuer) {
+    }
+
+    /**
+     * Returns the bundle configured with {@code revocation.bundle}. It is loaded once and reused until the file
+     * changes.
+     *
+     * @return the bundle, or {@code null} when none is configured
+     * @throws IOException when the configured bundle can't be read
+     */
+    public static RevocationBundle fromConfig() throws IOException {
+        final String path = AppConfig.revocationBundle();
+        if (path == null) {
+            return null;
+        }
+        final File file = new File(path);
+        final String key = file.getAbsolutePath() + "@" + file.lastModified();
+        RevocationBundle bundle = configured;
+        if (bundle == null || !key.equals(configuredKey)) {
+            synchronized (RevocationBundle.class) {
+                if (configured == null || !key.equals(configuredKey)) {
+                    configured = read(file);
+                    configuredKey = key;
+                    LOGGER.info(RES.get("console.revocation.bundleLoaded", path, String.valueOf(configured.size())));
+                }
+                bundle = configured;
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Reads a bundle file.
+     *
+     * @param file the bundle
+     * @return the indexed bundle
+     * @throws IOException when the file can't be read or isn't a revocation bundle
+     */
+    public static RevocationBundle read(File file) throws IOException {
+        final RevocationBundle bundle = new RevocationBundle();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(RES.get("console.revocation.notBundle", file.getPath()));
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(RES.get("console.revocation.unsupportedVersion", file.getPath(),
+                        String.valueOf(version)));
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final byte type = in.readByte();
+                final String url = in.readUTF();
+                final byte[] data = readBytes(in);
+                final byte[] issuer = readBytes(in);
+                bundle.add(new Entry(type, url, data, issuer));
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Writes the bundle; the file is replaced only when it was written completely.
+     *
+     * @param file target file
+     * @throws IOException when writing fails
+     */
+    public void write(File file) throws IOException {
+        try (AtomicOutputFile out = AtomicOutputFile.create(file, 0L)) {
+            write(out.stream());
+            out.commit();
+        }
+    }
+
+    void write(OutputStream os) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeByte(entry.type());
+            out.writeUTF(entry.url());
+            out.writeInt(entry.data().length);
+            out.write(entry.data());
+            out.writeInt(entry.issuer().length);
+            out.write(entry.issuer());
+        }
+        out.flush();
+    }
+
+    /**
+     * Adds a CA certificate downloaded from an AIA {@code caIssuers} URL.
+     */
+    public void addCertificate(String url, X509Certificate certificate)
+            throws IOException, CertificateEncodingException {
+        add(new Entry(TYPE_CERTIFICATE, url, certificate.getEncoded(), new byte[0]));
+    }
+
+    /**
+     * Adds a CRL downloaded from a CRL distribution point.
+     */
+    public void addCrl(String url, byte[] crl) throws IOException {
+        add(new Entry(TYPE_CRL, url, crl, new byte[0]));
+    }
+
+    /**
+     * Adds an OCSP response (the complete DER encoded {@code OCSPResponse}) about a certificate issued by
+     * {@code issuer}.
+     */
+    public void addOcspResponse(String url, byte[] response, X509Certificate issuer)
+            throws IOException, CertificateEncodingException {
+        add(new Entry(TYPE_OCSP, url, response, issuer.getEncoded()));
+    }
+
+    private void add(Entry entry) throws IOException {
+        switch (entry.type()) {
+            case TYPE_CERTIFICATE -> byUrl.put(entry.url(), new UrlEntry(entry, null, null));
+            case TYPE_CRL -> indexCrl(entry);
+            case TYPE_OCSP -> indexOcsp(entry);
+            default -> throw new IOException("Unknown revocation bundle record type " + entry.type());
+        }
+        entries.add(entry);
+    }
+
+    private void indexCrl(Entry entry) throws IOException {
+        final X509CRL crl;
+        try {
+            crl = (X509CRL) CertificateFactory.getInstance(Constants.CERT_TYPE_X509)
+                    .generateCRL(new ByteArrayInputStream(entry.data()));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unreadable CRL in the revocation bundle: " + entry.url(), e);
+        }
+        byUrl.put(entry.url(), new UrlEntry(entry, crl.getThisUpdate(), crl.getNextUpdate()));
+    }
+
+    private void indexOcsp(Entry entry) throws IOException {
+        final BasicOCSPResp basic;
+        try {
+            final OCSPResp response = new OCSPResp(entry.data());
+            if (response.getStatus() != OCSPResp.SUCCESSFUL) {
+                throw new IOException("Unsuccessful OCSP response in the revocation bundle: " + entry.url());
+            }
+            basic = (BasicOCSPResp) response.getResponseObject();
+        } catch (OCSPException e) {
+            throw new IOException("Unreadable OCSP response in the revocation bundle: " + entry.url(), e);
+        }
+        final OcspEntry ocspEntry = new OcspEntry(entry, basic, new X509CertificateHolder(entry.issuer()));
+        for (SingleResp single : basic.getResponses()) {
+            ocspBySerial.computeIfAbsent(single.getCertID().getSerialNumber(), k -> new ArrayList<>(1))
+                    .add(ocspEntry);
+        }
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * The bundled data of a GET URL - an AIA certificate, or a CRL while it is current.
+     *
+     * @param url the requested URL
+     * @return the DER data, {@code null} when the bundle has nothing current for the URL
+     */
+    public byte[] get(String url) {
+        return get(url, new Date());
+    }
+
+    byte[] get(String url, Date now) {
+        final UrlEntry found = byUrl.get(url);
+        if (found == null) {
+            LOGGER.fine(() -> "Not in the revocation bundle: " + url);
+            return null;
+        }
+        if (found.thisUpdate() != null && !isCurrent(found.entry(), found.thisUpdate(), found.nextUpdate(), now)) {
+            return null;
+        }
+        return found.entry().data();
+    }
+
+    /**
+     * The bundled answer to an OCSP request.
+     *
+     * @param request the DER encoded OCSP request
+     * @return the DER encoded OCSP response about the requested certificate, {@code null} when the bundle has no
+     *         current one
+     */
+    public byte[] ocspResponse(byte[] request) {
+        return ocspResponse(request, new Date());
+    }
+
+    byte[] ocspResponse(byte[] request, Date now) {
+        final Req[] requests;
+        try {
+            requests = new OCSPReq(request).getRequestList();
+        } catch (IOException e) {
+            LOGGER.fine(() -> "Unreadable OCSP request: " + e);
+            return null;
+        }
+        if (requests.length != 1) {
+            return null;
+        }
+        final CertificateID id = requests[0].getCertID();
+        for (OcspEntry candidate : ocspBySerial.getOrDefault(id.getSerialNumber(), List.of())) {
+            if (matchesIssuer(id, candidate.issuer()) && isCurrent(candidate, id.getSerialNumber(), now)) {
+                return candidate.entry().data();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The bundled OCSP response about a certificate, in the form OpenPDF embeds it.
+     *
+     * @param certificate the checked certificate
+     * @param issuer its issuer
+     * @return the DER encoded basic OCSP response, {@code null} when the bundle has no current one
+     * @throws IOException when the bundled response says the certificate is revoked or unknown
+     */
+    public byte[] basicOcspResponse(X509Certificate certificate, X509Certificate issuer) throws IOException {
+        return basicOcspResponse(certificate, issuer, new Date());
+    }
+
+    byte[] basicOcspResponse(X509Certificate certificate, X509Certificate issuer, Date now) throws IOException {
+        final X509CertificateHolder issuerHolder;
+        try {
+            issuerHolder = new JcaX509CertificateHolder(issuer);
+        } catch (CertificateEncodingException e) {
+            throw new IOException(e);
+        }
+        final BigInteger serial = certificate.getSerialNumber();
+        for (OcspEntry candidate : ocspBySerial.getOrDefault(serial, List.of())) {
+            if (!candidate.issuer().equals(issuerHolder) || !isCurrent(candidate, serial, now)) {
+                continue;
+            }
+            final CertificateStatus status = single(candidate, serial).getCertStatus();
+            if (status instanceof RevokedStatus) {
+                throw new IOException("OCSP status: certificate is revoked (revocation bundle, " + candidate.entry().url()
+                        + ")");
+            } else if (status != CertificateStatus.GOOD) {
+                throw new IOException("OCSP status: certificate is unknown (revocation bundle, "
+                        + candidate.entry().url() + ")");
+            }
+            return candidate.basic().getEncoded();
+        }
+        return null;
+    }
+
+    private boolean isCurrent(OcspEntry candidate, BigInteger serial, Date now) {
+        final SingleResp single = single(candidate, serial);
+        final Date nextUpdate = single.getNextUpdate() != null ? single.getNextUpdate()
+                : new Date(single.getThisUpdate().getTime()
+                        + TimeUnit.SECONDS.toMillis(AppConfig.revocationBundleOcspMaxAge()));
+        return isCurrent(candidate.entry(), single.getThisUpdate(), nextUpdate, now);
+    }
+
+    private static boolean isCurrent(Entry entry, Date thisUpdate, Date nextUpdate, Date now) {
+        if (thisUpdate.getTime() > now.getTime() + CLOCK_SKEW_MILLIS || (nextUpdate != null && nextUpdate.before(now))) {
+            LOGGER.warning(RES.get("console.revocation.stale", entry.url(), String.valueOf(thisUpdate),
+                    String.valueOf(nextUpdate)));
+            return false;
+        }
+        return true;
+    }
+
+    private static SingleResp single(OcspEntry candidate, BigInteger serial) {
+        return Arrays.stream(candidate.basic().getResponses())
+                .filter(single -> single.getCertID().getSerialNumber().equals(serial)).findFirst().orElseThrow();
+    }
+
+    /**
+     * The request may hash the issuer with another algorithm than the bundled response, so the issuer is compared
+     * through its certificate.
+     */
+    private static boolean matchesIssuer(CertificateID id, X509CertificateHolder issuer) {
+        try {
+            return id.matchesIssuer(issuer, digestCalculatorProvider());
+        } catch (OCSPException | OperatorCreationException e) {
+            LOGGER.fine(() -> "Can't compare the OCSP request issuer: " + e);
+            return false;
+        }
+    }
+
+    static DigestCalculatorProvider digestCalculatorProvider() throws OperatorCreationException {
+        return new JcaDigestCalculatorProviderBuilder().build();
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted revocation bundle");
+        }
+        final byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+}
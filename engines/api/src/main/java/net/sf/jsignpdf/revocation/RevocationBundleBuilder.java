@@ -0,0 +1,250 @@
+package net.sf.jsignpdf.revocation;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1String;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import net.sf.jsignpdf.Constants;
+import net.sf.jsignpdf.utils.HttpTransport;
+
+/**
+ * Collects a {@link RevocationBundle} for a signer chain: the chain is completed from the AIA {@code caIssuers} URLs,
+ * and for every certificate below the root the CRLs of its distribution points and the answer of its OCSP responder
+ * are downloaded. A source which fails is reported and skipped, so the bundle holds whatever was reachable.
+ * <p>
+ * The OCSP requests carry no nonce - the response is meant to be reused until its {@code nextUpdate}.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public class RevocationBundleBuilder {
+
+    /** Longest chain followed through the AIA {@code caIssuers} URLs. */
+    private static final int MAX_CHAIN_LENGTH = 10;
+
+    private final HttpTransport transport;
+
+    /**
+     * @param transport transport to download the data with
+     */
+    public RevocationBundleBuilder(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Downloads the revocation data of the chain.
+     *
+     * @param chain the signer chain, signer certificate first
+     * @param defaultOcspUrl OCSP responder for a signer certificate without an AIA OCSP URL, may be {@code null}
+     * @return the collected bundle
+     */
+    public RevocationBundle build(Certificate[] chain, String defaultOcspUrl) throws IOException {
+        final RevocationBundle bundle = new RevocationBundle();
+        final List<X509Certificate> certs = new ArrayList<>();
+        for (Certificate cert : chain) {
+            if (cert instanceof X509Certificate x509Cert) {
+                certs.add(x509Cert);
+            }
+        }
+        completeChain(certs, bundle);
+        for (int i = 0; i < certs.size(); i++) {
+            final X509Certificate cert = certs.get(i);
+            if (isSelfIssued(cert)) {
+                continue;
+            }
+            for (String url : crlUrls(cert)) {
+                try {
+                    LOGGER.info(RES.get("console.crlinfo.loadCrl", url));
+                    bundle.addCrl(url, transport.get(url));
+                } catch (IOException e) {
+                    LOGGER.warning(RES.get("console.revocation.fetchFailed", url, e.getMessage()));
+                }
+            }
+            if (i + 1 >= certs.size()) {
+                LOGGER.warning(RES.get("console.revocation.noIssuer", cert.getSubjectX500Principal().getName()));
+                continue;
+            }
+            final List<String> ocspUrls = accessLocations(cert, AccessDescription.id_ad_ocsp);
+            if (ocspUrls.isEmpty() && i == 0 && StringUtils.isNotEmpty(defaultOcspUrl)) {
+                ocspUrls.add(defaultOcspUrl);
+            }
+            for (String url : ocspUrls) {
+                try {
+                    LOGGER.info(RES.get("console.readingOCSP", url));
+                    bundle.addOcspResponse(url, ocsp(url, cert, certs.get(i + 1)), certs.get(i + 1));
+                    break;
+                } catch (IOException | GeneralSecurityException e) {
+                    LOGGER.warning(RES.get("console.revocation.fetchFailed", url, e.getMessage()));
+                }
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Appends the missing issuers downloaded from the AIA {@code caIssuers} URLs, and keeps them in the bundle for the
+     * DSS engine, which asks for them by the same URLs.
+     */
+    private void completeChain(List<X509Certificate> certs, RevocationBundle bundle) {
+        for (int i = 0; i < certs.size() && i < MAX_CHAIN_LENGTH; i++) {
+            final X509Certificate cert = certs.get(i);
+            if (isSelfIssued(cert)) {
+                continue;
+            }
+            for (String url : accessLocations(cert, AccessDescription.id_ad_caIssuers)) {
+                try {
+                    LOGGER.info(RES.get("console.revocation.loadIssuer", url));
+                    final X509Certificate issuer = findIssuer(cert, transport.get(url));
+                    if (issuer != null) {
+                        bundle.addCertificate(url, issuer);
+                        if (i + 1 >= certs.size() || !certs.get(i + 1).equals(issuer)) {
+                            certs.add(i + 1, issuer);
+                        }
+                        break;
+                    }
+                } catch (IOException | GeneralSecurityException e) {
+                    LOGGER.warning(RES.get("console.revocation.fetchFailed", url, e.getMessage()));
+                }
+            }
+        }
+    }
+
+    private byte[] ocsp(String url, X509Certificate cert, X509Certificate issuer)
+            throws IOException, GeneralSecurityException {
+        final byte[] request;
+        try {
+            final CertificateID id = new CertificateID(
+                    RevocationBundle.digestCalculatorProvider().get(CertificateID.HASH_SHA1),
+                    new JcaX509CertificateHolder(issuer), cert.getSerialNumber());
+            request = new OCSPReqBuilder().addRequest(id).build().getEncoded();
+        } catch (OperatorCreationException | OCSPException e) {
+            throw new IOException("Unable to create the OCSP request", e);
+        }
+        final byte[] response = transport.post(url, "application/ocsp-request", request, null).body();
+        final int status = new OCSPResp(response).getStatus();
+        if (status != OCSPResp.SUCCESSFUL) {
+            throw new IOException("Invalid status: " + status + " (OCSP responder " + url + ")");
+        }
+        return response;
+    }
+
+    /**
+     * The issuer of {@code cert} among the downloaded certificates (a single DER / PEM certificate or a PKCS#7
+     * bundle).
+     */
+    private static X509Certificate findIssuer(X509Certificate cert, byte[] data) throws GeneralSecurityException {
+        final CertificateFactory cf = CertificateFactory.getInstance(Constants.CERT_TYPE_X509);
+        for (Certificate candidate : cf.generateCertificates(new ByteArrayInputStream(data))) {
+            if (candidate instanceof X509Certificate x509Candidate
+                    && x509Candidate.getSubjectX500Principal().equals(cert.getIssuerX500Principal())) {
+                try {
+                    cert.verify(x509Candidate.getPublicKey());
+                    return x509Candidate;
+                } catch (GeneralSecurityException e) {
+                    LOGGER.fine(() -> "Downloaded certificate with the issuer name didn't sign it: " + e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSelfIssued(X509Certificate cert) {
+        return cert.getSubjectX500Principal().equals(cert.getIssuerX500Principal());
+    }
+
+    /**
+     * @return the HTTP URLs of the certificate's CRL distribution points, one per distribution point
+     */
+    static Set<String> crlUrls(X509Certificate cert) {
+        final Set<String> urls = new LinkedHashSet<>();
+        final ASN1Primitive ext = extension(cert, Extension.cRLDistributionPoints.getId());
+        if (ext == null) {
+            return urls;
+        }
+        for (DistributionPoint dp : CRLDistPoint.getInstance(ext).getDistributionPoints()) {
+            final DistributionPointName dpName = dp.getDistributionPoint();
+            if (dpName == null || dpName.getType() != DistributionPointName.FULL_NAME) {
+                continue;
+            }
+            for (GeneralName name : GeneralNames.getInstance(dpName.getName()).getNames()) {
+                final String uri = uriOf(name);
+                if (uri != null) {
+                    urls.add(uri);
+                    break;
+                }
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return the HTTP URLs of the certificate's AIA entries of the given access method
+     */
+    static List<String> accessLocations(X509Certificate cert, ASN1ObjectIdentifier accessMethod) {
+        final List<String> urls = new ArrayList<>();
+        final ASN1Primitive ext = extension(cert, Extension.authorityInfoAccess.getId());
+        if (ext == null) {
+            return urls;
+        }
+        for (AccessDescription ad : AuthorityInformationAccess.getInstance(ext).getAccessDescriptions()) {
+            if (ad.getAccessMethod().equals(accessMethod)) {
+                final String uri = uriOf(ad.getAccessLocation());
+                if (uri != null) {
+                    urls.add(uri);
+                }
+            }
+        }
+        return urls;
+    }
+
+    private static String uriOf(GeneralName name) {
+        if (name.getTagNo() != GeneralName.uniformResourceIdentifier) {
+            return null;
+        }
+        final String uri = ((ASN1String) name.getName()).getString();
+        return uri.startsWith("http") ? uri : null;
+    }
+
+    private static ASN1Primitive extension(X509Certificate cert, String oid) {
+        final byte[] value = cert.getExtensionValue(oid);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ASN1Primitive.fromByteArray(DEROctetString.getInstance(value).getOctets());
+        } catch (IOException e) {
+            LOGGER.fine(() -> "Unreadable extension " + oid + ": " + e);
+            return null;
+        }
+    }
+}
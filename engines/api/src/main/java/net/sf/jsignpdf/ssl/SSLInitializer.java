@@ -2,13 +2,19 @@ package net.sf.jsignpdf.ssl;
 
 import static net.sf.jsignpdf.Constants.LOGGER;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -35,6 +41,15 @@ public class SSLInitializer {
 
     private static final TrustManager[] TRUST_MANAGERS = new TrustManager[] { new DynamicX509TrustManager() };
 
+    /** TLS sessions kept per context for resumption. */
+    private static final int SESSION_CACHE_SIZE = 256;
+
+    /** Seconds a cached TLS session may be resumed. */
+    private static final int SESSION_TIMEOUT = 3600;
+
+    /** Client contexts keyed by {@link #clientCertKey(BasicSignerOptions)}. */
+    private static final Map<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+
     public static final void init()
             throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException, CertificateException, IOException {
         if (AppConfig.relaxSslSecurity()) {
@@ -50,6 +65,9 @@ public class SSLInitializer {
             System.setProperty("sun.security.ssl.allowUnsafeRenegotiation", "true");
             System.setProperty("sun.security.ssl.allowLegacyHelloMessages", "true");
 
+            // the java.net.http client (HttpTransport) reads this once, when its first client is created
+            System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+
             HttpsURLConnection.setDefaultHostnameVerifier(new HostnameVerifier() {
                 @Override
                 public boolean verify(String hostname, SSLSession session) {
@@ -58,13 +76,20 @@ public class SSLInitializer {
             });
         }
 
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, TRUST_MANAGERS, null);
-
-        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+        try {
+            HttpsURLConnection.setDefaultSSLSocketFactory(getSslContext(null).getSocketFactory());
+        } catch (UnrecoverableKeyException e) {
+            // no client keystore without options
+            throw new KeyStoreException(e);
+        }
     }
 
     /**
+     * Installs the {@link #getSslContext(BasicSignerOptions) context} of the options as the JVM-wide
+     * {@link HttpsURLConnection} default. Only needed by clients which can't be handed a context - OpenPDF's own
+     * OCSP / TSA clients, used with a SOCKS proxy. Everything else should take the context per request, which keeps
+     * concurrent signatures with different TSA client certificates apart.
+     *
      * @param options
      * @throws NoSuchAlgorithmException
      * @throws IOException
@@ -75,8 +100,41 @@ public class SSLInitializer {
      */
     public static void init(BasicSignerOptions options) throws NoSuchAlgorithmException, KeyManagementException,
             KeyStoreException, CertificateException, IOException, UnrecoverableKeyException {
+        HttpsURLConnection.setDefaultSSLSocketFactory(getSslContext(options).getSocketFactory());
+    }
+
+    /**
+     * Returns the TLS context for the TSA / OCSP / CRL traffic of the options. Contexts are cached by
+     * {@link #clientCertKey(BasicSignerOptions)}, so the client-certificate keystore is read and decrypted once rather
+     * than per signature, and the context's session cache lets consecutive connections resume their TLS sessions
+     * instead of running a full handshake.
+     *
+     * @param options signer options, may be {@code null}
+     * @return initialized (possibly shared) context
+     */
+    public static SSLContext getSslContext(BasicSignerOptions options) throws NoSuchAlgorithmException,
+            KeyManagementException, KeyStoreException, CertificateException, IOException, UnrecoverableKeyException {
+        final String key = clientCertKey(options);
+        SSLContext sslContext = CONTEXTS.get(key);
+        if (sslContext == null) {
+            // not computeIfAbsent: loading the keystore throws checked exceptions; a concurrent duplicate is harmless
+            final SSLContext created = createSslContext(options);
+            sslContext = CONTEXTS.putIfAbsent(key, created);
+            if (sslContext == null) {
+                sslContext = created;
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * Creates the TLS context: the dynamic trust managers plus, when the TSA authenticates the client by a
+     * certificate, the key managers of that keystore.
+     */
+    private static SSLContext createSslContext(BasicSignerOptions options) throws NoSuchAlgorithmException,
+            KeyManagementException, KeyStoreException, CertificateException, IOException, UnrecoverableKeyException {
         KeyManager[] km = null;
-        if (options != null && options.getTsaServerAuthn() == ServerAuthentication.CERTIFICATE) {
+        if (usesClientCertificate(options)) {
             char[] pwd = null;
             if (StringUtils.isNotEmpty(options.getTsaCertFilePwd())) {
                 pwd = options.getTsaCertFilePwd().toCharArray();
@@ -90,7 +148,38 @@ public class SSLInitializer {
         }
         SSLContext sslContext = SSLContext.getInstance("TLS");
         sslContext.init(km, TRUST_MANAGERS, null);
+        sslContext.getClientSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+        sslContext.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT);
+        return sslContext;
+    }
+
+    /**
+     * Identifies the TLS client configuration of the options: two options with the same key get equivalent
+     * {@link #getSslContext(BasicSignerOptions) contexts}. The keystore password enters the key only as a digest; the
+     * keystore's modification time is part of it, so a replaced keystore is picked up.
+     *
+     * @param options signer options, may be {@code null}
+     * @return the key, {@code "none"} when no client certificate is used
+     */
+    public static String clientCertKey(BasicSignerOptions options) {
+        if (!usesClientCertificate(options)) {
+            return "none";
+        }
+        final String pwd = StringUtils.defaultString(options.getTsaCertFilePwd());
+        final String pwdDigest;
+        try {
+            pwdDigest = HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-256").digest(pwd.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final String file = options.getTsaCertFile();
+        final long modified = file != null ? new File(file).lastModified() : 0L;
+        return StringUtils.defaultIfBlank(options.getTsaCertFileType(), "PKCS12") + ":" + file + "@" + modified + ":"
+                + pwdDigest;
+    }
 
-        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+    private static boolean usesClientCertificate(BasicSignerOptions options) {
+        return options != null && options.getTsaServerAuthn() == ServerAuthentication.CERTIFICATE;
     }
 }
@@ -0,0 +1,241 @@
+package net.sf.jsignpdf.tsa;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.sf.jsignpdf.types.TsaStrategy;
+import net.sf.jsignpdf.utils.AppConfig;
+
+/**
+ * Sends a timestamp request to one of several TSA URLs. The TSA URL option may hold a list of URLs (separated by
+ * commas or white space); how they are used is the {@link TsaStrategy} ({@code tsa.strategy}):
+ * <ul>
+ * <li>{@link TsaStrategy#FAILOVER} - in the configured order, the next URL only when the previous one failed,</li>
+ * <li>{@link TsaStrategy#ROUND_ROBIN} - the same, but every request starts one URL further,</li>
+ * <li>{@link TsaStrategy#HEDGED} - as failover, and when the TSA doesn't answer within its usual (95th percentile)
+ * response time, the next TSA is asked in parallel; the first answer wins and the other request is cancelled.</li>
+ * </ul>
+ * <p>
+ * The response times and failures of every URL are tracked process-wide, so a batch learns the percentile as it goes.
+ * A URL which failed {@code tsa.breaker.threshold} times in a row is moved to the end of the list for
+ * {@code tsa.breaker.openSeconds} (circuit breaker) - it is still asked when all others fail.
+ * </p>
+ * <p>
+ * A single URL is requested directly on the calling thread, exactly as before.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class TsaDispatcher {
+
+    /**
+     * One attempt against one TSA.
+     *
+     * @param <T> the response type
+     */
+    @FunctionalInterface
+    public interface TsaCall<T> {
+        /**
+         * @param url the TSA URL to ask
+         * @return the response; an exception (or a response the caller rejects by throwing) counts as a failure
+         */
+        T request(String url) throws Exception;
+    }
+
+    /** Hedging delay while a TSA has too few recorded response times for a percentile. */
+    static final long INITIAL_HEDGE_DELAY_MILLIS = 1000L;
+
+    /** At most this many requests of one timestamp run in parallel. */
+    private static final int MAX_PARALLEL = 2;
+
+    private static final Map<String, TsaEndpoint> ENDPOINTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger ROUND_ROBIN = new AtomicInteger();
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "jsignpdf-tsa-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TsaStrategy strategy;
+    private final long hedgeMinDelayMillis;
+    private final int breakerThreshold;
+    private final long breakerOpenMillis;
+
+    TsaDispatcher(TsaStrategy strategy, long hedgeMinDelayMillis, int breakerThreshold, long breakerOpenMillis) {
+        this.strategy = strategy;
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+        this.breakerThreshold = Math.max(1, breakerThreshold);
+        this.breakerOpenMillis = breakerOpenMillis;
+    }
+
+    /**
+     * @return a dispatcher configured from {@code advanced.properties}
+     */
+    public static TsaDispatcher fromConfig() {
+        return new TsaDispatcher(AppConfig.tsaStrategy(), AppConfig.tsaHedgeMinDelay(),
+                AppConfig.tsaBreakerThreshold(), TimeUnit.SECONDS.toMillis(AppConfig.tsaBreakerOpenSeconds()));
+    }
+
+    /**
+     * Splits the TSA URL option into the individual URLs.
+     *
+     * @param value the option value, may be {@code null}
+     * @return the distinct URLs in their configured order, empty when none
+     */
+    public static List<String> parseUrls(String value) {
+        final Set<String> urls = new LinkedHashSet<>();
+        if (value != null) {
+            for (String url : value.split("[,\\s]+")) {
+                if (StringUtils.isNotEmpty(url)) {
+                    urls.add(url);
+                }
+            }
+        }
+        return new ArrayList<>(urls);
+    }
+
+    /**
+     * Runs the request against the URLs according to the strategy.
+     *
+     * @param urls the TSA URLs, at least one
+     * @param call the request
+     * @return the first successful response
+     * @throws IOException when every TSA failed; the first failure is the cause, the others are suppressed
+     */
+    public <T> T request(List<String> urls, TsaCall<T> call) throws IOException {
+        if (urls.size() == 1) {
+            try {
+                return task(endpoint(urls.get(0)), call).call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        final List<TsaEndpoint> candidates = order(urls);
+        final CompletionService<T> completion = new ExecutorCompletionService<>(EXECUTOR);
+        final Map<Future<T>, TsaEndpoint> started = new HashMap<>();
+        IOException failure = null;
+        int next = 0;
+        int inFlight = 0;
+        try {
+            started.put(completion.submit(task(candidates.get(next), call)), candidates.get(next));
+            next++;
+            inFlight++;
+            while (inFlight > 0) {
+                final Future<T> done;
+                if (strategy == TsaStrategy.HEDGED && inFlight < MAX_PARALLEL && next < candidates.size()) {
+                    final long delay = hedgeDelay(candidates.get(next - 1));
+                    done = completion.poll(delay, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        LOGGER.info(RES.get("console.tsa.hedging", candidates.get(next - 1).url(),
+                                String.valueOf(delay), candidates.get(next).url()));
+                        started.put(completion.submit(task(candidates.get(next), call)), candidates.get(next));
+                        next++;
+                        inFlight++;
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                inFlight--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    LOGGER.warning(RES.get("console.tsa.failed", started.get(done).url(), String.valueOf(cause)));
+                    if (failure == null) {
+                        failure = new IOException(RES.get("console.tsa.allFailed", String.valueOf(urls.size())), cause);
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                    if (next < candidates.size()) {
+                        started.put(completion.submit(task(candidates.get(next), call)), candidates.get(next));
+                        next++;
+                        inFlight++;
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the TSA");
+        } finally {
+            // the losers of a hedged request (and anything left after an interrupt)
+            for (Future<T> future : started.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The URLs in the order they are tried: rotated for round-robin, and the ones with an open circuit last.
+     */
+    List<TsaEndpoint> order(List<String> urls) {
+        final int size = urls.size();
+        final int start = strategy == TsaStrategy.ROUND_ROBIN ? Math.floorMod(ROUND_ROBIN.getAndIncrement(), size) : 0;
+        final long now = System.currentTimeMillis();
+        final List<TsaEndpoint> ordered = new ArrayList<>(size);
+        final List<TsaEndpoint> open = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final TsaEndpoint endpoint = endpoint(urls.get((start + i) % size));
+            if (endpoint.isOpen(now)) {
+                LOGGER.fine(() -> "TSA " + endpoint.url() + " failed " + endpoint.consecutiveFailures()
+                        + " times in a row, it is tried last");
+                open.add(endpoint);
+            } else {
+                ordered.add(endpoint);
+            }
+        }
+        ordered.addAll(open);
+        return ordered;
+    }
+
+    private long hedgeDelay(TsaEndpoint endpoint) {
+        final long p95 = endpoint.p95();
+        return p95 < 0L ? Math.max(hedgeMinDelayMillis, INITIAL_HEDGE_DELAY_MILLIS) : Math.max(hedgeMinDelayMillis, p95);
+    }
+
+    private <T> Callable<T> task(TsaEndpoint endpoint, TsaCall<T> call) {
+        return () -> {
+            final long startNanos = System.nanoTime();
+            try {
+                final T response = call.request(endpoint.url());
+                endpoint.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                return response;
+            } catch (Exception e) {
+                // a cancelled hedge loser says nothing about the TSA's health
+                if (!Thread.currentThread().isInterrupted() && !(e instanceof InterruptedIOException)) {
+                    endpoint.recordFailure(System.currentTimeMillis(), breakerThreshold, breakerOpenMillis);
+                }
+                throw e;
+            }
+        };
+    }
+
+    static TsaEndpoint endpoint(String url) {
+        return ENDPOINTS.computeIfAbsent(url, TsaEndpoint::new);
+    }
+}
@@ -0,0 +1,73 @@
+package net.sf.jsignpdf.tsa;
+
+import java.util.Arrays;
+
+/**
+ * Health of one TSA URL, shared by all signatures of the process: the recent response times (for the hedging delay)
+ * and a circuit breaker which moves a repeatedly failing TSA to the end of the list for a while.
+ *
+ * @author Josef Cacek
+ */
+final class TsaEndpoint {
+
+    /** Number of recent response times kept for the percentile. */
+    static final int WINDOW = 64;
+
+    /** Response times needed before the percentile is trusted. */
+    static final int MIN_SAMPLES = 10;
+
+    private final String url;
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int nextSample;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    TsaEndpoint(String url) {
+        this.url = url;
+    }
+
+    String url() {
+        return url;
+    }
+
+    synchronized void recordSuccess(long millis) {
+        latencies[nextSample] = millis;
+        nextSample = (nextSample + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        consecutiveFailures = 0;
+        openUntil = 0L;
+    }
+
+    /**
+     * Counts a failure; the {@code threshold}-th failure in a row opens the circuit for {@code openMillis}. A request
+     * let through after that time (half-open) which fails again re-opens it right away.
+     */
+    synchronized void recordFailure(long now, int threshold, long openMillis) {
+        consecutiveFailures++;
+        if (consecutiveFailures >= threshold) {
+            openUntil = now + openMillis;
+        }
+    }
+
+    synchronized boolean isOpen(long now) {
+        return openUntil > now;
+    }
+
+    synchronized int consecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return the 95th percentile of the recent response times in milliseconds, or {@code -1} while there are fewer
+     *         than {@value #MIN_SAMPLES} of them
+     */
+    synchronized long p95() {
+        if (samples < MIN_SAMPLES) {
+            return -1L;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * samples) - 1];
+    }
+}
@@ -9,7 +9,8 @@ import java.util.Locale;
  * This is a property of the machine and the workload, not of the signature, so it is configured
  * application-wide through {@code buffering.mode} rather than per engine. {@link #MEMORY} is the default and
  * reproduces the historical behaviour of both engines exactly; {@link #TEMP} moves the intermediates to
- * temporary files so that document size stops being bounded by {@code -Xmx}.
+ * temporary files so that document size stops being bounded by {@code -Xmx}; {@link #OFFHEAP} does the same in a
+ * RAM-backed directory, and {@link #AUTO} picks memory or temp for each document.
  * </p>
  *
  * @author Josef Cacek
@@ -19,7 +20,25 @@ public enum BufferingMode {
     /** Everything on the Java heap. Fastest, bounded by {@code -Xmx}. */
     MEMORY,
     /** Intermediates staged in temporary files. Needed for very large documents, costs disk I/O. */
-    TEMP;
+    TEMP,
+    /**
+     * Intermediates staged in files of a RAM-backed directory ({@code buffering.offheapDir}, {@code /dev/shm} by
+     * default): off the Java heap, with long offsets, and without disk I/O. Bounded by the free RAM instead.
+     */
+    OFFHEAP,
+    /**
+     * {@link #TEMP} for a document of at least {@code buffering.autoThresholdMB}, or one whose signing would not fit
+     * into the free heap, {@link #MEMORY} otherwise. Decided before each document is signed; the engines only see
+     * the decision.
+     */
+    AUTO;
+
+    /**
+     * @return true when the engines stage the document in files ({@link #TEMP} and {@link #OFFHEAP})
+     */
+    public boolean isStaged() {
+        return this == TEMP || this == OFFHEAP;
+    }
 
     /**
      * Parses a case-insensitive configuration token into a {@link BufferingMode}.
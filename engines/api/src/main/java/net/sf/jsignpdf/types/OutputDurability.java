@@ -0,0 +1,46 @@
+package net.sf.jsignpdf.types;
+
+import java.util.Locale;
+
+/**
+ * How hard the signing engines push a finished output file to the disk before it appears at its final path.
+ *
+ * <p>
+ * Every level writes the output to a temporary sibling file and renames it into place, so an aborted or crashed
+ * process never leaves a truncated PDF at the output path. The levels only differ in what survives a power loss or an
+ * operating system crash; each step up costs throughput (see the "Output durability" section of the documentation for
+ * measured numbers). {@link #NONE} is the default and keeps the historical write cost.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public enum OutputDurability {
+
+    /** No {@code fsync}; the operating system writes the file back when it sees fit. */
+    NONE,
+    /** The file content is forced to the disk before the rename. */
+    FILE,
+    /** As {@link #FILE}, and the directory is forced after the rename, so the new name is durable too. */
+    FULL;
+
+    /**
+     * Parses a case-insensitive configuration token into an {@link OutputDurability}.
+     *
+     * @param value the token, may be {@code null}
+     * @return the matching level, or {@code null} when {@code value} is {@code null}, empty or unrecognised
+     */
+    public static OutputDurability fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String v = value.trim().toUpperCase(Locale.ENGLISH);
+        if (v.isEmpty()) {
+            return null;
+        }
+        try {
+            return OutputDurability.valueOf(v);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
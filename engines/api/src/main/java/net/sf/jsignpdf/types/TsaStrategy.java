@@ -0,0 +1,43 @@
+package net.sf.jsignpdf.types;
+
+import java.util.Locale;
+
+/**
+ * How a timestamp request is spread over several configured TSA URLs.
+ *
+ * @author Josef Cacek
+ */
+public enum TsaStrategy {
+
+    /** Always start with the first URL; the next one is asked only when the previous one fails. */
+    FAILOVER,
+    /** Start each request with the next URL in turn, failing over like {@link #FAILOVER}. */
+    ROUND_ROBIN,
+    /**
+     * As {@link #FAILOVER}, but when the first TSA takes longer than its usual (95th percentile) response time, a
+     * second TSA is asked in parallel and the first answer wins.
+     */
+    HEDGED;
+
+    /**
+     * Parses a case-insensitive configuration token ({@code failover}, {@code round-robin}, {@code hedged}) into a
+     * {@link TsaStrategy}.
+     *
+     * @param value the token, may be {@code null}
+     * @return the matching strategy, or {@code null} when {@code value} is {@code null}, empty or unrecognised
+     */
+    public static TsaStrategy fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String v = value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+        if (v.isEmpty()) {
+            return null;
+        }
+        try {
+            return TsaStrategy.valueOf(v);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
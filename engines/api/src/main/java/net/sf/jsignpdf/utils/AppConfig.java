@@ -6,10 +6,13 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 
+import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.Constants;
 import net.sf.jsignpdf.engine.AdvancedEngineConfig;
 import net.sf.jsignpdf.engine.EngineConfig;
 import net.sf.jsignpdf.types.BufferingMode;
+import net.sf.jsignpdf.types.OutputDurability;
+import net.sf.jsignpdf.types.TsaStrategy;
 
 /**
  * Static facade over {@link AdvancedConfig}. Call sites read app-global toggles through these typed accessors so they stay
@@ -26,6 +29,72 @@ public final class AppConfig {
     /** Key naming the directory used for staged temporary files. */
     public static final String KEY_BUFFERING_TEMP_DIR = "buffering.tempDir";
 
+    /** Key naming the RAM-backed directory used for the off-heap staging files. */
+    public static final String KEY_BUFFERING_OFFHEAP_DIR = "buffering.offheapDir";
+
+    /** Off-heap staging directory used when {@code buffering.offheapDir} is empty - the Linux shared memory tmpfs. */
+    public static final String DEFAULT_OFFHEAP_DIR = "/dev/shm";
+
+    /** Key with the input size (MiB) from which the auto buffering mode uses temporary files. */
+    public static final String KEY_BUFFERING_AUTO_THRESHOLD_MB = "buffering.autoThresholdMB";
+
+    /** Key with the share of the heap (percent) the concurrently admitted signing jobs may use. */
+    public static final String KEY_MEMORY_BUDGET_PERCENT = "memory.budgetPercent";
+
+    /** Key selecting how durably the signed output is written. */
+    public static final String KEY_OUTPUT_DURABILITY = "output.durability";
+
+    /** Key enabling the pre-allocation of the output file. */
+    public static final String KEY_OUTPUT_PREALLOCATE = "output.preallocate";
+
+    /** Key enabling the check of the signature while the output is written. */
+    public static final String KEY_OUTPUT_SELF_CHECK = "output.selfCheck";
+
+    /** Key with the time (milliseconds) a file in the {@code --watch} folder has to stay unchanged. */
+    public static final String KEY_WATCH_SETTLE_MILLIS = "watch.settleMillis";
+
+    /** Key with the connect timeout (seconds) of the CRL / OCSP / TSA traffic. */
+    public static final String KEY_HTTP_CONNECT_TIMEOUT = "http.connectTimeout";
+
+    /** Key with the timeout (seconds) of a whole CRL / OCSP / TSA request. */
+    public static final String KEY_HTTP_REQUEST_TIMEOUT = "http.requestTimeout";
+
+    /** Key limiting the concurrent CRL / OCSP / TSA requests to one host. */
+    public static final String KEY_HTTP_MAX_CONNECTIONS_PER_HOST = "http.maxConnectionsPerHost";
+
+    /** Key with the average number of CRL / OCSP / TSA requests per second to one host. */
+    public static final String KEY_HTTP_RATE_LIMIT = "http.rateLimit";
+
+    /** Key with the number of requests to one host which may exceed the rate limit in a burst. */
+    public static final String KEY_HTTP_RATE_BURST = "http.rateBurst";
+
+    /** Key with the number of retries of a throttled (HTTP 429 / 503) request. */
+    public static final String KEY_HTTP_RETRIES = "http.retries";
+
+    /** Key with the base delay (milliseconds) of the retry backoff. */
+    public static final String KEY_HTTP_RETRY_DELAY = "http.retryDelay";
+
+    /** Key with the longest delay (seconds) before a retry. */
+    public static final String KEY_HTTP_RETRY_MAX_DELAY = "http.retryMaxDelay";
+
+    /** Key selecting how the timestamp requests are spread over several TSA URLs. */
+    public static final String KEY_TSA_STRATEGY = "tsa.strategy";
+
+    /** Key with the shortest delay (milliseconds) before a hedged TSA request is sent. */
+    public static final String KEY_TSA_HEDGE_MIN_DELAY = "tsa.hedgeMinDelay";
+
+    /** Key with the number of consecutive failures after which a TSA URL is tried last. */
+    public static final String KEY_TSA_BREAKER_THRESHOLD = "tsa.breaker.threshold";
+
+    /** Key with the time (seconds) a failing TSA URL stays at the end of the list. */
+    public static final String KEY_TSA_BREAKER_OPEN_SECONDS = "tsa.breaker.openSeconds";
+
+    /** Key naming the revocation bundle file the engines take CRLs / OCSP responses from. */
+    public static final String KEY_REVOCATION_BUNDLE = "revocation.bundle";
+
+    /** Key with the time (seconds) a bundled OCSP response without {@code nextUpdate} is used. */
+    public static final String KEY_REVOCATION_BUNDLE_OCSP_MAX_AGE = "revocation.bundle.ocspMaxAge";
+
     private AppConfig() {
     }
 
@@ -70,6 +139,63 @@ public final class AppConfig {
         return mode;
     }
 
+    /**
+     * Buffering mode for signing one document: the mode the batch memory admission chose for it (see
+     * {@link BasicSignerOptions#getBufferingMode()}), else the configured {@link #bufferingMode()}. Never
+     * {@link BufferingMode#AUTO}: when nothing was chosen for the document yet, it is decided here by
+     * {@link #autoBufferingMode(long, double, long)} with the heap use of an in-memory sign.
+     */
+    public static BufferingMode bufferingMode(BasicSignerOptions options) {
+        final BufferingMode mode = options.getBufferingMode() != null ? options.getBufferingMode() : bufferingMode();
+        if (mode != BufferingMode.AUTO) {
+            return mode;
+        }
+        final String inFile = options.getInFile();
+        return autoBufferingMode(inFile == null ? 0L : new File(inFile).length(), 4.0, freeHeap());
+    }
+
+    /**
+     * Decides {@link BufferingMode#AUTO} for one document: {@link BufferingMode#TEMP} when the input has at least
+     * {@code buffering.autoThresholdMB} (0 disables the threshold) or when signing it in memory would need more than
+     * the heap currently free, {@link BufferingMode#MEMORY} otherwise.
+     *
+     * @param inputSize size of the input document in bytes
+     * @param heapPerInputByte heap an in-memory sign uses per input byte
+     * @param freeHeap heap that can still be allocated, see {@link #freeHeap()}
+     * @return {@link BufferingMode#MEMORY} or {@link BufferingMode#TEMP}
+     */
+    public static BufferingMode autoBufferingMode(long inputSize, double heapPerInputByte, long freeHeap) {
+        final long threshold = bufferingAutoThresholdMB() * 1024L * 1024L;
+        if (threshold > 0 && inputSize >= threshold) {
+            return BufferingMode.TEMP;
+        }
+        return heapPerInputByte * inputSize > freeHeap ? BufferingMode.TEMP : BufferingMode.MEMORY;
+    }
+
+    /**
+     * @return the heap which can still be allocated: the maximum heap minus what is in use now
+     */
+    public static long freeHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+    }
+
+    /**
+     * Input size in MiB from which {@link BufferingMode#AUTO} always uses temporary files
+     * ({@code buffering.autoThresholdMB}); 0 decides by the free heap only.
+     */
+    public static int bufferingAutoThresholdMB() {
+        return Math.max(0, cfg().getAsInt(KEY_BUFFERING_AUTO_THRESHOLD_MB, 64));
+    }
+
+    /**
+     * Share of the maximum heap ({@code memory.budgetPercent}, 0-90) the signing jobs running at the same time may use
+     * by their estimate; 0 turns the admission off.
+     */
+    public static int memoryBudgetPercent() {
+        return Math.max(0, Math.min(90, cfg().getAsInt(KEY_MEMORY_BUDGET_PERCENT, 70)));
+    }
+
     /**
      * Directory for the temporary files staged in {@link BufferingMode#TEMP} ({@code buffering.tempDir}),
      * or {@code null} to use {@code java.io.tmpdir}.
@@ -97,6 +223,144 @@ public final class AppConfig {
         return dir;
     }
 
+    /**
+     * RAM-backed directory for the files staged in {@link BufferingMode#OFFHEAP} ({@code buffering.offheapDir}), by
+     * default {@value #DEFAULT_OFFHEAP_DIR}. Like {@link #bufferingTempDir()}, a directory which is missing or not
+     * writable is rejected rather than replaced by one on disk, which would silently turn off-heap staging into disk
+     * I/O.
+     *
+     * @return the validated directory
+     * @throws IOException when the directory is missing, not a directory, or not writable
+     */
+    public static File bufferingOffheapDir() throws IOException {
+        final String value = cfg().getNotEmptyProperty(KEY_BUFFERING_OFFHEAP_DIR, null);
+        final File dir = new File(value != null ? value.trim() : DEFAULT_OFFHEAP_DIR);
+        if (!dir.isDirectory() || !dir.canWrite()) {
+            throw new IOException(Constants.RES.get("console.buffering.offheapDirUnusable", dir.getAbsolutePath()));
+        }
+        return dir;
+    }
+
+    /**
+     * Directory for the files staged in the given mode: {@link #bufferingTempDir()} for {@link BufferingMode#TEMP},
+     * {@link #bufferingOffheapDir()} for {@link BufferingMode#OFFHEAP}, {@code null} otherwise.
+     *
+     * @return the validated directory, or {@code null} for {@code java.io.tmpdir} or a mode which stages nothing
+     * @throws IOException when the configured directory is unusable
+     */
+    public static File bufferingDir(BufferingMode mode) throws IOException {
+        switch (mode) {
+            case TEMP:
+                return bufferingTempDir();
+            case OFFHEAP:
+                return bufferingOffheapDir();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * How durably the signing engines write the output ({@code output.durability} in {@code advanced.properties}). An
+     * unrecognised value logs a warning and falls back to {@link OutputDurability#NONE}.
+     */
+    public static OutputDurability outputDurability() {
+        final String value = cfg().getNotEmptyProperty(KEY_OUTPUT_DURABILITY, null);
+        if (value == null) {
+            return OutputDurability.NONE;
+        }
+        final OutputDurability durability = OutputDurability.fromString(value);
+        if (durability == null) {
+            Constants.LOGGER.warning(Constants.RES.get("console.output.unknownDurability", value));
+            return OutputDurability.NONE;
+        }
+        return durability;
+    }
+
+    /**
+     * Whether the output file is filled with zeros up to its expected size before it is written ({@code output.preallocate} in
+     * {@code advanced.properties}).
+     */
+    public static boolean outputPreallocate() {
+        return cfg().getAsBool(KEY_OUTPUT_PREALLOCATE, false);
+    }
+
+    /**
+     * Whether the signing engines check the signature while they write the output ({@code output.selfCheck} in
+     * {@code advanced.properties}).
+     */
+    public static boolean outputSelfCheck() {
+        return cfg().getAsBool(KEY_OUTPUT_SELF_CHECK, false);
+    }
+
+    /**
+     * Milliseconds a new file in the {@code --watch} folder has to keep its size and modification time before it is
+     * signed ({@code watch.settleMillis}), at least 0.
+     */
+    public static long watchSettleMillis() {
+        return Math.max(0, cfg().getAsInt(KEY_WATCH_SETTLE_MILLIS, 1000));
+    }
+
+    /**
+     * Seconds allowed to connect to a CRL / OCSP / TSA server ({@code http.connectTimeout}), at least 1.
+     */
+    public static int httpConnectTimeout() {
+        return Math.max(1, cfg().getAsInt(KEY_HTTP_CONNECT_TIMEOUT, 10));
+    }
+
+    /**
+     * Seconds allowed for a whole CRL / OCSP / TSA request, response body included ({@code http.requestTimeout}), at
+     * least 1.
+     */
+    public static int httpRequestTimeout() {
+        return Math.max(1, cfg().getAsInt(KEY_HTTP_REQUEST_TIMEOUT, 60));
+    }
+
+    /**
+     * How many CRL / OCSP / TSA requests may run against one host at the same time
+     * ({@code http.maxConnectionsPerHost}), at least 1.
+     */
+    public static int httpMaxConnectionsPerHost() {
+        return Math.max(1, cfg().getAsInt(KEY_HTTP_MAX_CONNECTIONS_PER_HOST, 4));
+    }
+
+    /**
+     * Average CRL / OCSP / TSA requests per second allowed to one host ({@code http.rateLimit}); {@code 0} means
+     * unlimited.
+     */
+    public static double httpRateLimit() {
+        return Math.max(0f, cfg().getAsFloat(KEY_HTTP_RATE_LIMIT, 0f));
+    }
+
+    /**
+     * Requests to one host which may be sent at once before the {@link #httpRateLimit() rate limit} applies
+     * ({@code http.rateBurst}), at least 1.
+     */
+    public static double httpRateBurst() {
+        return Math.max(1f, cfg().getAsFloat(KEY_HTTP_RATE_BURST, 1f));
+    }
+
+    /**
+     * How many times a request the server throttled (HTTP 429 / 503) is retried ({@code http.retries}).
+     */
+    public static int httpRetries() {
+        return Math.max(0, cfg().getAsInt(KEY_HTTP_RETRIES, 3));
+    }
+
+    /**
+     * Base delay in milliseconds of the exponential retry backoff ({@code http.retryDelay}).
+     */
+    public static long httpRetryDelay() {
+        return Math.max(1, cfg().getAsInt(KEY_HTTP_RETRY_DELAY, 500));
+    }
+
+    /**
+     * Longest delay in seconds before a retry, also when the server asks for more in {@code Retry-After}
+     * ({@code http.retryMaxDelay}).
+     */
+    public static int httpRetryMaxDelay() {
+        return Math.max(0, cfg().getAsInt(KEY_HTTP_RETRY_MAX_DELAY, 30));
+    }
+
     /**
      * BCP-47 language tag of the user interface ({@code ui.language} in {@code advanced.properties}), or {@code null}
      * when unset. Empty / unset means "follow the OS locale". Read once at startup by {@link UiLocale}.
@@ -135,6 +399,61 @@ public final class AppConfig {
         return cfg().getNotEmptyProperty("tsa.hashAlgorithm", "SHA-256");
     }
 
+    /**
+     * How timestamp requests use several TSA URLs ({@code tsa.strategy} in {@code advanced.properties}). An
+     * unrecognised value logs a warning and falls back to {@link TsaStrategy#FAILOVER}.
+     */
+    public static TsaStrategy tsaStrategy() {
+        final String value = cfg().getNotEmptyProperty(KEY_TSA_STRATEGY, null);
+        if (value == null) {
+            return TsaStrategy.FAILOVER;
+        }
+        final TsaStrategy strategy = TsaStrategy.fromString(value);
+        if (strategy == null) {
+            Constants.LOGGER.warning(Constants.RES.get("console.tsa.unknownStrategy", value));
+            return TsaStrategy.FAILOVER;
+        }
+        return strategy;
+    }
+
+    /**
+     * Shortest delay in milliseconds before a {@link TsaStrategy#HEDGED hedged} request asks the next TSA
+     * ({@code tsa.hedgeMinDelay}); the delay is otherwise the TSA's 95th percentile response time.
+     */
+    public static int tsaHedgeMinDelay() {
+        return Math.max(0, cfg().getAsInt(KEY_TSA_HEDGE_MIN_DELAY, 200));
+    }
+
+    /**
+     * Consecutive failures after which a TSA URL is tried last ({@code tsa.breaker.threshold}), at least 1.
+     */
+    public static int tsaBreakerThreshold() {
+        return Math.max(1, cfg().getAsInt(KEY_TSA_BREAKER_THRESHOLD, 3));
+    }
+
+    /**
+     * Seconds a repeatedly failing TSA URL stays at the end of the list ({@code tsa.breaker.openSeconds}).
+     */
+    public static int tsaBreakerOpenSeconds() {
+        return Math.max(0, cfg().getAsInt(KEY_TSA_BREAKER_OPEN_SECONDS, 60));
+    }
+
+    /**
+     * The revocation bundle ({@code revocation.bundle}) the signing engines read CRLs, OCSP responses and CA
+     * certificates from before going online, or {@code null} when none is configured.
+     */
+    public static String revocationBundle() {
+        return cfg().getNotEmptyProperty(KEY_REVOCATION_BUNDLE, null);
+    }
+
+    /**
+     * Seconds after its {@code thisUpdate} a bundled OCSP response without {@code nextUpdate} is still used
+     * ({@code revocation.bundle.ocspMaxAge}).
+     */
+    public static int revocationBundleOcspMaxAge() {
+        return Math.max(0, cfg().getAsInt(KEY_REVOCATION_BUNDLE_OCSP_MAX_AGE, 86400));
+    }
+
     /**
      * Suffix appended to the input file name to build the default output file name (the GUI suggestion and the
      * fallback for the CLI {@code -osuffix} option), or {@value Constants#DEFAULT_OUT_SUFFIX} when unset. Lets users
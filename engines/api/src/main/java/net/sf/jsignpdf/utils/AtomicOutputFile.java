@@ -0,0 +1,285 @@
+package net.sf.jsignpdf.utils;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.sf.jsignpdf.types.OutputDurability;
+
+/**
+ * Output file which only appears at its final path once it is complete. The content is written to a hidden sibling
+ * temporary file ({@code .name.pdf.<random>.tmp}) and {@link #commit() moved} over the target in one atomic rename.
+ * Closing without a commit deletes the temporary file, so an aborted or crashed signing never leaves a truncated PDF at
+ * the target path - and an existing target stays untouched.
+ *
+ * <p>
+ * The {@link OutputDurability} decides whether the content (and the directory entry) is forced to the disk as part of
+ * the commit. When pre-allocation is on, the temporary file is filled with zeros up to the expected size before writing
+ * and trimmed to the written size on commit. The SHA-256 digest of the content is computed as it is written, so the output doesn't
+ * have to be read again to fingerprint it (e.g. for the batch journal).
+ * </p>
+ * <p>
+ * Typical use:
+ * </p>
+ *
+ * <pre>
+ * try (AtomicOutputFile out = AtomicOutputFile.create(new File(outFile), expectedSize)) {
+ *     document.writeTo(out.stream());
+ *     out.commit();
+ * }
+ * </pre>
+ *
+ * @author Josef Cacek
+ */
+public final class AtomicOutputFile implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path target;
+    private final Path temp;
+    private final OutputDurability durability;
+    private final FileChannel channel;
+    private final BufferedOutputStream buffered;
+    private final MessageDigest digest;
+    private final OutputStream stream;
+    private final boolean preallocated;
+    private String sha256;
+    private boolean committed;
+    private boolean closed;
+
+    private AtomicOutputFile(Path target, Path temp, long expectedSize, OutputDurability durability,
+            boolean preallocate) throws IOException {
+        this.target = target;
+        this.temp = temp;
+        this.durability = durability;
+        this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+        try {
+            this.preallocated = preallocate && expectedSize > 0L;
+            if (preallocated) {
+                preallocate(channel, expectedSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            channel.close();
+            throw new IllegalStateException(e);
+        }
+        this.stream = new NonClosingOutputStream(new DigestOutputStream(buffered, digest));
+    }
+
+    /**
+     * Creates the output with the durability and pre-allocation settings from the advanced configuration
+     * ({@code output.durability}, {@code output.preallocate}).
+     *
+     * @param target the final output file
+     * @param expectedSize expected output size in bytes for the pre-allocation; {@code 0} when unknown
+     * @return the open output file
+     * @throws IOException when the temporary file can't be created
+     */
+    public static AtomicOutputFile create(File target, long expectedSize) throws IOException {
+        return create(target, expectedSize, AppConfig.outputDurability(), AppConfig.outputPreallocate());
+    }
+
+    /**
+     * Creates the temporary sibling of the given target file. The temporary file is created with the default
+     * permissions (not the owner-only ones of {@link File#createTempFile(String, String)}), so the committed output
+     * looks the same as a directly written one.
+     *
+     * @param target the final output file
+     * @param expectedSize expected output size in bytes for the pre-allocation; {@code 0} when unknown
+     * @param durability what the commit forces to the disk
+     * @param preallocate whether to extend the file to {@code expectedSize} before writing
+     * @return the open output file
+     * @throws IOException when the temporary file can't be created
+     */
+    public static AtomicOutputFile create(File target, long expectedSize, OutputDurability durability,
+            boolean preallocate) throws IOException {
+        final Path targetPath = target.getAbsoluteFile().toPath().normalize();
+        final Path dir = targetPath.getParent();
+        final String prefix = "." + targetPath.getFileName() + ".";
+        while (true) {
+            final Path temp = dir.resolve(prefix + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            try {
+                return new AtomicOutputFile(targetPath, temp, expectedSize, durability, preallocate);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the stream writing the temporary file; closing it only flushes, the file is finished by
+     *         {@link #commit()} or discarded by {@link #close()}
+     */
+    public OutputStream stream() {
+        return stream;
+    }
+
+    /**
+     * @return the final output file
+     */
+    public File getTarget() {
+        return target.toFile();
+    }
+
+    /**
+     * Flushes the content written so far and returns the temporary file which holds it, so the output can be checked
+     * before the {@link #commit()}. A pre-allocated tail is trimmed first - the file ends where the content does.
+     *
+     * @return the temporary file; it is only valid until the output is committed or closed
+     * @throws IOException when flushing fails or the output was already finished
+     */
+    public File written() throws IOException {
+        if (closed) {
+            throw new IOException("The output " + target + " was already closed");
+        }
+        buffered.flush();
+        if (preallocated) {
+            channel.truncate(channel.position());
+        }
+        return temp.toFile();
+    }
+
+    /**
+     * @return the hex-encoded SHA-256 digest of the committed content, {@code null} before {@link #commit()}
+     */
+    public String sha256() {
+        return sha256;
+    }
+
+    /**
+     * Finishes the temporary file - trims a pre-allocated tail and forces it to the disk as the durability level
+     * requires - and atomically renames it to the target, replacing an existing file. File systems without atomic
+     * rename support fall back to a plain replacing move.
+     *
+     * @throws IOException when finishing or renaming fails; the temporary file is deleted by {@link #close()} then
+     */
+    public void commit() throws IOException {
+        if (closed) {
+            throw new IOException("The output " + target + " was already closed");
+        }
+        closed = true;
+        try {
+            buffered.flush();
+            if (preallocated) {
+                channel.truncate(channel.position());
+            }
+            if (durability != OutputDurability.NONE) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.fine(() -> "Atomic rename not supported for " + target + ", using a plain move");
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        sha256 = HexFormat.of().formatHex(digest.digest());
+        if (durability == OutputDurability.FULL) {
+            forceDirectory(target.getParent());
+        }
+    }
+
+    /**
+     * Discards the temporary file unless the output was committed.
+     */
+    @Override
+    public void close() {
+        if (committed) {
+            return;
+        }
+        if (!closed) {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.fine(() -> "Closing the discarded output " + temp + " failed: " + e.getMessage());
+            }
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.output.tempFileNotDeleted", temp.toString(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes zeros up to the expected size. Only extending the file (writing its last byte) leaves a sparse file on most
+     * file systems, which reserves no blocks at all; real writes make the file system allocate them. The stream still
+     * starts at position 0.
+     */
+    private static void preallocate(FileChannel channel, long expectedSize) throws IOException {
+        final ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, expectedSize));
+        long position = 0L;
+        while (position < expectedSize) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), expectedSize - position));
+            position += channel.write(zeros, position);
+        }
+    }
+
+    /**
+     * Makes the rename durable. Directories can't be opened for syncing on every platform (Windows refuses), and
+     * there the rename is journaled by the file system anyway, so a failure is only logged.
+     */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            LOGGER.fine(() -> "Unable to sync the directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the PDF libraries from closing the file when they close their output stream.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package net.sf.jsignpdf.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side limits for one TSA / OCSP / CRL host, shared by every HTTP client of the process (the OpenPDF engine's
+ * {@link HttpTransport} and the DSS engine's data loaders), so parallel signing stays within what the provider
+ * accepts instead of running into its throttling:
+ * <ul>
+ * <li>a concurrency cap - at most {@code http.maxConnectionsPerHost} requests at a time,</li>
+ * <li>a token bucket - on average at most {@code http.rateLimit} requests per second, with bursts of up to
+ * {@code http.rateBurst}; {@code 0} (the default) means no rate limit,</li>
+ * <li>the retry policy for a throttled request (HTTP 429 or 503): up to {@code http.retries} retries, after the delay
+ * the server asks for in {@code Retry-After}, or else an exponential backoff from {@code http.retryDelay} with full
+ * jitter; never longer than {@code http.retryMaxDelay}.</li>
+ * </ul>
+ *
+ * @author Josef Cacek
+ */
+public final class HostThrottle {
+
+    private static final Map<String, HostThrottle> HOSTS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final Semaphore permits;
+    private final double ratePerSecond;
+    private final double burst;
+    private double tokens;
+    private long refilledAtNanos;
+
+    HostThrottle(String host, int maxConcurrent, double ratePerSecond, double burst) {
+        this.host = host;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1d, burst);
+        this.tokens = this.burst;
+        this.refilledAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the throttle of the URL's host (and port), created from {@code advanced.properties} on first use.
+     *
+     * @param url the request URL
+     * @return the shared throttle
+     */
+    public static HostThrottle forUrl(String url) {
+        String key;
+        try {
+            final URI uri = URI.create(url.trim());
+            key = uri.getHost() + ":" + uri.getPort();
+        } catch (IllegalArgumentException e) {
+            key = url;
+        }
+        return HOSTS.computeIfAbsent(key, k -> new HostThrottle(k, AppConfig.httpMaxConnectionsPerHost(),
+                AppConfig.httpRateLimit(), AppConfig.httpRateBurst()));
+    }
+
+    /**
+     * Waits for a free connection slot and a rate token. Every successful call must be paired with {@link #release()}.
+     *
+     * @param timeoutMillis the longest time to wait for the connection slot
+     * @throws IOException when no slot frees up in time, or the thread is interrupted
+     */
+    public void acquire(long timeoutMillis) throws IOException {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new HttpTimeoutException("No free connection to " + host + " within " + timeoutMillis + " ms");
+            }
+            try {
+                final long waitNanos = reserveToken();
+                if (waitNanos > 0L) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            } catch (InterruptedException e) {
+                permits.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + host);
+        }
+    }
+
+    /**
+     * Frees the connection slot taken by {@link #acquire(long)}.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Takes one token, possibly ahead of time.
+     *
+     * @return how long the caller has to wait before its token is due; {@code 0} when it is available now
+     */
+    synchronized long reserveToken() {
+        if (ratePerSecond <= 0d) {
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAtNanos) / 1e9 * ratePerSecond);
+        refilledAtNanos = now;
+        tokens -= 1d;
+        return tokens >= 0d ? 0L : (long) (-tokens / ratePerSecond * 1e9);
+    }
+
+    /**
+     * @param status HTTP status code
+     * @return {@code true} for the statuses a throttling server answers with (429, 503)
+     */
+    public static boolean isRetryable(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * The delay before retry {@code attempt} (0-based) of a throttled request.
+     *
+     * @param attempt how many retries were made already
+     * @param retryAfter the {@code Retry-After} header (seconds or an HTTP date), or {@code null}
+     * @return the delay in milliseconds
+     */
+    public static long retryDelayMillis(int attempt, String retryAfter) {
+        return retryDelayMillis(attempt, retryAfter, AppConfig.httpRetryDelay(),
+                TimeUnit.SECONDS.toMillis(AppConfig.httpRetryMaxDelay()));
+    }
+
+    static long retryDelayMillis(int attempt, String retryAfter, long baseMillis, long maxMillis) {
+        final long requested = parseRetryAfter(retryAfter);
+        if (requested >= 0L) {
+            // a little jitter on top, so the clients told to come back at the same time don't all arrive together
+            final long jitter = ThreadLocalRandom.current().nextLong(Math.max(1L, requested / 10L + 1L));
+            return Math.min(maxMillis, requested + jitter);
+        }
+        final long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(Math.max(1L, ceiling) + 1L);
+    }
+
+    /**
+     * @return the delay requested by a {@code Retry-After} header in milliseconds, {@code -1} when there is none or it
+     *         can't be read
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return -1L;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // not delta-seconds, try the HTTP-date form
+        }
+        try {
+            final ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0L, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+}
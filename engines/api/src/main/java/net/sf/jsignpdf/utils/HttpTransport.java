@@ -0,0 +1,223 @@
+package net.sf.jsignpdf.utils;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import javax.net.ssl.SSLContext;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.ssl.SSLInitializer;
+
+/**
+ * Shared HTTP(S) transport for the CRL, OCSP and TSA traffic of the OpenPDF engine. It replaces one
+ * {@code HttpURLConnection} per request - no timeouts, a fresh TLS handshake for every call - with a process-wide
+ * {@link HttpClient}, which keeps connections alive between signatures, negotiates HTTP/2 over TLS and bounds every
+ * request:
+ * <ul>
+ * <li>{@code http.connectTimeout} - seconds to establish the connection,</li>
+ * <li>{@code http.requestTimeout} - seconds for the whole exchange, response body included, so a server which stalls
+ * mid-response no longer hangs the signing thread,</li>
+ * <li>the per-host limits of {@link HostThrottle} - concurrent requests, request rate, and retries of a request the
+ * server throttled (HTTP 429 / 503), up to {@code http.retries} times.</li>
+ * </ul>
+ * <p>
+ * One instance is shared per proxy and TLS client-certificate configuration (see {@link #forOptions}). Redirects are
+ * followed across schemes, as the CRL download has always done (#254). The JDK client can't tunnel through a SOCKS
+ * proxy; {@link #supports(Proxy)} tells the callers to keep their {@code URLConnection} path for it.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class HttpTransport {
+
+    private static final Map<String, HttpTransport> SHARED = new ConcurrentHashMap<>();
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int retries;
+    private final Function<String, HostThrottle> throttles;
+
+    HttpTransport(Proxy proxy, SSLContext sslContext, Duration connectTimeout, Duration requestTimeout, int retries,
+            Function<String, HostThrottle> throttles) {
+        final HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.ALWAYS).connectTimeout(connectTimeout);
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        if (proxy != null && proxy.type() == Proxy.Type.HTTP) {
+            builder.proxy(ProxySelector.of((InetSocketAddress) proxy.address()));
+        } else {
+            builder.proxy(HttpClient.Builder.NO_PROXY);
+        }
+        this.client = builder.build();
+        this.requestTimeout = requestTimeout;
+        this.retries = Math.max(0, retries);
+        this.throttles = throttles;
+    }
+
+    /**
+     * @param proxy the proxy the traffic should go through
+     * @return {@code false} for a SOCKS proxy, which the JDK HTTP client doesn't support
+     */
+    public static boolean supports(Proxy proxy) {
+        return proxy == null || proxy.type() != Proxy.Type.SOCKS;
+    }
+
+    /**
+     * Returns the transport shared by all signatures with the same proxy, TSA client certificate, relaxed-SSL setting
+     * and timeouts, creating it on first use.
+     *
+     * @param options signer options (proxy and TSA client certificate)
+     * @return the shared transport
+     * @throws IOException when the proxy is SOCKS or the client-certificate keystore can't be read
+     * @throws GeneralSecurityException when the TLS context can't be initialized
+     */
+    public static HttpTransport forOptions(BasicSignerOptions options) throws IOException, GeneralSecurityException {
+        final Proxy proxy = options.createProxy();
+        if (!supports(proxy)) {
+            throw new IOException("The HTTP transport doesn't support the proxy " + proxy);
+        }
+        final Duration connectTimeout = Duration.ofSeconds(AppConfig.httpConnectTimeout());
+        final Duration requestTimeout = Duration.ofSeconds(AppConfig.httpRequestTimeout());
+        final int retries = AppConfig.httpRetries();
+        final String key = proxy + "|" + SSLInitializer.clientCertKey(options) + "|" + AppConfig.relaxSslSecurity() + "|"
+                + connectTimeout + "|" + requestTimeout + "|" + retries;
+        HttpTransport transport = SHARED.get(key);
+        if (transport == null) {
+            // built outside computeIfAbsent: the TLS context setup throws checked exceptions and reads a keystore
+            final HttpTransport created = new HttpTransport(proxy, SSLInitializer.getSslContext(options),
+                    connectTimeout, requestTimeout, retries, HostThrottle::forUrl);
+            transport = SHARED.putIfAbsent(key, created);
+            if (transport == null) {
+                LOGGER.fine("Created HTTP transport for " + proxy + " (connect timeout " + connectTimeout
+                        + ", request timeout " + requestTimeout + ", " + retries + " retries)");
+                transport = created;
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Downloads the resource.
+     *
+     * @param url the URL
+     * @return the response body
+     * @throws IOException on a connection error, a timeout or a non-2xx response
+     */
+    public byte[] get(String url) throws IOException {
+        final URI uri = toUri(url);
+        return exchange(newRequest(uri).GET().build()).body();
+    }
+
+    /**
+     * Posts the body and returns the response.
+     *
+     * @param url the URL
+     * @param contentType the request content type
+     * @param body the request body
+     * @param headers additional request headers, may be {@code null}
+     * @return the response
+     * @throws IOException on a connection error, a timeout or a non-2xx response
+     */
+    public HttpResponse<byte[]> post(String url, String contentType, byte[] body, Map<String, String> headers)
+            throws IOException {
+        final URI uri = toUri(url);
+        final HttpRequest.Builder builder = newRequest(uri).header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (headers != null) {
+            headers.forEach(builder::header);
+        }
+        return exchange(builder.build());
+    }
+
+    private HttpRequest.Builder newRequest(URI uri) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(requestTimeout);
+        // HTTP/2 only where TLS negotiates it; a cleartext h2c upgrade attempt confuses some older CRL / TSA servers
+        if (!"https".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    private HttpResponse<byte[]> exchange(HttpRequest request) throws IOException {
+        final URI uri = request.uri();
+        final HostThrottle throttle = throttles.apply(uri.toString());
+        for (int attempt = 0;; attempt++) {
+            throttle.acquire(requestTimeout.toMillis());
+            final HttpResponse<byte[]> response;
+            try {
+                response = send(request);
+            } finally {
+                throttle.release();
+            }
+            final int status = response.statusCode();
+            if (HostThrottle.isRetryable(status) && attempt < retries) {
+                final long delay = HostThrottle.retryDelayMillis(attempt,
+                        response.headers().firstValue("Retry-After").orElse(null));
+                LOGGER.info(RES.get("console.http.throttled", uri.getHost(), String.valueOf(status),
+                        String.valueOf(delay)));
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry " + uri);
+                }
+                continue;
+            }
+            if (status < 200 || status >= 300) {
+                throw new IOException("HTTP " + status + " from " + response.uri());
+            }
+            return response;
+        }
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        final URI uri = request.uri();
+        final CompletableFuture<HttpResponse<byte[]>> future = client.sendAsync(request,
+                HttpResponse.BodyHandlers.ofByteArray());
+        try {
+            // HttpRequest.timeout() covers the response headers only; bound the body as well
+            return future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("No complete response from " + uri + " within " + requestTimeout);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + uri);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException("Request to " + uri + " failed", e.getCause());
+        }
+    }
+
+    private static URI toUri(String url) throws IOException {
+        try {
+            return URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+    }
+}
@@ -367,7 +367,8 @@ public class KeyStoreUtils {
     }
 
     /**
-     * Returns PrivateKey and its certificate chain
+     * Returns PrivateKey and its certificate chain. When the options carry a {@link PrivateKeyCache} (batch runs), the
+     * key is resolved once per keystore and alias and reused.
      *
      * @param options
      * @return
@@ -377,6 +378,12 @@ public class KeyStoreUtils {
      */
     public static PrivateKeyInfo getPkInfo(BasicSignerOptions options)
             throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
+        final PrivateKeyCache cache = options.getPrivateKeyCache();
+        return cache != null ? cache.get(options, KeyStoreUtils::loadPkInfo) : loadPkInfo(options);
+    }
+
+    private static PrivateKeyInfo loadPkInfo(BasicSignerOptions options)
+            throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
         final KeyStore tmpKs = loadKeyStore(options.getKsType(), options.getKsFile(), options.getKsPasswd());
 
         String tmpAlias = getKeyAliasInternal(options, tmpKs);
@@ -0,0 +1,71 @@
+package net.sf.jsignpdf.utils;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.PrivateKeyInfo;
+
+/**
+ * Private keys resolved during one batch run, so that the keystore is loaded and the key recovered once instead of for
+ * every document. A batch run sets one instance on its options ({@link BasicSignerOptions#setPrivateKeyCache}) and
+ * {@link KeyStoreUtils#getPkInfo(BasicSignerOptions)} goes through it.
+ * <p>
+ * An entry is keyed by the keystore type, file and key alias (or index). The passwords it was resolved with are kept
+ * with it: a document with other passwords resolves the key itself, so it never gets a key it couldn't unlock.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class PrivateKeyCache {
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    /** Resolves the key of the options when the cache doesn't have it. */
+    @FunctionalInterface
+    interface Resolver {
+        PrivateKeyInfo resolve(BasicSignerOptions options)
+                throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException;
+    }
+
+    private record Key(String ksType, String ksFile, String alias, int index) {
+    }
+
+    private record Entry(PrivateKeyInfo pkInfo, char[] ksPasswd, char[] keyPasswd) {
+    }
+
+    /**
+     * Returns the cached key of the options, resolving and caching it on the first use. Concurrent workers wait for the
+     * first one to resolve the key rather than loading the keystore in parallel.
+     *
+     * @param options the options naming the keystore and the key
+     * @param resolver loads the key when it isn't cached
+     * @return the key, {@code null} when the keystore has none (not cached)
+     */
+    synchronized PrivateKeyInfo get(BasicSignerOptions options, Resolver resolver)
+            throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
+        final Key key = new Key(options.getKsType(), options.getKsFile(), options.getKeyAliasX(),
+                options.getKeyIndexX());
+        final Entry entry = entries.get(key);
+        if (entry != null && Arrays.equals(entry.ksPasswd(), options.getKsPasswd())
+                && Arrays.equals(entry.keyPasswd(), options.getKeyPasswdX())) {
+            LOGGER.fine(() -> "Reusing the private key " + key);
+            return entry.pkInfo();
+        }
+        final PrivateKeyInfo pkInfo = resolver.resolve(options);
+        if (pkInfo != null) {
+            entries.put(key, new Entry(pkInfo, clone(options.getKsPasswd()), clone(options.getKeyPasswdX())));
+        }
+        return pkInfo;
+    }
+
+    private static char[] clone(char[] password) {
+        return password != null ? password.clone() : null;
+    }
+}
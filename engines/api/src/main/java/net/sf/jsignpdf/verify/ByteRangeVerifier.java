@@ -0,0 +1,305 @@
+package net.sf.jsignpdf.verify;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.util.Collection;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DefaultAlgorithmNameFinder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.tsp.TimeStampTokenInfo;
+
+/**
+ * Checks one PDF signature against the file it is in: the signed byte ranges are re-hashed through memory-mapped
+ * buffers and compared with the digest the signature commits to, and optionally the CMS signature value is verified
+ * with the certificate it carries. Neither the certificate chain nor revocation is looked at - that is the full
+ * validation of an engine.
+ * <p>
+ * The caller extracts the {@code /ByteRange} and {@code /Contents} of the signature dictionary, so the class needs
+ * no PDF parser and works for any engine's output.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class ByteRangeVerifier {
+
+    /** Sub-filter of a document timestamp; its {@code /Contents} is a time-stamp token over the byte ranges. */
+    public static final String SUBFILTER_RFC3161 = "ETSI.RFC3161";
+    /** Legacy sub-filter whose CMS encapsulates the SHA-1 digest of the byte ranges. */
+    public static final String SUBFILTER_ADBE_SHA1 = "adbe.pkcs7.sha1";
+
+    private static final String OID_SHA1 = "1.3.14.3.2.26";
+
+    /** Size of one mapped window; keeps the address space use bounded for very large documents. */
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+
+    private static final Provider BC = new BouncyCastleProvider();
+
+    /**
+     * Outcome of the check.
+     *
+     * @param digestAlgorithm name of the digest over the byte ranges, {@code null} when it couldn't be determined
+     * @param intact whether the byte ranges hash to the digest the signature commits to
+     * @param cmsValid whether the CMS signature value verifies, {@code null} when it wasn't checked
+     * @param coversDocument whether the byte ranges reach the end of the file (no later revision)
+     * @param signer subject of the signing certificate, may be {@code null}
+     * @param problem what went wrong, {@code null} when the checked parts are fine
+     */
+    public record Result(String digestAlgorithm, boolean intact, Boolean cmsValid, boolean coversDocument,
+            String signer, String problem) {
+
+        /**
+         * @return {@code true} when the byte ranges are intact and, if checked, the CMS signature verifies
+         */
+        public boolean passed() {
+            return intact && !Boolean.FALSE.equals(cmsValid);
+        }
+    }
+
+    /** Supplies the digest of the byte ranges for the algorithm the signature uses. */
+    @FunctionalInterface
+    private interface RangeDigest {
+        byte[] of(String digestOid) throws IOException, GeneralSecurityException;
+    }
+
+    private ByteRangeVerifier() {
+    }
+
+    /**
+     * Checks one signature.
+     *
+     * @param channel the opened PDF file
+     * @param byteRange the {@code /ByteRange} of the signature dictionary
+     * @param contents the {@code /Contents} of the signature dictionary (DER, trailing zero padding allowed)
+     * @param subFilter the {@code /SubFilter} of the signature dictionary, may be {@code null}
+     * @param checkCms whether to verify the CMS signature value too
+     * @return the result
+     * @throws IOException when the file can't be read
+     */
+    public static Result verify(FileChannel channel, long[] byteRange, byte[] contents, String subFilter,
+            boolean checkCms) throws IOException {
+        final long size = channel.size();
+        final String rangeProblem = checkByteRange(byteRange, size);
+        if (rangeProblem != null) {
+            return new Result(null, false, null, false, null, rangeProblem);
+        }
+        final boolean coversDocument = byteRange[2] + byteRange[3] == size;
+        return verifyContents(oid -> digest(channel, byteRange, MessageDigest.getInstance(oid, BC)), contents,
+                subFilter, checkCms, coversDocument);
+    }
+
+    /**
+     * Checks one signature whose byte ranges were already hashed - e.g. while the signed document was being written, see
+     * {@link SignatureCheckingOutputStream}.
+     *
+     * @param digestOid OID of the digest algorithm of {@code rangeDigest}
+     * @param rangeDigest digest of the byte ranges
+     * @param contents the {@code /Contents} of the signature dictionary (DER, trailing zero padding allowed)
+     * @param subFilter the {@code /SubFilter} of the signature dictionary, may be {@code null}
+     * @param checkCms whether to verify the CMS signature value too
+     * @return the result; {@link Result#coversDocument()} is always {@code true}
+     */
+    public static Result verify(String digestOid, byte[] rangeDigest, byte[] contents, String subFilter,
+            boolean checkCms) {
+        try {
+            return verifyContents(oid -> {
+                if (!oid.equals(digestOid)) {
+                    throw new GeneralSecurityException("The signature uses " + algorithmName(oid)
+                            + ", but the byte ranges were hashed with " + algorithmName(digestOid));
+                }
+                return rangeDigest;
+            }, contents, subFilter, checkCms, true);
+        } catch (IOException e) {
+            // the digest is in memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Result verifyContents(RangeDigest rangeDigest, byte[] contents, String subFilter,
+            boolean checkCms, boolean coversDocument) throws IOException {
+        final CMSSignedData cms;
+        try {
+            cms = new CMSSignedData(contents);
+        } catch (CMSException | RuntimeException e) {
+            return new Result(null, false, null, coversDocument, null, "Unreadable CMS: " + e.getMessage());
+        }
+        try {
+            if (SUBFILTER_RFC3161.equals(subFilter)) {
+                return verifyTimestamp(rangeDigest, cms, checkCms, coversDocument);
+            }
+            return verifySignature(rangeDigest, contents, cms, subFilter, checkCms, coversDocument);
+        } catch (GeneralSecurityException | CMSException | TSPException | OperatorCreationException
+                | RuntimeException e) {
+            return new Result(null, false, checkCms ? Boolean.FALSE : null, coversDocument, null,
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hashes the byte ranges of the file through memory-mapped windows.
+     *
+     * @param channel the file
+     * @param byteRange pairs of offset and length
+     * @param md the digest to update; it is reset by the final {@link MessageDigest#digest()}
+     * @return the digest
+     * @throws IOException when the file can't be read
+     */
+    public static byte[] digest(FileChannel channel, long[] byteRange, MessageDigest md) throws IOException {
+        for (int i = 0; i + 1 < byteRange.length; i += 2) {
+            long pos = byteRange[i];
+            final long end = pos + byteRange[i + 1];
+            while (pos < end) {
+                final long len = Math.min(MAP_CHUNK, end - pos);
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                md.update(buffer);
+                pos += len;
+            }
+        }
+        return md.digest();
+    }
+
+    private static Result verifySignature(RangeDigest rangeDigest, byte[] contents, CMSSignedData cms,
+            String subFilter, boolean checkCms, boolean coversDocument)
+            throws IOException, GeneralSecurityException, CMSException, OperatorCreationException {
+        final SignerInformation signer = firstSigner(cms);
+        if (signer == null) {
+            return new Result(null, false, null, coversDocument, null, "The CMS has no signer");
+        }
+        final boolean encapsulatedDigest = SUBFILTER_ADBE_SHA1.equals(subFilter) && cms.getSignedContent() != null;
+        final String digestOid = encapsulatedDigest ? OID_SHA1 : signer.getDigestAlgOID();
+        final byte[] actual = rangeDigest.of(digestOid);
+
+        final byte[] expected;
+        if (encapsulatedDigest) {
+            expected = (byte[]) cms.getSignedContent().getContent();
+        } else {
+            expected = messageDigest(signer);
+        }
+        Boolean cmsValid = null;
+        String signerName = null;
+        if (checkCms || expected == null) {
+            // the signer verified over the precomputed digest - the content is never materialized
+            final CMSSignedData withDigest = encapsulatedDigest ? cms
+                    : new CMSSignedData(Map.of(new ASN1ObjectIdentifier(digestOid), actual), contents);
+            final SignerInformation digestSigner = firstSigner(withDigest);
+            final X509CertificateHolder cert = certificate(withDigest, digestSigner);
+            if (cert == null) {
+                return new Result(algorithmName(digestOid), expected != null && MessageDigest.isEqual(actual, expected),
+                        Boolean.FALSE, coversDocument, null, "The signing certificate is not in the CMS");
+            }
+            signerName = cert.getSubject().toString();
+            cmsValid = verifySigner(digestSigner, cert);
+        } else {
+            final X509CertificateHolder cert = certificate(cms, signer);
+            signerName = cert != null ? cert.getSubject().toString() : null;
+        }
+        // without signed attributes the digest is only inside the signature value, so the CMS check decides
+        final boolean intact = expected != null ? MessageDigest.isEqual(actual, expected) : Boolean.TRUE.equals(cmsValid);
+        final String problem = !intact ? "The signed byte ranges were modified"
+                : Boolean.FALSE.equals(cmsValid) ? "The CMS signature value doesn't verify" : null;
+        return new Result(algorithmName(digestOid), intact, checkCms ? cmsValid : null, coversDocument, signerName,
+                problem);
+    }
+
+    private static Result verifyTimestamp(RangeDigest rangeDigest, CMSSignedData cms, boolean checkCms,
+            boolean coversDocument) throws IOException, GeneralSecurityException, TSPException, CMSException,
+            OperatorCreationException {
+        final TimeStampToken token = new TimeStampToken(cms);
+        final TimeStampTokenInfo info = token.getTimeStampInfo();
+        final String digestOid = info.getMessageImprintAlgOID().getId();
+        final byte[] actual = rangeDigest.of(digestOid);
+        final boolean intact = MessageDigest.isEqual(actual, info.getMessageImprintDigest());
+        final X509CertificateHolder cert = certificate(cms, firstSigner(cms));
+        Boolean cmsValid = null;
+        if (checkCms) {
+            cmsValid = cert != null && validToken(token, cert);
+        }
+        final String problem = !intact ? "The timestamped byte ranges were modified"
+                : Boolean.FALSE.equals(cmsValid) ? "The time-stamp token doesn't verify" : null;
+        return new Result(algorithmName(digestOid), intact, cmsValid, coversDocument,
+                cert != null ? cert.getSubject().toString() : null, problem);
+    }
+
+    /**
+     * @return {@code null} when the byte range is two ranges around a gap which start at 0 and stay in the file
+     */
+    private static String checkByteRange(long[] byteRange, long size) {
+        if (byteRange == null || byteRange.length != 4) {
+            return "The ByteRange doesn't have 4 values";
+        }
+        for (long value : byteRange) {
+            if (value < 0) {
+                return "The ByteRange has a negative value";
+            }
+        }
+        if (byteRange[0] != 0 || byteRange[1] > byteRange[2] || byteRange[2] + byteRange[3] > size) {
+            return "The ByteRange doesn't describe the file: " + byteRange[0] + " " + byteRange[1] + " "
+                    + byteRange[2] + " " + byteRange[3] + " (file size " + size + ")";
+        }
+        return null;
+    }
+
+    private static SignerInformation firstSigner(CMSSignedData cms) {
+        final Collection<SignerInformation> signers = cms.getSignerInfos().getSigners();
+        return signers.isEmpty() ? null : signers.iterator().next();
+    }
+
+    private static byte[] messageDigest(SignerInformation signer) {
+        if (signer.getSignedAttributes() == null) {
+            return null;
+        }
+        final Attribute attribute = signer.getSignedAttributes().get(CMSAttributes.messageDigest);
+        if (attribute == null || attribute.getAttrValues().size() != 1) {
+            return null;
+        }
+        return ASN1OctetString.getInstance(attribute.getAttrValues().getObjectAt(0)).getOctets();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static X509CertificateHolder certificate(CMSSignedData cms, SignerInformation signer) {
+        if (signer == null) {
+            return null;
+        }
+        final Collection<X509CertificateHolder> matches = cms.getCertificates().getMatches(signer.getSID());
+        return matches.isEmpty() ? null : matches.iterator().next();
+    }
+
+    private static boolean verifySigner(SignerInformation signer, X509CertificateHolder cert)
+            throws OperatorCreationException, GeneralSecurityException {
+        try {
+            return signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert));
+        } catch (CMSException e) {
+            return false;
+        }
+    }
+
+    private static boolean validToken(TimeStampToken token, X509CertificateHolder cert)
+            throws OperatorCreationException, GeneralSecurityException {
+        try {
+            token.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert));
+            return true;
+        } catch (TSPException e) {
+            return false;
+        }
+    }
+
+    private static String algorithmName(String oid) {
+        return new DefaultAlgorithmNameFinder().getAlgorithmName(new ASN1ObjectIdentifier(oid));
+    }
+}
@@ -0,0 +1,156 @@
+package net.sf.jsignpdf.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Checks a signature while the signed document is written ({@code output.selfCheck}): the bytes pass through to the
+ * output unchanged, those in the byte ranges are hashed on the way and the {@code /Contents} between them is kept. After
+ * the last byte, {@link #check} compares the digest with the one that was signed and verifies the embedded CMS against
+ * it - without reading the output back.
+ * <p>
+ * The engine calls {@link #expect} once the byte ranges and the signed digest are known and before the first byte of
+ * the signed revision is written; writers which stage the document and copy it to the output at the end (OpenPDF's
+ * {@code close()}, PDFBox's external signing) fit that.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class SignatureCheckingOutputStream extends FilterOutputStream {
+
+    /** The hex {@code /Contents} of a huge signature is still far below this; anything longer isn't a signature. */
+    private static final int MAX_CONTENTS_HEX = 16 * 1024 * 1024;
+
+    private static final Provider BC = new BouncyCastleProvider();
+
+    private long position;
+    private long[] byteRange;
+    private String digestOid;
+    private MessageDigest digest;
+    private byte[] signedDigest;
+    private ByteArrayOutputStream contentsHex;
+
+    /**
+     * @param out the output the document is written to
+     */
+    public SignatureCheckingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Arms the check.
+     *
+     * @param byteRange the {@code /ByteRange} written into the signature dictionary
+     * @param digestAlgorithm name of the digest algorithm (e.g. {@code SHA-256})
+     * @param signedDigest the digest of the byte ranges the signature was created for
+     * @throws GeneralSecurityException when the digest algorithm is unknown
+     * @throws IllegalStateException when part of the document was already written
+     */
+    public void expect(long[] byteRange, String digestAlgorithm, byte[] signedDigest)
+            throws GeneralSecurityException {
+        if (position > 0) {
+            throw new IllegalStateException("The check must be armed before the document is written");
+        }
+        if (byteRange.length != 4) {
+            throw new IllegalArgumentException("The ByteRange doesn't have 4 values");
+        }
+        final AlgorithmIdentifier algorithm = new DefaultDigestAlgorithmIdentifierFinder().find(digestAlgorithm);
+        if (algorithm == null) {
+            throw new GeneralSecurityException("Unknown digest algorithm " + digestAlgorithm);
+        }
+        this.byteRange = byteRange.clone();
+        this.digestOid = algorithm.getAlgorithm().getId();
+        this.digest = MessageDigest.getInstance(digestOid, BC);
+        this.signedDigest = signedDigest.clone();
+        this.contentsHex = new ByteArrayOutputStream((int) Math.min(MAX_CONTENTS_HEX, gapLength()));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        if (byteRange != null) {
+            account(b, off, len);
+        }
+        position += len;
+    }
+
+    /**
+     * Checks the written signature; call it after the document was completely written.
+     *
+     * @param subFilter the {@code /SubFilter} of the signature dictionary, may be {@code null}
+     * @return the result, {@code null} when {@link #expect} wasn't called
+     */
+    public ByteRangeVerifier.Result check(String subFilter) {
+        if (byteRange == null) {
+            return null;
+        }
+        if (position != byteRange[2] + byteRange[3]) {
+            return new ByteRangeVerifier.Result(null, false, null, false, null, "Written " + position
+                    + " bytes, but the ByteRange ends at " + (byteRange[2] + byteRange[3]));
+        }
+        final byte[] written = digest.digest();
+        if (!MessageDigest.isEqual(written, signedDigest)) {
+            return new ByteRangeVerifier.Result(null, false, null, true, null,
+                    "The written byte ranges differ from the signed ones");
+        }
+        final byte[] contents;
+        try {
+            contents = Hex.decode(stripBrackets(contentsHex.toString(StandardCharsets.US_ASCII)));
+        } catch (DecoderException e) {
+            return new ByteRangeVerifier.Result(null, true, false, true, null,
+                    "The written /Contents isn't a hex string: " + e.getMessage());
+        }
+        return ByteRangeVerifier.verify(digestOid, written, contents, subFilter, true);
+    }
+
+    private void account(byte[] b, int off, int len) {
+        final long start = position;
+        final long end = position + len;
+        // first range
+        updateDigest(b, off, start, end, byteRange[0], byteRange[0] + byteRange[1]);
+        // the gap with the /Contents
+        final long gapStart = Math.max(start, byteRange[0] + byteRange[1]);
+        final long gapEnd = Math.min(end, byteRange[2]);
+        if (gapStart < gapEnd && contentsHex.size() < MAX_CONTENTS_HEX) {
+            contentsHex.write(b, off + (int) (gapStart - start), (int) (gapEnd - gapStart));
+        }
+        // second range
+        updateDigest(b, off, start, end, byteRange[2], byteRange[2] + byteRange[3]);
+    }
+
+    private void updateDigest(byte[] b, int off, long start, long end, long rangeStart, long rangeEnd) {
+        final long from = Math.max(start, rangeStart);
+        final long to = Math.min(end, rangeEnd);
+        if (from < to) {
+            digest.update(b, off + (int) (from - start), (int) (to - from));
+        }
+    }
+
+    private long gapLength() {
+        return Math.max(0, byteRange[2] - byteRange[0] - byteRange[1]);
+    }
+
+    private static String stripBrackets(String hex) {
+        final String trimmed = hex.trim();
+        final int from = trimmed.startsWith("<") ? 1 : 0;
+        final int to = trimmed.endsWith(">") ? trimmed.length() - 1 : trimmed.length();
+        return trimmed.substring(from, to);
+    }
+}
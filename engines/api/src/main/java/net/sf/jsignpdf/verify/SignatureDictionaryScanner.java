@@ -0,0 +1,508 @@
+package net.sf.jsignpdf.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the signature dictionaries of a PDF without parsing the document. The file is scanned once for
+ * {@code /ByteRange} keys; the {@code /Contents} of a signature is the hex string in the gap its byte range leaves out,
+ * and the {@code /SubFilter} is read from the text of the object around it. That works because a signature dictionary
+ * is always a plain object in the file - its {@code /Contents} has to be excluded from the signed bytes - and its
+ * {@code /Contents} is never encrypted. No cross-reference table, page or form model is built, which is what the
+ * {@code integrity} and {@code cms} tiers of {@code --verify} need: the scan is one sequential read of a file whose
+ * bytes the byte range check hashes anyway.
+ * <p>
+ * The field of a signature is named from the {@code /FT /Sig} field dictionary whose {@code /V} refers to it, found by
+ * the same scan (its partial name {@code /T}). A field which is in an object stream or in an encrypted document can't
+ * be read this way; the signature is then named by its object reference, e.g. {@code 12 0 R}. A signature dictionary
+ * which a later revision rewrote is reported once, with its last content.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class SignatureDictionaryScanner {
+
+    /**
+     * One signature dictionary.
+     *
+     * @param field name of the signature field, or the object reference of the signature when it is unknown
+     * @param subFilter the {@code /SubFilter}, {@code null} when it is missing
+     * @param byteRange the {@code /ByteRange} as written, may have other than 4 values
+     * @param contents the decoded {@code /Contents} (with its zero padding), empty when the gap holds no hex string
+     */
+    public record Signature(String field, String subFilter, long[] byteRange, byte[] contents) {
+    }
+
+    private static final byte[] BYTE_RANGE = ascii("/ByteRange");
+    private static final byte[] FIELD_TYPE = ascii("/FT");
+    private static final byte[] ENCRYPT = ascii("/Encrypt");
+    private static final byte[] SIG = ascii("/Sig");
+    private static final byte[] SUB_FILTER = ascii("/SubFilter");
+    private static final byte[] VALUE = ascii("/V");
+    private static final byte[] PARTIAL_NAME = ascii("/T");
+    private static final byte[] OBJ = ascii("obj");
+    private static final byte[] END_OBJ = ascii("endobj");
+
+    /** Size of one mapped window of the scan. */
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+    /** Windows overlap by this much, so a key on the border is found in one of them. */
+    private static final int OVERLAP = 16;
+    /** How far from a key the object header and the {@code endobj} are looked for. */
+    private static final int OBJECT_WINDOW = 4096;
+    /** The hex {@code /Contents} of a huge signature is still far below this; anything longer isn't a signature. */
+    private static final long MAX_CONTENTS_HEX = 16L * 1024 * 1024;
+
+    private SignatureDictionaryScanner() {
+    }
+
+    /**
+     * Scans the file for signature dictionaries.
+     *
+     * @param channel the opened PDF file
+     * @return the signatures, in file order
+     * @throws IOException when the file can't be read
+     */
+    public static List<Signature> scan(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final Map<String, Signature> signatures = new LinkedHashMap<>();
+        final Map<String, String> fieldNames = new HashMap<>();
+        boolean encrypted = false;
+        for (long start = 0; start < size; start += MAP_CHUNK) {
+            final long end = Math.min(size, start + MAP_CHUNK);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(size, end + OVERLAP) - start);
+            for (int i = 0; i < end - start; i++) {
+                if (buffer.get(i) != '/') {
+                    continue;
+                }
+                if (matchesKey(buffer, i, BYTE_RANGE)) {
+                    final Signature signature = readSignature(channel, start + i, size);
+                    if (signature != null) {
+                        signatures.put(signature.field(), signature);
+                    }
+                } else if (matchesKey(buffer, i, FIELD_TYPE)) {
+                    readFieldName(channel, start + i, size, fieldNames);
+                } else if (matchesKey(buffer, i, ENCRYPT)) {
+                    encrypted = true;
+                }
+            }
+        }
+        final List<Signature> result = new ArrayList<>(signatures.size());
+        for (Signature signature : signatures.values()) {
+            final String name = encrypted ? null : fieldNames.get(signature.field());
+            result.add(name != null
+                    ? new Signature(name, signature.subFilter(), signature.byteRange(), signature.contents())
+                    : signature);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the signature dictionary whose {@code /ByteRange} key is at {@code keyPos}; its field is still the object
+     * reference.
+     */
+    private static Signature readSignature(FileChannel channel, long keyPos, long size) throws IOException {
+        final long arrayPos = keyPos + BYTE_RANGE.length;
+        final byte[] after = read(channel, arrayPos, 256, size);
+        final long[] byteRange = parseArray(after);
+        if (byteRange == null) {
+            // a /ByteRange outside of a dictionary, e.g. in the text of an uncompressed content stream
+            return null;
+        }
+        long gapStart = -1L;
+        long gapEnd = -1L;
+        byte[] contents = new byte[0];
+        if (byteRange.length == 4) {
+            gapStart = byteRange[0] + byteRange[1];
+            gapEnd = byteRange[2];
+            if (gapStart >= 0 && gapStart < gapEnd && gapEnd <= size && gapEnd - gapStart <= MAX_CONTENTS_HEX) {
+                contents = decodeHexString(read(channel, gapStart, (int) (gapEnd - gapStart), size));
+            } else {
+                gapStart = -1L;
+                gapEnd = -1L;
+            }
+        }
+        // the /Contents may come before or after the /ByteRange, the object is searched around both
+        final long head = gapStart >= 0 && gapStart < keyPos ? gapStart : keyPos;
+        final long tail = gapEnd > keyPos ? gapEnd : arrayPos;
+        final byte[] before = read(channel, Math.max(0L, head - OBJECT_WINDOW), (int) Math.min(OBJECT_WINDOW, head),
+                size);
+        final int header = lastIndexOf(before, OBJ);
+        final String reference = header >= 0 ? objectReference(before, header) : null;
+        final byte[] behind = read(channel, tail, OBJECT_WINDOW, size);
+        final int endObj = indexOf(behind, END_OBJ, 0);
+
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        final long objStart = header >= 0 ? head - before.length + header + OBJ.length : head;
+        final long objEnd = tail + (endObj >= 0 ? endObj : behind.length);
+        if (gapStart >= objStart && gapEnd <= objEnd) {
+            text.writeBytes(read(channel, objStart, (int) (gapStart - objStart), size));
+            text.writeBytes(read(channel, gapEnd, (int) (objEnd - gapEnd), size));
+        } else {
+            text.writeBytes(read(channel, objStart, (int) Math.min(objEnd - objStart, 2 * OBJECT_WINDOW), size));
+        }
+        final byte[] dictionary = text.toByteArray();
+        final int subFilterPos = indexOfKey(dictionary, SUB_FILTER, 0);
+        final String subFilter = subFilterPos >= 0 ? parseName(dictionary, subFilterPos + SUB_FILTER.length) : null;
+        return new Signature(reference != null ? reference : "@" + keyPos, subFilter, byteRange, contents);
+    }
+
+    /**
+     * Remembers the partial name of the signature field whose {@code /FT} key is at {@code keyPos}, keyed by the object
+     * reference of its signature.
+     */
+    private static void readFieldName(FileChannel channel, long keyPos, long size, Map<String, String> fieldNames)
+            throws IOException {
+        final byte[] after = read(channel, keyPos + FIELD_TYPE.length, OBJECT_WINDOW, size);
+        final int type = skipWhitespace(after, 0);
+        if (!startsWithKey(after, type, SIG)) {
+            return;
+        }
+        final byte[] before = read(channel, Math.max(0L, keyPos - OBJECT_WINDOW),
+                (int) Math.min(OBJECT_WINDOW, keyPos), size);
+        final int header = lastIndexOf(before, OBJ);
+        final int endObj = indexOf(after, END_OBJ, 0);
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        final int objStart = header >= 0 ? header + OBJ.length : before.length;
+        text.write(before, objStart, before.length - objStart);
+        text.write(after, 0, endObj >= 0 ? endObj : after.length);
+        final byte[] dictionary = text.toByteArray();
+
+        final int value = indexOfKey(dictionary, VALUE, 0);
+        final int name = indexOfKey(dictionary, PARTIAL_NAME, 0);
+        if (value < 0 || name < 0) {
+            return;
+        }
+        final String reference = parseReference(dictionary, value + VALUE.length);
+        final String partialName = parseString(dictionary, name + PARTIAL_NAME.length);
+        if (reference != null && partialName != null) {
+            fieldNames.put(reference, partialName);
+        }
+    }
+
+    /**
+     * @return the numbers of the array at the start of {@code bytes}, {@code null} when there is no array of numbers
+     */
+    private static long[] parseArray(byte[] bytes) {
+        int i = skipWhitespace(bytes, 0);
+        if (i >= bytes.length || bytes[i] != '[') {
+            return null;
+        }
+        final List<Long> values = new ArrayList<>(4);
+        i++;
+        while (true) {
+            i = skipWhitespace(bytes, i);
+            if (i >= bytes.length) {
+                return null;
+            }
+            if (bytes[i] == ']') {
+                break;
+            }
+            final int from = i;
+            if (bytes[i] == '-') {
+                i++;
+            }
+            while (i < bytes.length && isDigit(bytes[i])) {
+                i++;
+            }
+            if (i == from || i - from > 18) {
+                return null;
+            }
+            values.add(Long.parseLong(new String(bytes, from, i - from, StandardCharsets.US_ASCII)));
+        }
+        final long[] result = new long[values.size()];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = values.get(j);
+        }
+        return result;
+    }
+
+    /**
+     * @return the {@code N G R} reference of the {@code N G obj} header whose {@code obj} keyword is at {@code pos},
+     *         {@code null} when the numbers are missing
+     */
+    private static String objectReference(byte[] bytes, int pos) {
+        int i = pos - 1;
+        while (i >= 0 && isWhitespace(bytes[i])) {
+            i--;
+        }
+        final int genEnd = i + 1;
+        while (i >= 0 && isDigit(bytes[i])) {
+            i--;
+        }
+        final int genStart = i + 1;
+        while (i >= 0 && isWhitespace(bytes[i])) {
+            i--;
+        }
+        final int numEnd = i + 1;
+        while (i >= 0 && isDigit(bytes[i])) {
+            i--;
+        }
+        final int numStart = i + 1;
+        if (genStart == genEnd || numStart == numEnd || numEnd == genStart) {
+            return null;
+        }
+        return Long.parseLong(new String(bytes, numStart, numEnd - numStart, StandardCharsets.US_ASCII)) + " "
+                + Long.parseLong(new String(bytes, genStart, genEnd - genStart, StandardCharsets.US_ASCII)) + " R";
+    }
+
+    /**
+     * @return the {@code N G R} reference at {@code pos}, {@code null} when there is none
+     */
+    private static String parseReference(byte[] bytes, int pos) {
+        int i = skipWhitespace(bytes, pos);
+        final int numStart = i;
+        while (i < bytes.length && isDigit(bytes[i])) {
+            i++;
+        }
+        final int numEnd = i;
+        i = skipWhitespace(bytes, i);
+        final int genStart = i;
+        while (i < bytes.length && isDigit(bytes[i])) {
+            i++;
+        }
+        final int genEnd = i;
+        i = skipWhitespace(bytes, i);
+        if (numStart == numEnd || genStart == genEnd || numEnd == genStart || i >= bytes.length || bytes[i] != 'R') {
+            return null;
+        }
+        return Long.parseLong(new String(bytes, numStart, numEnd - numStart, StandardCharsets.US_ASCII)) + " "
+                + Long.parseLong(new String(bytes, genStart, genEnd - genStart, StandardCharsets.US_ASCII)) + " R";
+    }
+
+    /**
+     * @return the name object at {@code pos} without its slash, {@code null} when there is none
+     */
+    private static String parseName(byte[] bytes, int pos) {
+        int i = skipWhitespace(bytes, pos);
+        if (i >= bytes.length || bytes[i] != '/') {
+            return null;
+        }
+        final int from = ++i;
+        while (i < bytes.length && !isWhitespace(bytes[i]) && !isDelimiter(bytes[i])) {
+            i++;
+        }
+        return new String(bytes, from, i - from, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the literal or hex string at {@code pos}, decoded as a PDF text string; {@code null} when there is none
+     */
+    private static String parseString(byte[] bytes, int pos) {
+        final int i = skipWhitespace(bytes, pos);
+        if (i >= bytes.length) {
+            return null;
+        }
+        final byte[] raw;
+        if (bytes[i] == '(') {
+            raw = parseLiteral(bytes, i + 1);
+        } else if (bytes[i] == '<') {
+            final int end = indexOf(bytes, new byte[] { '>' }, i);
+            raw = end < 0 ? null : decodeHexString(Arrays.copyOfRange(bytes, i, end + 1));
+        } else {
+            raw = null;
+        }
+        if (raw == null) {
+            return null;
+        }
+        if (raw.length >= 2 && (raw[0] & 0xff) == 0xfe && (raw[1] & 0xff) == 0xff) {
+            return new String(raw, 2, raw.length - 2, StandardCharsets.UTF_16BE);
+        }
+        if (raw.length >= 3 && (raw[0] & 0xff) == 0xef && (raw[1] & 0xff) == 0xbb && (raw[2] & 0xff) == 0xbf) {
+            return new String(raw, 3, raw.length - 3, StandardCharsets.UTF_8);
+        }
+        // PDFDocEncoding matches Latin-1 for the characters field names use
+        return new String(raw, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] parseLiteral(byte[] bytes, int pos) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int depth = 0;
+        for (int i = pos; i < bytes.length; i++) {
+            final byte b = bytes[i];
+            if (b == '\\' && i + 1 < bytes.length) {
+                final byte next = bytes[++i];
+                switch (next) {
+                    case 'n' -> out.write('\n');
+                    case 'r' -> out.write('\r');
+                    case 't' -> out.write('\t');
+                    case 'b' -> out.write('\b');
+                    case 'f' -> out.write('\f');
+                    case '\r', '\n' -> {
+                        // line continuation
+                    }
+                    default -> {
+                        if (next >= '0' && next <= '7') {
+                            int octal = next - '0';
+                            for (int n = 0; n < 2 && i + 1 < bytes.length && bytes[i + 1] >= '0'
+                                    && bytes[i + 1] <= '7'; n++) {
+                                octal = octal * 8 + bytes[++i] - '0';
+                            }
+                            out.write(octal);
+                        } else {
+                            out.write(next);
+                        }
+                    }
+                }
+            } else if (b == '(') {
+                depth++;
+                out.write(b);
+            } else if (b == ')') {
+                if (depth == 0) {
+                    return out.toByteArray();
+                }
+                depth--;
+                out.write(b);
+            } else {
+                out.write(b);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a {@code <...>} hex string; whitespace is skipped and an odd last digit counts as followed by 0.
+     *
+     * @return the bytes, empty when {@code hex} isn't a hex string
+     */
+    private static byte[] decodeHexString(byte[] hex) {
+        int from = skipWhitespace(hex, 0);
+        int to = hex.length;
+        while (to > from && isWhitespace(hex[to - 1])) {
+            to--;
+        }
+        if (to - from < 2 || hex[from] != '<' || hex[to - 1] != '>') {
+            return new byte[0];
+        }
+        final byte[] result = new byte[(to - from) / 2];
+        int length = 0;
+        int high = -1;
+        for (int i = from + 1; i < to - 1; i++) {
+            if (isWhitespace(hex[i])) {
+                continue;
+            }
+            final int digit = Character.digit(hex[i], 16);
+            if (digit < 0) {
+                return new byte[0];
+            }
+            if (high < 0) {
+                high = digit;
+            } else {
+                result[length++] = (byte) (high << 4 | digit);
+                high = -1;
+            }
+        }
+        if (high >= 0) {
+            result[length++] = (byte) (high << 4);
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    private static boolean matchesKey(ByteBuffer buffer, int pos, byte[] key) {
+        if (pos + key.length > buffer.limit()) {
+            return false;
+        }
+        for (int i = 1; i < key.length; i++) {
+            if (buffer.get(pos + i) != key[i]) {
+                return false;
+            }
+        }
+        // the key must end there: /V is not /Vx, /FT is not /FTx
+        return pos + key.length == buffer.limit() || isWhitespace(buffer.get(pos + key.length))
+                || isDelimiter(buffer.get(pos + key.length));
+    }
+
+    private static boolean startsWithKey(byte[] bytes, int pos, byte[] key) {
+        if (pos < 0 || pos + key.length > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (bytes[pos + i] != key[i]) {
+                return false;
+            }
+        }
+        return pos + key.length == bytes.length || isWhitespace(bytes[pos + key.length])
+                || isDelimiter(bytes[pos + key.length]);
+    }
+
+    private static int indexOfKey(byte[] bytes, byte[] key, int from) {
+        for (int i = indexOf(bytes, key, from); i >= 0; i = indexOf(bytes, key, i + 1)) {
+            if (startsWithKey(bytes, i, key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] token, int from) {
+        outer: for (int i = Math.max(0, from); i <= bytes.length - token.length; i++) {
+            for (int j = 0; j < token.length; j++) {
+                if (bytes[i + j] != token[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the last {@code obj} keyword which isn't the end of an {@code endobj}, {@code -1} when
+     *         an {@code endobj} comes first - the text before it is outside any object
+     */
+    private static int lastIndexOf(byte[] bytes, byte[] token) {
+        for (int i = bytes.length - token.length; i >= 0; i--) {
+            if (bytes[i] == token[0] && bytes[i + 1] == token[1] && bytes[i + 2] == token[2]) {
+                final boolean endObj = i >= 3 && bytes[i - 3] == 'e' && bytes[i - 2] == 'n' && bytes[i - 1] == 'd';
+                return endObj ? -1 : i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] read(FileChannel channel, long pos, int length, long size) throws IOException {
+        final int toRead = (int) Math.max(0L, Math.min(length, size - pos));
+        final ByteBuffer buffer = ByteBuffer.allocate(toRead);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == toRead ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static int skipWhitespace(byte[] bytes, int pos) {
+        int i = pos;
+        while (i < bytes.length && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == '/' || b == '[' || b == ']' || b == '<' || b == '>' || b == '(' || b == ')' || b == '{' || b == '}'
+                || b == '%';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,230 @@
+package net.sf.jsignpdf.revocation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.utils.HttpTransport;
+
+/**
+ * Tests the {@link RevocationBundle} index and validity checks, and collecting a bundle with the
+ * {@link RevocationBundleBuilder} from a local CRL / OCSP server.
+ */
+public class RevocationBundleTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final Date now = new Date();
+    private KeyPair caKeys;
+    private X509Certificate ca;
+    private X509Certificate signer;
+    private HttpServer server;
+    private String base;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        caKeys = generator.generateKeyPair();
+        ca = certificate("CN=Bundle CA", "CN=Bundle CA", caKeys.getPublic(), 1, false);
+        signer = certificate("CN=Bundle Signer", "CN=Bundle CA", generator.generateKeyPair().getPublic(), 2, true);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void roundTripKeepsTheIndex() throws Exception {
+        final RevocationBundle bundle = new RevocationBundle();
+        final byte[] crl = crl(now, new Date(now.getTime() + DAY));
+        bundle.addCrl(base + "/ca.crl", crl);
+        bundle.addCertificate(base + "/ca.crt", ca);
+        bundle.addOcspResponse(base + "/ocsp", ocspResponse(CertificateStatus.GOOD, new Date(now.getTime() + DAY)), ca);
+
+        final File file = File.createTempFile("bundle", ".jsrb");
+        try {
+            bundle.write(file);
+            final RevocationBundle read = RevocationBundle.read(file);
+            assertEquals(3, read.size());
+            assertArrayEquals(crl, read.get(base + "/ca.crl", now));
+            assertArrayEquals(ca.getEncoded(), read.get(base + "/ca.crt", now));
+            assertNotNull(read.basicOcspResponse(signer, ca, now));
+            assertNull(read.get(base + "/other.crl", now));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    public void staleDataIsNotUsed() throws Exception {
+        final RevocationBundle bundle = new RevocationBundle();
+        bundle.addCrl(base + "/ca.crl", crl(now, new Date(now.getTime() + DAY)));
+        bundle.addOcspResponse(base + "/ocsp", ocspResponse(CertificateStatus.GOOD, new Date(now.getTime() + DAY)), ca);
+
+        final Date later = new Date(now.getTime() + 2 * DAY);
+        assertNull(bundle.get(base + "/ca.crl", later));
+        assertNull(bundle.basicOcspResponse(signer, ca, later));
+        final Date earlier = new Date(now.getTime() - DAY);
+        assertNull(bundle.get(base + "/ca.crl", earlier));
+    }
+
+    @Test
+    public void answersOcspRequestsWithAnotherHashAlgorithm() throws Exception {
+        final RevocationBundle bundle = new RevocationBundle();
+        final byte[] response = ocspResponse(CertificateStatus.GOOD, new Date(now.getTime() + DAY));
+        bundle.addOcspResponse(base + "/ocsp", response, ca);
+
+        final CertificateID sha256Id = new CertificateID(new JcaDigestCalculatorProviderBuilder().build()
+                .get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)),
+                new JcaX509CertificateHolder(ca), signer.getSerialNumber());
+        final byte[] request = new OCSPReqBuilder().addRequest(sha256Id).build().getEncoded();
+        assertArrayEquals(response, bundle.ocspResponse(request, now));
+
+        final CertificateID otherSerial = new CertificateID(sha1(), new JcaX509CertificateHolder(ca), BigInteger.TEN);
+        assertNull(bundle.ocspResponse(new OCSPReqBuilder().addRequest(otherSerial).build().getEncoded(), now));
+    }
+
+    @Test
+    public void revokedStatusFails() throws Exception {
+        final RevocationBundle bundle = new RevocationBundle();
+        bundle.addOcspResponse(base + "/ocsp", ocspResponse(new RevokedStatus(now, CRLReason.keyCompromise),
+                new Date(now.getTime() + DAY)), ca);
+        try {
+            bundle.basicOcspResponse(signer, ca, now);
+            fail("a revoked certificate must fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        final File file = File.createTempFile("bundle", ".jsrb");
+        try {
+            Files.write(file.toPath(), "not a bundle".getBytes());
+            RevocationBundle.read(file);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    public void builderCollectsCrlAndOcsp() throws Exception {
+        final byte[] crl = crl(now, new Date(now.getTime() + DAY));
+        final byte[] ocsp = ocspResponse(CertificateStatus.GOOD, new Date(now.getTime() + DAY));
+        server.createContext("/ca.crl", exchange -> respond(exchange, crl));
+        server.createContext("/ocsp", exchange -> {
+            new OCSPReq(exchange.getRequestBody().readAllBytes());
+            respond(exchange, ocsp);
+        });
+        server.start();
+        final RevocationBundle bundle = new RevocationBundleBuilder(HttpTransport.forOptions(new BasicSignerOptions()))
+                .build(new Certificate[] { signer, ca }, null);
+        assertEquals(2, bundle.size());
+        assertArrayEquals(crl, bundle.get(base + "/ca.crl", now));
+        assertNotNull(bundle.basicOcspResponse(signer, ca, now));
+    }
+
+    private X509Certificate certificate(String subject, String issuer, PublicKey key, long serial,
+            boolean withUrls) throws Exception {
+        final JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name(issuer),
+                BigInteger.valueOf(serial), new Date(now.getTime() - DAY), new Date(now.getTime() + 365 * DAY),
+                new X500Name(subject), key);
+        if (withUrls) {
+            final GeneralName crlName = new GeneralName(GeneralName.uniformResourceIdentifier, base + "/ca.crl");
+            builder.addExtension(Extension.cRLDistributionPoints, false, new CRLDistPoint(new DistributionPoint[] {
+                    new DistributionPoint(new DistributionPointName(new GeneralNames(crlName)), null, null) }));
+            builder.addExtension(Extension.authorityInfoAccess, false,
+                    AuthorityInformationAccess.getInstance(new DERSequence(new AccessDescription(
+                            AccessDescription.id_ad_ocsp,
+                            new GeneralName(GeneralName.uniformResourceIdentifier, base + "/ocsp")))));
+        }
+        return new JcaX509CertificateConverter().getCertificate(builder.build(caSigner()));
+    }
+
+    private byte[] crl(Date thisUpdate, Date nextUpdate) throws Exception {
+        final X509v2CRLBuilder builder = new X509v2CRLBuilder(new X500Name("CN=Bundle CA"), thisUpdate);
+        builder.setNextUpdate(nextUpdate);
+        return builder.build(caSigner()).getEncoded();
+    }
+
+    private byte[] ocspResponse(CertificateStatus status, Date nextUpdate) throws Exception {
+        final BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(
+                new RespID(new X500Name("CN=Bundle CA")));
+        builder.addResponse(new CertificateID(sha1(), new JcaX509CertificateHolder(ca), signer.getSerialNumber()),
+                status, now, nextUpdate, null);
+        return new OCSPRespBuilder()
+                .build(OCSPRespBuilder.SUCCESSFUL, builder.build(caSigner(), null, now)).getEncoded();
+    }
+
+    private ContentSigner caSigner() throws Exception {
+        return new JcaContentSignerBuilder("SHA256withECDSA").build(caKeys.getPrivate());
+    }
+
+    private static DigestCalculator sha1() throws Exception {
+        return new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1);
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
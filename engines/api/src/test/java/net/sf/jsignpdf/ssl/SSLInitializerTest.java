@@ -0,0 +1,52 @@
+package net.sf.jsignpdf.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.types.ServerAuthentication;
+
+/**
+ * Tests the caching of TLS contexts by the TSA client-certificate configuration.
+ */
+public class SSLInitializerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void contextIsReused() throws Exception {
+        assertSame(SSLInitializer.getSslContext(null), SSLInitializer.getSslContext(null));
+        BasicSignerOptions options = new BasicSignerOptions();
+        options.setTsaServerAuthn(ServerAuthentication.PASSWORD);
+        assertSame("no client certificate, no own context", SSLInitializer.getSslContext(null),
+                SSLInitializer.getSslContext(options));
+    }
+
+    @Test
+    public void clientCertKeyFollowsTheConfiguration() throws Exception {
+        File keystore = tmp.newFile("tsa.p12");
+        BasicSignerOptions options = new BasicSignerOptions();
+        options.setTsaServerAuthn(ServerAuthentication.CERTIFICATE);
+        options.setTsaCertFile(keystore.getAbsolutePath());
+        options.setTsaCertFilePwd("secret");
+        String key = SSLInitializer.clientCertKey(options);
+        assertEquals(key, SSLInitializer.clientCertKey(options));
+        assertFalse("the password is not part of the key", key.contains("secret"));
+
+        options.setTsaCertFilePwd("other");
+        assertNotEquals(key, SSLInitializer.clientCertKey(options));
+
+        options.setTsaCertFilePwd("secret");
+        keystore.setLastModified(keystore.lastModified() - 10_000L);
+        assertNotEquals("a replaced keystore is a new configuration", key, SSLInitializer.clientCertKey(options));
+    }
+}
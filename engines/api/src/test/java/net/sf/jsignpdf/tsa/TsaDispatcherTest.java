@@ -0,0 +1,110 @@
+package net.sf.jsignpdf.tsa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.jsignpdf.types.TsaStrategy;
+
+/**
+ * Tests the TSA selection strategies, the latency percentile and the circuit breaker of {@link TsaDispatcher}. Every
+ * test uses its own URLs, as the endpoint statistics are process-wide.
+ */
+public class TsaDispatcherTest {
+
+    @Test
+    public void parsesUrlLists() {
+        assertEquals(List.of("http://a", "https://b"), TsaDispatcher.parseUrls(" http://a,https://b \n http://a"));
+        assertEquals(List.of(), TsaDispatcher.parseUrls(null));
+    }
+
+    @Test
+    public void failsOverToTheNextTsa() throws Exception {
+        TsaDispatcher dispatcher = new TsaDispatcher(TsaStrategy.FAILOVER, 0L, 3, 60_000L);
+        List<String> asked = Collections.synchronizedList(new ArrayList<>());
+        String result = dispatcher.request(List.of("http://failover-a", "http://failover-b"), url -> {
+            asked.add(url);
+            if (url.endsWith("a")) {
+                throw new IOException("down");
+            }
+            return url;
+        });
+        assertEquals("http://failover-b", result);
+        assertEquals(List.of("http://failover-a", "http://failover-b"), asked);
+    }
+
+    @Test
+    public void allFailuresAreReported() {
+        TsaDispatcher dispatcher = new TsaDispatcher(TsaStrategy.FAILOVER, 0L, 3, 60_000L);
+        try {
+            dispatcher.request(List.of("http://broken-a", "http://broken-b"), url -> {
+                throw new IOException(url);
+            });
+            fail("all TSAs failed");
+        } catch (IOException e) {
+            assertEquals("http://broken-a", e.getCause().getMessage());
+            assertEquals(1, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void roundRobinRotatesTheFirstTsa() throws Exception {
+        TsaDispatcher dispatcher = new TsaDispatcher(TsaStrategy.ROUND_ROBIN, 0L, 3, 60_000L);
+        List<String> urls = List.of("http://rr-a", "http://rr-b");
+        String first = dispatcher.request(urls, url -> url);
+        String second = dispatcher.request(urls, url -> url);
+        assertNotEquals(first, second);
+    }
+
+    @Test(timeout = 5000L)
+    public void hedgedRequestTakesTheFasterTsa() throws Exception {
+        TsaDispatcher dispatcher = new TsaDispatcher(TsaStrategy.HEDGED, 0L, 3, 60_000L);
+        long start = System.currentTimeMillis();
+        String result = dispatcher.request(List.of("http://hedge-slow", "http://hedge-fast"), url -> {
+            if (url.endsWith("slow")) {
+                Thread.sleep(4000L);
+            }
+            return url;
+        });
+        assertEquals("http://hedge-fast", result);
+        assertTrue(System.currentTimeMillis() - start < 3000L);
+    }
+
+    @Test
+    public void percentileNeedsEnoughSamples() {
+        TsaEndpoint endpoint = new TsaEndpoint("http://p95");
+        for (int i = 1; i < TsaEndpoint.MIN_SAMPLES; i++) {
+            endpoint.recordSuccess(i);
+        }
+        assertEquals(-1L, endpoint.p95());
+        for (int i = TsaEndpoint.MIN_SAMPLES; i <= 100; i++) {
+            endpoint.recordSuccess(i);
+        }
+        // the last 64 samples are 37..100
+        assertEquals(97L, endpoint.p95());
+    }
+
+    @Test
+    public void failingTsaIsTriedLast() throws Exception {
+        TsaDispatcher dispatcher = new TsaDispatcher(TsaStrategy.FAILOVER, 0L, 2, 60_000L);
+        List<String> urls = List.of("http://breaker-a", "http://breaker-b");
+        for (int i = 0; i < 2; i++) {
+            dispatcher.request(urls, url -> {
+                if (url.endsWith("a")) {
+                    throw new IOException("down");
+                }
+                return url;
+            });
+        }
+        assertEquals("http://breaker-b", dispatcher.order(urls).get(0).url());
+        assertEquals("http://breaker-a", dispatcher.order(urls).get(1).url());
+    }
+}
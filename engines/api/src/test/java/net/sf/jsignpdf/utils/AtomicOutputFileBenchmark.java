@@ -0,0 +1,99 @@
+package net.sf.jsignpdf.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.sf.jsignpdf.types.OutputDurability;
+
+/**
+ * Throughput of the output write strategies: the historical direct {@link FileOutputStream} against
+ * {@link AtomicOutputFile} on every {@link OutputDurability} level, with and without pre-allocation. Not a unit test -
+ * run it by hand on the disk you care about, the numbers depend almost entirely on the storage:
+ *
+ * <pre>
+ * java -cp engines/api/target/classes:engines/api/target/test-classes \
+ *     net.sf.jsignpdf.utils.AtomicOutputFileBenchmark [directory] [fileSizeKiB] [fileCount]
+ * </pre>
+ */
+public final class AtomicOutputFileBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    private AtomicOutputFileBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final File dir = args.length > 0 ? new File(args[0]) : Files.createTempDirectory("jsignpdf-bench").toFile();
+        final int sizeKiB = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+        final int count = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        final byte[] content = new byte[sizeKiB * 1024];
+        ThreadLocalRandom.current().nextBytes(content);
+
+        System.out.printf(Locale.ROOT, "%d files of %d KiB in %s%n", count, sizeKiB, dir.getAbsolutePath());
+        System.out.printf(Locale.ROOT, "%-22s %10s %10s%n", "strategy", "files/s", "MiB/s");
+        // warm-up, not reported
+        run(dir, content, count / 4 + 1, null, false);
+        report("direct (before)", best(dir, content, count, null, false), count, content.length);
+        for (OutputDurability durability : OutputDurability.values()) {
+            report("atomic " + durability.name().toLowerCase(Locale.ROOT),
+                    best(dir, content, count, durability, false), count, content.length);
+            report("atomic " + durability.name().toLowerCase(Locale.ROOT) + " + prealloc",
+                    best(dir, content, count, durability, true), count, content.length);
+        }
+    }
+
+    /** Best of {@value #ROUNDS} rounds, which filters out most of the noise of a shared disk. */
+    private static long best(File dir, byte[] content, int count, OutputDurability durability, boolean preallocate)
+            throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            best = Math.min(best, run(dir, content, count, durability, preallocate));
+        }
+        return best;
+    }
+
+    /**
+     * @param durability {@code null} for the direct {@link FileOutputStream}
+     * @return elapsed nanoseconds
+     */
+    private static long run(File dir, byte[] content, int count, OutputDurability durability, boolean preallocate)
+            throws IOException {
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final File target = new File(dir, "bench-" + i + ".pdf");
+            if (durability == null) {
+                try (OutputStream os = new FileOutputStream(target)) {
+                    writeInChunks(os, content);
+                }
+            } else {
+                try (AtomicOutputFile out = AtomicOutputFile.create(target, content.length, durability, preallocate)) {
+                    writeInChunks(out.stream(), content);
+                    out.commit();
+                }
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        for (int i = 0; i < count; i++) {
+            new File(dir, "bench-" + i + ".pdf").delete();
+        }
+        return elapsed;
+    }
+
+    /** The PDF libraries write in small pieces, not in one array. */
+    private static void writeInChunks(OutputStream os, byte[] content) throws IOException {
+        for (int off = 0; off < content.length; off += 4096) {
+            os.write(content, off, Math.min(4096, content.length - off));
+        }
+    }
+
+    private static void report(String name, long nanos, int count, int size) {
+        final double seconds = nanos / 1e9;
+        System.out.printf(Locale.ROOT, "%-22s %10.1f %10.1f%n", name, count / seconds,
+                (double) count * size / (1024 * 1024) / seconds);
+    }
+}
@@ -0,0 +1,108 @@
+package net.sf.jsignpdf.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.jsignpdf.types.OutputDurability;
+
+/**
+ * Unit tests for {@link AtomicOutputFile}: the target only changes on commit, and an uncommitted output leaves neither
+ * the target nor a temporary file behind.
+ */
+public class AtomicOutputFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void commitReplacesTarget() throws IOException {
+        File target = folder.newFile("out.pdf");
+        Files.writeString(target.toPath(), "old");
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 0L, OutputDurability.NONE, false)) {
+            out.stream().write("new".getBytes(StandardCharsets.US_ASCII));
+            out.stream().flush();
+            assertEquals("target must not change before the commit", "old", Files.readString(target.toPath()));
+            out.commit();
+        }
+        assertArrayEquals("new".getBytes(StandardCharsets.US_ASCII), Files.readAllBytes(target.toPath()));
+        assertEquals("only the target may remain", 1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void closeWithoutCommitDiscards() throws IOException {
+        File target = new File(folder.getRoot(), "out.pdf");
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 0L, OutputDurability.NONE, false)) {
+            out.stream().write(new byte[100_000]);
+            assertEquals("the temporary file is a hidden sibling", 1, folder.getRoot().list().length);
+            assertTrue(folder.getRoot().list()[0].startsWith(".out.pdf."));
+        }
+        assertFalse(target.exists());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void preallocatedOutputIsTrimmedOnCommit() throws IOException {
+        File target = new File(folder.getRoot(), "out.pdf");
+        byte[] content = "%PDF-1.7 signed".getBytes(StandardCharsets.US_ASCII);
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 1_000_000L, OutputDurability.FULL, true)) {
+            out.stream().write(content);
+            out.stream().close();
+            out.commit();
+        }
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void preallocationWritesZerosUpToTheExpectedSize() throws IOException {
+        File target = new File(folder.getRoot(), "out.pdf");
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 200_000L, OutputDurability.NONE, true)) {
+            File temp = new File(folder.getRoot(), folder.getRoot().list()[0]);
+            byte[] allocated = Files.readAllBytes(temp.toPath());
+            assertEquals(200_000, allocated.length);
+            assertArrayEquals(new byte[200_000], allocated);
+            out.stream().write('a');
+            assertEquals("written() trims the pre-allocated tail", 1L, out.written().length());
+        }
+    }
+
+    @Test
+    public void closingTheStreamKeepsTheFileOpen() throws IOException {
+        File target = new File(folder.getRoot(), "out.pdf");
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 0L, OutputDurability.FILE, false)) {
+            out.stream().write('a');
+            // the PDF libraries close the stream they were given before the engine commits
+            out.stream().close();
+            out.stream().write('b');
+            out.commit();
+        }
+        assertEquals("ab", Files.readString(target.toPath()));
+    }
+
+    @Test
+    public void digestOfTheCommittedContent() throws Exception {
+        File target = new File(folder.getRoot(), "out.pdf");
+        byte[] content = "%PDF-1.7 signed".getBytes(StandardCharsets.US_ASCII);
+        try (AtomicOutputFile out = AtomicOutputFile.create(target, 1_000_000L, OutputDurability.NONE, true)) {
+            out.stream().write(content, 0, 4);
+            out.stream().write(content[4]);
+            out.stream().write(content, 5, content.length - 5);
+            assertNull("no digest before the commit", out.sha256());
+            out.commit();
+            assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), out.sha256());
+        }
+    }
+}
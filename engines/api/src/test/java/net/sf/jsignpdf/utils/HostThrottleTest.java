@@ -0,0 +1,57 @@
+package net.sf.jsignpdf.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+/**
+ * Tests the token bucket and the retry delays of {@link HostThrottle}.
+ */
+public class HostThrottleTest {
+
+    @Test
+    public void tokenBucketAllowsTheBurstThenSpacesRequests() {
+        HostThrottle throttle = new HostThrottle("test", 4, 10d, 2d);
+        assertEquals(0L, throttle.reserveToken());
+        assertEquals(0L, throttle.reserveToken());
+        long wait = throttle.reserveToken();
+        assertTrue("third request waits about 100 ms: " + wait, wait > 80_000_000L && wait <= 100_000_000L);
+        long next = throttle.reserveToken();
+        assertTrue("fourth request waits about 200 ms: " + next, next > 180_000_000L && next <= 200_000_000L);
+    }
+
+    @Test
+    public void noRateMeansNoWait() {
+        HostThrottle throttle = new HostThrottle("test", 4, 0d, 1d);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0L, throttle.reserveToken());
+        }
+    }
+
+    @Test
+    public void retryAfterIsHonoured() {
+        assertEquals(-1L, HostThrottle.parseRetryAfter(null));
+        assertEquals(-1L, HostThrottle.parseRetryAfter("soon"));
+        assertEquals(5000L, HostThrottle.parseRetryAfter(" 5 "));
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(10));
+        long delay = HostThrottle.parseRetryAfter(inTenSeconds);
+        assertTrue(String.valueOf(delay), delay > 8000L && delay <= 10000L);
+
+        long retry = HostThrottle.retryDelayMillis(0, "5", 500L, 30_000L);
+        assertTrue(String.valueOf(retry), retry >= 5000L && retry <= 5501L);
+        assertEquals("capped by the maximum", 30_000L, HostThrottle.retryDelayMillis(0, "3600", 500L, 30_000L));
+    }
+
+    @Test
+    public void backoffGrowsWithJitter() {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long ceiling = Math.min(10_000L, 500L << attempt);
+            long delay = HostThrottle.retryDelayMillis(attempt, null, 500L, 10_000L);
+            assertTrue(attempt + ": " + delay, delay >= 0L && delay <= ceiling);
+        }
+    }
+}
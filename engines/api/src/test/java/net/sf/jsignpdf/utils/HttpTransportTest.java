@@ -0,0 +1,168 @@
+package net.sf.jsignpdf.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link HttpTransport} against a local server: redirects, error statuses, a stalled response body, the
+ * per-host connection limit and the retry of throttled requests.
+ */
+public class HttpTransportTest {
+
+    private static final byte[] BODY = "crl-bytes".getBytes(StandardCharsets.US_ASCII);
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger throttledCalls = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/data", exchange -> respond(exchange, 200, BODY));
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/data");
+            respond(exchange, 302, new byte[0]);
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0]));
+        server.createContext("/throttled", exchange -> {
+            if (throttledCalls.incrementAndGet() < 3) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                respond(exchange, 429, new byte[0]);
+            } else {
+                respond(exchange, 200, BODY);
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            exchange.sendResponseHeaders(200, 100);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(1);
+                os.flush();
+                Thread.sleep(5000L);
+            } catch (InterruptedException | IOException e) {
+                // client gave up
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            respond(exchange, 200, BODY);
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void followsRedirects() throws Exception {
+        HttpTransport transport = transport(Duration.ofSeconds(5), 4);
+        assertArrayEquals(BODY, transport.get(base + "/moved"));
+    }
+
+    @Test
+    public void errorStatusFails() throws Exception {
+        try {
+            transport(Duration.ofSeconds(5), 4).get(base + "/missing");
+            fail("404 must fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("404"));
+        }
+    }
+
+    @Test(timeout = 4000L)
+    public void stalledBodyTimesOut() throws Exception {
+        try {
+            transport(Duration.ofSeconds(1), 4).get(base + "/stall");
+            fail("stalled response must time out");
+        } catch (HttpTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void limitsConnectionsPerHost() throws Exception {
+        HttpTransport transport = transport(Duration.ofSeconds(10), 1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> transport.get(base + "/slow")));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(BODY, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void retriesThrottledRequests() throws Exception {
+        assertArrayEquals(BODY, transport(Duration.ofSeconds(5), 4, 2).get(base + "/throttled"));
+        assertEquals(3, throttledCalls.get());
+    }
+
+    @Test
+    public void givesUpAfterTheRetries() throws Exception {
+        try {
+            transport(Duration.ofSeconds(5), 4, 1).get(base + "/throttled");
+            fail("429 after the last retry must fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("429"));
+        }
+        assertEquals(2, throttledCalls.get());
+    }
+
+    private static HttpTransport transport(Duration requestTimeout, int maxPerHost) {
+        return transport(requestTimeout, maxPerHost, 0);
+    }
+
+    private static HttpTransport transport(Duration requestTimeout, int maxPerHost, int retries) {
+        // a throttle per transport, so the tests don't share the process-wide limits
+        HostThrottle throttle = new HostThrottle("test", maxPerHost, 0d, 1d);
+        return new HttpTransport(Proxy.NO_PROXY, null, Duration.ofSeconds(5), requestTimeout, retries,
+                url -> throttle);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
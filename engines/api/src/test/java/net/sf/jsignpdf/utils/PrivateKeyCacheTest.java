@@ -0,0 +1,69 @@
+package net.sf.jsignpdf.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.PrivateKeyInfo;
+
+/**
+ * Unit tests for {@link PrivateKeyCache}: a key is resolved once per keystore and alias, and only reused with the
+ * passwords it was resolved with.
+ */
+public class PrivateKeyCacheTest {
+
+    private final PrivateKeyCache cache = new PrivateKeyCache();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final PrivateKeyCache.Resolver resolver = options -> {
+        loads.incrementAndGet();
+        return new PrivateKeyInfo();
+    };
+
+    @Test
+    public void keyIsResolvedOncePerKeystoreAndAlias() throws Exception {
+        PrivateKeyInfo first = cache.get(options("a.p12", "alias", "secret"), resolver);
+        PrivateKeyInfo second = cache.get(options("a.p12", "alias", "secret"), resolver);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        cache.get(options("a.p12", "other", "secret"), resolver);
+        cache.get(options("b.p12", "alias", "secret"), resolver);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void otherPasswordsResolveTheKeyAgain() throws Exception {
+        cache.get(options("a.p12", "alias", "secret"), resolver);
+        cache.get(options("a.p12", "alias", "wrong"), resolver);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void missingKeyIsNotCached() throws Exception {
+        BasicSignerOptions options = options("a.p12", "alias", "secret");
+
+        assertNull(cache.get(options, o -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        cache.get(options, resolver);
+        assertEquals(2, loads.get());
+    }
+
+    private static BasicSignerOptions options(String ksFile, String alias, String password) {
+        BasicSignerOptions options = new BasicSignerOptions();
+        options.setKsType("PKCS12");
+        options.setKsFile(ksFile);
+        options.setAdvanced(true);
+        options.setKeyAlias(alias);
+        options.setKsPasswd(password.toCharArray());
+        return options;
+    }
+}
@@ -0,0 +1,167 @@
+package net.sf.jsignpdf.verify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteRangeVerifier} on a synthetic file: a prefix and a suffix around a gap, signed by a detached
+ * CMS over the two ranges, as in a PDF signature.
+ */
+public class ByteRangeVerifierTest {
+
+    private static final int PREFIX = 1000;
+    private static final int GAP = 64;
+    private static final int SUFFIX = 500;
+
+    private File file;
+    private byte[] content;
+    private long[] byteRange;
+    private byte[] cms;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[PREFIX + GAP + SUFFIX];
+        final byte[] text = "%PDF-1.7 test content ".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = text[i % text.length];
+        }
+        Arrays.fill(content, PREFIX, PREFIX + GAP, (byte) '0');
+        file = File.createTempFile("byterange-", ".pdf");
+        Files.write(file.toPath(), content);
+        byteRange = new long[] { 0, PREFIX, PREFIX + GAP, SUFFIX };
+
+        final byte[] signed = new byte[PREFIX + SUFFIX];
+        System.arraycopy(content, 0, signed, 0, PREFIX);
+        System.arraycopy(content, PREFIX + GAP, signed, PREFIX, SUFFIX);
+        cms = sign(signed);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void intactSignaturePasses() throws Exception {
+        final ByteRangeVerifier.Result result = verify(true);
+        assertTrue(result.intact());
+        assertEquals(Boolean.TRUE, result.cmsValid());
+        assertTrue(result.coversDocument());
+        assertTrue(result.passed());
+        assertEquals("CN=Byte Range Signer", result.signer());
+        assertNull(result.problem());
+    }
+
+    @Test
+    public void integrityTierSkipsTheCmsCheck() throws Exception {
+        final ByteRangeVerifier.Result result = verify(false);
+        assertTrue(result.intact());
+        assertNull(result.cmsValid());
+        assertTrue(result.passed());
+    }
+
+    @Test
+    public void modifiedByteIsDetected() throws Exception {
+        content[PREFIX + GAP + 10] ^= 1;
+        Files.write(file.toPath(), content);
+        final ByteRangeVerifier.Result result = verify(true);
+        assertFalse(result.intact());
+        assertFalse(result.passed());
+        assertNotNull(result.problem());
+    }
+
+    @Test
+    public void bytesInTheGapAreNotSigned() throws Exception {
+        content[PREFIX + 1] = 'f';
+        Files.write(file.toPath(), content);
+        assertTrue(verify(true).passed());
+    }
+
+    @Test
+    public void appendedRevisionIsReported() throws Exception {
+        Files.write(file.toPath(), "\n% incremental update".getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.APPEND);
+        final ByteRangeVerifier.Result result = verify(true);
+        assertTrue(result.passed());
+        assertFalse(result.coversDocument());
+    }
+
+    @Test
+    public void byteRangeOutsideTheFileFails() throws Exception {
+        byteRange[3] = SUFFIX + 1;
+        final ByteRangeVerifier.Result result = verify(true);
+        assertFalse(result.passed());
+        assertNotNull(result.problem());
+    }
+
+    @Test
+    public void digestCoversOnlyTheRanges() throws Exception {
+        final MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        expected.update(content, 0, PREFIX);
+        expected.update(content, PREFIX + GAP, SUFFIX);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertArrayEquals(expected.digest(),
+                    ByteRangeVerifier.digest(channel, byteRange, MessageDigest.getInstance("SHA-256")));
+        }
+    }
+
+    private ByteRangeVerifier.Result verify(boolean checkCms) throws Exception {
+        // trailing zeros, as in the reserved /Contents of a PDF
+        final byte[] contents = Arrays.copyOf(cms, cms.length + 100);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return ByteRangeVerifier.verify(channel, byteRange, contents, "ETSI.CAdES.detached", checkCms);
+        }
+    }
+
+    static byte[] sign(byte[] data) throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final KeyPair keyPair = generator.generateKeyPair();
+        final X500Name name = new X500Name("CN=Byte Range Signer");
+        final long now = System.currentTimeMillis();
+        final ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+        final X509Certificate cert = new JcaX509CertificateConverter()
+                .getCertificate(new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+                        new Date(now - TimeUnit.DAYS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(1)), name,
+                        keyPair.getPublic()).build(signer));
+
+        final CMSSignedDataGenerator cmsGenerator = new CMSSignedDataGenerator();
+        cmsGenerator.addSignerInfoGenerator(
+                new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().build()).build(signer, cert));
+        cmsGenerator.addCertificates(new JcaCertStore(List.of(cert)));
+        return cmsGenerator.generate(new CMSProcessableByteArray(data), false).getEncoded();
+    }
+}
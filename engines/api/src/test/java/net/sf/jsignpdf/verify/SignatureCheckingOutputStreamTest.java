@@ -0,0 +1,115 @@
+package net.sf.jsignpdf.verify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SignatureCheckingOutputStream}: a synthetic signed file is written through the stream in chunks
+ * which straddle the byte range boundaries.
+ */
+public class SignatureCheckingOutputStreamTest {
+
+    private static final int PREFIX = 1000;
+    private static final int SUFFIX = 500;
+
+    private byte[] content;
+    private long[] byteRange;
+    private byte[] signedDigest;
+
+    @Before
+    public void setUp() throws Exception {
+        final byte[] text = "%PDF-1.7 test content ".getBytes(StandardCharsets.US_ASCII);
+        final byte[] prefix = new byte[PREFIX];
+        final byte[] suffix = new byte[SUFFIX];
+        for (int i = 0; i < PREFIX; i++) {
+            prefix[i] = text[i % text.length];
+        }
+        for (int i = 0; i < SUFFIX; i++) {
+            suffix[i] = text[(i + 7) % text.length];
+        }
+        final byte[] signed = new byte[PREFIX + SUFFIX];
+        System.arraycopy(prefix, 0, signed, 0, PREFIX);
+        System.arraycopy(suffix, 0, signed, PREFIX, SUFFIX);
+        signedDigest = MessageDigest.getInstance("SHA-256").digest(signed);
+
+        // the reserved /Contents is larger than the signature and padded by zeros
+        final byte[] cms = ByteRangeVerifierTest.sign(signed);
+        final byte[] gap = ("<" + Hex.toHexString(Arrays.copyOf(cms, cms.length + 64)) + ">")
+                .getBytes(StandardCharsets.US_ASCII);
+        content = new byte[PREFIX + gap.length + SUFFIX];
+        System.arraycopy(prefix, 0, content, 0, PREFIX);
+        System.arraycopy(gap, 0, content, PREFIX, gap.length);
+        System.arraycopy(suffix, 0, content, PREFIX + gap.length, SUFFIX);
+        byteRange = new long[] { 0, PREFIX, PREFIX + gap.length, SUFFIX };
+    }
+
+    @Test
+    public void writtenSignaturePasses() throws Exception {
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        final SignatureCheckingOutputStream out = new SignatureCheckingOutputStream(target);
+        out.expect(byteRange, "SHA-256", signedDigest);
+        write(out, content);
+        final ByteRangeVerifier.Result result = out.check("ETSI.CAdES.detached");
+        assertTrue(result.problem(), result.passed());
+        assertEquals(Boolean.TRUE, result.cmsValid());
+        assertEquals("CN=Byte Range Signer", result.signer());
+        assertArrayEquals(content, target.toByteArray());
+    }
+
+    @Test
+    public void bytesChangedAfterSigningAreDetected() throws Exception {
+        final SignatureCheckingOutputStream out = new SignatureCheckingOutputStream(new ByteArrayOutputStream());
+        out.expect(byteRange, "SHA-256", signedDigest);
+        content[content.length - 10] ^= 1;
+        write(out, content);
+        final ByteRangeVerifier.Result result = out.check("ETSI.CAdES.detached");
+        assertFalse(result.intact());
+        assertFalse(result.passed());
+        assertNotNull(result.problem());
+    }
+
+    @Test
+    public void truncatedOutputFails() throws Exception {
+        final SignatureCheckingOutputStream out = new SignatureCheckingOutputStream(new ByteArrayOutputStream());
+        out.expect(byteRange, "SHA-256", signedDigest);
+        write(out, Arrays.copyOf(content, content.length - 1));
+        assertFalse(out.check("ETSI.CAdES.detached").passed());
+    }
+
+    @Test
+    public void unarmedStreamOnlyPassesThrough() throws Exception {
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        final SignatureCheckingOutputStream out = new SignatureCheckingOutputStream(target);
+        write(out, content);
+        assertNull(out.check(null));
+        assertArrayEquals(content, target.toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void armingAfterTheFirstByteFails() throws Exception {
+        final SignatureCheckingOutputStream out = new SignatureCheckingOutputStream(new ByteArrayOutputStream());
+        out.write('%');
+        out.expect(byteRange, "SHA-256", signedDigest);
+    }
+
+    private static void write(SignatureCheckingOutputStream out, byte[] data) throws Exception {
+        // odd chunk size so the writes straddle both range boundaries
+        for (int off = 0; off < data.length; off += 333) {
+            out.write(data, off, Math.min(333, data.length - off));
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,141 @@
+package net.sf.jsignpdf.verify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SignatureDictionaryScanner} on synthetic PDFs: the signature dictionaries are written as PDF
+ * libraries write them, with the {@code /Contents} before or after the {@code /ByteRange}, and signed by a detached CMS
+ * over the byte ranges.
+ */
+public class SignatureDictionaryScannerTest {
+
+    private static final String FIELD = "1 0 obj\n<< /FT /Sig /T (Approval \\(1\\)) /V 2 0 R /Subtype /Widget >>\n"
+            + "endobj\n";
+    private static final String RANGE_PLACEHOLDER = "[0 0000000000 0000000000 0000000000]";
+    private static final int CONTENTS_BYTES = 4096;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("scanner-", ".pdf");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void contentsBeforeTheByteRangeIsFound() throws Exception {
+        write("%PDF-1.7\n" + FIELD + "2 0 obj\n<< /Type /Sig /Filter /Adobe.PPKLite /SubFilter /ETSI.CAdES.detached"
+                + " /Contents ", " /ByteRange " + RANGE_PLACEHOLDER + " /M (D:20261019) >>\nendobj\n", "");
+
+        final List<SignatureDictionaryScanner.Signature> signatures = scan();
+
+        assertEquals(1, signatures.size());
+        final SignatureDictionaryScanner.Signature signature = signatures.get(0);
+        assertEquals("Approval (1)", signature.field());
+        assertEquals("ETSI.CAdES.detached", signature.subFilter());
+        assertTrue(verify(signature).passed());
+    }
+
+    @Test
+    public void byteRangeBeforeTheContentsIsFound() throws Exception {
+        write("%PDF-1.7\n2 0 obj\n<</Type/Sig/ByteRange" + RANGE_PLACEHOLDER
+                + "/SubFilter/adbe.pkcs7.detached/Contents", "/M(D:20261019)>>\nendobj\n", "");
+
+        final List<SignatureDictionaryScanner.Signature> signatures = scan();
+
+        assertEquals(1, signatures.size());
+        // no field dictionary in the file
+        assertEquals("2 0 R", signatures.get(0).field());
+        assertEquals("adbe.pkcs7.detached", signatures.get(0).subFilter());
+        assertTrue(verify(signatures.get(0)).passed());
+    }
+
+    @Test
+    public void encryptedDocumentNamesTheSignatureByItsReference() throws Exception {
+        write("%PDF-1.7\n" + FIELD + "2 0 obj\n<< /Type /Sig /SubFilter /ETSI.CAdES.detached /Contents ",
+                " /ByteRange " + RANGE_PLACEHOLDER + " >>\nendobj\n", "trailer\n<< /Encrypt 9 0 R >>\n");
+
+        final List<SignatureDictionaryScanner.Signature> signatures = scan();
+
+        assertEquals("2 0 R", signatures.get(0).field());
+        assertTrue(verify(signatures.get(0)).passed());
+    }
+
+    @Test
+    public void textOutsideOfADictionaryIsIgnored() throws Exception {
+        Files.write(file.toPath(), ("%PDF-1.7\n3 0 obj\n<< /Length 20 >>\nstream\n(/ByteRange) Tj\nendstream\nendobj\n")
+                .getBytes(StandardCharsets.US_ASCII));
+
+        assertTrue(scan().isEmpty());
+    }
+
+    @Test
+    public void modifiedSignedBytesAreReported() throws Exception {
+        final byte[] pdf = write("%PDF-1.7\n" + FIELD + "2 0 obj\n<< /Type /Sig /SubFilter /ETSI.CAdES.detached"
+                + " /Contents ", " /ByteRange " + RANGE_PLACEHOLDER + " >>\nendobj\n", "");
+        // the version in the header
+        pdf[7] = '4';
+        Files.write(file.toPath(), pdf);
+
+        final SignatureDictionaryScanner.Signature signature = scan().get(0);
+
+        assertEquals(pdf.length, signature.byteRange()[2] + signature.byteRange()[3]);
+        assertFalse(verify(signature).passed());
+    }
+
+    private List<SignatureDictionaryScanner.Signature> scan() throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return SignatureDictionaryScanner.scan(channel);
+        }
+    }
+
+    private ByteRangeVerifier.Result verify(SignatureDictionaryScanner.Signature signature) throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return ByteRangeVerifier.verify(channel, signature.byteRange(), signature.contents(),
+                    signature.subFilter(), true);
+        }
+    }
+
+    /**
+     * Writes a signed file: {@code head}, the {@code /Contents} hex string, {@code tail} (with the byte range
+     * placeholder in {@code head} or {@code tail}) and {@code trailer}.
+     *
+     * @return the written bytes
+     */
+    private byte[] write(String head, String tail, String trailer) throws Exception {
+        final int gapStart = head.length();
+        final int gapEnd = gapStart + 2 * CONTENTS_BYTES + 2;
+        final int size = gapEnd + tail.length() + trailer.length();
+        final String range = String.format("[0 %10d %10d %10d]", gapStart, gapEnd, size - gapEnd);
+        final String text = (head + "<" + "0".repeat(2 * CONTENTS_BYTES) + ">" + tail + trailer)
+                .replace(RANGE_PLACEHOLDER, range);
+        final byte[] pdf = text.getBytes(StandardCharsets.US_ASCII);
+
+        final byte[] signed = new byte[gapStart + size - gapEnd];
+        System.arraycopy(pdf, 0, signed, 0, gapStart);
+        System.arraycopy(pdf, gapEnd, signed, gapStart, size - gapEnd);
+        final byte[] hex = HexFormat.of().formatHex(ByteRangeVerifierTest.sign(signed))
+                .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(hex, 0, pdf, gapStart + 1, hex.length);
+        Files.write(file.toPath(), pdf);
+        return pdf;
+    }
+}
@@ -0,0 +1,250 @@
+package net.sf.jsignpdf.engine.dss;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import net.sf.jsignpdf.Constants;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
+import eu.europa.esig.dss.service.http.commons.OCSPDataLoader;
+import eu.europa.esig.dss.service.http.proxy.ProxyConfig;
+import eu.europa.esig.dss.service.http.proxy.ProxyProperties;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+
+/**
+ * A process-wide {@link DataLoader} for the AIA / CRL / OCSP traffic of the LT / LTA levels, with a response cache
+ * that honours the freshness of what it caches. Without it every signature builds its own DSS loaders and downloads the
+ * same intermediate CA certificates, CRLs and OCSP responses again - revocation collection then dominates batch LT/LTA
+ * signing although almost all of it repeats.
+ *
+ * <p>
+ * One instance per role and proxy configuration is {@link #shared shared} by all signatures of the process, so the
+ * underlying DSS loader (and its HTTP client configuration) is set up once; requests which do go out pass the
+ * per-host limits of {@link ThrottlingDataLoader}. A response is reused only while it is fresh:
+ * </p>
+ * <ul>
+ * <li>{@code CRL} - until the CRL's {@code nextUpdate}; a CRL without one is not cached,</li>
+ * <li>{@code OCSP} - until the earliest {@code nextUpdate} of the single responses; a response without one is not
+ * cached, as RFC 5019 reads that as "newer information is always available". Requests carrying a nonce never repeat,
+ * so they never hit the cache either,</li>
+ * <li>{@code AIA} - until the earliest {@code notAfter} of the returned certificates,</li>
+ * </ul>
+ * <p>
+ * and never longer than the configured maximum age ({@code engine.dss.online.cacheMaxAge}). Failures and
+ * unparseable responses are not cached. The cache is in memory only and bounded to {@value #MAX_ENTRIES} entries.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class CachingDataLoader implements DataLoader {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String ROLE_AIA = "AIA";
+    static final String ROLE_CRL = "CRL";
+    static final String ROLE_OCSP = "OCSP";
+
+    /** Upper bound of cached responses per loader; the least recently used one is evicted first. */
+    static final int MAX_ENTRIES = 256;
+
+    private static final Map<String, CachingDataLoader> SHARED = new ConcurrentHashMap<>();
+
+    private final String role;
+    private final DataLoader delegate;
+    private final long maxAgeMillis;
+    private final transient Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    CachingDataLoader(String role, DataLoader delegate, long maxAgeMillis) {
+        this.role = role;
+        this.delegate = delegate;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns the process-wide loader for the role, creating it on first use. OCSP gets DSS's
+     * {@link OCSPDataLoader} (it sets the OCSP content type), AIA and CRL a {@link CommonsDataLoader}.
+     *
+     * @param role         {@link #ROLE_AIA}, {@link #ROLE_CRL} or {@link #ROLE_OCSP}
+     * @param proxyConfig  the proxy to route the traffic through, or {@code null} for a direct connection
+     * @param maxAgeMillis the longest time a response is reused; {@code 0} disables the cache
+     * @return the shared loader
+     */
+    static CachingDataLoader shared(String role, ProxyConfig proxyConfig, long maxAgeMillis) {
+        final String key = role + '|' + maxAgeMillis + '|' + proxyKey(proxyConfig);
+        return SHARED.computeIfAbsent(key, k -> {
+            final CommonsDataLoader loader = ROLE_OCSP.equals(role) ? new OCSPDataLoader() : new CommonsDataLoader();
+            loader.setProxyConfig(proxyConfig);
+            return new CachingDataLoader(role, new ThrottlingDataLoader(loader), maxAgeMillis);
+        });
+    }
+
+    @Override
+    public byte[] get(String url) {
+        final byte[] cached = lookup(url);
+        if (cached != null) {
+            return cached;
+        }
+        final byte[] data = delegate.get(url);
+        store(url, data);
+        return data;
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        for (String url : urlStrings) {
+            final byte[] cached = lookup(url);
+            if (cached != null) {
+                return new DataAndUrl(url, cached);
+            }
+        }
+        final DataAndUrl result = delegate.get(urlStrings);
+        if (result != null) {
+            store(result.getUrlString(), result.getData());
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        final String key = url + '#' + (content != null ? sha256(content) : "");
+        final byte[] cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        final byte[] data = delegate.post(url, content);
+        store(key, data);
+        return data;
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        delegate.setContentType(contentType);
+    }
+
+    private byte[] lookup(String key) {
+        if (maxAgeMillis <= 0L) {
+            return null;
+        }
+        final Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+                cache.remove(key);
+                return null;
+            }
+        }
+        if (entry != null && Constants.LOGGER.isLoggable(Level.FINE)) {
+            Constants.LOGGER.fine(role + " cache hit for " + key + " (fresh until " + new Date(entry.expiresAt())
+                    + ")");
+        }
+        return entry != null ? entry.data() : null;
+    }
+
+    private void store(String key, byte[] data) {
+        if (maxAgeMillis <= 0L || data == null || data.length == 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final long freshUntil = freshUntil(role, data);
+        final long expiresAt = Math.min(freshUntil, now + maxAgeMillis);
+        if (expiresAt > now) {
+            synchronized (cache) {
+                cache.put(key, new Entry(data, expiresAt));
+            }
+        }
+    }
+
+    /**
+     * Reads how long a response stays valid from the response itself.
+     *
+     * @param role the loader role, which decides how the data is read
+     * @param data the response
+     * @return the time (epoch milliseconds) the response stops being fresh; {@code 0} when it must not be cached
+     */
+    static long freshUntil(String role, byte[] data) {
+        try {
+            switch (role) {
+                case ROLE_CRL: {
+                    final X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509")
+                            .generateCRL(new ByteArrayInputStream(data));
+                    return crl.getNextUpdate() != null ? crl.getNextUpdate().getTime() : 0L;
+                }
+                case ROLE_OCSP: {
+                    final OCSPResp resp = new OCSPResp(data);
+                    if (resp.getStatus() != OCSPResp.SUCCESSFUL
+                            || !(resp.getResponseObject() instanceof BasicOCSPResp basic)) {
+                        return 0L;
+                    }
+                    long min = Long.MAX_VALUE;
+                    for (SingleResp single : basic.getResponses()) {
+                        if (single.getNextUpdate() == null) {
+                            return 0L;
+                        }
+                        min = Math.min(min, single.getNextUpdate().getTime());
+                    }
+                    return min == Long.MAX_VALUE ? 0L : min;
+                }
+                case ROLE_AIA: {
+                    final Collection<? extends java.security.cert.Certificate> certs = CertificateFactory
+                            .getInstance("X.509").generateCertificates(new ByteArrayInputStream(data));
+                    long min = Long.MAX_VALUE;
+                    for (java.security.cert.Certificate cert : certs) {
+                        min = Math.min(min, ((X509Certificate) cert).getNotAfter().getTime());
+                    }
+                    return min == Long.MAX_VALUE ? 0L : min;
+                }
+                default:
+                    return 0L;
+            }
+        } catch (Exception e) {
+            Constants.LOGGER.fine(() -> role + " response not cached, it can't be parsed: " + e.getMessage());
+            return 0L;
+        }
+    }
+
+    private static String proxyKey(ProxyConfig proxyConfig) {
+        if (proxyConfig == null) {
+            return "direct";
+        }
+        return proxyKey(proxyConfig.getHttpProperties()) + ',' + proxyKey(proxyConfig.getHttpsProperties());
+    }
+
+    private static String proxyKey(ProxyProperties props) {
+        return props == null ? "-"
+                : props.getScheme() + "://" + props.getUser() + '@' + props.getHost() + ':' + props.getPort();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(byte[] data, long expiresAt) {
+    }
+}
@@ -0,0 +1,48 @@
+package net.sf.jsignpdf.engine.dss;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jsignpdf.tsa.TsaDispatcher;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+
+/**
+ * A {@link TSPSource} over several TSA URLs: each timestamp is obtained from one of the per-URL sources as the
+ * {@link TsaDispatcher} decides (failover, round-robin or hedged, with the process-wide latency tracking and circuit
+ * breaker shared with the OpenPDF engine). With a single URL it simply delegates.
+ *
+ * @author Josef Cacek
+ */
+final class DispatchingTspSource implements TSPSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> urls;
+    private final Map<String, ? extends TSPSource> sources;
+    private final transient TsaDispatcher dispatcher;
+
+    /**
+     * @param urls the TSA URLs in their configured order
+     * @param sources a source for each of the URLs
+     * @param dispatcher decides which source answers
+     */
+    DispatchingTspSource(List<String> urls, Map<String, ? extends TSPSource> sources, TsaDispatcher dispatcher) {
+        this.urls = urls;
+        this.sources = sources;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public TimestampBinary getTimeStampResponse(DigestAlgorithm digestAlgorithm, byte[] digest) throws DSSException {
+        try {
+            return dispatcher.request(urls, url -> sources.get(url).getTimeStampResponse(digestAlgorithm, digest));
+        } catch (IOException e) {
+            throw new DSSException(e.getMessage(), e);
+        }
+    }
+}
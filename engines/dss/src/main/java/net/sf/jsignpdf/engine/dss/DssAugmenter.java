@@ -0,0 +1,182 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.tsa.TsaDispatcher;
+import net.sf.jsignpdf.types.BufferingMode;
+import net.sf.jsignpdf.types.PadesLevel;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.AtomicOutputFile;
+
+import org.apache.commons.lang3.StringUtils;
+
+import eu.europa.esig.dss.alert.exception.AlertException;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.pades.PAdESSignatureParameters;
+import eu.europa.esig.dss.pades.signature.PAdESService;
+import eu.europa.esig.dss.pdf.PdfMemoryUsageSetting;
+import eu.europa.esig.dss.service.http.proxy.ProxyConfig;
+import eu.europa.esig.dss.signature.resources.TempFileResourcesHandlerBuilder;
+import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+
+import net.sf.jsignpdf.engine.dss.pdfbox.JSignPdfPdfObjFactory;
+
+/**
+ * Extends the existing PAdES signatures of a document ({@code --augment}): a B signature gets its signature
+ * timestamp, LT adds the validation data of all signatures and timestamps to the DSS dictionary and LTA protects it
+ * with a document timestamp - all as one incremental update, so the signed revisions stay untouched.
+ *
+ * <p>
+ * Loading the trust material (truststore, LOTL) and setting up the TSA clients cost far more than extending one
+ * document, so the certificate verifier (see {@link DssTrustConfigurer#sharedVerifier}) and the TSP source are built
+ * once per configuration and shared by every document of the process, also by concurrent workers. The AIA / CRL /
+ * OCSP responses are shared anyway by the process-wide {@link CachingDataLoader}s behind the verifier.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class DssAugmenter {
+
+    private static final Map<String, TSPSource> TSP_SOURCES = new ConcurrentHashMap<>();
+
+    private DssAugmenter() {
+    }
+
+    /**
+     * Extends the signatures of {@code options.getInFile()} to {@code options.getPadesLevel()} and writes the result
+     * to the output file.
+     *
+     * @return {@code true} on success, {@code false} when the document wasn't extended (already logged)
+     */
+    static boolean augment(BasicSignerOptions options, EngineConfig engineConfig) {
+        final PadesLevel padesLevel = options.getPadesLevel();
+        if (padesLevel == null || padesLevel == PadesLevel.BASELINE_B) {
+            LOGGER.severe(RES.get("console.augment.level"));
+            return false;
+        }
+        // every level above B is reached through a timestamp: the signature timestamp for T, and a document
+        // timestamp over the validation data for LTA
+        final List<String> tsaUrls = options.isTimestampX() ? TsaDispatcher.parseUrls(options.getTsaUrl()) : List.of();
+        if (tsaUrls.isEmpty()) {
+            LOGGER.severe(RES.get("console.augment.noTsa"));
+            return false;
+        }
+        final DssTrustConfigurer trustConfigurer = new DssTrustConfigurer(engineConfig);
+        final SignatureLevel level = DssMappings.toSignatureLevel(padesLevel);
+        if (padesLevel != PadesLevel.BASELINE_T && !trustConfigurer.hasRevocationSource()) {
+            LOGGER.severe(RES.get("console.dss.ltNoRevocation"));
+            return false;
+        }
+
+        final String inFile = options.getInFile();
+        final String outFile = options.getOutFileX();
+        TempFileResourcesHandlerBuilder resourcesHandlerBuilder = null;
+        CapturingTspSource tspSource = null;
+        boolean finished = false;
+        try {
+            final BufferingMode bufferingMode = AppConfig.bufferingMode(options);
+            final File bufferingTempDir;
+            try {
+                bufferingTempDir = AppConfig.bufferingDir(bufferingMode);
+            } catch (IOException e) {
+                LOGGER.severe(e.getMessage());
+                return false;
+            }
+
+            final ProxyConfig proxyConfig = DssSigningEngine.buildProxyConfig(options);
+            final CommonCertificateVerifier verifier;
+            try {
+                verifier = trustConfigurer.sharedVerifier(options, proxyConfig);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, RES.get("console.dss.trustConfigFailed"), e);
+                return false;
+            }
+            tspSource = new CapturingTspSource(String.join(", ", tsaUrls),
+                    sharedTspSource(options, tsaUrls, proxyConfig));
+
+            final PAdESService service = new PAdESService(verifier);
+            service.setTspSource(tspSource);
+            final JSignPdfPdfObjFactory pdfObjFactory = new JSignPdfPdfObjFactory();
+            if (bufferingMode.isStaged()) {
+                // local for the same reason as in DssSigningEngine.sign(): clear() deletes all temp files of the
+                // builder, a shared one would delete the documents of concurrent workers
+                resourcesHandlerBuilder = new TempFileResourcesHandlerBuilder();
+                resourcesHandlerBuilder.setFileNamePrefix("jsignpdf-dss-");
+                if (bufferingTempDir != null) {
+                    resourcesHandlerBuilder.setTempFileDirectory(bufferingTempDir);
+                }
+                pdfObjFactory.setResourcesHandlerBuilder(resourcesHandlerBuilder);
+                pdfObjFactory.setPdfMemoryUsageSetting(
+                        PdfMemoryUsageSetting.mixed(DssSigningEngine.MIXED_THRESHOLD_BYTES));
+            }
+            service.setPdfObjFactory(pdfObjFactory);
+
+            final PAdESSignatureParameters parameters = new PAdESSignatureParameters();
+            parameters.setSignatureLevel(level);
+            DssSigningEngine.setTsaDigestAlgorithm(options, parameters);
+            final char[] ownerPwd = options.getPdfOwnerPwd();
+            if (ownerPwd != null && ownerPwd.length > 0) {
+                parameters.setPasswordProtection(ownerPwd);
+            }
+
+            LOGGER.info(RES.get("console.augment.extending", inFile, padesLevel.name()));
+            final DSSDocument extended = service.extendDocument(new FileDocument(inFile), parameters);
+            LOGGER.info(RES.get("console.createOutPdf", outFile));
+            try (AtomicOutputFile out = AtomicOutputFile.create(new File(outFile), new File(inFile).length())) {
+                extended.writeTo(out.stream());
+                out.commit();
+                options.setOutputSha256(out.sha256());
+            }
+            finished = true;
+        } catch (AlertException e) {
+            // the signer chains come from the document, only the timestamp chain is known here
+            final Collection<X509Certificate> tsaChain = tspSource != null
+                    ? tspSource.getCapturedCertificates() : null;
+            final String details = DssUntrustedChainReporter.describe(e, null, tsaChain);
+            String message = RES.get("console.dss.untrustedChain");
+            if (!details.isEmpty()) {
+                message = message + System.lineSeparator() + details;
+            }
+            LOGGER.log(Level.SEVERE, message, e);
+        } catch (Exception e) {
+            final String httpHint = DssSigningEngine.remoteHttpErrorHint(e);
+            LOGGER.log(Level.SEVERE, httpHint != null ? httpHint : RES.get("console.augment.failed", inFile,
+                    StringUtils.defaultString(e.getMessage(), e.getClass().getName())), e);
+        } catch (OutOfMemoryError e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.memoryError"), e);
+        } finally {
+            if (resourcesHandlerBuilder != null) {
+                resourcesHandlerBuilder.clear();
+            }
+        }
+        return finished;
+    }
+
+    private static TSPSource sharedTspSource(BasicSignerOptions options, List<String> tsaUrls,
+            ProxyConfig proxyConfig) {
+        final String key = String.join(",", tsaUrls) + '\n' + options.getTsaPolicy() + '\n'
+                + options.getTsaServerAuthn() + '\n' + options.getTsaUser() + '\n'
+                + Objects.hashCode(options.getTsaPasswd()) + '\n' + DssSigningEngine.proxyKey(options);
+        return TSP_SOURCES.computeIfAbsent(key, k -> {
+            LOGGER.info(RES.get("console.creatingTsaClient"));
+            return DssSigningEngine.buildTspSource(options, tsaUrls, proxyConfig);
+        });
+    }
+
+}
@@ -0,0 +1,66 @@
+package net.sf.jsignpdf.engine.dss;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import net.sf.jsignpdf.engine.Capability;
+import net.sf.jsignpdf.engine.EngineDescriptor;
+import net.sf.jsignpdf.engine.SigningEngine;
+
+/**
+ * Registry metadata of the {@link DssSigningEngine}. Kept free of DSS, PDFBox and HTTP client references so
+ * listing the engines, or signing with another one, doesn't pull that class graph into the JVM.
+ *
+ * @author Josef Cacek
+ */
+public final class DssEngineDescriptor implements EngineDescriptor {
+
+    static final String DISPLAY_NAME = "EU DSS (PAdES)";
+
+    static final Set<Capability> CAPABILITIES = Set.copyOf(EnumSet.of(
+            Capability.SUBFILTER_ETSI_CADES_DETACHED,
+            Capability.PADES_BASELINE_B, Capability.PADES_BASELINE_T,
+            Capability.PADES_BASELINE_LT, Capability.PADES_BASELINE_LTA,
+            Capability.DSS_DICTIONARY, Capability.AUGMENT_SIGNATURES, Capability.VALIDATE_SIGNATURES,
+            Capability.MULTI_SIGNATURE,
+
+            Capability.HASH_SHA256, Capability.HASH_SHA384, Capability.HASH_SHA512,
+
+            // No OVERWRITE_MODE: DSS always signs incrementally (PAdES requires it). Append is universal.
+            Capability.CERTIFICATION_LEVEL,
+            Capability.ENCRYPTION_PASSWORD, Capability.PERMISSIONS_BITMASK,
+
+            Capability.VISIBLE_SIGNATURE, Capability.VISIBLE_LAYER2_TEXT,
+            Capability.VISIBLE_BACKGROUND_IMAGE, Capability.VISIBLE_BACKGROUND_IMAGE_SCALE,
+            Capability.VISIBLE_SIGNATURE_GRAPHIC,
+            Capability.VISIBLE_CUSTOM_FONT,
+            Capability.VISIBLE_RENDER_MODE_DESCRIPTION_ONLY,
+            Capability.VISIBLE_RENDER_MODE_GRAPHIC_AND_DESCRIPTION,
+            Capability.SIGN_EXISTING_FIELD,
+
+            Capability.TSA, Capability.TSA_POLICY_OID, Capability.TSA_BASIC_AUTH,
+            Capability.OCSP_EMBED, Capability.CRL_EMBED,
+
+            Capability.PROXY_SUPPORT,
+            Capability.PKCS11_PROVIDER));
+
+    @Override
+    public String id() {
+        return DssSigningEngine.ID;
+    }
+
+    @Override
+    public String displayName() {
+        return DISPLAY_NAME;
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public SigningEngine createEngine() {
+        return new DssSigningEngine();
+    }
+}
@@ -9,21 +9,27 @@ import static net.sf.jsignpdf.Constants.L2TEXT_PLACEHOLDER_CERTIFICATE;
 import static net.sf.jsignpdf.Constants.LOGGER;
 import static net.sf.jsignpdf.Constants.RES;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.net.URI;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -37,6 +43,7 @@ import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.PrivateKeyInfo;
 import net.sf.jsignpdf.engine.Capability;
 import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.engine.SignatureValidation;
 import net.sf.jsignpdf.engine.SigningEngine;
 import net.sf.jsignpdf.types.BufferingMode;
 import net.sf.jsignpdf.types.CertificationLevel;
@@ -44,9 +51,12 @@ import net.sf.jsignpdf.types.HashAlgorithm;
 import net.sf.jsignpdf.types.PadesLevel;
 import net.sf.jsignpdf.types.PrintRight;
 import net.sf.jsignpdf.types.RenderMode;
+import net.sf.jsignpdf.tsa.TsaDispatcher;
 import net.sf.jsignpdf.types.ServerAuthentication;
 import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.AtomicOutputFile;
 import net.sf.jsignpdf.utils.KeyStoreUtils;
+import net.sf.jsignpdf.verify.ByteRangeVerifier;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -55,15 +65,11 @@ import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
 import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
-import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
-import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
-import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
-import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
-import org.apache.pdfbox.pdmodel.interactive.form.PDField;
-import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
 
 import eu.europa.esig.dss.alert.LogOnStatusAlert;
 import eu.europa.esig.dss.enumerations.CertificationPermission;
@@ -73,12 +79,14 @@ import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.enumerations.TextWrapping;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
 import eu.europa.esig.dss.model.SignatureValue;
 import eu.europa.esig.dss.model.ToBeSigned;
 import eu.europa.esig.dss.pades.DSSFont;
 import eu.europa.esig.dss.pades.PAdESSignatureParameters;
 import eu.europa.esig.dss.pades.SignatureFieldParameters;
 import eu.europa.esig.dss.pades.SignatureImageTextParameters;
+import eu.europa.esig.dss.pades.signature.ExternalCMSService;
 import eu.europa.esig.dss.pades.signature.PAdESService;
 import eu.europa.esig.dss.pdf.PdfMemoryUsageSetting;
 import eu.europa.esig.dss.pdf.PdfSignatureFieldPositionChecker;
@@ -87,7 +95,10 @@ import eu.europa.esig.dss.service.http.commons.TimestampDataLoader;
 import eu.europa.esig.dss.service.http.proxy.ProxyConfig;
 import eu.europa.esig.dss.service.http.proxy.ProxyProperties;
 import eu.europa.esig.dss.service.tsp.OnlineTSPSource;
+import eu.europa.esig.dss.spi.DSSUtils;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
 import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 
 import net.sf.jsignpdf.engine.dss.pdfbox.JSignPdfPdfObjFactory;
 import net.sf.jsignpdf.engine.dss.pdfbox.JSignPdfSignatureImageParameters;
@@ -128,6 +139,13 @@ public class DssSigningEngine implements SigningEngine {
      */
     static final String KEY_RELAX_FIELD_OVERLAP = "relaxFieldOverlap";
 
+    /**
+     * Config key ({@code engine.dss.singleStaging}): when {@code true}, signatures the {@link SinglePassSigner}
+     * supports are created in one staging pass instead of through {@code PAdESService}, which builds the prepared
+     * revision twice. Defaults to {@code false}; other signatures always take the regular path.
+     */
+    static final String KEY_SINGLE_STAGING = "singleStaging";
+
     /** Lower bound for the reserved {@code /Contents} size, matching DSS's own default; never estimate below it. */
     private static final int MIN_CONTENT_SIZE = 9472;
 
@@ -157,37 +175,11 @@ public class DssSigningEngine implements SigningEngine {
      * larger ones spill to disk. Keeps the common case fast when a user leaves temp mode enabled
      * permanently. This is a per-document budget, not a global one, and the disk side is unrestricted.
      */
-    private static final long MIXED_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    static final long MIXED_THRESHOLD_BYTES = 64L * 1024 * 1024;
 
     /** Extracts the actual CMS length from the DSS "signature size too small" message; see {@code assertContentSizeSufficient}. */
     private static final Pattern UNDERSIZE_LENGTH_PATTERN = Pattern.compile("with a length \\[(\\d+)\\]");
 
-    private static final Set<Capability> CAPABILITIES = Set.copyOf(EnumSet.of(
-            Capability.SUBFILTER_ETSI_CADES_DETACHED,
-            Capability.PADES_BASELINE_B, Capability.PADES_BASELINE_T,
-            Capability.PADES_BASELINE_LT, Capability.PADES_BASELINE_LTA,
-            Capability.DSS_DICTIONARY,
-
-            Capability.HASH_SHA256, Capability.HASH_SHA384, Capability.HASH_SHA512,
-
-            // No OVERWRITE_MODE: DSS always signs incrementally (PAdES requires it). Append is universal.
-            Capability.CERTIFICATION_LEVEL,
-            Capability.ENCRYPTION_PASSWORD, Capability.PERMISSIONS_BITMASK,
-
-            Capability.VISIBLE_SIGNATURE, Capability.VISIBLE_LAYER2_TEXT,
-            Capability.VISIBLE_BACKGROUND_IMAGE, Capability.VISIBLE_BACKGROUND_IMAGE_SCALE,
-            Capability.VISIBLE_SIGNATURE_GRAPHIC,
-            Capability.VISIBLE_CUSTOM_FONT,
-            Capability.VISIBLE_RENDER_MODE_DESCRIPTION_ONLY,
-            Capability.VISIBLE_RENDER_MODE_GRAPHIC_AND_DESCRIPTION,
-            Capability.SIGN_EXISTING_FIELD,
-
-            Capability.TSA, Capability.TSA_POLICY_OID, Capability.TSA_BASIC_AUTH,
-            Capability.OCSP_EMBED, Capability.CRL_EMBED,
-
-            Capability.PROXY_SUPPORT,
-            Capability.PKCS11_PROVIDER));
-
     @Override
     public String id() {
         return ID;
@@ -195,16 +187,75 @@ public class DssSigningEngine implements SigningEngine {
 
     @Override
     public String displayName() {
-        return "EU DSS (PAdES)";
+        return DssEngineDescriptor.DISPLAY_NAME;
     }
 
     @Override
     public Set<Capability> capabilities() {
-        return CAPABILITIES;
+        return DssEngineDescriptor.CAPABILITIES;
+    }
+
+    /**
+     * In memory mode the input, the PDFBox model, the DSS copy of the document and the signed output are all on the
+     * heap. Temp and offheap mode keep documents below {@link #MIXED_THRESHOLD_BYTES} in memory too, and still parse
+     * the model.
+     */
+    @Override
+    public double heapPerInputByte(final BufferingMode mode) {
+        return mode.isStaged() ? 3.0 : 5.0;
     }
 
     @Override
     public boolean sign(final BasicSignerOptions options, final EngineConfig engineConfig) {
+        return sign(options, engineConfig, null, null);
+    }
+
+    /**
+     * Applies the signatures one after another, each one appending to the revision of the previous one. DSS hands the
+     * signed revision over as a document, which becomes the input of the next signature as it is; only the last one is
+     * written to the output file. The revisions in between are kept in memory in memory buffering mode and in a file in
+     * the staging directory in temp and offheap mode - copied out before the resources of the signature which produced
+     * them are deleted - and each one is deleted as soon as the next signature is applied.
+     */
+    @Override
+    public boolean signAll(final List<? extends BasicSignerOptions> signatures, final EngineConfig engineConfig) {
+        DSSDocument revision = null;
+        try {
+            for (int i = 0; i < signatures.size(); i++) {
+                LOGGER.info(RES.get("console.multiSign.step", String.valueOf(i + 1),
+                        String.valueOf(signatures.size())));
+                if (i == signatures.size() - 1) {
+                    return sign(signatures.get(i), engineConfig, revision, null);
+                }
+                final List<DSSDocument> signed = new ArrayList<>(1);
+                final boolean ok = sign(signatures.get(i), engineConfig, revision, signed);
+                deleteRevision(revision);
+                revision = signed.isEmpty() ? null : signed.get(0);
+                if (!ok) {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            deleteRevision(revision);
+        }
+    }
+
+    private static void deleteRevision(DSSDocument revision) {
+        if (revision instanceof FileDocument) {
+            final File file = ((FileDocument) revision).getFile();
+            if (file.exists() && !file.delete()) {
+                LOGGER.warning(RES.get("console.buffering.tempFileNotDeleted", file.getAbsolutePath()));
+            }
+        }
+    }
+
+    /**
+     * @param revision the document to sign, {@code null} to read the input file of the options
+     * @param signedRevisions receives the signed document, {@code null} to write the output file of the options
+     */
+    private boolean sign(final BasicSignerOptions options, final EngineConfig engineConfig,
+            final DSSDocument revision, final List<DSSDocument> signedRevisions) {
         final String outFile = options.getOutFileX();
         boolean finished = false;
         File encryptedTempFile = null;
@@ -214,19 +265,20 @@ public class DssSigningEngine implements SigningEngine {
         Certificate[] chain = null;
         CapturingTspSource tspSource = null;
         try {
-            // Resolved up front so an unusable buffering.tempDir aborts before any work is done. The
-            // directory is only read in TEMP mode, so a stale path cannot break a memory-mode sign.
-            final BufferingMode bufferingMode = AppConfig.bufferingMode();
+            // Resolved up front so an unusable staging directory aborts before any work is done. The
+            // directory is only read in TEMP and OFFHEAP mode, so a stale path cannot break a memory-mode sign.
+            final BufferingMode bufferingMode = AppConfig.bufferingMode(options);
             final File bufferingTempDir;
-            if (bufferingMode == BufferingMode.TEMP) {
+            if (bufferingMode.isStaged()) {
                 try {
-                    bufferingTempDir = AppConfig.bufferingTempDir();
+                    bufferingTempDir = AppConfig.bufferingDir(bufferingMode);
                 } catch (IOException e) {
                     LOGGER.severe(e.getMessage());
                     return false;
                 }
-                LOGGER.info(RES.get("console.buffering.temp", bufferingTempDir != null
-                        ? bufferingTempDir.getAbsolutePath() : System.getProperty("java.io.tmpdir")));
+                LOGGER.info(RES.get("console.buffering." + bufferingMode.name().toLowerCase(Locale.ROOT),
+                        bufferingTempDir != null ? bufferingTempDir.getAbsolutePath()
+                                : System.getProperty("java.io.tmpdir")));
             } else {
                 bufferingTempDir = null;
             }
@@ -261,7 +313,10 @@ public class DssSigningEngine implements SigningEngine {
                 parameters.setCertificateChain(token.getKeyEntry().getCertificateChain());
 
                 // PAdES level (+ TSA auto-upgrade B->T).
-                final boolean useTsa = options.isTimestampX() && StringUtils.isNotEmpty(options.getTsaUrl());
+                // a blank or separator-only URL option means no TSA, as an empty one
+                final List<String> tsaUrls = options.isTimestampX() ? TsaDispatcher.parseUrls(options.getTsaUrl())
+                        : List.of();
+                final boolean useTsa = !tsaUrls.isEmpty();
                 final PadesLevel padesLevel = options.getPadesLevel();
                 if (useTsa && (padesLevel == null || padesLevel == PadesLevel.BASELINE_B)) {
                     LOGGER.info(RES.get("console.dss.tsaUpgrade"));
@@ -305,10 +360,19 @@ public class DssSigningEngine implements SigningEngine {
 
                 // Encrypt-before-sign (password-only).
                 File effectiveInFile = new File(options.getInFile());
-                if (options.isAdvanced() && options.getPdfEncryption() == net.sf.jsignpdf.types.PDFEncryption.PASSWORD) {
+                // Read while the input is open anyway (encryption), otherwise by configureVisibleSignature.
+                SignatureGeometry geometry = null;
+                // a revision is never encrypted here: the signatures after the first one append
+                if (revision == null && options.isAdvanced()
+                        && options.getPdfEncryption() == net.sf.jsignpdf.types.PDFEncryption.PASSWORD) {
                     LOGGER.info(RES.get("console.setEncryption"));
-                    encryptedTempFile = encryptPdf(effectiveInFile, options,
-                            streamCache(bufferingMode, bufferingTempDir), bufferingTempDir);
+                    try (PDDocument doc = loadPdf(effectiveInFile, streamCache(bufferingMode, bufferingTempDir))) {
+                        if (options.isVisible()) {
+                            // before encryptPdf: saving encrypts the strings in place, field names included
+                            geometry = readGeometry(doc, options);
+                        }
+                        encryptedTempFile = encryptPdf(doc, options, bufferingTempDir);
+                    }
                     if (encryptedTempFile == null) {
                         return false;
                     }
@@ -324,12 +388,17 @@ public class DssSigningEngine implements SigningEngine {
                     }
                 }
 
-                final DSSDocument document = new FileDocument(effectiveInFile);
+                final DSSDocument document = revision != null ? revision : new FileDocument(effectiveInFile);
 
                 if (options.isVisible()) {
                     LOGGER.info(RES.get("console.configureVisible"));
-                    configureVisibleSignature(parameters, options, chain, signingCal, effectiveInFile,
-                            streamCache(bufferingMode, bufferingTempDir));
+                    if (geometry == null) {
+                        try (PDDocument doc = loadPdf(revision, effectiveInFile,
+                                streamCache(bufferingMode, bufferingTempDir))) {
+                            geometry = readGeometry(doc, options);
+                        }
+                    }
+                    configureVisibleSignature(parameters, options, chain, signingCal, geometry);
                 }
 
                 // Certificate verifier + trust material (LT/LTA).
@@ -343,7 +412,7 @@ public class DssSigningEngine implements SigningEngine {
                         LOGGER.severe(RES.get("console.dss.ltNoTsa"));
                         return false;
                     }
-                    if (!trustConfigurer.isOnlineEnabled()) {
+                    if (!trustConfigurer.hasRevocationSource()) {
                         LOGGER.severe(RES.get("console.dss.ltNoRevocation"));
                         return false;
                     }
@@ -372,7 +441,7 @@ public class DssSigningEngine implements SigningEngine {
                     pdfObjFactory.setPdfSignatureFieldPositionChecker(positionChecker);
                 }
 
-                if (bufferingMode == BufferingMode.TEMP) {
+                if (bufferingMode.isStaged()) {
                     // Kept local on purpose: clear() deletes every temp file the builder ever created, so a
                     // shared instance would let one sign delete another concurrent sign's output document.
                     resourcesHandlerBuilder = new TempFileResourcesHandlerBuilder();
@@ -395,8 +464,9 @@ public class DssSigningEngine implements SigningEngine {
                     // Wrap the TSA source so the timestamp chain is captured for diagnostics: if DSS later
                     // rejects the signature because that chain is not anchored, the untrusted-chain report can
                     // name the timestamp certificate instead of a bare fingerprint (issue #448).
-                    tspSource = new CapturingTspSource(options.getTsaUrl(),
-                            buildTspSource(options, parameters, digestAlgorithm, proxyConfig));
+                    tspSource = new CapturingTspSource(String.join(", ", tsaUrls),
+                            buildTspSource(options, tsaUrls, proxyConfig));
+                    setTsaDigestAlgorithm(options, parameters);
                     service.setTspSource(tspSource);
                 }
 
@@ -407,12 +477,45 @@ public class DssSigningEngine implements SigningEngine {
                         ? configuredContentSize
                         : estimateContentSize(chain, useTsa);
                 final boolean retryOnUndersize = engineConfig.getBoolean(KEY_RETRY_ON_UNDERSIZE, true);
-                final DSSDocument signedDocument = signWithContentSize(service, document, parameters, token,
-                        digestAlgorithm, initialContentSize, retryOnUndersize, resourcesHandlerBuilder);
-
-                LOGGER.info(RES.get("console.createOutPdf", outFile));
-                try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                    signedDocument.writeTo(fos);
+                // the single pass reads and writes files, the revisions of signAll() stay on the regular path; the
+                // encrypted temp is our own unsigned document, so it always takes the single pass when it can -
+                // DSS would otherwise parse and rewrite it twice more after encryptPdf already rewrote it once
+                if (revision == null && signedRevisions == null
+                        && (encryptedTempFile != null || engineConfig.getBoolean(KEY_SINGLE_STAGING, false))
+                        && SinglePassSigner.supports(parameters, options.isVisible())) {
+                    LOGGER.info(RES.get("console.dss.singleStaging"));
+                    final ExternalCMSService cmsService = new ExternalCMSService(verifier);
+                    if (tspSource != null) {
+                        cmsService.setTspSource(tspSource);
+                    }
+                    LOGGER.info(RES.get("console.createOutPdf", outFile));
+                    // Writes the output itself (atomically, like below) - there is no staged signed document.
+                    final SinglePassSigner signer = new SinglePassSigner(cmsService, token, digestAlgorithm);
+                    signSinglePass(signer, effectiveInFile, streamCache(bufferingMode, bufferingTempDir), parameters,
+                            initialContentSize, retryOnUndersize, new File(outFile));
+                    options.setOutputSha256(signer.outputSha256());
+                } else {
+                    final DSSDocument signedDocument = signWithContentSize(service, document, parameters, token,
+                            digestAlgorithm, initialContentSize, retryOnUndersize, resourcesHandlerBuilder);
+                    if (signedRevisions != null) {
+                        // copied before the finally block clears the temp files which may back it
+                        signedRevisions.add(bufferingMode.isStaged() ? stageRevision(signedDocument, bufferingTempDir)
+                                : new InMemoryDocument(DSSUtils.toByteArray(signedDocument)));
+                    } else {
+                        LOGGER.info(RES.get("console.createOutPdf", outFile));
+                        // Written next to the output and renamed into place when complete, so a failure never
+                        // leaves a truncated PDF at the output path - this also keeps in-place signing (-o == input)
+                        // safe. The input size is the pre-allocation hint; the signed output is only slightly larger.
+                        try (AtomicOutputFile out = AtomicOutputFile.create(new File(outFile),
+                                new File(options.getInFile()).length())) {
+                            signedDocument.writeTo(out.stream());
+                            if (AppConfig.outputSelfCheck()) {
+                                selfCheck(out);
+                            }
+                            out.commit();
+                            options.setOutputSha256(out.sha256());
+                        }
+                    }
                 }
                 LOGGER.info(RES.get("console.closeStream"));
             }
@@ -449,6 +552,63 @@ public class DssSigningEngine implements SigningEngine {
         return finished;
     }
 
+    /**
+     * Checks the last signature of the written output before it is committed ({@code output.selfCheck}). DSS hands over
+     * the finished document without its byte range or signed digest, so the signature dictionary is read back from the
+     * temporary file and checked with the {@link ByteRangeVerifier}.
+     *
+     * @throws IOException when the check fails; the output is not committed then
+     */
+    private static void selfCheck(AtomicOutputFile out) throws IOException {
+        final File written = out.written();
+        final String problem;
+        try (PDDocument doc = Loader.loadPDF(written);
+                FileChannel channel = FileChannel.open(written.toPath(), StandardOpenOption.READ)) {
+            final PDSignature signature = doc.getLastSignatureDictionary();
+            if (signature == null) {
+                problem = "The output has no signature";
+            } else {
+                final int[] byteRange = signature.getByteRange();
+                final long[] range = new long[byteRange.length];
+                for (int i = 0; i < byteRange.length; i++) {
+                    range[i] = byteRange[i];
+                }
+                final ByteRangeVerifier.Result check = ByteRangeVerifier.verify(channel, range,
+                        signature.getContents(), signature.getSubFilter(), true);
+                problem = check.passed() ? null : check.problem();
+            }
+        }
+        if (problem != null) {
+            throw new IOException(RES.get("console.selfCheck.failed", out.getTarget().getPath(), problem));
+        }
+        LOGGER.info(RES.get("console.selfCheck.passed"));
+    }
+
+    /**
+     * Copies a signed revision into a file of its own in the staging directory, streaming it.
+     */
+    private static FileDocument stageRevision(DSSDocument signedDocument, File tempDir) throws IOException {
+        final File file = File.createTempFile("jsignpdf-rev-", ".pdf", tempDir);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            signedDocument.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return new FileDocument(file);
+    }
+
+    @Override
+    public boolean augment(final BasicSignerOptions options, final EngineConfig engineConfig) {
+        return DssAugmenter.augment(options, engineConfig);
+    }
+
+    @Override
+    public List<SignatureValidation> validate(final File pdf, final BasicSignerOptions options,
+            final EngineConfig engineConfig) throws IOException {
+        return DssValidator.validate(pdf, options, engineConfig);
+    }
+
     /**
      * Estimates how many bytes to reserve in the PDF {@code /Contents} for the CMS signature. DSS uses a
      * fixed reservation (default {@value #MIN_CONTENT_SIZE}) that is too small for large certificate chains
@@ -515,8 +675,9 @@ public class DssSigningEngine implements SigningEngine {
                         String.valueOf(grown)));
                 if (resourcesHandlerBuilder != null) {
                     // Each attempt stages a full copy of the document in getDataToSign() and another in
-                    // signDocument(); nothing from a failed attempt is reachable, so release it before
-                    // retrying rather than letting temp files pile up across the loop.
+                    // signDocument() (SinglePassSigner avoids that where it applies); nothing from a failed
+                    // attempt is reachable, so release it before retrying rather than letting temp files pile
+                    // up across the loop.
                     resourcesHandlerBuilder.clear();
                 }
                 contentSize = grown;
@@ -524,6 +685,35 @@ public class DssSigningEngine implements SigningEngine {
         }
     }
 
+    /**
+     * The {@link SinglePassSigner} counterpart of {@link #signWithContentSize}. The CMS length is known before anything
+     * is committed, so an undersized attempt grows the reservation to exactly that length (plus
+     * {@link #RETRY_MARGIN}) and signs again; for timestamped levels that fetches a fresh TSA token.
+     */
+    private void signSinglePass(SinglePassSigner signer, File inFile, StreamCacheCreateFunction streamCache,
+            PAdESSignatureParameters parameters, int initialContentSize, boolean retryOnUndersize, File outFile)
+            throws IOException {
+        int contentSize = initialContentSize;
+        for (int attempt = 0;; attempt++) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Single-pass signing attempt " + attempt + " reserving " + contentSize
+                        + " bytes for /Contents");
+            }
+            final int required = signer.sign(inFile, streamCache, parameters, contentSize, outFile);
+            if (required <= contentSize) {
+                return;
+            }
+            final int grown = required + RETRY_MARGIN;
+            if (!retryOnUndersize || attempt >= MAX_CONTENT_SIZE_RETRIES) {
+                logUndersizeGuidance(contentSize, required, retryOnUndersize);
+                throw new IOException("The signature needs " + required + " bytes but only " + contentSize
+                        + " bytes are reserved in /Contents");
+            }
+            LOGGER.info(RES.get("console.dss.contentSizeRetry", String.valueOf(contentSize), String.valueOf(grown)));
+            contentSize = grown;
+        }
+    }
+
     /**
      * Logs an actionable message when an undersized {@code /Contents} cannot be recovered, pointing the user at
      * the two knobs that control it: the automatic {@code engine.dss.retryOnUndersize} growth (when it is
@@ -566,7 +756,7 @@ public class DssSigningEngine implements SigningEngine {
 
     private static final Pattern HTTP_STATUS_CODE = Pattern.compile("HTTP status code\\s*:\\s*(\\d{3})");
 
-    private static String remoteHttpErrorHint(Throwable e) {
+    static String remoteHttpErrorHint(Throwable e) {
         for (Throwable t = e; t != null; t = t.getCause()) {
             final String msg = t.getMessage();
             if (msg != null) {
@@ -579,23 +769,35 @@ public class DssSigningEngine implements SigningEngine {
         return null;
     }
 
-    private OnlineTSPSource buildTspSource(BasicSignerOptions options, PAdESSignatureParameters parameters,
-            DigestAlgorithm digestAlgorithm, ProxyConfig proxyConfig) {
-        final String tsaUrl = options.getTsaUrl();
+    static TSPSource buildTspSource(BasicSignerOptions options, List<String> tsaUrls, ProxyConfig proxyConfig) {
         final TimestampDataLoader tsDataLoader = new TimestampDataLoader();
         tsDataLoader.setProxyConfig(proxyConfig);
-        if (options.getTsaServerAuthn() == ServerAuthentication.PASSWORD) {
-            final URI tsaUri = URI.create(tsaUrl);
-            tsDataLoader.addAuthentication(tsaUri.getHost(), resolvePort(tsaUri), null,
-                    StringUtils.defaultString(options.getTsaUser()),
-                    StringUtils.defaultString(options.getTsaPasswd()).toCharArray());
-        }
-        final OnlineTSPSource tspSource = new OnlineTSPSource(tsaUrl, tsDataLoader);
+        final DataLoader throttledLoader = new ThrottlingDataLoader(tsDataLoader);
         final String policyOid = options.getTsaPolicy();
         if (StringUtils.isNotEmpty(policyOid)) {
             LOGGER.info(RES.get("console.settingTsaPolicy", policyOid));
-            tspSource.setPolicyOid(policyOid);
         }
+        final Map<String, OnlineTSPSource> sources = new LinkedHashMap<>();
+        for (String tsaUrl : tsaUrls) {
+            if (options.getTsaServerAuthn() == ServerAuthentication.PASSWORD) {
+                final URI tsaUri = URI.create(tsaUrl);
+                tsDataLoader.addAuthentication(tsaUri.getHost(), resolvePort(tsaUri), null,
+                        StringUtils.defaultString(options.getTsaUser()),
+                        StringUtils.defaultString(options.getTsaPasswd()).toCharArray());
+            }
+            final OnlineTSPSource tspSource = new OnlineTSPSource(tsaUrl, throttledLoader);
+            if (StringUtils.isNotEmpty(policyOid)) {
+                tspSource.setPolicyOid(policyOid);
+            }
+            sources.put(tsaUrl, tspSource);
+        }
+        return new DispatchingTspSource(tsaUrls, sources, TsaDispatcher.fromConfig());
+    }
+
+    /**
+     * Sets the configured TSA hash algorithm on all timestamps the parameters can request.
+     */
+    static void setTsaDigestAlgorithm(BasicSignerOptions options, PAdESSignatureParameters parameters) {
         final String tsaHashAlg = options.getTsaHashAlgWithFallback();
         if (StringUtils.isNotEmpty(tsaHashAlg)) {
             LOGGER.info(RES.get("console.settingTsaHashAlg", tsaHashAlg));
@@ -604,7 +806,6 @@ public class DssSigningEngine implements SigningEngine {
             parameters.getSignatureTimestampParameters().setDigestAlgorithm(tsaDigest);
             parameters.getArchiveTimestampParameters().setDigestAlgorithm(tsaDigest);
         }
-        return tspSource;
     }
 
     /** Resolves the port for basic-auth registration, defaulting from the scheme when none is given. */
@@ -624,7 +825,7 @@ public class DssSigningEngine implements SigningEngine {
      *
      * @return the proxy configuration, or {@code null} for a direct connection
      */
-    private static ProxyConfig buildProxyConfig(BasicSignerOptions options) {
+    static ProxyConfig buildProxyConfig(BasicSignerOptions options) {
         if (!options.isAdvanced() || options.getProxyType() == Proxy.Type.DIRECT) {
             return null;
         }
@@ -644,6 +845,14 @@ public class DssSigningEngine implements SigningEngine {
         return proxyConfig;
     }
 
+    /**
+     * @return the proxy settings {@link #buildProxyConfig(BasicSignerOptions)} reads, as a cache key
+     */
+    static String proxyKey(BasicSignerOptions options) {
+        return options.isAdvanced() ? options.getProxyType() + "://" + options.getProxyHost() + ":"
+                + options.getProxyPort() : "DIRECT";
+    }
+
     private static ProxyProperties proxyProperties(String scheme, String host, int port) {
         final ProxyProperties props = new ProxyProperties();
         props.setScheme(scheme);
@@ -666,8 +875,8 @@ public class DssSigningEngine implements SigningEngine {
      *
      * @return the temp-file-backed cache function, or {@code null} to keep PDFBox's memory-only default
      */
-    private static StreamCacheCreateFunction streamCache(BufferingMode mode, File tempDir) {
-        if (mode != BufferingMode.TEMP) {
+    static StreamCacheCreateFunction streamCache(BufferingMode mode, File tempDir) {
+        if (!mode.isStaged()) {
             return null;
         }
         final MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(MIXED_THRESHOLD_BYTES);
@@ -677,37 +886,72 @@ public class DssSigningEngine implements SigningEngine {
         return setting.streamCache;
     }
 
-    private static PDDocument loadPdf(File file, StreamCacheCreateFunction streamCache) throws IOException {
+    static PDDocument loadPdf(File file, StreamCacheCreateFunction streamCache) throws IOException {
         return streamCache != null ? Loader.loadPDF(file, streamCache) : Loader.loadPDF(file);
     }
 
-    private File encryptPdf(File inFile, BasicSignerOptions options, StreamCacheCreateFunction streamCache,
-            File tempDir) throws Exception {
-        try (PDDocument doc = loadPdf(inFile, streamCache)) {
-            if (!doc.getSignatureDictionaries().isEmpty()) {
-                LOGGER.info(RES.get("console.dss.cannotEncryptSigned"));
-                return null;
-            }
-            final AccessPermission ap = buildAccessPermission(options);
-            final String encOwnerPwd = StringUtils.defaultString(options.getPdfOwnerPwdStrX());
-            final String encUserPwd = StringUtils.defaultString(options.getPdfUserPwdStr());
-            final StandardProtectionPolicy policy = new StandardProtectionPolicy(encOwnerPwd, encUserPwd, ap);
-            // 128-bit matches the OpenPDF engine's password encryption (PdfStamper.setEncryption(true, ...)
-            // i.e. STANDARD_ENCRYPTION_128), so switching engines is not an encryption-strength downgrade.
-            policy.setEncryptionKeyLength(128);
-            doc.protect(policy);
-
-            final File tempFile = File.createTempFile("jsignpdf-dss-enc-", ".pdf", tempDir);
-            try {
-                doc.save(tempFile);
-            } catch (Exception e) {
-                // Only the returned file reaches the caller's finally, so a failed save has to clean up
-                // after itself rather than leave a document-sized file behind.
-                tempFile.delete();
-                throw e;
-            }
-            return tempFile;
+    /**
+     * Opens an encrypted document with its password, otherwise as {@link #loadPdf(File, StreamCacheCreateFunction)}.
+     *
+     * @param password the owner (or user) password, {@code null} for a document which isn't encrypted
+     */
+    static PDDocument loadPdf(File file, char[] password, StreamCacheCreateFunction streamCache) throws IOException {
+        if (password == null) {
+            return loadPdf(file, streamCache);
+        }
+        final String pwd = new String(password);
+        return streamCache != null ? Loader.loadPDF(file, pwd, streamCache) : Loader.loadPDF(file, pwd);
+    }
+
+    /**
+     * Opens the revision of {@link #signAll} to sign - from its file when it is staged in one - or the input file.
+     */
+    private static PDDocument loadPdf(DSSDocument revision, File inFile, StreamCacheCreateFunction streamCache)
+            throws IOException {
+        if (revision == null) {
+            return loadPdf(inFile, streamCache);
+        }
+        return revision instanceof FileDocument ? loadPdf(((FileDocument) revision).getFile(), streamCache)
+                : Loader.loadPDF(DSSUtils.toByteArray(revision));
+    }
+
+    /**
+     * Reads where the visible signature goes from a document opened by {@link #loadPdf}; see
+     * {@link SignatureGeometry} for why this stays cheap on large documents.
+     */
+    private static SignatureGeometry readGeometry(PDDocument doc, BasicSignerOptions options) {
+        final String sigFieldName = options.getSigFieldNameX();
+        return sigFieldName != null ? SignatureGeometry.forField(doc, sigFieldName)
+                : SignatureGeometry.forPage(doc, options.getPage());
+    }
+
+    private File encryptPdf(PDDocument doc, BasicSignerOptions options, File tempDir) throws Exception {
+        if (!doc.getSignatureDictionaries().isEmpty()) {
+            LOGGER.info(RES.get("console.dss.cannotEncryptSigned"));
+            return null;
+        }
+        final AccessPermission ap = buildAccessPermission(options);
+        final String encOwnerPwd = StringUtils.defaultString(options.getPdfOwnerPwdStrX());
+        final String encUserPwd = StringUtils.defaultString(options.getPdfUserPwdStr());
+        final StandardProtectionPolicy policy = new StandardProtectionPolicy(encOwnerPwd, encUserPwd, ap);
+        // 128-bit matches the OpenPDF engine's password encryption (PdfStamper.setEncryption(true, ...)
+        // i.e. STANDARD_ENCRYPTION_128), so switching engines is not an encryption-strength downgrade.
+        policy.setEncryptionKeyLength(128);
+        doc.protect(policy);
+
+        final File tempFile = File.createTempFile("jsignpdf-dss-enc-", ".pdf", tempDir);
+        try {
+            // Every object has to be rewritten to encrypt it, but packing them into object streams (the PDFBox 3
+            // default) would also hold them in memory until each stream is full and compress them once more. Plain
+            // objects go out one by one, each stream encrypted while it is copied.
+            doc.save(tempFile, CompressParameters.NO_COMPRESSION);
+        } catch (Exception e) {
+            // Only the returned file reaches the caller's finally, so a failed save has to clean up
+            // after itself rather than leave a document-sized file behind.
+            tempFile.delete();
+            throw e;
         }
+        return tempFile;
     }
 
     private AccessPermission buildAccessPermission(BasicSignerOptions options) {
@@ -728,8 +972,7 @@ public class DssSigningEngine implements SigningEngine {
     }
 
     private void configureVisibleSignature(PAdESSignatureParameters parameters, BasicSignerOptions options,
-            Certificate[] chain, Calendar signingCal, File inFile, StreamCacheCreateFunction streamCache)
-            throws Exception {
+            Certificate[] chain, Calendar signingCal, SignatureGeometry geometry) throws Exception {
         final JSignPdfSignatureImageParameters imageParams = new JSignPdfSignatureImageParameters();
         final SignatureFieldParameters fieldParams = new SignatureFieldParameters();
         // Size of the box the appearance is drawn into, whatever its source - used for the text wrapping mode.
@@ -738,49 +981,25 @@ public class DssSigningEngine implements SigningEngine {
 
         final String sigFieldName = options.getSigFieldNameX();
         if (sigFieldName != null) {
-            final PDRectangle fieldRect;
-            final int fieldPage;
-            try (PDDocument pdDoc = loadPdf(inFile, streamCache)) {
-                final PDAnnotationWidget widget = findSignatureFieldWidget(pdDoc, sigFieldName);
-                fieldRect = widget.getRectangle();
-                fieldPage = pageNumberOf(pdDoc, widget);
-            }
+            final PDRectangle fieldRect = geometry.fieldRect();
             LOGGER.info(RES.get("console.sigField.placing", sigFieldName));
             fieldParams.setFieldId(sigFieldName);
             // No coordinates: DSS reads the appearance rectangle off the existing widget. The page is set so the
             // parameters describe the field actually being filled rather than their page-1 default - DSS passes
             // it to PDFBox' SignatureOptions, which only consults it when it has to create a widget itself, so
             // this does not change the output for a pre-existing field (verified in ExistingFieldSigningTest).
-            fieldParams.setPage(fieldPage);
+            fieldParams.setPage(geometry.page());
             boxWidth = fieldRect == null ? 0f : Math.abs(fieldRect.getWidth());
             boxHeight = fieldRect == null ? 0f : Math.abs(fieldRect.getHeight());
         } else {
-            int page = options.getPage();
-            float pageWidth;
-            float pageHeight;
-            try (PDDocument pdDoc = loadPdf(inFile, streamCache)) {
-                final int totalPages = pdDoc.getNumberOfPages();
-                if (page < 1 || page > totalPages) {
-                    page = totalPages;
-                }
-                final PDPage pdPage = pdDoc.getPage(page - 1);
-                final PDRectangle mediaBox = pdPage.getMediaBox();
-                final int rotation = pdPage.getRotation();
-                if (rotation == 90 || rotation == 270) {
-                    pageWidth = mediaBox.getHeight();
-                    pageHeight = mediaBox.getWidth();
-                } else {
-                    pageWidth = mediaBox.getWidth();
-                    pageHeight = mediaBox.getHeight();
-                }
-            }
-
+            final float pageWidth = geometry.pageWidth();
+            final float pageHeight = geometry.pageHeight();
             final float llx = fixPosition(options.getPositionLLX(), pageWidth);
             final float lly = fixPosition(options.getPositionLLY(), pageHeight);
             final float urx = fixPosition(options.getPositionURX(), pageWidth);
             final float ury = fixPosition(options.getPositionURY(), pageHeight);
 
-            fieldParams.setPage(page);
+            fieldParams.setPage(geometry.page());
             fieldParams.setOriginX(llx);
             // DSS uses a top-left origin (PDF uses bottom-left), so flip the Y coordinate.
             fieldParams.setOriginY(pageHeight - ury);
@@ -844,53 +1063,6 @@ public class DssSigningEngine implements SigningEngine {
         parameters.setImageParameters(imageParams);
     }
 
-    /**
-     * Returns the first widget of the named signature field. DSS itself resolves the field by id and rejects a
-     * missing, already signed or non-signature field, but it does so only while signing - and the widget is
-     * needed here to feed the field's page and box size into the parameters.
-     */
-    private PDAnnotationWidget findSignatureFieldWidget(PDDocument doc, String fieldName) throws Exception {
-        final PDAcroForm acroForm = doc.getDocumentCatalog().getAcroForm();
-        final PDField field = acroForm == null ? null : acroForm.getField(fieldName);
-        if (!(field instanceof PDSignatureField sigField)) {
-            throw new IllegalArgumentException(RES.get("console.sigField.notASignatureField", fieldName));
-        }
-        final List<PDAnnotationWidget> widgets = sigField.getWidgets();
-        if (widgets == null || widgets.isEmpty() || widgets.get(0) == null) {
-            throw new IllegalArgumentException(RES.get("console.sigField.noWidget", fieldName));
-        }
-        return widgets.get(0);
-    }
-
-    /**
-     * Returns the 1-based page number the widget sits on. {@code /P} is optional, so fall back to scanning the
-     * pages for the annotation.
-     */
-    private int pageNumberOf(PDDocument doc, PDAnnotationWidget widget) {
-        final PDPage widgetPage = widget.getPage();
-        int pageNumber = 1;
-        for (PDPage page : doc.getPages()) {
-            if (widgetPage != null) {
-                if (page.getCOSObject().equals(widgetPage.getCOSObject())) {
-                    return pageNumber;
-                }
-            } else {
-                try {
-                    for (PDAnnotation annotation : page.getAnnotations()) {
-                        if (annotation != null && annotation.getCOSObject().equals(widget.getCOSObject())) {
-                            return pageNumber;
-                        }
-                    }
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Unable to read annotations of page " + pageNumber, e);
-                }
-            }
-            pageNumber++;
-        }
-        LOGGER.log(Level.FINE, "Signature field widget not found on any page, assuming page 1");
-        return 1;
-    }
-
     private String buildSignatureText(BasicSignerOptions options, Certificate[] chain, Calendar signingCal) {
         final X509Certificate signerCert = (X509Certificate) chain[0];
         String signer = extractCN(signerCert);
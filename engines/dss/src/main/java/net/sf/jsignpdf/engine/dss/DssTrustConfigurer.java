@@ -9,10 +9,15 @@ import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
+import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.Constants;
 import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.revocation.RevocationBundle;
+import net.sf.jsignpdf.utils.AppConfig;
 import net.sf.jsignpdf.utils.ConfigLocationResolver;
 
 import org.apache.commons.lang3.StringUtils;
@@ -22,10 +27,10 @@ import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
 import eu.europa.esig.dss.service.crl.OnlineCRLSource;
 import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
 import eu.europa.esig.dss.service.http.commons.FileCacheDataLoader;
-import eu.europa.esig.dss.service.http.commons.OCSPDataLoader;
 import eu.europa.esig.dss.service.http.proxy.ProxyConfig;
 import eu.europa.esig.dss.service.ocsp.OnlineOCSPSource;
 import eu.europa.esig.dss.spi.DSSUtils;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
 import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
 import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
 import eu.europa.esig.dss.spi.x509.CertificateSource;
@@ -45,7 +50,8 @@ import eu.europa.esig.dss.tsl.source.LOTLSource;
  * <p>
  * B and T need no trust configuration, so the verifier returned for them is the bare
  * {@link CommonCertificateVerifier}. LT/LTA additionally need reachable revocation data; when
- * {@code engine.dss.online.enabled=true} the AIA / OCSP / CRL online sources are wired in.
+ * {@code engine.dss.online.enabled=true} the AIA / OCSP / CRL online sources are wired in; a configured
+ * {@code revocation.bundle} answers them first, and alone it is enough to build LT/LTA offline.
  * </p>
  *
  * @author Josef Cacek
@@ -53,6 +59,14 @@ import eu.europa.esig.dss.tsl.source.LOTLSource;
 final class DssTrustConfigurer {
 
     static final String KEY_ONLINE_ENABLED = "online.enabled";
+    /**
+     * Longest time (seconds) an AIA / CRL / OCSP response is reused by later signatures of the same process; see
+     * {@link CachingDataLoader}. {@code 0} turns the cache off.
+     */
+    static final String KEY_ONLINE_CACHE_MAX_AGE = "online.cacheMaxAge";
+
+    /** Default of {@link #KEY_ONLINE_CACHE_MAX_AGE}: one hour. */
+    private static final int DEFAULT_ONLINE_CACHE_MAX_AGE_SECONDS = 3600;
 
     // --- EU LOTL machinery (trust.eu.* sub-namespace) ---
     /** Enable the bundled European LOTL (with the bundled OJ keystore). */
@@ -133,6 +147,9 @@ final class DssTrustConfigurer {
      */
     private static final long TL_CACHE_EXPIRATION_MS = 24L * 60 * 60 * 1000;
 
+    /** Verifiers of {@link #sharedVerifier}, by {@link #cacheKey()} and proxy. */
+    private static final Map<String, CommonCertificateVerifier> SHARED_VERIFIERS = new ConcurrentHashMap<>();
+
     private final EngineConfig config;
 
     DssTrustConfigurer(EngineConfig config) {
@@ -146,6 +163,54 @@ final class DssTrustConfigurer {
         return config.getBoolean(KEY_ONLINE_ENABLED, false);
     }
 
+    /**
+     * @return {@code true} when LT/LTA can get revocation data - online, or from a configured revocation bundle
+     */
+    boolean hasRevocationSource() {
+        return isOnlineEnabled() || AppConfig.revocationBundle() != null;
+    }
+
+    /**
+     * @return a key which is equal for two configurations exactly when {@link #buildVerifier(ProxyConfig)} builds the
+     *         same verifier from them (the proxy aside), so a verifier can be shared by all documents of a batch
+     */
+    String cacheKey() {
+        final StringBuilder sb = new StringBuilder();
+        for (String key : List.of(KEY_ONLINE_ENABLED, KEY_ONLINE_CACHE_MAX_AGE, KEY_EU_ENABLED, KEY_EU_LOTL_URL,
+                KEY_EU_OJ_URL, KEY_EU_OJ_KEYSTORE_FILE, KEY_EU_OJ_KEYSTORE_PASSWORD, KEY_LOTL_URLS, KEY_LOTL_MRA_SUPPORT,
+                KEY_CERT_FILES, KEY_CERT_URLS, KEY_TRUSTSTORE_FILE, KEY_TRUSTSTORE_TYPE, KEY_TRUSTSTORE_PASSWORD,
+                KEY_SYSTEM_STORE, KEY_ALLOW_UNTRUSTED)) {
+            sb.append(key).append('=').append(config.getString(key, "")).append('\n');
+        }
+        return sb.append(AppConfig.revocationBundle()).toString();
+    }
+
+    /**
+     * Returns the verifier of this configuration and proxy, building it on the first call. The verifier is shared by
+     * all documents of the process - augmented or validated, also concurrently - so the truststores and trusted
+     * lists are loaded once per batch instead of once per document.
+     *
+     * @param options options providing the proxy settings
+     * @param proxyConfig the proxy configuration built from {@code options}
+     * @return the shared verifier
+     * @throws Exception see {@link #buildVerifier(ProxyConfig)}
+     */
+    CommonCertificateVerifier sharedVerifier(BasicSignerOptions options, ProxyConfig proxyConfig) throws Exception {
+        final String key = cacheKey() + '\n' + DssSigningEngine.proxyKey(options);
+        CommonCertificateVerifier verifier = SHARED_VERIFIERS.get(key);
+        if (verifier == null) {
+            synchronized (SHARED_VERIFIERS) {
+                verifier = SHARED_VERIFIERS.get(key);
+                if (verifier == null) {
+                    // not computeIfAbsent(): building may throw, and the LOTL must be downloaded only once
+                    verifier = buildVerifier(proxyConfig);
+                    SHARED_VERIFIERS.put(key, verifier);
+                }
+            }
+        }
+        return verifier;
+    }
+
     /**
      * Builds a verifier configured with the trusted certificate sources and (when online is enabled) the
      * AIA / OCSP / CRL online sources required to embed validation material for LT/LTA.
@@ -162,19 +227,32 @@ final class DssTrustConfigurer {
         if (trustedSources.length > 0) {
             verifier.setTrustedCertSources(trustedSources);
         }
-        if (isOnlineEnabled()) {
-            OCSPDataLoader ocspDataLoader = new OCSPDataLoader();
-            ocspDataLoader.setProxyConfig(proxyConfig);
-            CommonsDataLoader dataLoader = new CommonsDataLoader();
-            dataLoader.setProxyConfig(proxyConfig);
+        final RevocationBundle bundle = RevocationBundle.fromConfig();
+        if (isOnlineEnabled() || bundle != null) {
+            DataLoader aiaLoader = null;
+            DataLoader ocspLoader = null;
+            DataLoader crlLoader = null;
+            if (isOnlineEnabled()) {
+                // Process-wide loaders, so later signatures reuse the responses which are still fresh instead of
+                // downloading the same CA certificates, CRLs and OCSP responses again.
+                final long cacheMaxAgeMillis = Math.max(0,
+                        config.getInt(KEY_ONLINE_CACHE_MAX_AGE, DEFAULT_ONLINE_CACHE_MAX_AGE_SECONDS)) * 1000L;
+                aiaLoader = CachingDataLoader.shared(CachingDataLoader.ROLE_AIA, proxyConfig, cacheMaxAgeMillis);
+                ocspLoader = CachingDataLoader.shared(CachingDataLoader.ROLE_OCSP, proxyConfig, cacheMaxAgeMillis);
+                crlLoader = CachingDataLoader.shared(CachingDataLoader.ROLE_CRL, proxyConfig, cacheMaxAgeMillis);
+            }
+            // The revocation bundle (revocation.bundle) answers first; only what it lacks goes online.
+            aiaLoader = RevocationBundleDataLoader.wrap(bundle, aiaLoader);
+            ocspLoader = RevocationBundleDataLoader.wrap(bundle, ocspLoader);
+            crlLoader = RevocationBundleDataLoader.wrap(bundle, crlLoader);
             // The loaders and sources are wrapped for FINE-level tracing of every AIA / CRL / OCSP call
             // (issue #452); the wrappers are pass-through and are skipped entirely when FINE is off.
             verifier.setAIASource(LoggingAIASource.wrap(
-                    new DefaultAIASource(LoggingDataLoader.wrap("AIA", dataLoader))));
+                    new DefaultAIASource(LoggingDataLoader.wrap("AIA", aiaLoader))));
             verifier.setOcspSource(LoggingRevocationSource.wrap("OCSP",
-                    new OnlineOCSPSource(LoggingDataLoader.wrap("OCSP", ocspDataLoader))));
+                    new OnlineOCSPSource(LoggingDataLoader.wrap("OCSP", ocspLoader))));
             verifier.setCrlSource(LoggingRevocationSource.wrap("CRL",
-                    new OnlineCRLSource(LoggingDataLoader.wrap("CRL", dataLoader))));
+                    new OnlineCRLSource(LoggingDataLoader.wrap("CRL", crlLoader))));
         }
         if (config.getBoolean(KEY_ALLOW_UNTRUSTED, false)) {
             relaxTrustAndRevocationAlerts(verifier);
@@ -0,0 +1,73 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.engine.SignatureValidation;
+import net.sf.jsignpdf.engine.SignatureValidation.Indication;
+
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SubIndication;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.simplereport.SimpleReport;
+import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.validation.SignedDocumentValidator;
+
+/**
+ * Validates the signatures of a document ({@code --verify}) with the DSS {@link SignedDocumentValidator} against the
+ * trust configuration of the engine. The certificate verifier is the one shared with {@link DssAugmenter} (see
+ * {@link DssTrustConfigurer#sharedVerifier}), so the truststores and trusted lists are loaded once however many
+ * documents a batch validates.
+ *
+ * @author Josef Cacek
+ */
+final class DssValidator {
+
+    private DssValidator() {
+    }
+
+    static List<SignatureValidation> validate(File pdf, BasicSignerOptions options, EngineConfig engineConfig)
+            throws IOException {
+        final CommonCertificateVerifier verifier;
+        try {
+            verifier = new DssTrustConfigurer(engineConfig).sharedVerifier(options,
+                    DssSigningEngine.buildProxyConfig(options));
+        } catch (Exception e) {
+            throw new IOException(RES.get("console.dss.trustConfigFailed"), e);
+        }
+        final SignedDocumentValidator validator = SignedDocumentValidator.fromDocument(new FileDocument(pdf));
+        validator.setCertificateVerifier(verifier);
+        final SimpleReport report = validator.validateDocument().getSimpleReport();
+
+        final List<SignatureValidation> result = new ArrayList<>();
+        for (String id : report.getSignatureIdList()) {
+            final SubIndication subIndication = report.getSubIndication(id);
+            final SignatureLevel level = report.getSignatureFormat(id);
+            result.add(new SignatureValidation(id, report.getSignedBy(id), toIndication(report, id),
+                    subIndication != null ? subIndication.name() : null, level != null ? level.toString() : null));
+        }
+        return result;
+    }
+
+    private static Indication toIndication(SimpleReport report, String id) {
+        final eu.europa.esig.dss.enumerations.Indication indication = report.getIndication(id);
+        if (indication == null) {
+            return Indication.INDETERMINATE;
+        }
+        switch (indication) {
+            case TOTAL_PASSED:
+            case PASSED:
+                return Indication.PASSED;
+            case INDETERMINATE:
+                return Indication.INDETERMINATE;
+            default:
+                return Indication.FAILED;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.sf.jsignpdf.engine.dss;
+
+import java.util.List;
+
+import net.sf.jsignpdf.revocation.RevocationBundle;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+
+/**
+ * A {@link DataLoader} which answers DSS's AIA / CRL / OCSP requests from the configured {@link RevocationBundle}: a
+ * GET is looked up by its URL, an OCSP POST by the certificate it asks about. What the bundle has no current answer for
+ * goes to the delegate; without one (online fetching disabled) the request fails as if the server were unreachable, so
+ * LT / LTA can be built fully offline.
+ *
+ * @author Josef Cacek
+ */
+final class RevocationBundleDataLoader implements DataLoader {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RevocationBundle bundle;
+    private final DataLoader delegate;
+
+    RevocationBundleDataLoader(RevocationBundle bundle, DataLoader delegate) {
+        this.bundle = bundle;
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param bundle the revocation bundle, may be {@code null}
+     * @param delegate the online loader, {@code null} when online fetching is disabled
+     * @return the loader answering from the bundle, or {@code delegate} itself when there is no bundle
+     */
+    static DataLoader wrap(RevocationBundle bundle, DataLoader delegate) {
+        return bundle == null ? delegate : new RevocationBundleDataLoader(bundle, delegate);
+    }
+
+    @Override
+    public byte[] get(String url) {
+        final byte[] data = bundle.get(url);
+        if (data != null) {
+            return data;
+        }
+        return delegate().get(url);
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        for (String url : urlStrings) {
+            final byte[] data = bundle.get(url);
+            if (data != null) {
+                return new DataAndUrl(url, data);
+            }
+        }
+        return delegate().get(urlStrings);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        final byte[] data = bundle.ocspResponse(content);
+        if (data != null) {
+            return data;
+        }
+        return delegate().post(url, content);
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        if (delegate != null) {
+            delegate.setContentType(contentType);
+        }
+    }
+
+    private DataLoader delegate() {
+        if (delegate == null) {
+            throw new DSSException("Not in the revocation bundle and online fetching is disabled");
+        }
+        return delegate;
+    }
+}
@@ -0,0 +1,110 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+
+/**
+ * Where a visible signature goes: the 1-based page, the page size as displayed (rotation applied) and, when an
+ * existing signature field is filled, the field's widget rectangle.
+ *
+ * <p>
+ * The lookup touches only the page tree and the AcroForm. PDFBox parses objects on first access, so this costs the
+ * cross-reference table plus the handful of objects on the way to one page (or one field) rather than a full document
+ * parse. In particular the AcroForm is read without PDFBox's default fix-ups, which would otherwise scan the
+ * annotations of every page and build appearance streams for every field - the expensive part of the lookup on a large
+ * form.
+ * </p>
+ *
+ * @param page       1-based page number
+ * @param pageWidth  displayed page width (media box height for pages rotated by 90 or 270 degrees)
+ * @param pageHeight displayed page height
+ * @param fieldRect  the widget rectangle of the existing field, or {@code null} when signing into a new field (or the
+ *                   widget has no rectangle)
+ *
+ * @author Josef Cacek
+ */
+record SignatureGeometry(int page, float pageWidth, float pageHeight, PDRectangle fieldRect) {
+
+    /**
+     * Reads the geometry for a new signature field on the requested page. An out-of-range page is clamped to the last
+     * one, as the OpenPDF engine does.
+     */
+    static SignatureGeometry forPage(PDDocument doc, int requestedPage) {
+        final int totalPages = doc.getNumberOfPages();
+        final int page = requestedPage < 1 || requestedPage > totalPages ? totalPages : requestedPage;
+        final PDPage pdPage = doc.getPage(page - 1);
+        final PDRectangle mediaBox = pdPage.getMediaBox();
+        final int rotation = pdPage.getRotation();
+        if (rotation == 90 || rotation == 270) {
+            return new SignatureGeometry(page, mediaBox.getHeight(), mediaBox.getWidth(), null);
+        }
+        return new SignatureGeometry(page, mediaBox.getWidth(), mediaBox.getHeight(), null);
+    }
+
+    /**
+     * Reads the geometry of the first widget of the named signature field. DSS itself resolves the field by id and
+     * rejects a missing, already signed or non-signature field, but it does so only while signing - and the widget is
+     * needed beforehand to feed the field's page and box size into the parameters.
+     *
+     * @throws IllegalArgumentException when the field does not exist, is not a signature field or has no widget
+     */
+    static SignatureGeometry forField(PDDocument doc, String fieldName) {
+        // null: no fix-ups, see the class comment
+        final PDAcroForm acroForm = doc.getDocumentCatalog().getAcroForm(null);
+        final PDField field = acroForm == null ? null : acroForm.getField(fieldName);
+        if (!(field instanceof PDSignatureField sigField)) {
+            throw new IllegalArgumentException(RES.get("console.sigField.notASignatureField", fieldName));
+        }
+        final List<PDAnnotationWidget> widgets = sigField.getWidgets();
+        if (widgets == null || widgets.isEmpty() || widgets.get(0) == null) {
+            throw new IllegalArgumentException(RES.get("console.sigField.noWidget", fieldName));
+        }
+        final PDAnnotationWidget widget = widgets.get(0);
+        final int page = pageNumberOf(doc, widget);
+        final PDPage pdPage = doc.getPage(page - 1);
+        final PDRectangle mediaBox = pdPage.getMediaBox();
+        return new SignatureGeometry(page, mediaBox.getWidth(), mediaBox.getHeight(), widget.getRectangle());
+    }
+
+    /**
+     * Returns the 1-based page number the widget sits on. {@code /P} is optional, so fall back to scanning the pages
+     * for the annotation.
+     */
+    private static int pageNumberOf(PDDocument doc, PDAnnotationWidget widget) {
+        final PDPage widgetPage = widget.getPage();
+        int pageNumber = 1;
+        for (PDPage page : doc.getPages()) {
+            if (widgetPage != null) {
+                if (page.getCOSObject().equals(widgetPage.getCOSObject())) {
+                    return pageNumber;
+                }
+            } else {
+                try {
+                    for (PDAnnotation annotation : page.getAnnotations()) {
+                        if (annotation != null && annotation.getCOSObject().equals(widget.getCOSObject())) {
+                            return pageNumber;
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Unable to read annotations of page " + pageNumber, e);
+                }
+            }
+            pageNumber++;
+        }
+        LOGGER.log(Level.FINE, "Signature field widget not found on any page, assuming page 1");
+        return 1;
+    }
+}
@@ -0,0 +1,182 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.ExternalSigningSupport;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DSSMessageDigest;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.pades.PAdESSignatureParameters;
+import eu.europa.esig.dss.pades.signature.ExternalCMSService;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.AtomicOutputFile;
+import net.sf.jsignpdf.verify.ByteRangeVerifier;
+import net.sf.jsignpdf.verify.SignatureCheckingOutputStream;
+
+/**
+ * Signs in a single staging pass. {@code PAdESService} builds the prepared revision twice per signature - once in
+ * {@code getDataToSign()} to digest it and once more in {@code signDocument()} to embed the CMS - and with temp-file
+ * buffering each build is a document-sized file. Here PDFBox writes the incremental update with its placeholder
+ * {@code /Contents} straight into the output once, the byte ranges are digested from that, DSS's
+ * {@link ExternalCMSService} builds the PAdES CMS for the digest, and PDFBox patches it into the reserved range in
+ * place (the same split as OpenPDF's {@code preClose}/{@code close}).
+ *
+ * <p>
+ * Only the shapes DSS's PDF layer adds nothing to are handled: invisible signatures into a new field, without
+ * certification, at level B or T (the CMS of a T signature carries the timestamp; LT/LTA need DSS's document
+ * extension). {@link #supports} tells the engine when to fall back to the regular path. An encrypted input is opened
+ * with the password of the parameters and the update is encrypted with its key, as DSS does it; the signature's
+ * {@code /Contents} stays unencrypted.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class SinglePassSigner {
+
+    private final ExternalCMSService cmsService;
+    private final PrivateKeySignatureToken token;
+    private final DigestAlgorithm digestAlgorithm;
+    private String outputSha256;
+
+    SinglePassSigner(ExternalCMSService cmsService, PrivateKeySignatureToken token, DigestAlgorithm digestAlgorithm) {
+        this.cmsService = cmsService;
+        this.token = token;
+        this.digestAlgorithm = digestAlgorithm;
+    }
+
+    /**
+     * @param visible whether a visible signature (or an existing field) was requested
+     * @return {@code true} when the signature can be created by this signer
+     */
+    static boolean supports(PAdESSignatureParameters parameters, boolean visible) {
+        final SignatureLevel level = parameters.getSignatureLevel();
+        return !visible && parameters.getPermission() == null
+                && (level == SignatureLevel.PAdES_BASELINE_B || level == SignatureLevel.PAdES_BASELINE_T);
+    }
+
+    /**
+     * Makes one signing attempt with {@code contentSize} bytes reserved for the CMS. The output is committed only when
+     * the CMS fits; otherwise nothing is written and the caller may retry with the returned length.
+     *
+     * @param inFile the input PDF, opened with the password protection of the parameters when it is set
+     * @param streamCache PDFBox stream cache, {@code null} for the memory-only default
+     * @param parameters signing parameters (signing date, reason, location, contact, level)
+     * @param contentSize bytes reserved for the CMS
+     * @param outFile the output PDF
+     * @return the length of the produced CMS; it was embedded when it is not larger than {@code contentSize}
+     * @throws IOException when the input can't be read or the output can't be written
+     */
+    int sign(File inFile, StreamCacheCreateFunction streamCache, PAdESSignatureParameters parameters, int contentSize,
+            File outFile) throws IOException {
+        try (PDDocument doc = DssSigningEngine.loadPdf(inFile, parameters.getPasswordProtection(), streamCache);
+                SignatureOptions signatureOptions = new SignatureOptions();
+                AtomicOutputFile out = AtomicOutputFile.create(outFile, inFile.length())) {
+            final PDSignature signature = new PDSignature();
+            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+            signature.setSubFilter(PDSignature.SUBFILTER_ETSI_CADES_DETACHED);
+            final Calendar signDate = Calendar.getInstance();
+            signDate.setTime(parameters.bLevel().getSigningDate());
+            signature.setSignDate(signDate);
+            if (StringUtils.isNotEmpty(parameters.getReason())) {
+                signature.setReason(parameters.getReason());
+            }
+            if (StringUtils.isNotEmpty(parameters.getLocation())) {
+                signature.setLocation(parameters.getLocation());
+            }
+            if (StringUtils.isNotEmpty(parameters.getContactInfo())) {
+                signature.setContactInfo(parameters.getContactInfo());
+            }
+            signatureOptions.setPreferredSignatureSize(contentSize);
+            doc.addSignature(signature, signatureOptions);
+
+            // PDFBox writes the update to this stream in setSignature(), after the byte range is known
+            final SignatureCheckingOutputStream selfCheck = AppConfig.outputSelfCheck()
+                    ? new SignatureCheckingOutputStream(out.stream()) : null;
+            final ExternalSigningSupport externalSigning = doc.saveIncrementalForExternalSigning(
+                    selfCheck != null ? selfCheck : out.stream());
+            final byte[] rangeDigest = digest(externalSigning.getContent());
+            final DSSMessageDigest messageDigest = new DSSMessageDigest(digestAlgorithm, rangeDigest);
+            final ToBeSigned dataToSign = cmsService.getDataToSign(messageDigest, parameters);
+            final SignatureValue signatureValue = token.sign(dataToSign, digestAlgorithm, null);
+            final DSSDocument cms = cmsService.signMessageDigest(messageDigest, parameters, signatureValue);
+            final byte[] cmsBytes;
+            try (InputStream is = cms.openStream()) {
+                cmsBytes = is.readAllBytes();
+            }
+            if (cmsBytes.length > contentSize) {
+                // not committed: closing the output discards the incomplete file
+                return cmsBytes.length;
+            }
+            if (selfCheck != null) {
+                armSelfCheck(selfCheck, signature.getByteRange(), rangeDigest);
+            }
+            externalSigning.setSignature(cmsBytes);
+            if (selfCheck != null) {
+                final ByteRangeVerifier.Result check = selfCheck.check(signature.getSubFilter());
+                if (!check.passed()) {
+                    // not committed: closing the output discards the file
+                    throw new IOException(RES.get("console.selfCheck.failed", outFile.getPath(), check.problem()));
+                }
+                LOGGER.info(RES.get("console.selfCheck.passed"));
+            }
+            out.commit();
+            outputSha256 = out.sha256();
+            return cmsBytes.length;
+        }
+    }
+
+    /**
+     * @return the SHA-256 digest of the output committed by {@link #sign}, {@code null} when none was committed
+     */
+    String outputSha256() {
+        return outputSha256;
+    }
+
+    private void armSelfCheck(SignatureCheckingOutputStream selfCheck, int[] byteRange, byte[] signedDigest)
+            throws IOException {
+        final long[] range = new long[byteRange.length];
+        for (int i = 0; i < byteRange.length; i++) {
+            range[i] = byteRange[i];
+        }
+        try {
+            selfCheck.expect(range, digestAlgorithm.getJavaName(), signedDigest);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private byte[] digest(InputStream content) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(digestAlgorithm.getJavaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = content) {
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                md.update(buffer, 0, n);
+            }
+        }
+        return md.digest();
+    }
+}
@@ -0,0 +1,131 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.HostThrottle;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+
+/**
+ * A {@link DataLoader} decorator which applies the process-wide per-host limits of {@link HostThrottle} (concurrency
+ * cap and token bucket, shared with the OpenPDF engine) to DSS's TSA / AIA / CRL / OCSP traffic, and retries a
+ * request the server throttled (HTTP 429 / 503) with a jittered exponential backoff. DSS's loaders report the status
+ * only in the exception message and don't expose the response headers, so {@code Retry-After} can't be honoured
+ * here.
+ *
+ * @author Josef Cacek
+ */
+final class ThrottlingDataLoader implements DataLoader {
+
+    private static final long serialVersionUID = 1L;
+
+    /** How DSS's {@code CommonsDataLoader} reports the HTTP status of a failed call. */
+    private static final Pattern HTTP_STATUS_CODE = Pattern.compile("HTTP status code\\s*:\\s*(\\d{3})");
+
+    private final DataLoader delegate;
+
+    ThrottlingDataLoader(DataLoader delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] get(String url) {
+        return call(url, () -> delegate.get(url));
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        // as DSS does: the first URL which answers with data wins
+        RuntimeException failure = null;
+        for (String url : urlStrings) {
+            try {
+                final byte[] data = get(url);
+                if (data != null && data.length > 0) {
+                    return new DataAndUrl(url, data);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new DSSException("No data received from " + urlStrings);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        return call(url, () -> delegate.post(url, content));
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        delegate.setContentType(contentType);
+    }
+
+    private byte[] call(String url, Supplier<byte[]> request) {
+        final HostThrottle throttle = HostThrottle.forUrl(url);
+        final int retries = AppConfig.httpRetries();
+        for (int attempt = 0;; attempt++) {
+            try {
+                throttle.acquire(TimeUnit.SECONDS.toMillis(AppConfig.httpRequestTimeout()));
+            } catch (IOException e) {
+                throw new DSSException(e.getMessage(), e);
+            }
+            final int status;
+            try {
+                return request.get();
+            } catch (RuntimeException e) {
+                status = httpStatusOf(e);
+                if (!HostThrottle.isRetryable(status) || attempt >= retries) {
+                    throw e;
+                }
+            } finally {
+                throttle.release();
+            }
+            final long delay = HostThrottle.retryDelayMillis(attempt, null);
+            LOGGER.info(RES.get("console.http.throttled", hostOf(url), String.valueOf(status), String.valueOf(delay)));
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DSSException("Interrupted while waiting to retry " + url, e);
+            }
+        }
+    }
+
+    /**
+     * @return the HTTP status DSS reported in the exception (or one of its causes), {@code -1} when there is none
+     */
+    static int httpStatusOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            final String msg = t.getMessage();
+            if (msg != null) {
+                final Matcher m = HTTP_STATUS_CODE.matcher(msg);
+                if (m.find()) {
+                    return Integer.parseInt(m.group(1));
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return URI.create(url.trim()).getHost();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
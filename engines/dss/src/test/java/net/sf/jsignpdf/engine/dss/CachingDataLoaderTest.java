@@ -0,0 +1,141 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+
+/**
+ * Tests the freshness rules of {@link CachingDataLoader}: a response is reused until its own validity ends or the
+ * configured maximum age passes, and responses which say nothing about their freshness are fetched every time.
+ */
+public class CachingDataLoaderTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static KeyPair keyPair;
+    private static ContentSigner signer;
+
+    @BeforeClass
+    public static void createSigner() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        keyPair = kpg.generateKeyPair();
+        signer = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+    }
+
+    @Test
+    public void freshCrlIsServedFromTheCache() throws Exception {
+        CountingLoader delegate = new CountingLoader(crl(new Date(System.currentTimeMillis() + HOUR)));
+        CachingDataLoader loader = new CachingDataLoader(CachingDataLoader.ROLE_CRL, delegate, HOUR);
+        byte[] first = loader.get("http://crl.example/ca.crl");
+        assertArrayEquals(first, loader.get("http://crl.example/ca.crl"));
+        assertArrayEquals(first, loader.get(List.of("http://other.example/ca.crl", "http://crl.example/ca.crl"))
+                .getData());
+        assertEquals(1, delegate.calls);
+    }
+
+    @Test
+    public void expiredOrUndatedCrlIsFetchedAgain() throws Exception {
+        CountingLoader expired = new CountingLoader(crl(new Date(System.currentTimeMillis() - HOUR)));
+        CachingDataLoader loader = new CachingDataLoader(CachingDataLoader.ROLE_CRL, expired, HOUR);
+        loader.get("http://crl.example/ca.crl");
+        loader.get("http://crl.example/ca.crl");
+        assertEquals(2, expired.calls);
+
+        CountingLoader undated = new CountingLoader(crl(null));
+        loader = new CachingDataLoader(CachingDataLoader.ROLE_CRL, undated, HOUR);
+        loader.get("http://crl.example/ca.crl");
+        loader.get("http://crl.example/ca.crl");
+        assertEquals(2, undated.calls);
+    }
+
+    @Test
+    public void zeroMaxAgeDisablesTheCache() throws Exception {
+        CountingLoader delegate = new CountingLoader(crl(new Date(System.currentTimeMillis() + HOUR)));
+        CachingDataLoader loader = new CachingDataLoader(CachingDataLoader.ROLE_CRL, delegate, 0L);
+        loader.get("http://crl.example/ca.crl");
+        loader.get("http://crl.example/ca.crl");
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    public void aiaCertificateIsCachedAndGarbageIsNot() throws Exception {
+        CountingLoader delegate = new CountingLoader(certificate());
+        CachingDataLoader loader = new CachingDataLoader(CachingDataLoader.ROLE_AIA, delegate, HOUR);
+        loader.get("http://aia.example/ca.cer");
+        loader.get("http://aia.example/ca.cer");
+        assertEquals(1, delegate.calls);
+
+        CountingLoader garbage = new CountingLoader(new byte[] { 1, 2, 3 });
+        loader = new CachingDataLoader(CachingDataLoader.ROLE_OCSP, garbage, HOUR);
+        loader.post("http://ocsp.example", new byte[] { 4 });
+        loader.post("http://ocsp.example", new byte[] { 4 });
+        assertEquals(2, garbage.calls);
+    }
+
+    private static byte[] crl(Date nextUpdate) throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(new X500Name("CN=Test CA"),
+                new Date(System.currentTimeMillis() - 2 * HOUR));
+        if (nextUpdate != null) {
+            builder.setNextUpdate(nextUpdate);
+        }
+        return builder.build(signer).getEncoded();
+    }
+
+    private static byte[] certificate() throws Exception {
+        long now = System.currentTimeMillis();
+        return new JcaX509v3CertificateBuilder(new X500Name("CN=Test CA"), BigInteger.ONE, new Date(now - HOUR),
+                new Date(now + 24 * HOUR), new X500Name("CN=Test CA"), keyPair.getPublic()).build(signer)
+                .getEncoded();
+    }
+
+    /** Returns the same response for every request and counts the requests. */
+    private static final class CountingLoader implements DataLoader {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] response;
+        int calls;
+
+        CountingLoader(byte[] response) {
+            this.response = response;
+        }
+
+        @Override
+        public byte[] get(String url) {
+            calls++;
+            return response;
+        }
+
+        @Override
+        public DataAndUrl get(List<String> urlStrings) {
+            calls++;
+            return new DataAndUrl(urlStrings.get(0), response);
+        }
+
+        @Override
+        public byte[] post(String url, byte[] content) {
+            calls++;
+            return response;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+        }
+    }
+}
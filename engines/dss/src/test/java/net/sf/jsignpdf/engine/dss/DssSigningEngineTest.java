@@ -2,6 +2,7 @@ package net.sf.jsignpdf.engine.dss;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.Color;
@@ -9,6 +10,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.security.KeyStore;
 import java.security.Security;
@@ -21,8 +23,14 @@ import javax.imageio.ImageIO;
 import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.engine.Capability;
 import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.engine.SignatureValidation;
+import net.sf.jsignpdf.types.BufferingMode;
 import net.sf.jsignpdf.types.PDFEncryption;
 import net.sf.jsignpdf.types.PadesLevel;
+import net.sf.jsignpdf.utils.AdvancedConfig;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.PropertyStoreFactory;
+import net.sf.jsignpdf.verify.ByteRangeVerifier;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -34,6 +42,7 @@ import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.AfterClass;
@@ -203,6 +212,46 @@ public class DssSigningEngineTest {
         assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_B);
     }
 
+    @Test
+    public void singleStagingProducesBaselineB() throws Exception {
+        BasicSignerOptions o = baseOptions();
+        o.setReason("single pass");
+        Map<String, String> cfg = new HashMap<>();
+        cfg.put(DssSigningEngine.KEY_SINGLE_STAGING, "true");
+        assertTrue(new DssSigningEngine().sign(o, new MapEngineConfig(cfg)));
+        assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_B);
+        try (PDDocument doc = Loader.loadPDF(outputFile)) {
+            assertEquals("single pass", doc.getSignatureDictionaries().get(0).getReason());
+        }
+    }
+
+    @Test
+    public void singleStagingWithTsaProducesT() throws Exception {
+        BasicSignerOptions o = baseOptions();
+        useEmbeddedTsa(o);
+        Map<String, String> cfg = new HashMap<>();
+        cfg.put(DssSigningEngine.KEY_SINGLE_STAGING, "true");
+        assertTrue(new DssSigningEngine().sign(o, new MapEngineConfig(cfg)));
+        assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_T);
+    }
+
+    @Test
+    public void singleStagingRecoversUndersizeViaRetry() throws Exception {
+        BasicSignerOptions o = baseOptions();
+        Map<String, String> cfg = new HashMap<>();
+        cfg.put(DssSigningEngine.KEY_SINGLE_STAGING, "true");
+        cfg.put(DssSigningEngine.KEY_CONTENT_SIZE, "100");
+        assertTrue("undersize must be recovered by the retry",
+                new DssSigningEngine().sign(o, new MapEngineConfig(cfg)));
+        assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_B);
+
+        cfg.put(DssSigningEngine.KEY_RETRY_ON_UNDERSIZE, "false");
+        outputFile.delete();
+        assertFalse("undersize must fail when the retry is disabled",
+                new DssSigningEngine().sign(o, new MapEngineConfig(cfg)));
+        assertFalse("no partial output may be left behind", outputFile.exists());
+    }
+
     @Test
     public void baselineBWithTsaUpgradesToT() throws Exception {
         BasicSignerOptions o = baseOptions(); // padesLevel == null -> BASELINE_B, auto-upgraded to T by the TSA
@@ -223,7 +272,7 @@ public class DssSigningEngineTest {
     @Test
     public void inPlaceSigningProducesValidFile() throws Exception {
         BasicSignerOptions o = baseOptions();
-        // -o == input: DSS reads the source lazily and writes to a FileOutputStream on the same path.
+        // -o == input: DSS reads the source lazily while the output goes to a sibling temp file renamed over it.
         // Confirm signing in place still yields a valid, single-signature PAdES file.
         o.setOutFile(inputFile.getAbsolutePath());
         assertTrue("in-place signing must succeed", new DssSigningEngine().sign(o, EMPTY_CONFIG));
@@ -251,6 +300,96 @@ public class DssSigningEngineTest {
         }
     }
 
+    @Test
+    public void encryptedDocumentIsSignedInOnePass() throws Exception {
+        BasicSignerOptions o = baseOptions();
+        // The encrypted temp takes the single staging pass without engine.dss.singleStaging: the update is
+        // encrypted with the temp's key, only /Contents stays in the clear, and the range digest must match.
+        o.setPdfEncryption(PDFEncryption.PASSWORD);
+        o.setPdfOwnerPwd("ownerpass");
+        o.setPdfUserPwd("userpass");
+        o.setReason("encrypted");
+        assertTrue(new DssSigningEngine().sign(o, EMPTY_CONFIG));
+
+        try (PDDocument doc = Loader.loadPDF(outputFile, "ownerpass");
+                FileChannel channel = FileChannel.open(outputFile.toPath())) {
+            assertTrue("output must be encrypted", doc.isEncrypted());
+            final PDSignature signature = doc.getSignatureDictionaries().get(0);
+            assertEquals("encrypted", signature.getReason());
+            final int[] range = signature.getByteRange();
+            final long[] byteRange = new long[range.length];
+            for (int i = 0; i < range.length; i++) {
+                byteRange[i] = range[i];
+            }
+            assertTrue("the signature must cover the encrypted document", ByteRangeVerifier
+                    .verify(channel, byteRange, signature.getContents(), signature.getSubFilter(), true).passed());
+        }
+    }
+
+    @Test
+    public void encryptedDocumentIsSignedIntoExistingField() throws Exception {
+        // the field is looked up before the temp is encrypted - saving encrypts the /T strings in place
+        final File withField = tmp.newFile("with-field.pdf");
+        try (PDDocument doc = Loader.loadPDF(inputFile)) {
+            PDAcroForm acroForm = new PDAcroForm(doc);
+            doc.getDocumentCatalog().setAcroForm(acroForm);
+            PDSignatureField sigField = new PDSignatureField(acroForm);
+            sigField.setPartialName("approval");
+            PDAnnotationWidget widget = sigField.getWidgets().get(0);
+            widget.setRectangle(new PDRectangle(50, 60, 200, 80));
+            widget.setPage(doc.getPage(0));
+            doc.getPage(0).getAnnotations().add(widget);
+            acroForm.getFields().add(sigField);
+            doc.save(withField);
+        }
+        BasicSignerOptions o = baseOptions();
+        o.setInFile(withField.getAbsolutePath());
+        o.setPdfEncryption(PDFEncryption.PASSWORD);
+        o.setPdfOwnerPwd("ownerpass");
+        o.setPdfUserPwd("userpass");
+        o.setVisible(true);
+        o.setSigFieldName("approval");
+        assertTrue(new DssSigningEngine().sign(o, EMPTY_CONFIG));
+
+        try (PDDocument doc = Loader.loadPDF(outputFile, "ownerpass")) {
+            assertTrue("output must be encrypted", doc.isEncrypted());
+            List<PDSignatureField> fields = doc.getSignatureFields();
+            assertEquals("the existing field is signed, no new one is added", 1, fields.size());
+            assertEquals("approval", fields.get(0).getPartialName());
+            assertTrue("the field must carry the signature", fields.get(0).getSignature() != null);
+            PDRectangle rect = fields.get(0).getWidgets().get(0).getRectangle();
+            assertEquals(200f, rect.getWidth(), 1f);
+            assertEquals(80f, rect.getHeight(), 1f);
+        }
+    }
+
+    @Test
+    public void stagedRevisionsOfSeveralSignaturesAreFiles() throws Exception {
+        final File stagingDir = tmp.newFolder("staging");
+        final AdvancedConfig cfg = PropertyStoreFactory.getInstance().advancedConfig();
+        cfg.setProperty(AppConfig.KEY_BUFFERING_TEMP_DIR, stagingDir.getAbsolutePath());
+        try {
+            BasicSignerOptions first = baseOptions();
+            first.setBufferingMode(BufferingMode.TEMP);
+            first.setReason("first");
+            BasicSignerOptions second = baseOptions();
+            second.setBufferingMode(BufferingMode.TEMP);
+            second.setAppend(true);
+            second.setReason("second");
+            assertTrue(new DssSigningEngine().signAll(List.of(first, second), EMPTY_CONFIG));
+            assertEquals("the staged revision is deleted", 0, stagingDir.list().length);
+        } finally {
+            cfg.removeProperty(AppConfig.KEY_BUFFERING_TEMP_DIR);
+        }
+
+        try (PDDocument doc = Loader.loadPDF(outputFile)) {
+            List<PDSignature> signatures = doc.getSignatureDictionaries();
+            assertEquals(2, signatures.size());
+            assertEquals("first", signatures.get(0).getReason());
+            assertEquals("second", signatures.get(1).getReason());
+        }
+    }
+
     @Test
     public void visibleSignatureIsPlacedOnRequestedPage() throws Exception {
         BasicSignerOptions o = baseOptions();
@@ -326,6 +465,69 @@ public class DssSigningEngineTest {
         assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_LTA);
     }
 
+    @Test
+    public void augmentExtendsBaselineBToLt() throws Exception {
+        BasicSignerOptions o = caSignerOptions(PadesLevel.BASELINE_B);
+        o.setTimestamp(false);
+        assertTrue(new DssSigningEngine().sign(o, EMPTY_CONFIG));
+        assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_B);
+
+        // no key options: augmenting reads the signatures from the document
+        File augmented = new File(tmp.getRoot(), "augmented.pdf");
+        BasicSignerOptions a = new BasicSignerOptions();
+        a.setInFile(outputFile.getAbsolutePath());
+        a.setOutFile(augmented.getAbsolutePath());
+        a.setPadesLevel(PadesLevel.BASELINE_LT);
+        useEmbeddedTsa(a);
+        assertTrue("augmenting a B signature to LT must succeed", new DssSigningEngine().augment(a, caTrustConfig()));
+        assertSignatureLevel(augmented, SignatureLevel.PAdES_BASELINE_LT);
+    }
+
+    @Test
+    public void validateReportsEverySignature() throws Exception {
+        BasicSignerOptions o = caSignerOptions(PadesLevel.BASELINE_B);
+        o.setTimestamp(false);
+        assertTrue(new DssSigningEngine().sign(o, EMPTY_CONFIG));
+        List<SignatureValidation> validations = new DssSigningEngine().validate(outputFile, new BasicSignerOptions(),
+                caTrustConfig());
+        assertEquals(1, validations.size());
+        SignatureValidation validation = validations.get(0);
+        assertEquals(SignatureLevel.PAdES_BASELINE_B.toString(), validation.level());
+        assertNotEquals("an untouched signature must not fail", SignatureValidation.Indication.FAILED,
+                validation.indication());
+    }
+
+    @Test
+    public void augmentWithoutTsaFails() throws Exception {
+        assertTrue(new DssSigningEngine().sign(baseOptions(), EMPTY_CONFIG));
+        BasicSignerOptions a = new BasicSignerOptions();
+        a.setInFile(outputFile.getAbsolutePath());
+        a.setOutFile(new File(tmp.getRoot(), "augmented.pdf").getAbsolutePath());
+        a.setPadesLevel(PadesLevel.BASELINE_T);
+        assertFalse("augmenting needs a TSA", new DssSigningEngine().augment(a, EMPTY_CONFIG));
+    }
+
+    @Test
+    public void augmentWithSeparatorOnlyTsaUrlFails() throws Exception {
+        assertTrue(new DssSigningEngine().sign(baseOptions(), EMPTY_CONFIG));
+        BasicSignerOptions a = new BasicSignerOptions();
+        a.setInFile(outputFile.getAbsolutePath());
+        a.setOutFile(new File(tmp.getRoot(), "augmented.pdf").getAbsolutePath());
+        a.setPadesLevel(PadesLevel.BASELINE_T);
+        a.setTimestamp(true);
+        a.setTsaUrl(" , ");
+        assertFalse("a blank TSA URL is no TSA", new DssSigningEngine().augment(a, EMPTY_CONFIG));
+    }
+
+    @Test
+    public void separatorOnlyTsaUrlSignsWithoutTimestamp() throws Exception {
+        BasicSignerOptions o = baseOptions();
+        o.setTimestamp(true);
+        o.setTsaUrl(" , ");
+        assertTrue("signing should succeed", new DssSigningEngine().sign(o, EMPTY_CONFIG));
+        assertSignatureLevel(outputFile, SignatureLevel.PAdES_BASELINE_B);
+    }
+
     @Test
     public void untrustedSignerChainReportsCertificateIdentity() throws Exception {
         BasicSignerOptions o = caSignerOptions(PadesLevel.BASELINE_LT);
@@ -550,6 +752,9 @@ public class DssSigningEngineTest {
         assertEquals("dss", engine.id());
         assertTrue(engine.capabilities().contains(Capability.PADES_BASELINE_B));
         assertTrue(engine.capabilities().contains(Capability.PADES_BASELINE_LTA));
+        assertTrue(engine.capabilities().contains(Capability.AUGMENT_SIGNATURES));
+        assertTrue(engine.capabilities().contains(Capability.VALIDATE_SIGNATURES));
+        assertTrue(engine.capabilities().contains(Capability.MULTI_SIGNATURE));
         assertFalse("DSS must not declare the legacy Adobe subfilter",
                 engine.capabilities().contains(Capability.SUBFILTER_ADBE_PKCS7_DETACHED));
         assertFalse("PAdES disallows SHA-1", engine.capabilities().contains(Capability.HASH_SHA1));
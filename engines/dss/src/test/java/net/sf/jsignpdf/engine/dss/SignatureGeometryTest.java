@@ -0,0 +1,99 @@
+package net.sf.jsignpdf.engine.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the visible-signature geometry lookup: rotated pages swap the displayed size, an out-of-range page is
+ * clamped, and a widget without {@code /P} is still found on its page.
+ */
+public class SignatureGeometryTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File pdf;
+
+    @Before
+    public void createPdf() throws Exception {
+        pdf = tmp.newFile("geometry.pdf");
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage(PDRectangle.A4));
+            PDPage rotated = new PDPage(PDRectangle.A4);
+            rotated.setRotation(90);
+            doc.addPage(rotated);
+
+            PDAcroForm acroForm = new PDAcroForm(doc);
+            doc.getDocumentCatalog().setAcroForm(acroForm);
+            PDSignatureField sigField = new PDSignatureField(acroForm);
+            sigField.setPartialName("sig1");
+            PDAnnotationWidget widget = sigField.getWidgets().get(0);
+            widget.setRectangle(new PDRectangle(50, 60, 200, 80));
+            // no widget.setPage(...): /P is optional and the lookup has to scan the page annotations
+            rotated.getAnnotations().add(widget);
+            PDTextField textField = new PDTextField(acroForm);
+            textField.setPartialName("text1");
+            acroForm.setFields(List.<PDField> of(sigField, textField));
+            doc.save(pdf);
+        }
+    }
+
+    @Test
+    public void testPageGeometry() throws Exception {
+        try (PDDocument doc = Loader.loadPDF(pdf)) {
+            SignatureGeometry first = SignatureGeometry.forPage(doc, 1);
+            assertEquals(1, first.page());
+            assertEquals(PDRectangle.A4.getWidth(), first.pageWidth(), 0.01f);
+            assertEquals(PDRectangle.A4.getHeight(), first.pageHeight(), 0.01f);
+            assertNull(first.fieldRect());
+
+            SignatureGeometry rotated = SignatureGeometry.forPage(doc, 2);
+            assertEquals("rotated page is displayed landscape", PDRectangle.A4.getHeight(), rotated.pageWidth(), 0.01f);
+            assertEquals(PDRectangle.A4.getWidth(), rotated.pageHeight(), 0.01f);
+
+            assertEquals("out-of-range page is clamped to the last one", 2, SignatureGeometry.forPage(doc, 99).page());
+            assertEquals(2, SignatureGeometry.forPage(doc, 0).page());
+        }
+    }
+
+    @Test
+    public void testFieldGeometry() throws Exception {
+        try (PDDocument doc = Loader.loadPDF(pdf)) {
+            SignatureGeometry geometry = SignatureGeometry.forField(doc, "sig1");
+            assertEquals(2, geometry.page());
+            assertEquals(200f, geometry.fieldRect().getWidth(), 0.01f);
+            assertEquals(80f, geometry.fieldRect().getHeight(), 0.01f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotASignatureField() throws Exception {
+        try (PDDocument doc = Loader.loadPDF(pdf)) {
+            SignatureGeometry.forField(doc, "text1");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingField() throws Exception {
+        try (PDDocument doc = Loader.loadPDF(pdf)) {
+            SignatureGeometry.forField(doc, "nope");
+        }
+    }
+}
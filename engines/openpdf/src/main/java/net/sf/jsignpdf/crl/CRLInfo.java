@@ -3,6 +3,7 @@ package net.sf.jsignpdf.crl;
 import static net.sf.jsignpdf.Constants.RES;
 import static net.sf.jsignpdf.Constants.LOGGER;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -10,6 +11,7 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.GeneralSecurityException;
 import java.security.cert.CRL;
 import java.security.cert.CRLException;
 import java.security.cert.Certificate;
@@ -20,6 +22,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
 import org.apache.commons.io.input.CountingInputStream;
 import org.bouncycastle.asn1.ASN1String;
 import org.bouncycastle.asn1.x509.CRLDistPoint;
@@ -32,6 +37,9 @@ import org.bouncycastle.x509.extension.X509ExtensionUtil;
 
 import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.Constants;
+import net.sf.jsignpdf.revocation.RevocationBundle;
+import net.sf.jsignpdf.ssl.SSLInitializer;
+import net.sf.jsignpdf.utils.HttpTransport;
 
 /**
  * Helper bean for holding CRL related data.
@@ -48,6 +56,8 @@ public class CRLInfo {
     private long byteCount = 0L;
     private BasicSignerOptions options;
     private Certificate[] certChain;
+    private HttpTransport transport;
+    private RevocationBundle bundle;
 
     /**
      * Constructor
@@ -56,11 +66,39 @@ public class CRLInfo {
      * @param aChain
      */
     public CRLInfo(final BasicSignerOptions anOptions, final Certificate[] aChain) {
+        this(anOptions, aChain, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param anOptions
+     * @param aChain
+     * @param aTransport shared transport to download the CRLs with; {@code null} to open a {@link URLConnection}
+     *        per CRL (the only option for a SOCKS proxy)
+     */
+    public CRLInfo(final BasicSignerOptions anOptions, final Certificate[] aChain, final HttpTransport aTransport) {
+        this(anOptions, aChain, aTransport, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param anOptions
+     * @param aChain
+     * @param aTransport shared transport to download the CRLs with; {@code null} to open a {@link URLConnection}
+     *        per CRL (the only option for a SOCKS proxy)
+     * @param aBundle revocation bundle consulted before downloading a CRL, may be {@code null}
+     */
+    public CRLInfo(final BasicSignerOptions anOptions, final Certificate[] aChain, final HttpTransport aTransport,
+            final RevocationBundle aBundle) {
         if (anOptions == null || aChain == null) {
             throw new NullPointerException();
         }
         options = anOptions;
         certChain = aChain;
+        transport = aTransport;
+        bundle = aBundle;
     }
 
     /**
@@ -100,10 +138,17 @@ public class CRLInfo {
         final Set<CRL> crlSet = new HashSet<CRL>();
         for (final String urlStr : urls) {
             try {
-                LOGGER.info(RES.get("console.crlinfo.loadCrl", urlStr));
-                final URL tmpUrl = new URL(urlStr);
-                final CountingInputStream inStream = new CountingInputStream(
-                        openCrlStream(tmpUrl, options.createProxy()));
+                final byte[] bundled = bundle != null ? bundle.get(urlStr) : null;
+                final InputStream rawStream;
+                if (bundled != null) {
+                    LOGGER.info(RES.get("console.crlinfo.bundledCrl", urlStr));
+                    rawStream = new ByteArrayInputStream(bundled);
+                } else {
+                    LOGGER.info(RES.get("console.crlinfo.loadCrl", urlStr));
+                    rawStream = transport != null ? new ByteArrayInputStream(transport.get(urlStr))
+                            : openCrlStream(new URL(urlStr), options.createProxy());
+                }
+                final CountingInputStream inStream = new CountingInputStream(rawStream);
                 final CertificateFactory cf = CertificateFactory.getInstance(Constants.CERT_TYPE_X509);
                 final CRL crl = cf.generateCRL(inStream);
                 final long tmpBytesRead = inStream.getByteCount();
@@ -129,7 +174,8 @@ public class CRLInfo {
     }
 
     /**
-     * Opens an input stream for the given CRL URL, following redirects manually.
+     * Opens an input stream for the given CRL URL, following redirects manually. Used when no {@link HttpTransport}
+     * is available (SOCKS proxy).
      * <p>
      * {@link HttpURLConnection} only follows redirects that stay on the same protocol; a CRL
      * distribution point that redirects HTTP&nbsp;&rarr;&nbsp;HTTPS (or back) is therefore not
@@ -147,6 +193,9 @@ public class CRLInfo {
         URL currentUrl = url;
         for (int hop = 0; hop <= MAX_CRL_REDIRECTS; hop++) {
             final URLConnection conn = currentUrl.openConnection(proxy);
+            if (conn instanceof HttpsURLConnection httpsConn) {
+                httpsConn.setSSLSocketFactory(sslSocketFactory());
+            }
             if (!(conn instanceof HttpURLConnection httpConn)) {
                 return conn.getInputStream();
             }
@@ -168,6 +217,14 @@ public class CRLInfo {
         throw new IOException("Too many CRL redirects for: " + url);
     }
 
+    private SSLSocketFactory sslSocketFactory() throws IOException {
+        try {
+            return SSLInitializer.getSslContext(options).getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to initialize TLS for the CRL download", e);
+        }
+    }
+
     /**
      * Returns (initialized, but maybe empty) set of URLs of CRLs for given certificate.
      *
@@ -0,0 +1,108 @@
+package net.sf.jsignpdf.crl;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+import net.sf.jsignpdf.utils.HttpTransport;
+
+/**
+ * OCSP client over the shared {@link HttpTransport}. It asks the same question as OpenPDF's
+ * {@code OcspClientBouncyCastle} (a SHA-1 certificate ID with a nonce, RFC 6960) and accepts the same answers, but the
+ * request gets the transport's timeouts and reuses its kept-alive connections.
+ *
+ * @author Josef Cacek
+ */
+public class HttpOcspClient {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final X509Certificate checkCert;
+    private final X509Certificate issuerCert;
+    private final String url;
+    private final HttpTransport transport;
+
+    /**
+     * @param checkCert certificate whose status is checked
+     * @param issuerCert its issuer
+     * @param url OCSP responder URL
+     * @param transport transport to send the request through
+     */
+    public HttpOcspClient(X509Certificate checkCert, X509Certificate issuerCert, String url, HttpTransport transport) {
+        this.checkCert = checkCert;
+        this.issuerCert = issuerCert;
+        this.url = url;
+        this.transport = transport;
+    }
+
+    /**
+     * Queries the responder.
+     *
+     * @return the DER encoded basic OCSP response for a certificate with the {@code good} status
+     * @throws IOException when the request fails, or the certificate is revoked or unknown to the responder
+     */
+    public byte[] getEncoded() throws IOException {
+        final OCSPReq request = generateRequest();
+        final byte[] responseBytes = transport.post(url, "application/ocsp-request", request.getEncoded(), null).body();
+        final OCSPResp ocspResponse = new OCSPResp(responseBytes);
+        if (ocspResponse.getStatus() != OCSPResp.SUCCESSFUL) {
+            throw new IOException("Invalid status: " + ocspResponse.getStatus() + " (OCSP responder " + url + ")");
+        }
+        final BasicOCSPResp basicResponse;
+        try {
+            basicResponse = (BasicOCSPResp) ocspResponse.getResponseObject();
+        } catch (OCSPException e) {
+            throw new IOException("Unreadable response from the OCSP responder " + url, e);
+        }
+        if (basicResponse == null) {
+            return null;
+        }
+        for (SingleResp single : basicResponse.getResponses()) {
+            final CertificateStatus status = single.getCertStatus();
+            if (status == CertificateStatus.GOOD) {
+                return basicResponse.getEncoded();
+            } else if (status instanceof RevokedStatus) {
+                throw new IOException("OCSP status: certificate is revoked (OCSP responder " + url + ")");
+            } else {
+                throw new IOException("OCSP status: certificate is unknown (OCSP responder " + url + ")");
+            }
+        }
+        return null;
+    }
+
+    private OCSPReq generateRequest() throws IOException {
+        try {
+            final CertificateID id = new CertificateID(
+                    new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                    new JcaX509CertificateHolder(issuerCert), checkCert.getSerialNumber());
+            final OCSPReqBuilder builder = new OCSPReqBuilder();
+            builder.addRequest(id);
+            final BigInteger nonce = BigInteger.valueOf(System.currentTimeMillis()).shiftLeft(32)
+                    .or(BigInteger.valueOf(RANDOM.nextInt() & 0xffffffffL));
+            builder.setRequestExtensions(new Extensions(new Extension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false,
+                    new DEROctetString(new DEROctetString(nonce.toByteArray())))));
+            return builder.build();
+        } catch (OperatorCreationException | CertificateEncodingException | OCSPException e) {
+            throw new IOException("Unable to create the OCSP request", e);
+        }
+    }
+}
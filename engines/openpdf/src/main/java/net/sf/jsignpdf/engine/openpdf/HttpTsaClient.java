@@ -0,0 +1,81 @@
+package net.sf.jsignpdf.engine.openpdf;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bouncycastle.asn1.cmp.PKIStatus;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.openpdf.text.pdf.TSAClientBouncyCastle;
+
+import net.sf.jsignpdf.tsa.TsaDispatcher;
+import net.sf.jsignpdf.utils.HttpTransport;
+
+/**
+ * OpenPDF's timestamp client with the HTTP exchange moved onto the shared {@link HttpTransport}. Building the
+ * RFC 3161 request and checking the response stay with OpenPDF; only the POST is replaced, so a stalled TSA is bounded
+ * by the transport's timeouts and consecutive timestamps reuse the connection. With several TSA URLs the
+ * {@link TsaDispatcher} picks the server; a response which doesn't grant the timestamp counts as a failure there, so it
+ * fails over to the next server too.
+ *
+ * @author Josef Cacek
+ */
+class HttpTsaClient extends TSAClientBouncyCastle {
+
+    private final List<String> urls;
+    private final TsaDispatcher dispatcher;
+    private final String user;
+    private final String password;
+    private final HttpTransport transport;
+
+    /**
+     * @param urls TSA URLs, at least one
+     * @param dispatcher decides which of the URLs answers
+     * @param user user for HTTP Basic authentication, {@code null} or empty for none
+     * @param password password for HTTP Basic authentication
+     * @param transport transport to send the request through
+     */
+    HttpTsaClient(List<String> urls, TsaDispatcher dispatcher, String user, String password, HttpTransport transport) {
+        super(urls.get(0), user, password);
+        this.urls = urls;
+        this.dispatcher = dispatcher;
+        this.user = user;
+        this.password = password;
+        this.transport = transport;
+    }
+
+    @Override
+    protected byte[] getTSAResponse(byte[] requestBytes) throws IOException {
+        final Map<String, String> headers = StringUtils.isEmpty(user) ? null
+                : Map.of("Authorization", "Basic " + Base64.getEncoder().encodeToString(
+                        (user + ":" + StringUtils.defaultString(password)).getBytes(StandardCharsets.UTF_8)));
+        return dispatcher.request(urls, url -> post(url, requestBytes, headers));
+    }
+
+    private byte[] post(String url, byte[] requestBytes, Map<String, String> headers) throws IOException {
+        final HttpResponse<byte[]> response = transport.post(url, "application/timestamp-query", requestBytes,
+                headers);
+        byte[] body = response.body();
+        // some TSAs answer base64 encoded, as OpenPDF's own client accepts
+        if (response.headers().firstValue("Content-Encoding").filter("base64"::equalsIgnoreCase).isPresent()) {
+            body = Base64.getMimeDecoder().decode(body);
+        }
+        final TimeStampResponse tsResponse;
+        try {
+            tsResponse = new TimeStampResponse(body);
+        } catch (TSPException e) {
+            throw new IOException("Invalid timestamp response from " + url, e);
+        }
+        final int status = tsResponse.getStatus();
+        if (status != PKIStatus.GRANTED && status != PKIStatus.GRANTED_WITH_MODS) {
+            throw new IOException("TSA " + url + " refused the request, status " + status + ": "
+                    + tsResponse.getStatusString());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,56 @@
+package net.sf.jsignpdf.engine.openpdf;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import net.sf.jsignpdf.engine.Capability;
+import net.sf.jsignpdf.engine.EngineDescriptor;
+import net.sf.jsignpdf.engine.SigningEngine;
+
+/**
+ * Registry metadata of the {@link OpenPdfSigningEngine}. Kept free of OpenPDF references so reading it
+ * doesn't load the engine.
+ *
+ * @author Josef Cacek
+ */
+public final class OpenPdfEngineDescriptor implements EngineDescriptor {
+
+    static final String DISPLAY_NAME = "OpenPDF";
+
+    static final Set<Capability> CAPABILITIES = Set.copyOf(EnumSet.of(
+            Capability.SUBFILTER_ADBE_PKCS7_DETACHED,
+            Capability.HASH_SHA1, Capability.HASH_SHA256, Capability.HASH_SHA384, Capability.HASH_SHA512,
+            Capability.HASH_RIPEMD160,
+            Capability.OVERWRITE_MODE, Capability.CERTIFICATION_LEVEL,
+            Capability.ENCRYPTION_PASSWORD, Capability.ENCRYPTION_CERTIFICATE, Capability.PERMISSIONS_BITMASK,
+            Capability.VISIBLE_SIGNATURE, Capability.VISIBLE_LAYER2_TEXT, Capability.VISIBLE_LAYER4_TEXT,
+            Capability.VISIBLE_RENDER_MODE_DESCRIPTION_ONLY, Capability.VISIBLE_RENDER_MODE_GRAPHIC_AND_DESCRIPTION,
+            Capability.VISIBLE_RENDER_MODE_NAME_AND_DESCRIPTION, Capability.VISIBLE_BACKGROUND_IMAGE,
+            Capability.VISIBLE_BACKGROUND_IMAGE_SCALE, Capability.VISIBLE_SIGNATURE_GRAPHIC, Capability.VISIBLE_CUSTOM_FONT,
+            Capability.ACRO6_LAYERS, Capability.SIGN_EXISTING_FIELD,
+            Capability.TSA, Capability.TSA_POLICY_OID, Capability.TSA_BASIC_AUTH, Capability.OCSP_EMBED,
+            Capability.CRL_EMBED,
+            Capability.MULTI_SIGNATURE,
+            Capability.PROXY_SUPPORT,
+            Capability.EXTERNAL_DIGEST, Capability.PKCS11_PROVIDER));
+
+    @Override
+    public String id() {
+        return OpenPdfSigningEngine.ID;
+    }
+
+    @Override
+    public String displayName() {
+        return DISPLAY_NAME;
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public SigningEngine createEngine() {
+        return new OpenPdfSigningEngine();
+    }
+}
@@ -9,10 +9,13 @@ import static net.sf.jsignpdf.Constants.L2TEXT_PLACEHOLDER_CERTIFICATE;
 import static net.sf.jsignpdf.Constants.RES;
 import static net.sf.jsignpdf.Constants.LOGGER;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Proxy;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
@@ -20,9 +23,9 @@ import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -31,10 +34,13 @@ import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.Constants;
 import net.sf.jsignpdf.PrivateKeyInfo;
 import net.sf.jsignpdf.crl.CRLInfo;
+import net.sf.jsignpdf.crl.HttpOcspClient;
+import net.sf.jsignpdf.revocation.RevocationBundle;
 import net.sf.jsignpdf.engine.Capability;
 import net.sf.jsignpdf.engine.EngineConfig;
 import net.sf.jsignpdf.engine.SigningEngine;
 import net.sf.jsignpdf.extcsp.CloudFoxy;
+import net.sf.jsignpdf.tsa.TsaDispatcher;
 import net.sf.jsignpdf.ssl.SSLInitializer;
 import net.sf.jsignpdf.types.BufferingMode;
 import net.sf.jsignpdf.types.HashAlgorithm;
@@ -43,8 +49,12 @@ import net.sf.jsignpdf.types.PdfVersion;
 import net.sf.jsignpdf.types.RenderMode;
 import net.sf.jsignpdf.types.ServerAuthentication;
 import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.AtomicOutputFile;
+import net.sf.jsignpdf.utils.HttpTransport;
 import net.sf.jsignpdf.utils.KeyStoreUtils;
 import net.sf.jsignpdf.utils.PKCS11Utils;
+import net.sf.jsignpdf.verify.ByteRangeVerifier;
+import net.sf.jsignpdf.verify.SignatureCheckingOutputStream;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -63,6 +73,7 @@ import org.openpdf.text.pdf.PdfReader;
 import org.openpdf.text.pdf.PdfSignature;
 import org.openpdf.text.pdf.PdfSignatureAppearance;
 import org.openpdf.text.pdf.PdfStamper;
+import org.openpdf.text.pdf.PdfStream;
 import org.openpdf.text.pdf.PdfString;
 import org.openpdf.text.pdf.PdfWriter;
 import org.openpdf.text.pdf.TSAClientBouncyCastle;
@@ -79,21 +90,16 @@ public class OpenPdfSigningEngine implements SigningEngine {
     /** Stable identifier used in config files and CLI args. */
     public static final String ID = "openpdf";
 
-    private static final Set<Capability> CAPABILITIES = Set.copyOf(EnumSet.of(
-            Capability.SUBFILTER_ADBE_PKCS7_DETACHED,
-            Capability.HASH_SHA1, Capability.HASH_SHA256, Capability.HASH_SHA384, Capability.HASH_SHA512,
-            Capability.HASH_RIPEMD160,
-            Capability.OVERWRITE_MODE, Capability.CERTIFICATION_LEVEL,
-            Capability.ENCRYPTION_PASSWORD, Capability.ENCRYPTION_CERTIFICATE, Capability.PERMISSIONS_BITMASK,
-            Capability.VISIBLE_SIGNATURE, Capability.VISIBLE_LAYER2_TEXT, Capability.VISIBLE_LAYER4_TEXT,
-            Capability.VISIBLE_RENDER_MODE_DESCRIPTION_ONLY, Capability.VISIBLE_RENDER_MODE_GRAPHIC_AND_DESCRIPTION,
-            Capability.VISIBLE_RENDER_MODE_NAME_AND_DESCRIPTION, Capability.VISIBLE_BACKGROUND_IMAGE,
-            Capability.VISIBLE_BACKGROUND_IMAGE_SCALE, Capability.VISIBLE_SIGNATURE_GRAPHIC, Capability.VISIBLE_CUSTOM_FONT,
-            Capability.ACRO6_LAYERS, Capability.SIGN_EXISTING_FIELD,
-            Capability.TSA, Capability.TSA_POLICY_OID, Capability.TSA_BASIC_AUTH, Capability.OCSP_EMBED,
-            Capability.CRL_EMBED,
-            Capability.PROXY_SUPPORT,
-            Capability.EXTERNAL_DIGEST, Capability.PKCS11_PROVIDER));
+    /**
+     * Config key ({@code engine.openpdf.optimizeOverwrite}): when {@code true}, a document signed without append is
+     * rewritten compactly - duplicate streams merged, unused objects dropped, plain streams deflated in parallel, and
+     * the objects packed into compressed object streams with a cross-reference stream (PDF 1.5). Defaults to
+     * {@code false}; appended signatures never rewrite the document and are not affected.
+     */
+    static final String KEY_OPTIMIZE_OVERWRITE = "optimizeOverwrite";
+
+    /** Room for the incremental update of a signature on top of the signed revision, see {@link #signAll}. */
+    private static final int REVISION_HEADROOM = 64 * 1024;
 
     @Override
     public String id() {
@@ -102,12 +108,12 @@ public class OpenPdfSigningEngine implements SigningEngine {
 
     @Override
     public String displayName() {
-        return "OpenPDF";
+        return OpenPdfEngineDescriptor.DISPLAY_NAME;
     }
 
     @Override
     public Set<Capability> capabilities() {
-        return CAPABILITIES;
+        return OpenPdfEngineDescriptor.CAPABILITIES;
     }
 
     /**
@@ -117,27 +123,103 @@ public class OpenPdfSigningEngine implements SigningEngine {
      */
     @Override
     public boolean sign(final BasicSignerOptions options, final EngineConfig engineConfig) {
+        return sign(options, engineConfig, options.getInFile(), null, null);
+    }
+
+    /**
+     * Applies the signatures one after another, each one appending to the revision of the previous one. The revisions
+     * in between are kept in memory in memory buffering mode and in a file in the staging directory in temp and offheap
+     * mode, and re-opened from there; the input file is read once and only the last revision is written to the output
+     * file. A staged revision is deleted as soon as the next signature is applied.
+     */
+    @Override
+    public boolean signAll(final List<? extends BasicSignerOptions> signatures, final EngineConfig engineConfig) {
+        final BufferingMode bufferingMode = AppConfig.bufferingMode(signatures.get(0));
+        final File stagingDir;
+        try {
+            stagingDir = bufferingMode.isStaged() ? AppConfig.bufferingDir(bufferingMode) : null;
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+            return false;
+        }
+        String inFile = signatures.get(0).getInFile();
+        byte[] revision = null;
+        File revisionFile = null;
+        try {
+            for (int i = 0; i < signatures.size(); i++) {
+                LOGGER.info(RES.get("console.multiSign.step", String.valueOf(i + 1),
+                        String.valueOf(signatures.size())));
+                final BasicSignerOptions options = signatures.get(i);
+                if (i == signatures.size() - 1) {
+                    return sign(options, engineConfig, inFile, revision, null);
+                }
+                if (bufferingMode.isStaged()) {
+                    final File next = File.createTempFile("jsignpdf-rev-", ".pdf", stagingDir);
+                    final boolean ok;
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(next))) {
+                        ok = sign(options, engineConfig, inFile, null, out);
+                    } finally {
+                        deleteRevision(revisionFile);
+                        revisionFile = next;
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                    inFile = next.getPath();
+                } else {
+                    final long sizeHint = revision != null ? revision.length : new File(inFile).length();
+                    final ByteArrayOutputStream next = new ByteArrayOutputStream(
+                            (int) Math.min(Integer.MAX_VALUE - 8, sizeHint + REVISION_HEADROOM));
+                    if (!sign(options, engineConfig, inFile, revision, next)) {
+                        return false;
+                    }
+                    revision = next.toByteArray();
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+            return false;
+        } finally {
+            deleteRevision(revisionFile);
+        }
+    }
+
+    private static void deleteRevision(File revisionFile) {
+        if (revisionFile != null && revisionFile.exists() && !revisionFile.delete()) {
+            LOGGER.warning(RES.get("console.buffering.tempFileNotDeleted", revisionFile.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * @param inFile the file to read the document from when there is no in-memory revision - the input file of the
+     *            options, or a revision of {@link #signAll} staged in a file
+     * @param revision the document to sign, {@code null} to read {@code inFile}
+     * @param nextRevision where the signed document goes, {@code null} to write the output file of the options
+     */
+    private boolean sign(final BasicSignerOptions options, final EngineConfig engineConfig, final String inFile,
+            final byte[] revision, final OutputStream nextRevision) {
         final String outFile = options.getOutFileX();
         boolean finished = false;
-        FileOutputStream fout = null;
+        AtomicOutputFile fout = null;
         File sigTempFile = null;
+        PdfReader reader = null;
         try {
-            SSLInitializer.init(options);
-
-            // Resolved up front so an unusable buffering.tempDir aborts before the output file is created
-            // and before the keystore is opened. The directory is only read in TEMP mode, so a stale path
-            // cannot break a memory-mode sign.
-            final BufferingMode bufferingMode = AppConfig.bufferingMode();
+            // Resolved up front so an unusable buffering.tempDir/offheapDir aborts before the output file is created
+            // and before the keystore is opened. The directory is only read in TEMP and OFFHEAP mode, so a stale
+            // path cannot break a memory-mode sign.
+            final BufferingMode bufferingMode = AppConfig.bufferingMode(options);
             final File bufferingTempDir;
-            if (bufferingMode == BufferingMode.TEMP) {
+            if (bufferingMode.isStaged()) {
                 try {
-                    bufferingTempDir = AppConfig.bufferingTempDir();
+                    bufferingTempDir = AppConfig.bufferingDir(bufferingMode);
                 } catch (IOException e) {
                     LOGGER.severe(e.getMessage());
                     return false;
                 }
-                LOGGER.info(RES.get("console.buffering.temp", bufferingTempDir != null
-                        ? bufferingTempDir.getAbsolutePath() : System.getProperty("java.io.tmpdir")));
+                LOGGER.info(RES.get("console.buffering." + bufferingMode.name().toLowerCase(Locale.ROOT),
+                        bufferingTempDir != null ? bufferingTempDir.getAbsolutePath()
+                                : System.getProperty("java.io.tmpdir")));
             } else {
                 bufferingTempDir = null;
             }
@@ -172,20 +254,27 @@ public class OpenPdfSigningEngine implements SigningEngine {
                 return false;
             }
             LOGGER.info(RES.get("console.createPdfReader", options.getInFile()));
-            PdfReader reader;
             try {
-                reader = new PdfReader(options.getInFile(), options.getPdfOwnerPwdStrX().getBytes());
+                reader = openReader(inFile, revision, options.getPdfOwnerPwdStrX().getBytes());
             } catch (Exception e) {
                 try {
-                    reader = new PdfReader(options.getInFile(), new byte[0]);
+                    reader = openReader(inFile, revision, new byte[0]);
                 } catch (Exception e2) {
                     // try to read without password
-                    reader = new PdfReader(options.getInFile());
+                    reader = openReader(inFile, revision, null);
                 }
             }
 
-            LOGGER.info(RES.get("console.createOutPdf", outFile));
-            fout = new FileOutputStream(outFile);
+            final OutputStream target;
+            if (nextRevision != null) {
+                target = nextRevision;
+            } else {
+                LOGGER.info(RES.get("console.createOutPdf", outFile));
+                // written next to the output and renamed into place on success; the input size is the
+                // pre-allocation hint
+                fout = AtomicOutputFile.create(new File(outFile), new File(inFile).length());
+                target = fout.stream();
+            }
 
             final HashAlgorithm hashAlgorithm = options.getHashAlgorithmX();
 
@@ -213,14 +302,33 @@ public class OpenPdfSigningEngine implements SigningEngine {
                 }
             }
 
-            if (bufferingMode == BufferingMode.TEMP) {
+            final boolean optimize = !options.isAppendX() && engineConfig.getBoolean(KEY_OPTIMIZE_OVERWRITE, false);
+            if (optimize) {
+                // before the stamper is created - it copies every object of the reader to the new document
+                final int[] counts = OverwriteOptimizer.optimize(reader);
+                LOGGER.info(RES.get("console.openpdf.optimized", String.valueOf(counts[0]),
+                        String.valueOf(counts[1]), String.valueOf(counts[2])));
+            }
+
+            if (bufferingMode.isStaged()) {
                 // Own the temp file rather than letting createSignature() make one: OpenPDF never returns
                 // the name and only deletes it in close(), so an abort between preClose() and close() —
                 // exactly where TSA/OCSP failures land — would leak a file the size of the document.
+                // OpenPDF writes it with long offsets and hashes the byte range straight from it through a
+                // RandomAccessFile, so in OFFHEAP mode (a tmpfs directory) neither step touches the heap or a disk.
                 sigTempFile = File.createTempFile("jsignpdf-sig-", ".pdf", bufferingTempDir);
             }
-            final PdfStamper stp = PdfStamper.createSignature(reader, fout, tmpPdfVersion, sigTempFile,
-                    options.isAppendX());
+            // OpenPDF copies the finished document to this stream in close(), after the range is known
+            final SignatureCheckingOutputStream selfCheck = AppConfig.outputSelfCheck()
+                    ? new SignatureCheckingOutputStream(target) : null;
+            final PdfStamper stp = PdfStamper.createSignature(reader, selfCheck != null ? selfCheck : target,
+                    tmpPdfVersion, sigTempFile, options.isAppendX());
+            if (optimize) {
+                // object streams and the xref stream; the signature dictionary itself stays a plain object, so its
+                // byte range can be patched
+                stp.setFullCompression();
+                stp.getWriter().setCompressionLevel(PdfStream.BEST_COMPRESSION);
+            }
             if (!options.isAppendX()) {
                 // we are not in append mode, let's remove existing signatures
                 // (otherwise we're getting to troubles)
@@ -386,8 +494,16 @@ public class OpenPdfSigningEngine implements SigningEngine {
             sap.setCryptoDictionary(dic);
 
             final Proxy tmpProxy = options.createProxy();
+            // shared keep-alive client with timeouts; OpenPDF's own URLConnection clients only for a SOCKS proxy
+            final HttpTransport transport = HttpTransport.supports(tmpProxy) ? HttpTransport.forOptions(options)
+                    : null;
+            if (transport == null) {
+                // OpenPDF's clients take their TLS settings only from the JVM-wide default
+                SSLInitializer.init(options);
+            }
 
-            final CRLInfo crlInfo = new CRLInfo(options, chain);
+            final RevocationBundle bundle = RevocationBundle.fromConfig();
+            final CRLInfo crlInfo = new CRLInfo(options, chain, transport, bundle);
 
             // CRLs are stored twice in PDF c.f.
             // PdfPKCS7.getAuthenticatedAttributeBytes
@@ -416,12 +532,23 @@ public class OpenPdfSigningEngine implements SigningEngine {
                     LOGGER.info(RES.get("console.noOCSPURL"));
                     url = options.getOcspServerUrl();
                 }
-                if (!StringUtils.isEmpty(url)) {
+                if (bundle != null) {
+                    ocsp = bundle.basicOcspResponse((X509Certificate) chain[0], (X509Certificate) chain[1]);
+                    if (ocsp != null) {
+                        LOGGER.info(RES.get("console.bundledOCSP"));
+                    }
+                }
+                if (ocsp == null && !StringUtils.isEmpty(url)) {
                     LOGGER.info(RES.get("console.readingOCSP", url));
-                    final OcspClientBouncyCastle ocspClient = new OcspClientBouncyCastle((X509Certificate) chain[0],
-                            (X509Certificate) chain[1], url);
-                    ocspClient.setProxy(tmpProxy);
-                    ocsp = ocspClient.getEncoded();
+                    if (transport != null) {
+                        ocsp = new HttpOcspClient((X509Certificate) chain[0], (X509Certificate) chain[1], url,
+                                transport).getEncoded();
+                    } else {
+                        final OcspClientBouncyCastle ocspClient = new OcspClientBouncyCastle(
+                                (X509Certificate) chain[0], (X509Certificate) chain[1], url);
+                        ocspClient.setProxy(tmpProxy);
+                        ocsp = ocspClient.getEncoded();
+                    }
                 }
             }
             byte sh[] = sgn.getAuthenticatedAttributeBytes(hash, cal, ocsp);
@@ -439,13 +566,21 @@ public class OpenPdfSigningEngine implements SigningEngine {
             }
 
             TSAClientBouncyCastle tsc = null;
-            if (options.isTimestampX() && !StringUtils.isEmpty(options.getTsaUrl())) {
+            // a blank or separator-only URL option means no TSA, as an empty one
+            final List<String> tsaUrls = options.isTimestampX() ? TsaDispatcher.parseUrls(options.getTsaUrl())
+                    : List.of();
+            if (!tsaUrls.isEmpty()) {
                 LOGGER.info(RES.get("console.creatingTsaClient"));
-                if (options.getTsaServerAuthn() == ServerAuthentication.PASSWORD) {
-                    tsc = new TSAClientBouncyCastle(options.getTsaUrl(), StringUtils.defaultString(options.getTsaUser()),
+                if (transport != null) {
+                    final boolean password = options.getTsaServerAuthn() == ServerAuthentication.PASSWORD;
+                    tsc = new HttpTsaClient(tsaUrls, TsaDispatcher.fromConfig(), password ? options.getTsaUser() : null,
+                            password ? options.getTsaPasswd() : null, transport);
+                } else if (options.getTsaServerAuthn() == ServerAuthentication.PASSWORD) {
+                    // SOCKS proxy: OpenPDF's own client, which knows one URL only
+                    tsc = new TSAClientBouncyCastle(tsaUrls.get(0), StringUtils.defaultString(options.getTsaUser()),
                             StringUtils.defaultString(options.getTsaPasswd()));
                 } else {
-                    tsc = new TSAClientBouncyCastle(options.getTsaUrl());
+                    tsc = new TSAClientBouncyCastle(tsaUrls.get(0));
 
                 }
                 final String tsaHashAlg = options.getTsaHashAlgWithFallback();
@@ -470,22 +605,38 @@ public class OpenPdfSigningEngine implements SigningEngine {
 
             PdfDictionary dic2 = new PdfDictionary();
             dic2.put(PdfName.CONTENTS, new PdfString(paddedSig).setHexWriting(true));
+            if (selfCheck != null) {
+                selfCheck.expect(sap.getRange(), hashAlgorithm.getAlgorithmName(), hash);
+            }
             LOGGER.info(RES.get("console.closeStream"));
             sap.close(dic2);
-            fout.close();
-            fout = null;
+            if (selfCheck != null) {
+                final ByteRangeVerifier.Result check = selfCheck.check(null);
+                if (!check.passed()) {
+                    LOGGER.severe(RES.get("console.selfCheck.failed", outFile, check.problem()));
+                    return false;
+                }
+                LOGGER.info(RES.get("console.selfCheck.passed"));
+            }
+            if (fout != null) {
+                // the signed PDF replaces the output path only now that it is complete
+                fout.commit();
+                options.setOutputSha256(fout.sha256());
+                fout = null;
+            }
             finished = true;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
         } catch (OutOfMemoryError e) {
             LOGGER.log(Level.SEVERE, RES.get("console.memoryError"), e);
         } finally {
+            if (reader != null) {
+                // releases the input file - a staged revision of signAll() is deleted right after
+                reader.close();
+            }
             if (fout != null) {
-                try {
-                    fout.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                // not committed - drop the partial output instead of leaving a truncated PDF behind
+                fout.close();
             }
             if (sigTempFile != null && sigTempFile.exists() && !sigTempFile.delete()) {
                 // Windows refuses to delete a file that is still open, and an abort between preClose() and
@@ -498,6 +649,10 @@ public class OpenPdfSigningEngine implements SigningEngine {
         return finished;
     }
 
+    private static PdfReader openReader(String inFile, byte[] revision, byte[] ownerPassword) throws IOException {
+        return revision != null ? new PdfReader(revision, ownerPassword) : new PdfReader(inFile, ownerPassword);
+    }
+
     private Rectangle computeSignatureRectangle(Rectangle pageRect, BasicSignerOptions options) {
         float pgWidth = pageRect.getWidth();
         float pgHeighth = pageRect.getHeight();
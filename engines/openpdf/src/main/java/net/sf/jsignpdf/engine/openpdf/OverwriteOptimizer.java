@@ -0,0 +1,284 @@
+package net.sf.jsignpdf.engine.openpdf;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+import org.openpdf.text.pdf.PRIndirectReference;
+import org.openpdf.text.pdf.PRStream;
+import org.openpdf.text.pdf.PdfArray;
+import org.openpdf.text.pdf.PdfDictionary;
+import org.openpdf.text.pdf.PdfName;
+import org.openpdf.text.pdf.PdfObject;
+import org.openpdf.text.pdf.PdfReader;
+import org.openpdf.text.pdf.PdfString;
+
+/**
+ * Shrinks a document which is rewritten as a whole (signing without append) before the stamper copies its objects:
+ * identical streams - images, fonts, ICC profiles, content - are merged into one object, objects nothing refers to are
+ * dropped and unfiltered streams are deflated. The object streams and the compressed cross-reference stream are
+ * switched on on the stamper, see {@link OpenPdfSigningEngine}.
+ * <p>
+ * The streams are read one after another (the reader is not thread-safe), the deflating runs in parallel in batches
+ * of at most {@link #BATCH_BYTES} of input. Encrypted inputs are not touched: their raw stream bytes are encrypted
+ * with a per-object key.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class OverwriteOptimizer {
+
+    /** Raw bytes read ahead for one parallel deflate batch. */
+    private static final int BATCH_BYTES = 16 * 1024 * 1024;
+
+    /** Streams below this size don't pay for the filter entry. */
+    private static final int MIN_DEFLATE_BYTES = 64;
+
+    /** The streams merged into another one, unreferenced until {@link PdfReader#removeUnusedObjects()}. */
+    private final Set<Integer> mergedAway = new HashSet<>();
+    private int removed;
+    private int deflated;
+
+    private OverwriteOptimizer() {
+    }
+
+    /**
+     * Optimises the objects of the reader in place.
+     *
+     * @return the counts of merged streams, removed objects and deflated streams, in this order
+     */
+    static int[] optimize(PdfReader reader) throws IOException {
+        final OverwriteOptimizer optimizer = new OverwriteOptimizer();
+        if (!reader.isEncrypted()) {
+            // merging again catches the streams which only differed in references to the merged ones (an image
+            // and its soft mask), two rounds cover nearly all of them
+            for (int round = 0; round < 2; round++) {
+                if (optimizer.mergeDuplicates(reader) == 0) {
+                    break;
+                }
+            }
+        }
+        optimizer.removed = reader.removeUnusedObjects();
+        if (!reader.isEncrypted()) {
+            optimizer.deflate(reader);
+        }
+        return new int[] { optimizer.mergedAway.size(), optimizer.removed, optimizer.deflated };
+    }
+
+    /**
+     * Points all references to a stream at the first stream with the same dictionary and raw bytes; the copies are
+     * left unreferenced for {@link PdfReader#removeUnusedObjects()}.
+     *
+     * @return the number of streams merged in this round
+     */
+    private int mergeDuplicates(PdfReader reader) throws IOException {
+        final MessageDigest digest = sha256();
+        final Map<ByteBuffer, Integer> firstByContent = new HashMap<>();
+        final Map<Integer, Integer> replacements = new HashMap<>();
+        for (int i = 1; i < reader.getXrefSize(); i++) {
+            final PdfObject obj = reader.getPdfObject(i);
+            if (obj == null || !obj.isStream() || mergedAway.contains(i)) {
+                continue;
+            }
+            final PRStream stream = (PRStream) obj;
+            for (PdfName name : sortedKeys(stream)) {
+                if (!PdfName.LENGTH.equals(name)) {
+                    update(digest, name);
+                    update(digest, stream.get(name));
+                }
+            }
+            final ByteBuffer key = ByteBuffer.wrap(digest.digest(PdfReader.getStreamBytesRaw(stream)));
+            final Integer first = firstByContent.putIfAbsent(key, i);
+            if (first != null) {
+                replacements.put(i, first);
+            }
+        }
+        if (replacements.isEmpty()) {
+            return 0;
+        }
+        for (int i = 1; i < reader.getXrefSize(); i++) {
+            if (!replacements.containsKey(i) && !mergedAway.contains(i)) {
+                replace(reader, reader.getPdfObject(i), replacements);
+            }
+        }
+        replace(reader, reader.getTrailer(), replacements);
+        mergedAway.addAll(replacements.keySet());
+        LOGGER.fine(() -> "Merged " + replacements.size() + " duplicate streams");
+        return replacements.size();
+    }
+
+    /**
+     * Replaces the references in a direct object and its direct children; referenced objects are visited by the
+     * caller.
+     */
+    private static void replace(PdfReader reader, PdfObject obj, Map<Integer, Integer> replacements) {
+        if (obj == null) {
+            return;
+        }
+        if (obj.isDictionary() || obj.isStream()) {
+            final PdfDictionary dict = (PdfDictionary) obj;
+            for (PdfName key : new ArrayList<>(dict.getKeys())) {
+                final PdfObject value = dict.get(key);
+                final PdfObject replacement = replacement(reader, value, replacements);
+                if (replacement != null) {
+                    dict.put(key, replacement);
+                } else {
+                    replace(reader, value, replacements);
+                }
+            }
+        } else if (obj.isArray()) {
+            final PdfArray array = (PdfArray) obj;
+            for (int i = 0; i < array.size(); i++) {
+                final PdfObject value = array.getPdfObject(i);
+                final PdfObject replacement = replacement(reader, value, replacements);
+                if (replacement != null) {
+                    array.set(i, replacement);
+                } else {
+                    replace(reader, value, replacements);
+                }
+            }
+        }
+    }
+
+    private static PdfObject replacement(PdfReader reader, PdfObject value, Map<Integer, Integer> replacements) {
+        if (value instanceof PRIndirectReference) {
+            final Integer target = replacements.get(((PRIndirectReference) value).getNumber());
+            if (target != null) {
+                return new PRIndirectReference(reader, target);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deflates the streams without a filter which get smaller by it.
+     */
+    private void deflate(PdfReader reader) throws IOException {
+        final List<PRStream> streams = new ArrayList<>();
+        final List<byte[]> data = new ArrayList<>();
+        long batchBytes = 0;
+        for (int i = 1; i < reader.getXrefSize(); i++) {
+            final PdfObject obj = reader.getPdfObject(i);
+            if (obj == null || !obj.isStream() || !isDeflatable((PRStream) obj)) {
+                continue;
+            }
+            final PRStream stream = (PRStream) obj;
+            final byte[] raw = PdfReader.getStreamBytesRaw(stream);
+            if (raw.length < MIN_DEFLATE_BYTES) {
+                continue;
+            }
+            streams.add(stream);
+            data.add(raw);
+            batchBytes += raw.length;
+            if (batchBytes >= BATCH_BYTES) {
+                deflateBatch(streams, data);
+                batchBytes = 0;
+            }
+        }
+        deflateBatch(streams, data);
+    }
+
+    private void deflateBatch(List<PRStream> streams, List<byte[]> data) {
+        final byte[][] compressed = new byte[data.size()][];
+        IntStream.range(0, data.size()).parallel()
+                .forEach(i -> compressed[i] = deflate(data.get(i)));
+        for (int i = 0; i < compressed.length; i++) {
+            if (compressed[i].length < data.get(i).length) {
+                final PRStream stream = streams.get(i);
+                stream.setData(compressed[i], false);
+                stream.put(PdfName.FILTER, PdfName.FLATEDECODE);
+                deflated++;
+            }
+        }
+        streams.clear();
+        data.clear();
+    }
+
+    /**
+     * The metadata stream stays readable as plain XML, as PDF/A requires; cross-reference and object streams are
+     * rebuilt by the writer anyway.
+     */
+    private static boolean isDeflatable(PRStream stream) {
+        final PdfObject type = stream.get(PdfName.TYPE);
+        return stream.get(PdfName.FILTER) == null && stream.get(PdfName.DECODEPARMS) == null
+                && !PdfName.METADATA.equals(type) && !PdfName.XREF.equals(type) && !PdfName.OBJSTM.equals(type);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Feeds a direct object in a PDF-like syntax to the digest, with the references by their object number.
+     */
+    private static void update(MessageDigest digest, PdfObject obj) {
+        if (obj instanceof PRIndirectReference) {
+            digest.update(utf8(" " + ((PRIndirectReference) obj).getNumber() + " R"));
+        } else if (obj.isDictionary()) {
+            final PdfDictionary dict = (PdfDictionary) obj;
+            digest.update(utf8("<<"));
+            for (PdfName name : sortedKeys(dict)) {
+                update(digest, name);
+                update(digest, dict.get(name));
+            }
+            digest.update(utf8(">>"));
+        } else if (obj.isArray()) {
+            final PdfArray array = (PdfArray) obj;
+            digest.update(utf8("["));
+            for (int i = 0; i < array.size(); i++) {
+                update(digest, array.getPdfObject(i));
+            }
+            digest.update(utf8("]"));
+        } else if (obj.isString()) {
+            digest.update(utf8("("));
+            digest.update(((PdfString) obj).getBytes());
+            digest.update(utf8(")"));
+        } else {
+            digest.update(utf8(" " + obj));
+        }
+    }
+
+    private static List<PdfName> sortedKeys(PdfDictionary dict) {
+        final List<PdfName> keys = new ArrayList<>(dict.getKeys());
+        keys.sort(Comparator.comparing(PdfName::toString));
+        return keys;
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
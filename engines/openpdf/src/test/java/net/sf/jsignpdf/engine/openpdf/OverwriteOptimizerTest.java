@@ -0,0 +1,146 @@
+package net.sf.jsignpdf.engine.openpdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.openpdf.text.pdf.PRIndirectReference;
+import org.openpdf.text.pdf.PRStream;
+import org.openpdf.text.pdf.PdfDictionary;
+import org.openpdf.text.pdf.PdfName;
+import org.openpdf.text.pdf.PdfReader;
+import org.openpdf.text.pdf.PdfStamper;
+import org.openpdf.text.pdf.PdfWriter;
+
+/**
+ * Unit tests for {@link OverwriteOptimizer}, on small documents written object by object.
+ */
+public class OverwriteOptimizerTest {
+
+    private static final String PAGE = "<</Type/Page/Parent 2 0 R/MediaBox[0 0 200 200]"
+            + "/Resources<</XObject<</Im1 4 0 R/Im2 5 0 R>>>>/Contents 6 0 R>>";
+    private static final String IMAGE = "/Type/XObject/Subtype/Image/Width 2/Height 2/BitsPerComponent 8"
+            + "/ColorSpace/DeviceGray";
+    private static final String CONTENT = "q 10 0 0 10 0 0 cm /Im1 Do Q q 10 0 0 10 20 0 cm /Im2 Do Q";
+
+    @Test
+    public void identicalImagesAreMerged() throws Exception {
+        final PdfReader reader = new PdfReader(pdf(catalog(), pages(), PAGE, stream(IMAGE, "abcd"),
+                stream(IMAGE, "abcd"), stream("", CONTENT)));
+        final int[] counts = OverwriteOptimizer.optimize(reader);
+        assertEquals("merged", 1, counts[0]);
+        assertEquals("the second image is dropped", 1, counts[1]);
+        assertEquals(4, xObject(reader, "Im1"));
+        assertEquals("the reference is repointed to the first image", 4, xObject(reader, "Im2"));
+        assertNull(reader.getPdfObject(5));
+    }
+
+    @Test
+    public void imagesWithIdenticalSoftMasksAreMergedInTheSecondRound() throws Exception {
+        final PdfReader reader = new PdfReader(pdf(catalog(), pages(), PAGE, stream(IMAGE + "/SMask 7 0 R", "abcd"),
+                stream(IMAGE + "/SMask 8 0 R", "abcd"), stream("", CONTENT), stream(IMAGE, "mask"),
+                stream(IMAGE, "mask")));
+        final int[] counts = OverwriteOptimizer.optimize(reader);
+        assertEquals("the soft masks, then the images", 2, counts[0]);
+        assertEquals(4, xObject(reader, "Im2"));
+        final PdfDictionary image = (PdfDictionary) reader.getPdfObject(4);
+        assertEquals(7, ((PRIndirectReference) image.get(PdfName.SMASK)).getNumber());
+        assertNull(reader.getPdfObject(5));
+        assertNull(reader.getPdfObject(8));
+    }
+
+    @Test
+    public void differentImagesAreKept() throws Exception {
+        final PdfReader reader = new PdfReader(pdf(catalog(), pages(), PAGE, stream(IMAGE, "abcd"),
+                stream(IMAGE, "abce"), stream("", CONTENT)));
+        assertEquals(0, OverwriteOptimizer.optimize(reader)[0]);
+        assertEquals(5, xObject(reader, "Im2"));
+    }
+
+    @Test
+    public void metadataStaysUnfiltered() throws Exception {
+        final String xml = "<?xpacket begin=''?><x:xmpmeta xmlns:x='adobe:ns:meta/'>" + "a".repeat(500)
+                + "</x:xmpmeta><?xpacket end='w'?>";
+        final PdfReader reader = new PdfReader(pdf("<</Type/Catalog/Pages 2 0 R/Metadata 7 0 R>>", pages(), PAGE,
+                stream(IMAGE, "abcd"), stream(IMAGE, "abce"), stream("", CONTENT + " " + "0 0 m ".repeat(100)),
+                stream("/Type/Metadata/Subtype/XML", xml)));
+        final int[] counts = OverwriteOptimizer.optimize(reader);
+        assertEquals("only the content stream", 1, counts[2]);
+        assertEquals(PdfName.FLATEDECODE, ((PRStream) reader.getPdfObject(6)).get(PdfName.FILTER));
+        final PRStream metadata = (PRStream) reader.getPdfObject(7);
+        assertNull(metadata.get(PdfName.FILTER));
+        assertEquals(xml, new String(PdfReader.getStreamBytes(metadata), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void deflatedContentDecodesToTheOriginal() throws Exception {
+        final String content = CONTENT + " " + "0 0 m 10 10 l S ".repeat(50);
+        final PdfReader reader = new PdfReader(pdf(catalog(), pages(), PAGE, stream(IMAGE, "abcd"),
+                stream(IMAGE, "abce"), stream("", content)));
+        OverwriteOptimizer.optimize(reader);
+        assertEquals(content, new String(reader.getPageContent(1), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void encryptedDocumentIsNotTouched() throws Exception {
+        final PdfReader plain = new PdfReader(pdf(catalog(), pages(), PAGE, stream(IMAGE, "abcd"),
+                stream(IMAGE, "abcd"), stream("", CONTENT + " " + "0 0 m ".repeat(100))));
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        final PdfStamper stamper = new PdfStamper(plain, encrypted);
+        stamper.setEncryption(true, "user", "owner", PdfWriter.ALLOW_PRINTING);
+        stamper.close();
+
+        final PdfReader reader = new PdfReader(encrypted.toByteArray(), "owner".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(reader.isEncrypted());
+        final int im1 = xObject(reader, "Im1");
+        final int im2 = xObject(reader, "Im2");
+        final int[] counts = OverwriteOptimizer.optimize(reader);
+        assertEquals("nothing merged", 0, counts[0]);
+        assertEquals("nothing deflated", 0, counts[2]);
+        assertEquals(im1, xObject(reader, "Im1"));
+        assertEquals(im2, xObject(reader, "Im2"));
+        assertNotEquals(im1, im2);
+    }
+
+    private static int xObject(PdfReader reader, String name) {
+        final PdfDictionary resources = reader.getPageN(1).getAsDict(PdfName.RESOURCES);
+        return ((PRIndirectReference) resources.getAsDict(PdfName.XOBJECT).get(new PdfName(name))).getNumber();
+    }
+
+    private static String catalog() {
+        return "<</Type/Catalog/Pages 2 0 R>>";
+    }
+
+    private static String pages() {
+        return "<</Type/Pages/Kids[3 0 R]/Count 1>>";
+    }
+
+    private static String stream(String entries, String data) {
+        return "<<" + entries + "/Length " + data.length() + ">>\nstream\n" + data + "\nendstream";
+    }
+
+    /**
+     * @return a PDF with the given objects numbered from 1, the first one the catalog
+     */
+    private static byte[] pdf(String... objects) {
+        final StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        final int[] offsets = new int[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            offsets[i] = pdf.length();
+            pdf.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        final int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.length + 1).append("\n0000000000 65535 f \n");
+        for (int offset : offsets) {
+            pdf.append(String.format("%010d 00000 n \n", offset));
+        }
+        pdf.append("trailer\n<</Size ").append(objects.length + 1).append("/Root 1 0 R>>\nstartxref\n").append(xref)
+                .append("\n%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,149 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import net.sf.jsignpdf.batch.BatchJournal;
+import net.sf.jsignpdf.batch.BatchResultWriter;
+import net.sf.jsignpdf.batch.BatchResultWriter.Status;
+import net.sf.jsignpdf.types.BufferingMode;
+
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Runs {@code --augment} over the input file arguments: the existing signatures of every document are extended to the
+ * selected PAdES level, optionally by {@code --parallelism} workers. The engine shares its trust material, revocation
+ * data cache and TSA clients between the documents, so a large archive is upgraded in one JVM without paying the setup
+ * per file. Outcomes go to the {@code --results} file and the {@code --journal}, as in the {@code --manifest} mode.
+ *
+ * @author Josef Cacek
+ */
+final class BulkAugmenter {
+
+    private final SignerOptionsFromCmdLine baseOptions;
+    private final AtomicInteger augmentedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private BatchResultWriter results;
+    private BatchJournal journal;
+
+    BulkAugmenter(SignerOptionsFromCmdLine baseOptions) {
+        this.baseOptions = baseOptions;
+    }
+
+    /**
+     * Extends the signatures of all input files.
+     *
+     * @return the program exit code
+     */
+    int run() {
+        if (ArrayUtils.isEmpty(baseOptions.getFiles())) {
+            // input and output come from the loaded properties (-lp)
+            return new SignerLogic(baseOptions).augmentFile() ? 0 : EXIT_CODE_ALL_SIG_FAILED;
+        }
+        try {
+            journal = Signer.openJournal(baseOptions);
+        } catch (IOException e) {
+            System.err.println(RES.get("console.journal.cantOpen", baseOptions.getJournal(), e.getMessage()));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        try {
+            results = StringUtils.isEmpty(baseOptions.getResultsFile()) ? null
+                    : BatchResultWriter.open(new File(baseOptions.getResultsFile()));
+        } catch (IOException e) {
+            System.err.println(RES.get("console.manifest.cantWriteResults", baseOptions.getResultsFile(),
+                    e.getMessage()));
+            Signer.closeJournal(journal);
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        final int parallelism = Math.max(1, baseOptions.getParallelism());
+        final ExecutorService pool = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism, ManifestSigner.workerThreadFactory())
+                : null;
+        final InputFiles inputs = new InputFiles(baseOptions.getFiles());
+        try (Stream<File> inputFiles = inputs.stream()) {
+            dispatch(inputFiles.iterator(), pool, new Semaphore(2 * parallelism));
+        } finally {
+            ManifestSigner.awaitWorkers(pool);
+            Signer.closeJournal(journal);
+            ManifestSigner.closeResults(results, baseOptions.getResultsFile());
+        }
+        failedCount.addAndGet(inputs.failures());
+        LOGGER.info(RES.get("console.augment.summary", String.valueOf(augmentedCount.get()),
+                String.valueOf(failedCount.get())));
+        if (failedCount.get() > 0) {
+            return augmentedCount.get() > 0 ? EXIT_CODE_SOME_SIG_FAILED : EXIT_CODE_ALL_SIG_FAILED;
+        }
+        return 0;
+    }
+
+    private void dispatch(Iterator<File> inputFiles, ExecutorService pool, Semaphore inFlight) {
+        while (inputFiles.hasNext()) {
+            final File inputFile = inputFiles.next();
+            final String inFile = inputFile.getPath();
+            final String outFile = Signer.defaultOutFile(baseOptions, inputFile);
+            if (!inputFile.canRead()) {
+                failedCount.incrementAndGet();
+                System.err.println(RES.get("file.notReadable", inFile));
+                writeResult(inFile, outFile, Status.INVALID, 0L, null, RES.get("file.notReadable", inFile));
+                continue;
+            }
+            if (journal != null && journal.isCompleted(inFile, outFile)) {
+                writeResult(inFile, outFile, Status.SKIPPED, 0L, null, null);
+                continue;
+            }
+            final SignerOptionsFromCmdLine fileOptions;
+            try {
+                // an options instance per file, the workers change the input and output concurrently
+                fileOptions = baseOptions.forRecord(new String[0]);
+            } catch (ParseException e) {
+                failedCount.incrementAndGet();
+                writeResult(inFile, outFile, Status.INVALID, 0L, null, e.getMessage());
+                continue;
+            }
+            fileOptions.setInFile(inFile);
+            fileOptions.setOutFile(outFile);
+            ManifestSigner.execute(pool, inFlight, () -> augment(fileOptions));
+        }
+    }
+
+    private void augment(SignerOptionsFromCmdLine fileOptions) {
+        final long start = System.nanoTime();
+        final SignerLogic logic = new SignerLogic(fileOptions);
+        boolean augmented;
+        try {
+            augmented = logic.augmentFile();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+            augmented = false;
+        }
+        (augmented ? augmentedCount : failedCount).incrementAndGet();
+        Signer.recordInJournal(journal, fileOptions, augmented);
+        writeResult(fileOptions.getInFile(), fileOptions.getOutFile(), augmented ? Status.AUGMENTED : Status.FAILED,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), logic.getBufferingMode(), null);
+    }
+
+    private void writeResult(String in, String out, Status status, long millis, BufferingMode buffering,
+            String message) {
+        if (results == null) {
+            return;
+        }
+        try {
+            results.write(0, in, out, status, millis, buffering, message);
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.manifest.cantWriteResults", baseOptions.getResultsFile(), e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import net.sf.jsignpdf.batch.BatchResultWriter;
+import net.sf.jsignpdf.batch.ManifestReader;
+import net.sf.jsignpdf.batch.ManifestRecord;
+import net.sf.jsignpdf.engine.Capability;
+import net.sf.jsignpdf.engine.EngineRegistry;
+import net.sf.jsignpdf.engine.SigningEngine;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.verify.DocumentVerifier;
+import net.sf.jsignpdf.verify.DocumentVerifier.Report;
+import net.sf.jsignpdf.verify.DocumentVerifier.Verdict;
+import net.sf.jsignpdf.verify.VerifyTier;
+
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Runs {@code --verify}: checks the signatures of the input files - directories are walked for {@code *.pdf} - or of
+ * the output files of a {@code --manifest}, optionally by {@code --parallelism} workers. The inputs are streamed, so a
+ * large archive is never listed in memory, and the engine's trust material is loaded once for all documents. One JSON
+ * line per document goes to the {@code --results} file, or to the standard output.
+ *
+ * @author Josef Cacek
+ */
+final class BulkVerifier {
+
+    private final SignerOptionsFromCmdLine baseOptions;
+    private final Map<Verdict, AtomicInteger> counts = new EnumMap<>(Verdict.class);
+
+    private DocumentVerifier verifier;
+    private BatchResultWriter results;
+
+    BulkVerifier(SignerOptionsFromCmdLine baseOptions) {
+        this.baseOptions = baseOptions;
+        for (Verdict verdict : Verdict.values()) {
+            counts.put(verdict, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Verifies all input documents.
+     *
+     * @return the program exit code
+     */
+    int run() {
+        final VerifyTier tier = baseOptions.getVerifyTier();
+        SigningEngine engine = null;
+        if (tier == VerifyTier.FULL) {
+            engine = resolveEngine();
+            if (engine == null) {
+                return EXIT_CODE_COMMON_ERROR;
+            }
+        }
+        verifier = new DocumentVerifier(tier, engine, baseOptions,
+                engine != null ? AppConfig.engineConfigFor(engine.id()) : null);
+        try {
+            results = StringUtils.isEmpty(baseOptions.getResultsFile())
+                    ? new BatchResultWriter(new OutputStreamWriter(CloseShieldOutputStream.wrap(System.out),
+                            StandardCharsets.UTF_8))
+                    : BatchResultWriter.open(new File(baseOptions.getResultsFile()));
+        } catch (IOException e) {
+            System.err.println(RES.get("console.manifest.cantWriteResults", baseOptions.getResultsFile(),
+                    e.getMessage()));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        final int parallelism = Math.max(1, baseOptions.getParallelism());
+        final ExecutorService pool = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism, ManifestSigner.workerThreadFactory())
+                : null;
+        final Semaphore inFlight = new Semaphore(2 * parallelism);
+        try {
+            if (StringUtils.isNotEmpty(baseOptions.getManifest())) {
+                dispatchManifest(pool, inFlight);
+            } else {
+                dispatchFiles(pool, inFlight);
+            }
+        } finally {
+            ManifestSigner.awaitWorkers(pool);
+            ManifestSigner.closeResults(results, baseOptions.getResultsFile());
+        }
+        final int valid = counts.get(Verdict.VALID).get();
+        final int total = counts.values().stream().mapToInt(AtomicInteger::get).sum();
+        LOGGER.info(RES.get("console.verify.summary", String.valueOf(total), String.valueOf(valid),
+                String.valueOf(counts.get(Verdict.INDETERMINATE).get()),
+                String.valueOf(counts.get(Verdict.INVALID).get()), String.valueOf(counts.get(Verdict.UNSIGNED).get()),
+                String.valueOf(counts.get(Verdict.FAILED).get())));
+        if (valid < total) {
+            return valid > 0 ? EXIT_CODE_SOME_SIG_FAILED : EXIT_CODE_ALL_SIG_FAILED;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the engine for the full validation - the {@code --engine} one, else the first registered engine which
+     *         supports it; {@code null} (already reported) when there is none
+     */
+    private SigningEngine resolveEngine() {
+        final EngineRegistry registry = EngineRegistry.getInstance();
+        if (StringUtils.isNotEmpty(baseOptions.getEngine())) {
+            final SigningEngine engine = registry.findById(baseOptions.getEngine()).orElse(null);
+            if (engine == null) {
+                System.err.println(RES.get("console.engineNotFound", baseOptions.getEngine()));
+                return null;
+            }
+            if (!engine.capabilities().contains(Capability.VALIDATE_SIGNATURES)) {
+                System.err.println(RES.get("console.verify.unsupported", engine.id()));
+                return null;
+            }
+            return engine;
+        }
+        for (SigningEngine engine : registry.listAll()) {
+            if (engine.capabilities().contains(Capability.VALIDATE_SIGNATURES)) {
+                return engine;
+            }
+        }
+        System.err.println(RES.get("console.verify.noEngine"));
+        return null;
+    }
+
+    private void dispatchFiles(ExecutorService pool, Semaphore inFlight) {
+        for (String path : baseOptions.getFiles()) {
+            final File file = new File(path);
+            if (!file.isDirectory()) {
+                final InputFiles inputs = new InputFiles(new String[] { path });
+                try (Stream<File> inputFiles = inputs.stream()) {
+                    inputFiles.forEach(inputFile -> submit(inputFile, pool, inFlight));
+                }
+                counts.get(Verdict.FAILED).addAndGet(inputs.failures());
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(file.toPath())) {
+                walk.filter(p -> StringUtils.endsWithIgnoreCase(p.getFileName().toString(), ".pdf")
+                        && Files.isRegularFile(p)).forEach(p -> submit(p.toFile(), pool, inFlight));
+            } catch (IOException | UncheckedIOException e) {
+                counts.get(Verdict.FAILED).incrementAndGet();
+                System.err.println(RES.get("console.verify.cantWalk", path, e.getMessage()));
+            }
+        }
+    }
+
+    private void dispatchManifest(ExecutorService pool, Semaphore inFlight) {
+        final String manifestPath = baseOptions.getManifest();
+        try (ManifestReader reader = ManifestReader.open(new File(manifestPath))) {
+            while (reader.hasNext()) {
+                final ManifestRecord record = reader.next();
+                final String signedFile;
+                try {
+                    signedFile = signedFileOf(record);
+                } catch (ParseException e) {
+                    counts.get(Verdict.FAILED).incrementAndGet();
+                    System.err.println(RES.get("console.manifest.invalidRecord", manifestPath,
+                            String.valueOf(record.lineNumber()), e.getMessage()));
+                    continue;
+                }
+                submit(new File(signedFile), pool, inFlight);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            counts.get(Verdict.FAILED).incrementAndGet();
+            System.err.println(RES.get("console.manifest.cantRead", manifestPath, e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the file the record was signed to - its {@code out}, else the name {@code --manifest} signing derives
+     */
+    private String signedFileOf(ManifestRecord record) throws ParseException {
+        if (!record.isValid()) {
+            throw new ParseException(record.error());
+        }
+        if (StringUtils.isNotEmpty(record.out())) {
+            return record.out();
+        }
+        if (StringUtils.isEmpty(record.in())) {
+            throw new ParseException("missing the '" + ManifestRecord.KEY_IN + "' value");
+        }
+        return Signer.defaultOutFile(baseOptions.forRecord(ManifestSigner.toArgs(record.values())),
+                new File(record.in()));
+    }
+
+    private void submit(File file, ExecutorService pool, Semaphore inFlight) {
+        ManifestSigner.execute(pool, inFlight, () -> verify(file));
+    }
+
+    private void verify(File file) {
+        final long start = System.nanoTime();
+        final Report report = verifier.verify(file);
+        counts.get(report.verdict()).incrementAndGet();
+        try {
+            results.writeLine(report.toJson(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.manifest.cantWriteResults", baseOptions.getResultsFile(), e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package net.sf.jsignpdf;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static net.sf.jsignpdf.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import net.sf.jsignpdf.utils.AppConfig;
+
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Runs the {@code --watch} mode: signs every PDF file which appears in a folder until the program is stopped. The
+ * keystore, the engines and their caches stay loaded between the files, so a file costs only its own signing.
+ * <p>
+ * New files are reported by a {@link WatchService}, but a reported file is usually still being written. It is signed
+ * once its size and modification time haven't changed for {@code watch.settleMillis} and a lock on it can be taken -
+ * on Windows that fails while the writer keeps the file open, elsewhere (and for files we may only read) the quiet
+ * period does the work. Writers which create the file under another name (or a hidden one) and rename it when done are
+ * always safe.
+ * </p>
+ * <p>
+ * The watching thread only collects the files; {@code --parallelism} workers sign them through the usual
+ * {@link SignerLogic} path (with {@code --signatures} when given). The signed copy goes to the output directory, the
+ * input is moved to the {@value #PROCESSED_DIR} subfolder, or to {@code --watch-errors} when it couldn't be signed. On
+ * Ctrl+C the files already being signed are finished before the program ends.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class HotFolderSigner {
+
+    static final String PROCESSED_DIR = "processed";
+    static final String FAILED_DIR = "failed";
+
+    /** How long the watching thread sleeps when no file is waiting to settle. */
+    private static final long IDLE_POLL_MILLIS = 1000L;
+
+    private final SignerOptionsFromCmdLine baseOptions;
+    private final long settleMillis = AppConfig.watchSettleMillis();
+    /** Files seen but not settled yet; used only by the watching thread. */
+    private final Map<Path, Snapshot> pending = new HashMap<>();
+    /** Files handed to the workers and not moved away yet. */
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger signedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile boolean stopped;
+    private Path watchDir;
+    private Path processedDir;
+    private Path failedDir;
+    private SignaturesFile signatures;
+
+    HotFolderSigner(SignerOptionsFromCmdLine baseOptions) {
+        this.baseOptions = baseOptions;
+    }
+
+    /**
+     * Watches the folder until the program is stopped.
+     *
+     * @return the program exit code
+     */
+    int run() {
+        final Path outDir;
+        try {
+            watchDir = Paths.get(baseOptions.getWatchDir()).toRealPath();
+            processedDir = Files.createDirectories(watchDir.resolve(PROCESSED_DIR));
+            failedDir = Files.createDirectories(StringUtils.isEmpty(baseOptions.getWatchErrorsDir())
+                    ? watchDir.resolve(FAILED_DIR)
+                    : Paths.get(baseOptions.getWatchErrorsDir()));
+            outDir = Files.createDirectories(Paths.get(baseOptions.getOutPath())).toRealPath();
+        } catch (IOException e) {
+            System.err.println(RES.get("console.watch.cantWatch", baseOptions.getWatchDir(), e.getMessage()));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        if (outDir.equals(watchDir)) {
+            System.err.println(RES.get("console.watch.noOutPath"));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        if (StringUtils.isNotEmpty(baseOptions.getSignatures())) {
+            try {
+                signatures = SignaturesFile.read(baseOptions.getSignatures());
+            } catch (IOException | ParseException e) {
+                System.err.println(e instanceof ParseException ? e.getMessage()
+                        : RES.get("console.multiSign.cantRead", baseOptions.getSignatures(), e.getMessage()));
+                return EXIT_CODE_COMMON_ERROR;
+            }
+        }
+
+        final WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            watchDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println(RES.get("console.watch.cantWatch", watchDir.toString(), e.getMessage()));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        final Thread shutdownHook = new Thread(() -> {
+            stopped = true;
+            closeQuietly(watcher);
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "jsignpdf-watch-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, baseOptions.getParallelism()),
+                ManifestSigner.workerThreadFactory());
+        LOGGER.info(RES.get("console.watch.started", watchDir.toString(), outDir.toString(), failedDir.toString()));
+        int exitCode = 0;
+        try {
+            // files which were already there when the watching started
+            scan();
+            if (!watch(watcher, pool)) {
+                exitCode = EXIT_CODE_COMMON_ERROR;
+            }
+        } finally {
+            closeQuietly(watcher);
+            ManifestSigner.awaitWorkers(pool);
+            LOGGER.info(RES.get("console.watch.summary", watchDir.toString(), String.valueOf(signedCount.get()),
+                    String.valueOf(failedCount.get())));
+            finished.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down - the hook is running
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * The watching loop.
+     *
+     * @return false when the folder can't be watched any more
+     */
+    private boolean watch(WatchService watcher, ExecutorService pool) {
+        while (!stopped) {
+            final WatchKey key;
+            try {
+                key = watcher.poll(pending.isEmpty() ? IDLE_POLL_MILLIS : Math.max(50L, settleMillis / 4),
+                        TimeUnit.MILLISECONDS);
+            } catch (ClosedWatchServiceException e) {
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+            if (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        LOGGER.info(RES.get("console.watch.overflow", watchDir.toString()));
+                        scan();
+                    } else {
+                        offer(watchDir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset() && !stopped) {
+                    System.err.println(RES.get("console.watch.cantWatch", watchDir.toString(), "no longer accessible"));
+                    return false;
+                }
+            }
+            dispatchSettled(pool);
+        }
+        return true;
+    }
+
+    private void scan() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(watchDir)) {
+            for (Path file : files) {
+                offer(file);
+            }
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.watch.cantWatch", watchDir.toString(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Starts tracking a file reported in the folder, unless it isn't a visible PDF or is already known.
+     */
+    void offer(Path file) {
+        final String name = file.getFileName().toString();
+        if (name.startsWith(".") || !StringUtils.endsWithIgnoreCase(name, ".pdf") || pending.containsKey(file)
+                || inProgress.contains(file)) {
+            return;
+        }
+        final Snapshot snapshot = Snapshot.of(file);
+        if (snapshot != null) {
+            pending.put(file, snapshot);
+        }
+    }
+
+    /**
+     * Hands the files which stopped changing to the workers.
+     */
+    void dispatchSettled(Executor pool) {
+        final long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Snapshot>> it = pending.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Path, Snapshot> entry = it.next();
+            final Snapshot current = Snapshot.of(entry.getKey());
+            if (current == null) {
+                // removed or renamed meanwhile
+                it.remove();
+            } else if (!current.sameAs(entry.getValue())) {
+                entry.setValue(current);
+            } else if (TimeUnit.NANOSECONDS.toMillis(now - entry.getValue().seenAt) >= settleMillis
+                    && isWriterDone(entry.getKey())) {
+                it.remove();
+                final Path file = entry.getKey();
+                inProgress.add(file);
+                pool.execute(() -> process(file));
+            }
+        }
+    }
+
+    private void process(Path file) {
+        final File inFile = file.toFile();
+        boolean signed = false;
+        String outFile = null;
+        try {
+            final SignerOptionsFromCmdLine options = baseOptions.forRecord(new String[0]);
+            outFile = Signer.defaultOutFile(options, inFile);
+            options.setInFile(inFile.getPath());
+            options.setOutFile(outFile);
+            signed = Signer.sign(new SignerLogic(options), options, signatures);
+        } catch (ParseException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+        }
+        try {
+            final Path moved = moveTo(file, signed ? processedDir : failedDir);
+            if (signed) {
+                signedCount.incrementAndGet();
+                LOGGER.info(RES.get("console.watch.signed", moved.toString(), outFile));
+            } else {
+                failedCount.incrementAndGet();
+                System.err.println(RES.get("console.watch.failed", inFile.getPath(), moved.toString()));
+            }
+        } catch (IOException e) {
+            (signed ? signedCount : failedCount).incrementAndGet();
+            LOGGER.warning(RES.get("console.watch.cantMove", inFile.getPath(),
+                    (signed ? processedDir : failedDir).toString(), e.getMessage()));
+        } finally {
+            inProgress.remove(file);
+        }
+    }
+
+    /**
+     * Moves the file into the folder, adding a number to its name when a file of that name is already there.
+     *
+     * @return the new location
+     */
+    static Path moveTo(Path file, Path dir) throws IOException {
+        final String name = file.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final String base = dot > 0 ? name.substring(0, dot) : name;
+        final String extension = dot > 0 ? name.substring(dot) : "";
+        Path target = dir.resolve(name);
+        for (int i = 1; Files.exists(target); i++) {
+            target = dir.resolve(base + "_" + i + extension);
+        }
+        return Files.move(file, target);
+    }
+
+    /**
+     * @return true when no other process holds the file open for writing, as far as the platform tells
+     */
+    static boolean isWriterDone(Path file) {
+        if (!Files.isWritable(file)) {
+            // the lock needs the file open for writing; signing only reads it, so the quiet period has to do
+            LOGGER.fine(() -> "Not writable, signing after the quiet period only: " + file);
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock()) {
+            return lock != null;
+        } catch (IOException | OverlappingFileLockException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(WatchService watcher) {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Closing the watch service failed", e);
+        }
+    }
+
+    /** Size and modification time of a file when it was (last) seen changing. */
+    private static final class Snapshot {
+        final long size;
+        final long modified;
+        final long seenAt;
+
+        private Snapshot(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+            this.seenAt = System.nanoTime();
+        }
+
+        /**
+         * @return the snapshot, {@code null} when the file is gone or isn't a regular file
+         */
+        static Snapshot of(Path file) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return attributes.isRegularFile()
+                        ? new Snapshot(attributes.size(), attributes.lastModifiedTime().toMillis())
+                        : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        boolean sameAs(Snapshot other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Expands the input file arguments of a batch run into a lazy stream of files:
+ * <ul>
+ * <li>a path with a glob in it ({@code *}, {@code ?}, {@code [..]}, {@code {..}}) is matched below the folder part
+ * which precedes the first glob; {@code **} crosses folders, so {@code in/**}{@code /*.pdf} finds the PDFs in
+ * {@code in} and all its subfolders,</li>
+ * <li>{@code @file} reads one argument per line from the file (blank lines and {@code #} comments are skipped),</li>
+ * <li>everything else is taken as-is.</li>
+ * </ul>
+ * Folders and file lists are read while the stream is consumed - the first file is returned as soon as it is found and
+ * the memory use depends on the folder depth, not on the number of files. A folder or list which can't be read is
+ * reported and skipped, see {@link #failures()}.
+ *
+ * @author Josef Cacek
+ */
+final class InputFiles {
+
+    private final String[] args;
+    private int failures;
+
+    InputFiles(String[] args) {
+        this.args = args;
+    }
+
+    /**
+     * @return the files; close the stream to release the folders and file lists being read
+     */
+    Stream<File> stream() {
+        final Expansion expansion = new Expansion();
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(expansion, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(expansion::close);
+    }
+
+    /**
+     * @return the number of folders and file lists which couldn't be read (so far)
+     */
+    int failures() {
+        return failures;
+    }
+
+    private void failed(String path, IOException e) {
+        failures++;
+        System.err.println(RES.get("console.input.cantRead", path, e.getMessage()));
+    }
+
+    /**
+     * Splits a glob argument into the folder to search and the pattern for the paths relative to it.
+     *
+     * @return the folder and the pattern, {@code null} when the argument has no glob
+     */
+    static String[] splitGlob(String arg) {
+        // backslash is the glob escape character, except where it separates folders
+        final String path = File.separatorChar == '\\' ? arg.replace('\\', '/') : arg;
+        final String[] segments = path.split("/", -1);
+        int i = 0;
+        while (i < segments.length && !StringUtils.containsAny(segments[i], '*', '?', '[', '{')) {
+            i++;
+        }
+        if (i == segments.length) {
+            return null;
+        }
+        String base = String.join("/", Arrays.copyOfRange(segments, 0, i));
+        if (i > 0 && base.isEmpty()) {
+            // the root folder
+            base = "/";
+        }
+        return new String[] { base, String.join("/", Arrays.copyOfRange(segments, i, segments.length)) };
+    }
+
+    /** Arguments being read - the command line, or a file list. */
+    private static final class ArgSource {
+        final String name;
+        final Iterator<String> args;
+        final BufferedReader reader;
+
+        ArgSource(String name, Iterator<String> args, BufferedReader reader) {
+            this.name = name;
+            this.args = args;
+            this.reader = reader;
+        }
+
+        void close() {
+            if (reader != null) {
+                closeQuietly(reader);
+            }
+        }
+    }
+
+    /** The expansion in progress: a stack of argument sources, and the files of the current argument. */
+    private final class Expansion implements Iterator<File>, Closeable {
+
+        private final Deque<ArgSource> argSources = new ArrayDeque<>();
+        private Iterator<File> files = Collections.emptyIterator();
+
+        Expansion() {
+            argSources.push(new ArgSource(null, Arrays.asList(args).iterator(), null));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!files.hasNext()) {
+                closeFiles();
+                final String arg = nextArg();
+                if (arg == null) {
+                    return false;
+                }
+                files = expand(arg);
+            }
+            return true;
+        }
+
+        @Override
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return files.next();
+        }
+
+        @Override
+        public void close() {
+            closeFiles();
+            files = Collections.emptyIterator();
+            while (!argSources.isEmpty()) {
+                argSources.pop().close();
+            }
+        }
+
+        /**
+         * @return the next argument - from the innermost file list being read - or {@code null} at the end
+         */
+        private String nextArg() {
+            while (!argSources.isEmpty()) {
+                final ArgSource source = argSources.peek();
+                try {
+                    if (source.args.hasNext()) {
+                        return source.args.next();
+                    }
+                } catch (UncheckedIOException e) {
+                    failed(source.name, e.getCause());
+                }
+                argSources.pop().close();
+            }
+            return null;
+        }
+
+        private Iterator<File> expand(String arg) {
+            if (arg.length() > 1 && arg.charAt(0) == '@') {
+                final String listFile = arg.substring(1);
+                if (argSources.stream().anyMatch(source -> listFile.equals(source.name))) {
+                    failed(listFile, new IOException("the file list includes itself"));
+                    return Collections.emptyIterator();
+                }
+                try {
+                    final BufferedReader reader = Files.newBufferedReader(Paths.get(listFile), StandardCharsets.UTF_8);
+                    argSources.push(new ArgSource(listFile, reader.lines().map(String::trim)
+                            .filter(line -> !line.isEmpty() && !line.startsWith("#")).iterator(), reader));
+                } catch (IOException e) {
+                    failed(listFile, e);
+                } catch (InvalidPathException e) {
+                    failed(listFile, new IOException(e.getMessage(), e));
+                }
+                return Collections.emptyIterator();
+            }
+            final String[] glob = splitGlob(arg);
+            if (glob == null || new File(arg).exists()) {
+                // an existing file whose name only looks like a glob is taken as-is
+                return Collections.singletonList(new File(arg)).iterator();
+            }
+            try {
+                return new GlobWalker(glob[0], glob[1]);
+            } catch (InvalidPathException | PatternSyntaxException e) {
+                failed(arg, new IOException(e.getMessage(), e));
+                return Collections.emptyIterator();
+            }
+        }
+
+        private void closeFiles() {
+            if (files instanceof GlobWalker) {
+                ((GlobWalker) files).close();
+            }
+        }
+    }
+
+    /**
+     * Walks the folders below a base folder depth-first, one open directory stream per level, and returns the regular
+     * files whose relative path matches the pattern. Folders are entered only as deep as the pattern reaches.
+     */
+    private final class GlobWalker implements Iterator<File>, Closeable {
+
+        private final Path base;
+        private final PathMatcher matcher;
+        /** For {@code **}{@code /x}: the same pattern without the leading folders, to match directly in the base. */
+        private final PathMatcher topMatcher;
+        private final int maxDepth;
+        private final Deque<DirectoryStream<Path>> streams = new ArrayDeque<>();
+        private final Deque<Iterator<Path>> iterators = new ArrayDeque<>();
+        private File nextFile;
+
+        GlobWalker(String base, String pattern) {
+            this.base = Paths.get(base);
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            this.topMatcher = pattern.startsWith("**/")
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3))
+                    : null;
+            this.maxDepth = pattern.contains("**") ? Integer.MAX_VALUE : StringUtils.countMatches(pattern, '/') + 1;
+            open(this.base);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextFile == null && !iterators.isEmpty()) {
+                final Path path;
+                try {
+                    if (!iterators.peek().hasNext()) {
+                        closeQuietly(streams.pop());
+                        iterators.pop();
+                        continue;
+                    }
+                    path = iterators.peek().next();
+                } catch (DirectoryIteratorException e) {
+                    failed(String.valueOf(base), e.getCause());
+                    closeQuietly(streams.pop());
+                    iterators.pop();
+                    continue;
+                }
+                final BasicFileAttributes attributes;
+                try {
+                    // links to folders are not followed, so a link cycle can't loop the walk
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    LOGGER.fine(() -> "Skipping " + path + ": " + e.getMessage());
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (iterators.size() < maxDepth) {
+                        open(path);
+                    }
+                } else if ((attributes.isRegularFile() || Files.isRegularFile(path)) && matches(path)) {
+                    nextFile = path.toFile();
+                }
+            }
+            return nextFile != null;
+        }
+
+        @Override
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final File result = nextFile;
+            nextFile = null;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            while (!streams.isEmpty()) {
+                closeQuietly(streams.pop());
+            }
+            iterators.clear();
+        }
+
+        private boolean matches(Path path) {
+            final Path relative = base.relativize(path);
+            return matcher.matches(relative) || (topMatcher != null && topMatcher.matches(relative));
+        }
+
+        private void open(Path dir) {
+            try {
+                final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+                streams.push(stream);
+                iterators.push(stream.iterator());
+            } catch (IOException e) {
+                failed(dir.toString(), e);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.fine(() -> "Closing failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Recognizes linearized ("fast web view") inputs. A linearized PDF starts with a linearization dictionary which
+ * declares the file length ({@code /L}); viewers serving a document through byte-range requests rely on it only while
+ * the length still matches. Neither engine writes linearized output, and an appended signature is an incremental update
+ * which changes the length, so signing ends the linearization - the signer is told when an input loses it.
+ *
+ * @author Josef Cacek
+ */
+final class Linearization {
+
+    /** The linearization dictionary has to be within the first 1024 bytes of the file. */
+    static final int HEADER_BYTES = 1024;
+
+    private static final Pattern DICTIONARY = Pattern.compile("\\d+\\s+\\d+\\s+obj\\s*<<(.*?)>>", Pattern.DOTALL);
+    private static final Pattern LINEARIZED = Pattern.compile("/Linearized\\s*[\\d.]+");
+    private static final Pattern LENGTH = Pattern.compile("/L\\s+(\\d+)");
+
+    private Linearization() {
+    }
+
+    /**
+     * @return the file length declared by the linearization dictionary, -1 when the file is not linearized
+     */
+    static long declaredLength(File file) throws IOException {
+        final byte[] header = new byte[HEADER_BYTES];
+        int read = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while (read < header.length && (n = in.read(header, read, header.length - read)) > 0) {
+                read += n;
+            }
+        }
+        // ISO-8859-1 keeps one char per byte, the binary comment after the header doesn't matter
+        final Matcher dictionary = DICTIONARY.matcher(new String(header, 0, read, StandardCharsets.ISO_8859_1));
+        if (!dictionary.find() || !LINEARIZED.matcher(dictionary.group(1)).find()) {
+            return -1L;
+        }
+        final Matcher length = LENGTH.matcher(dictionary.group(1));
+        return length.find() ? Long.parseLong(length.group(1)) : -1L;
+    }
+
+    /**
+     * @return true when the file is linearized and was not changed since, i.e. viewers may use the linearization
+     */
+    static boolean isLinearized(File file) throws IOException {
+        return declaredLength(file) == file.length();
+    }
+
+    /**
+     * Tells the signer when the input is linearized, as the signed document won't be.
+     *
+     * @param options the options of the (first) signature applied to the input
+     */
+    static void warnIfLost(BasicSignerOptions options) {
+        if (StringUtils.isEmpty(options.getInFile())) {
+            return;
+        }
+        try {
+            if (isLinearized(new File(options.getInFile()))) {
+                LOGGER.warning(RES.get(options.isAppendX() ? "console.linearization.append"
+                        : "console.linearization.overwrite", options.getInFile()));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.fine(() -> "Linearization check skipped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import net.sf.jsignpdf.batch.BatchJournal;
+import net.sf.jsignpdf.batch.BatchResultWriter;
+import net.sf.jsignpdf.batch.BatchResultWriter.Status;
+import net.sf.jsignpdf.batch.ManifestReader;
+import net.sf.jsignpdf.batch.ManifestRecord;
+import net.sf.jsignpdf.types.BufferingMode;
+import net.sf.jsignpdf.utils.PrivateKeyCache;
+
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Runs the {@code --manifest} batch mode: streams the manifest records, turns every record into its own options instance
+ * (the command line with the record's overrides on top) and signs the documents in one JVM, optionally in parallel.
+ *
+ * <p>
+ * Records are parsed on the calling thread, in manifest order; only the signing runs on the worker threads. The number of
+ * records read ahead of the workers is bounded, so memory use doesn't grow with the manifest size.
+ * </p>
+ * <p>
+ * With {@code --augment} the records are extended instead of signed, see {@link SignerLogic#augmentFile()}.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class ManifestSigner {
+
+    /** Options which select a command or configure the whole run - meaningless for a single manifest record. */
+    private static final Set<String> RECORD_FORBIDDEN_OPTIONS = Set.of(ARG_HELP_LONG, ARG_VERSION_LONG,
+            ARG_LOADPROPS_LONG, ARG_LOADPROPS_FILE_LONG, ARG_OPTION_LONG, ARG_LIST_KS_TYPES_LONG, ARG_LIST_KEYS_LONG,
+            ARG_LIST_ENGINES_LONG, ARG_LIST_SIG_FIELDS_LONG, ARG_QUIET_LONG, ARG_ENABLE_STDIN_PWDS_LONG, ARG_GUI,
+            ARG_MANIFEST_LONG, ARG_PARALLELISM_LONG, ARG_RESULTS_LONG, ARG_JOURNAL_LONG, ARG_RESUME_LONG, ARG_AUGMENT_LONG,
+            ARG_VERIFY_LONG, ARG_VERIFY_TIER_LONG, ARG_SIGNATURES_LONG, ARG_WATCH_LONG, ARG_WATCH_ERRORS_LONG);
+
+    private final SignerOptionsFromCmdLine baseOptions;
+    private final String manifestPath;
+    private final AtomicInteger signedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private BatchResultWriter results;
+    private BatchJournal journal;
+    private SignaturesFile signatures;
+
+    ManifestSigner(SignerOptionsFromCmdLine baseOptions) {
+        this.baseOptions = baseOptions;
+        this.manifestPath = baseOptions.getManifest();
+    }
+
+    /**
+     * Signs all documents listed in the manifest.
+     *
+     * @return the program exit code
+     */
+    int run() {
+        if (StringUtils.isNotEmpty(baseOptions.getSignatures()) && !baseOptions.isAugment()) {
+            try {
+                signatures = SignaturesFile.read(baseOptions.getSignatures());
+            } catch (IOException | ParseException e) {
+                System.err.println(e instanceof ParseException ? e.getMessage()
+                        : RES.get("console.multiSign.cantRead", baseOptions.getSignatures(), e.getMessage()));
+                return EXIT_CODE_COMMON_ERROR;
+            }
+        }
+        try {
+            journal = Signer.openJournal(baseOptions);
+        } catch (IOException e) {
+            System.err.println(RES.get("console.journal.cantOpen", baseOptions.getJournal(), e.getMessage()));
+            return EXIT_CODE_COMMON_ERROR;
+        }
+        try (ManifestReader reader = ManifestReader.open(new File(manifestPath));
+                BatchResultWriter resultWriter = openResults()) {
+            results = resultWriter;
+            // the records share one keystore load per key instead of one per document
+            baseOptions.setPrivateKeyCache(new PrivateKeyCache());
+            final int parallelism = Math.max(1, baseOptions.getParallelism());
+            final ExecutorService pool = parallelism > 1
+                    ? Executors.newFixedThreadPool(parallelism, workerThreadFactory())
+                    : null;
+            try {
+                dispatch(reader, pool, new Semaphore(2 * parallelism));
+            } finally {
+                awaitWorkers(pool);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(RES.get("console.manifest.cantRead", manifestPath, e.getMessage()));
+            return signedCount.get() > 0 ? EXIT_CODE_SOME_SIG_FAILED : EXIT_CODE_CANT_READ_FILE;
+        } finally {
+            Signer.closeJournal(journal);
+        }
+        LOGGER.info(RES.get("console.manifest.summary", manifestPath, String.valueOf(signedCount.get()),
+                String.valueOf(failedCount.get())));
+        if (failedCount.get() > 0) {
+            return signedCount.get() > 0 ? EXIT_CODE_SOME_SIG_FAILED : EXIT_CODE_ALL_SIG_FAILED;
+        }
+        return 0;
+    }
+
+    private void dispatch(ManifestReader reader, ExecutorService pool, Semaphore inFlight) {
+        while (reader.hasNext()) {
+            final ManifestRecord record = reader.next();
+            final SignerOptionsFromCmdLine recordOptions;
+            try {
+                recordOptions = prepare(record);
+            } catch (ParseException e) {
+                failedCount.incrementAndGet();
+                System.err.println(RES.get("console.manifest.invalidRecord", manifestPath,
+                        String.valueOf(record.lineNumber()), e.getMessage()));
+                writeResult(record.lineNumber(), record.in(), record.out(), Status.INVALID, 0L, null,
+                        e.getMessage());
+                continue;
+            }
+            if (journal != null && journal.isCompleted(recordOptions.getInFile(), recordOptions.getOutFile())) {
+                writeResult(record.lineNumber(), recordOptions.getInFile(), recordOptions.getOutFile(), Status.SKIPPED,
+                        0L, null, null);
+                continue;
+            }
+            execute(pool, inFlight, () -> sign(record.lineNumber(), recordOptions));
+        }
+    }
+
+    /**
+     * Validates the record and builds its options.
+     */
+    private SignerOptionsFromCmdLine prepare(ManifestRecord record) throws ParseException {
+        if (!record.isValid()) {
+            throw new ParseException(record.error());
+        }
+        final String in = record.in();
+        if (StringUtils.isEmpty(in)) {
+            throw new ParseException("missing the '" + ManifestRecord.KEY_IN + "' value");
+        }
+        final File inFile = new File(in);
+        if (!inFile.canRead()) {
+            throw new ParseException(RES.get("file.notReadable", in));
+        }
+        final SignerOptionsFromCmdLine recordOptions = baseOptions.forRecord(toArgs(record.values()));
+        recordOptions.setInFile(in);
+        recordOptions.setOutFile(StringUtils.isNotEmpty(record.out()) ? record.out()
+                : Signer.defaultOutFile(recordOptions, inFile));
+        return recordOptions;
+    }
+
+    /**
+     * Converts the record values (except {@code in} and {@code out}) to command line arguments. A key is a long or short
+     * option name; options without an argument take a boolean value and are only added for {@code true}.
+     *
+     * @param values the record values
+     * @return the arguments
+     * @throws ParseException for an unknown option, an option not allowed in a record or an invalid flag value
+     */
+    static String[] toArgs(Map<String, String> values) throws ParseException {
+        final List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            final String key = entry.getKey();
+            if (ManifestRecord.KEY_IN.equals(key) || ManifestRecord.KEY_OUT.equals(key)) {
+                continue;
+            }
+            final Option option = SignerOptionsFromCmdLine.OPTS.getOption(key);
+            if (option == null) {
+                throw new ParseException("unknown option '" + key + "'");
+            }
+            final String longName = option.getLongOpt();
+            if (longName != null && RECORD_FORBIDDEN_OPTIONS.contains(longName)) {
+                throw new ParseException("option '" + key + "' can't be used in a manifest record");
+            }
+            final String token = longName != null ? "--" + longName : "-" + option.getOpt();
+            final String value = entry.getValue();
+            if (option.hasArg()) {
+                args.add(token);
+                args.add(value);
+            } else {
+                switch (value.trim().toLowerCase(Locale.ROOT)) {
+                    case "true", "yes", "1" -> args.add(token);
+                    case "false", "no", "0" -> {
+                        // flags can only be switched on per record
+                    }
+                    default -> throw new ParseException("option '" + key + "' expects true or false, got '" + value + "'");
+                }
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private void sign(int line, SignerOptionsFromCmdLine recordOptions) {
+        final long start = System.nanoTime();
+        final boolean augment = baseOptions.isAugment();
+        final SignerLogic logic = new SignerLogic(recordOptions);
+        boolean signed;
+        try {
+            signed = augment ? logic.augmentFile() : Signer.sign(logic, recordOptions, signatures);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+            signed = false;
+        }
+        (signed ? signedCount : failedCount).incrementAndGet();
+        Signer.recordInJournal(journal, recordOptions, signed);
+        final Status status = signed ? (augment ? Status.AUGMENTED : Status.SIGNED) : Status.FAILED;
+        writeResult(line, recordOptions.getInFile(), recordOptions.getOutFile(), status,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), logic.getBufferingMode(), null);
+    }
+
+    private BatchResultWriter openResults() throws IOException {
+        final String resultsFile = baseOptions.getResultsFile();
+        return StringUtils.isEmpty(resultsFile) ? null : BatchResultWriter.open(new File(resultsFile));
+    }
+
+    private void writeResult(int line, String in, String out, Status status, long millis, BufferingMode buffering,
+            String message) {
+        if (results == null) {
+            return;
+        }
+        try {
+            results.write(line, in, out, status, millis, buffering, message);
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.manifest.cantWriteResults", baseOptions.getResultsFile(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Runs a task of the batch on the pool, or on the calling thread when there is no pool. Only as many tasks as
+     * {@code inFlight} has permits are submitted at once, so the dispatching thread doesn't queue the whole batch.
+     */
+    static void execute(ExecutorService pool, Semaphore inFlight, Runnable task) {
+        if (pool == null) {
+            task.run();
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the results of a batch run, reporting a failure.
+     *
+     * @param results the results, {@code null} when none are written
+     * @param resultsFile the {@code --results} option, for the report
+     */
+    static void closeResults(BatchResultWriter results, String resultsFile) {
+        if (results == null) {
+            return;
+        }
+        try {
+            results.close();
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.manifest.cantWriteResults", resultsFile, e.getMessage()));
+        }
+    }
+
+    static void awaitWorkers(ExecutorService pool) {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.fine("Waiting for the batch signing workers to finish");
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ThreadFactory workerThreadFactory() {
+        final AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread(r, "jsignpdf-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,217 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+import net.sf.jsignpdf.engine.SigningEngine;
+import net.sf.jsignpdf.types.BufferingMode;
+import net.sf.jsignpdf.utils.AppConfig;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Admits signing jobs against a heap budget - {@code memory.budgetPercent} of the maximum heap - so that the batch
+ * workers don't run out of memory when several large documents come at the same time. The heap a job needs is
+ * estimated from the input size, the engine's {@link SigningEngine#heapPerInputByte(BufferingMode)}, the buffering
+ * mode, the number of signatures and the images of a visible signature; a job starts when its estimate fits into what
+ * the running jobs left.
+ * <p>
+ * A job in memory buffering mode which doesn't fit is moved to temp buffering when that saves a noticeable part of
+ * the budget (or when it couldn't run in memory even alone); a small one waits. The mode is set on the job's options
+ * for the time of the job only, and so is the mode {@code buffering.mode=auto} decides for the document.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+final class MemoryAdmission {
+
+    /** Heap a job needs whatever the document: keystore, engine state, TSA and revocation responses, fonts. */
+    static final long BASE_BYTES = 16L * 1024 * 1024;
+
+    /** Decoded images are much larger than their files. */
+    private static final int IMAGE_EXPANSION = 8;
+
+    /** A job is moved to temp buffering only when that saves at least this part of the budget. */
+    private static final int DIVERT_SHARE = 8;
+
+    private final int budgetKiB;
+    private final Semaphore freeKiB;
+
+    /**
+     * @param budgetBytes heap the admitted jobs may use together; 0 admits everything at once
+     */
+    MemoryAdmission(long budgetBytes) {
+        this.budgetKiB = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, budgetBytes) / 1024);
+        // fair: a large job waiting for the budget isn't starved by the small ones coming after it
+        this.freeKiB = new Semaphore(budgetKiB, true);
+    }
+
+    /**
+     * @return the admission shared by all jobs of this JVM
+     */
+    static MemoryAdmission shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * Decides {@code buffering.mode=auto} for the job, then waits until it fits into the budget and reserves its
+     * estimate.
+     *
+     * @param engine the engine which signs the document
+     * @param signatures the options of the signatures applied to the document in one pass (usually one)
+     * @return the reservation, to be closed when the job is done
+     */
+    Ticket admit(SigningEngine engine, List<? extends BasicSignerOptions> signatures) {
+        final BasicSignerOptions first = signatures.get(0);
+        final boolean auto = first.getBufferingMode() == null && AppConfig.bufferingMode() == BufferingMode.AUTO;
+        final BufferingMode mode = auto ? chooseAuto(engine, signatures) : AppConfig.bufferingMode(first);
+        final List<? extends BasicSignerOptions> chosen = auto ? signatures : null;
+        if (budgetKiB == 0) {
+            return new Ticket(0, mode, chosen, false);
+        }
+        final int need = kib(estimate(engine, mode, signatures));
+        if (need <= budgetKiB && tryAcquire(need)) {
+            return new Ticket(need, mode, chosen, false);
+        }
+        if (mode == BufferingMode.MEMORY) {
+            final int tempNeed = kib(estimate(engine, BufferingMode.TEMP, signatures));
+            if (need > budgetKiB || need - tempNeed >= budgetKiB / DIVERT_SHARE) {
+                LOGGER.info(RES.get("console.memory.toTemp", first.getInFile(), mib(need),
+                        mib(freeKiB.availablePermits())));
+                acquire(tempNeed);
+                setMode(signatures, BufferingMode.TEMP);
+                return new Ticket(Math.min(tempNeed, budgetKiB), BufferingMode.TEMP, signatures, true);
+            }
+        }
+        acquire(need);
+        return new Ticket(Math.min(need, budgetKiB), mode, chosen, false);
+    }
+
+    /**
+     * Decides the auto buffering mode from the input size, the engine's heap use and the free heap, and sets it on the
+     * options.
+     */
+    private static BufferingMode chooseAuto(SigningEngine engine, List<? extends BasicSignerOptions> signatures) {
+        final long freeHeap = AppConfig.freeHeap();
+        final long size = length(signatures.get(0).getInFile());
+        final BufferingMode mode = AppConfig.autoBufferingMode(size, engine.heapPerInputByte(BufferingMode.MEMORY),
+                freeHeap);
+        LOGGER.info(RES.get("console.buffering.auto", signatures.get(0).getInFile(),
+                mode.name().toLowerCase(Locale.ROOT), String.valueOf(size >> 20), String.valueOf(freeHeap >> 20)));
+        setMode(signatures, mode);
+        return mode;
+    }
+
+    private static void setMode(List<? extends BasicSignerOptions> signatures, BufferingMode mode) {
+        for (BasicSignerOptions signature : signatures) {
+            signature.setBufferingMode(mode);
+        }
+    }
+
+    /**
+     * @return the estimated peak heap use of signing the document
+     */
+    static long estimate(SigningEngine engine, BufferingMode mode, List<? extends BasicSignerOptions> signatures) {
+        final long size = length(signatures.get(0).getInFile());
+        long result = BASE_BYTES + (long) (engine.heapPerInputByte(mode) * size);
+        if (!mode.isStaged()) {
+            // the revisions between several signatures stay on the heap, staged modes keep them in files
+            result += (signatures.size() - 1) * size;
+        }
+        for (BasicSignerOptions signature : signatures) {
+            if (signature.isVisible()) {
+                result += IMAGE_EXPANSION * (length(signature.getImgPath()) + length(signature.getBgImgPath()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the unreserved part of the budget in bytes
+     */
+    long available() {
+        return freeKiB.availablePermits() * 1024L;
+    }
+
+    private void acquire(int kib) {
+        // a job larger than the whole budget runs alone
+        final int permits = Math.min(kib, budgetKiB);
+        if (!tryAcquire(permits)) {
+            LOGGER.fine(() -> "Waiting for " + mib(permits) + " MiB of the signing heap budget");
+            freeKiB.acquireUninterruptibly(permits);
+        }
+    }
+
+    /**
+     * Takes the permits when they are free and no other job waits for the budget; the untimed
+     * {@link Semaphore#tryAcquire(int)} would barge past the queue even of a fair semaphore.
+     */
+    private boolean tryAcquire(int kib) {
+        return !freeKiB.hasQueuedThreads() && freeKiB.tryAcquire(kib);
+    }
+
+    private static long length(String path) {
+        return StringUtils.isEmpty(path) ? 0L : new File(path).length();
+    }
+
+    private static int kib(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024);
+    }
+
+    private static String mib(int kib) {
+        return String.valueOf(kib / 1024);
+    }
+
+    /** A reservation of the budget; closing it releases the budget and resets a changed buffering mode. */
+    final class Ticket implements AutoCloseable {
+
+        private final int kib;
+        private final BufferingMode mode;
+        private final List<? extends BasicSignerOptions> changed;
+        private final boolean diverted;
+        private boolean closed;
+
+        private Ticket(int kib, BufferingMode mode, List<? extends BasicSignerOptions> changed, boolean diverted) {
+            this.kib = kib;
+            this.mode = mode;
+            this.changed = changed;
+            this.diverted = diverted;
+        }
+
+        /**
+         * @return the buffering mode the job runs with, never {@link BufferingMode#AUTO}
+         */
+        BufferingMode mode() {
+            return mode;
+        }
+
+        /**
+         * @return true when the job was moved to temp buffering
+         */
+        boolean isDiverted() {
+            return diverted;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (changed != null) {
+                setMode(changed, null);
+            }
+            freeKiB.release(kib);
+        }
+    }
+
+    private static final class Holder {
+        static final MemoryAdmission SHARED = new MemoryAdmission(
+                Runtime.getRuntime().maxMemory() / 100 * AppConfig.memoryBudgetPercent());
+    }
+}
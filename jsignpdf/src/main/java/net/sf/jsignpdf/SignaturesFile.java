@@ -0,0 +1,86 @@
+package net.sf.jsignpdf;
+
+import static net.sf.jsignpdf.Constants.RES;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jsignpdf.batch.ManifestReader;
+import net.sf.jsignpdf.batch.ManifestRecord;
+
+import org.apache.commons.cli.ParseException;
+
+/**
+ * The {@code --signatures} file: the signatures to apply to every document in one pass, in the manifest format (see
+ * {@link ManifestReader}). Each record overrides command line options for one signature - typically the key, the
+ * field and the appearance. The file is read once and its records are converted to arguments up front, so a broken
+ * record stops the run before any document is touched.
+ *
+ * @author Josef Cacek
+ */
+final class SignaturesFile {
+
+    private final List<String[]> records;
+
+    private SignaturesFile(List<String[]> records) {
+        this.records = records;
+    }
+
+    /**
+     * Reads and checks the file.
+     *
+     * @param path the file
+     * @return the signatures
+     * @throws IOException when the file can't be read
+     * @throws ParseException when a record is invalid or the file has none
+     */
+    static SignaturesFile read(String path) throws IOException, ParseException {
+        final List<String[]> records = new ArrayList<>();
+        try (ManifestReader reader = ManifestReader.open(new File(path))) {
+            while (reader.hasNext()) {
+                final ManifestRecord record = reader.next();
+                try {
+                    if (!record.isValid()) {
+                        throw new ParseException(record.error());
+                    }
+                    if (record.in() != null || record.out() != null) {
+                        throw new ParseException("the '" + ManifestRecord.KEY_IN + "' and '" + ManifestRecord.KEY_OUT
+                                + "' values are given by the signed document");
+                    }
+                    records.add(ManifestSigner.toArgs(record.values()));
+                } catch (ParseException e) {
+                    throw new ParseException(RES.get("console.multiSign.invalidRecord", path,
+                            String.valueOf(record.lineNumber()), e.getMessage()));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (records.isEmpty()) {
+            throw new ParseException(RES.get("console.multiSign.empty", path));
+        }
+        return new SignaturesFile(List.copyOf(records));
+    }
+
+    /**
+     * Builds the options of all signatures for one document: the records are parsed in front of the document's command
+     * line, so they win over it, and all of them share its input and output file.
+     *
+     * @param documentOptions the options of the document
+     * @return the options of the signatures, in signing order
+     * @throws ParseException when a record can't be parsed
+     */
+    List<SignerOptionsFromCmdLine> forDocument(SignerOptionsFromCmdLine documentOptions) throws ParseException {
+        final List<SignerOptionsFromCmdLine> result = new ArrayList<>(records.size());
+        for (String[] args : records) {
+            final SignerOptionsFromCmdLine signature = documentOptions.forRecord(args);
+            signature.setInFile(documentOptions.getInFile());
+            signature.setOutFile(documentOptions.getOutFile());
+            result.add(signature);
+        }
+        return result;
+    }
+}
@@ -8,7 +8,7 @@ import static net.sf.jsignpdf.Constants.VERSION;
 import static net.sf.jsignpdf.Constants.LOGGER;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
 import java.security.Provider;
 import java.security.Security;
 import java.util.ArrayList;
@@ -18,26 +18,29 @@ import java.util.List;
 import java.util.Locale;
 import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 
 import javax.swing.JOptionPane;
 import javax.swing.UIManager;
 import javax.swing.WindowConstants;
 
+import net.sf.jsignpdf.batch.BatchJournal;
 import net.sf.jsignpdf.engine.EngineRegistry;
 import net.sf.jsignpdf.engine.SigningEngine;
+import net.sf.jsignpdf.revocation.RevocationBundle;
+import net.sf.jsignpdf.revocation.RevocationBundleBuilder;
 import net.sf.jsignpdf.ssl.SSLInitializer;
 import net.sf.jsignpdf.types.SignatureFieldInfo;
 import net.sf.jsignpdf.utils.AppConfig;
 import net.sf.jsignpdf.utils.GuiUtils;
+import net.sf.jsignpdf.utils.HttpTransport;
 import net.sf.jsignpdf.utils.KeyStoreUtils;
 import net.sf.jsignpdf.utils.PKCS11Utils;
+import net.sf.jsignpdf.utils.PrivateKeyCache;
 import net.sf.jsignpdf.utils.UiLocale;
 
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.io.filefilter.AndFileFilter;
-import org.apache.commons.io.filefilter.FileFileFilter;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -177,8 +180,31 @@ public class Signer {
                 exit(listSigFields(tmpOpts));
                 return;
             }
+            if (StringUtils.isNotEmpty(tmpOpts.getRevocationBundleOut())) {
+                exit(buildRevocationBundle(tmpOpts));
+                return;
+            }
             if (tmpOpts.isGui()) {
                 showGui = true;
+            } else if (tmpOpts.isVerify()) {
+                if (ArrayUtils.isEmpty(tmpOpts.getFiles()) && StringUtils.isEmpty(tmpOpts.getManifest())) {
+                    printHelp();
+                    exit(EXIT_CODE_NO_COMMAND);
+                    return;
+                }
+                exit(new BulkVerifier(tmpOpts).run());
+            } else if (tmpOpts.isAugment() && StringUtils.isEmpty(tmpOpts.getManifest())) {
+                if (ArrayUtils.isEmpty(tmpOpts.getFiles())
+                        && (StringUtils.isEmpty(tmpOpts.getInFile()) || StringUtils.isEmpty(tmpOpts.getOutFile()))) {
+                    printHelp();
+                    exit(EXIT_CODE_NO_COMMAND);
+                    return;
+                }
+                exit(new BulkAugmenter(tmpOpts).run());
+            } else if (StringUtils.isNotEmpty(tmpOpts.getWatchDir())) {
+                exit(new HotFolderSigner(tmpOpts).run());
+            } else if (StringUtils.isNotEmpty(tmpOpts.getManifest())) {
+                exit(new ManifestSigner(tmpOpts).run());
             } else if (ArrayUtils.isNotEmpty(tmpOpts.getFiles())
                     || (!StringUtils.isEmpty(tmpOpts.getInFile()) && !StringUtils.isEmpty(tmpOpts.getOutFile()))) {
                 signFiles(tmpOpts);
@@ -295,67 +321,148 @@ public class Signer {
      */
     private static void signFiles(SignerOptionsFromCmdLine anOpts) {
         final SignerLogic tmpLogic = new SignerLogic(anOpts);
+        final SignaturesFile signatures;
+        try {
+            signatures = StringUtils.isEmpty(anOpts.getSignatures()) ? null : SignaturesFile.read(anOpts.getSignatures());
+        } catch (IOException | ParseException e) {
+            System.err.println(e instanceof ParseException ? e.getMessage()
+                    : RES.get("console.multiSign.cantRead", anOpts.getSignatures(), e.getMessage()));
+            exit(Constants.EXIT_CODE_COMMON_ERROR);
+            return;
+        }
         if (ArrayUtils.isEmpty(anOpts.getFiles())) {
             // we've used -lp (loadproperties) parameter
-            if (!tmpLogic.signFile()) {
+            if (!sign(tmpLogic, anOpts, signatures)) {
                 exit(Constants.EXIT_CODE_ALL_SIG_FAILED);
             }
             return;
         }
+        final BatchJournal journal;
+        try {
+            journal = openJournal(anOpts);
+        } catch (IOException e) {
+            System.err.println(RES.get("console.journal.cantOpen", anOpts.getJournal(), e.getMessage()));
+            exit(Constants.EXIT_CODE_COMMON_ERROR);
+            return;
+        }
         int successCount = 0;
         int failedCount = 0;
-
-        for (File inputFile : expandInputFiles(anOpts.getFiles())) {
-            final String tmpInFile = inputFile.getPath();
-            if (!inputFile.canRead()) {
-                failedCount++;
-                System.err.println(RES.get("file.notReadable", new String[] { tmpInFile }));
-                continue;
-            }
-            anOpts.setInFile(tmpInFile);
-            String tmpNameBase = inputFile.getName();
-            String tmpSuffix = ".pdf";
-            if (StringUtils.endsWithIgnoreCase(tmpNameBase, tmpSuffix)) {
-                tmpSuffix = StringUtils.right(tmpNameBase, 4);
-                tmpNameBase = StringUtils.left(tmpNameBase, tmpNameBase.length() - 4);
-            }
-            final StringBuilder tmpName = new StringBuilder(anOpts.getOutPath());
-            tmpName.append(anOpts.getOutPrefix());
-            tmpName.append(tmpNameBase).append(anOpts.getOutSuffix()).append(tmpSuffix);
-            anOpts.setOutFile(tmpName.toString());
-            if (tmpLogic.signFile()) {
-                successCount++;
-            } else {
-                failedCount++;
+        // the files share one keystore load per key instead of one per document
+        anOpts.setPrivateKeyCache(new PrivateKeyCache());
+
+        final InputFiles inputs = new InputFiles(anOpts.getFiles());
+        try (Stream<File> inputFiles = inputs.stream()) {
+            for (Iterator<File> it = inputFiles.iterator(); it.hasNext();) {
+                final File inputFile = it.next();
+                final String tmpInFile = inputFile.getPath();
+                if (!inputFile.canRead()) {
+                    failedCount++;
+                    System.err.println(RES.get("file.notReadable", new String[] { tmpInFile }));
+                    continue;
+                }
+                final String tmpOutFile = defaultOutFile(anOpts, inputFile);
+                if (journal != null && journal.isCompleted(tmpInFile, tmpOutFile)) {
+                    LOGGER.fine(() -> "Already signed according to the journal: " + tmpInFile);
+                    continue;
+                }
+                anOpts.setInFile(tmpInFile);
+                anOpts.setOutFile(tmpOutFile);
+                final boolean signed = sign(tmpLogic, anOpts, signatures);
+                if (signed) {
+                    successCount++;
+                } else {
+                    failedCount++;
+                }
+                recordInJournal(journal, anOpts, signed);
             }
+        } finally {
+            closeJournal(journal);
         }
+        failedCount += inputs.failures();
         if (failedCount > 0) {
             exit(successCount > 0 ? Constants.EXIT_CODE_SOME_SIG_FAILED : Constants.EXIT_CODE_ALL_SIG_FAILED);
         }
     }
 
     /**
-     * Expands the input file arguments - a path with {@code *} or {@code ?} in its name is matched against its
-     * folder, everything else is taken as-is.
+     * Signs the current input file of the options, once or with all {@code --signatures}.
+     *
+     * @param signatures the signatures file, {@code null} for a single signature
+     * @return true when the output was written
      */
-    private static List<File> expandInputFiles(String[] wildcardPaths) {
-        final List<File> result = new ArrayList<>();
-        for (final String wildcardPath : wildcardPaths) {
-            final File wildcardFile = new File(wildcardPath);
-            if (StringUtils.containsAny(wildcardFile.getName(), '*', '?')) {
-                final File inputFolder = wildcardFile.getAbsoluteFile().getParentFile();
-                final FileFilter fileFilter = new AndFileFilter(FileFileFilter.FILE,
-                        new WildcardFileFilter(wildcardFile.getName()));
-                final File[] inputFiles = inputFolder.listFiles(fileFilter);
-                if (inputFiles == null) {
-                    continue;
-                }
-                Collections.addAll(result, inputFiles);
-            } else {
-                result.add(wildcardFile);
-            }
+    static boolean sign(SignerLogic logic, SignerOptionsFromCmdLine options, SignaturesFile signatures) {
+        if (signatures == null) {
+            return logic.signFile();
+        }
+        try {
+            return logic.signFile(signatures.forDocument(options));
+        } catch (ParseException e) {
+            LOGGER.severe(e.getMessage());
+            return false;
         }
-        return result;
+    }
+
+    /**
+     * Opens the {@code --journal} of a batch run, loading the already signed files when {@code --resume} is used.
+     *
+     * @return the journal, or {@code null} when no journal was requested
+     */
+    static BatchJournal openJournal(SignerOptionsFromCmdLine anOpts) throws IOException {
+        if (StringUtils.isEmpty(anOpts.getJournal())) {
+            return null;
+        }
+        final BatchJournal journal = BatchJournal.open(new File(anOpts.getJournal()), anOpts.isResume());
+        if (anOpts.isResume()) {
+            LOGGER.info(RES.get("console.journal.resumed", anOpts.getJournal(),
+                    String.valueOf(journal.completedCount())));
+        }
+        return journal;
+    }
+
+    /**
+     * Appends the outcome of one file to the journal (if any). A journal which can't be written is reported, but
+     * doesn't stop the batch - the signing itself succeeded or failed independently of it.
+     *
+     * @param options the options the file was signed with: its input and output file and the output digest
+     */
+    static void recordInJournal(BatchJournal journal, BasicSignerOptions options, boolean signed) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.record(options.getInFile(), options.getOutFile(),
+                    signed ? BatchJournal.Status.SIGNED : BatchJournal.Status.FAILED, options.getOutputSha256());
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.journal.cantWrite", journal.getFile().getPath(), e.getMessage()));
+        }
+    }
+
+    static void closeJournal(BatchJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.warning(RES.get("console.journal.cantWrite", journal.getFile().getPath(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Builds the output file name for an input file from the output folder, prefix and suffix options, e.g.
+     * {@code ./mydocument_signed.pdf}.
+     */
+    static String defaultOutFile(SignerOptionsFromCmdLine anOpts, File inputFile) {
+        String tmpNameBase = inputFile.getName();
+        String tmpSuffix = ".pdf";
+        if (StringUtils.endsWithIgnoreCase(tmpNameBase, tmpSuffix)) {
+            tmpSuffix = StringUtils.right(tmpNameBase, 4);
+            tmpNameBase = StringUtils.left(tmpNameBase, tmpNameBase.length() - 4);
+        }
+        final StringBuilder tmpName = new StringBuilder(anOpts.getOutPath());
+        tmpName.append(anOpts.getOutPrefix());
+        tmpName.append(tmpNameBase).append(anOpts.getOutSuffix()).append(tmpSuffix);
+        return tmpName.toString();
     }
 
     /**
@@ -365,31 +472,62 @@ public class Signer {
      * @return the exit code - {@link Constants#EXIT_CODE_CANT_READ_FILE} when a file couldn't be read
      */
     private static int listSigFields(SignerOptionsFromCmdLine anOpts) {
-        final List<File> inputFiles = ArrayUtils.isEmpty(anOpts.getFiles())
-                ? List.of(new File(anOpts.getInFile()))
-                : expandInputFiles(anOpts.getFiles());
+        final InputFiles inputs = new InputFiles(
+                ArrayUtils.isEmpty(anOpts.getFiles()) ? new String[] { anOpts.getInFile() } : anOpts.getFiles());
         int failedCount = 0;
-        for (File inputFile : inputFiles) {
-            anOpts.setInFile(inputFile.getPath());
-            try {
-                final List<SignatureFieldInfo> fields = new PdfExtraInfo(anOpts).getSignatureFields();
-                if (fields.isEmpty()) {
-                    System.out.println(RES.get("console.sigFields.none", inputFile.getPath()));
-                    continue;
-                }
-                System.out.println(RES.get("console.sigFields", inputFile.getPath()));
-                for (SignatureFieldInfo field : fields) {
-                    System.out.println(formatSigField(field));
+        try (Stream<File> inputFiles = inputs.stream()) {
+            for (Iterator<File> it = inputFiles.iterator(); it.hasNext();) {
+                final File inputFile = it.next();
+                anOpts.setInFile(inputFile.getPath());
+                try {
+                    final List<SignatureFieldInfo> fields = new PdfExtraInfo(anOpts).getSignatureFields();
+                    if (fields.isEmpty()) {
+                        System.out.println(RES.get("console.sigFields.none", inputFile.getPath()));
+                        continue;
+                    }
+                    System.out.println(RES.get("console.sigFields", inputFile.getPath()));
+                    for (SignatureFieldInfo field : fields) {
+                        System.out.println(formatSigField(field));
+                    }
+                } catch (Exception e) {
+                    failedCount++;
+                    System.err.println(RES.get("console.sigField.cantReadFields", inputFile.getPath(),
+                            StringUtils.defaultString(e.getMessage(), e.getClass().getName())));
                 }
-            } catch (Exception e) {
-                failedCount++;
-                System.err.println(RES.get("console.sigField.cantReadFields", inputFile.getPath(),
-                        StringUtils.defaultString(e.getMessage(), e.getClass().getName())));
             }
         }
+        failedCount += inputs.failures();
         return failedCount > 0 ? Constants.EXIT_CODE_CANT_READ_FILE : 0;
     }
 
+    /**
+     * Downloads the revocation data of the signing key's certificate chain into the {@code --build-revocation-bundle}
+     * file.
+     *
+     * @return the exit code - {@link Constants#EXIT_CODE_COMMON_ERROR} when the bundle couldn't be built
+     */
+    private static int buildRevocationBundle(SignerOptionsFromCmdLine anOpts) {
+        final String file = anOpts.getRevocationBundleOut();
+        try {
+            final PrivateKeyInfo pkInfo = KeyStoreUtils.getPkInfo(anOpts);
+            if (pkInfo == null || ArrayUtils.isEmpty(pkInfo.getChain())) {
+                throw new IOException("No certificate chain found for the key");
+            }
+            if (!HttpTransport.supports(anOpts.createProxy())) {
+                throw new IOException("A SOCKS proxy is not supported here, configure an HTTP proxy");
+            }
+            final RevocationBundle bundle = new RevocationBundleBuilder(HttpTransport.forOptions(anOpts))
+                    .build(pkInfo.getChain(), anOpts.getOcspServerUrl());
+            bundle.write(new File(file));
+            LOGGER.info(RES.get("console.revocation.written", file, String.valueOf(bundle.size())));
+            return 0;
+        } catch (Exception e) {
+            System.err.println(RES.get("console.revocation.cantWrite", file,
+                    StringUtils.defaultString(e.getMessage(), e.getClass().getName())));
+            return Constants.EXIT_CODE_COMMON_ERROR;
+        }
+    }
+
     private static String formatSigField(SignatureFieldInfo field) {
         final StringBuilder sb = new StringBuilder();
         // Locale.ROOT: the numbers are PDF coordinates and a field number to be typed back into --sig-field,
@@ -5,15 +5,18 @@ import static net.sf.jsignpdf.Constants.LOGGER;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 
+import net.sf.jsignpdf.engine.Capability;
 import net.sf.jsignpdf.engine.DssLtTrustPreflight;
 import net.sf.jsignpdf.engine.EngineConfig;
 import net.sf.jsignpdf.engine.EngineMismatchValidator;
 import net.sf.jsignpdf.engine.EngineMismatchValidator.Mismatch;
 import net.sf.jsignpdf.engine.EngineRegistry;
 import net.sf.jsignpdf.engine.SigningEngine;
+import net.sf.jsignpdf.types.BufferingMode;
 import net.sf.jsignpdf.types.PDFEncryption;
 import net.sf.jsignpdf.types.SignatureFieldInfo;
 import net.sf.jsignpdf.utils.AppConfig;
@@ -31,6 +34,7 @@ import org.apache.commons.lang3.StringUtils;
 public class SignerLogic implements Runnable {
 
     private final BasicSignerOptions options;
+    private volatile BufferingMode bufferingMode;
 
     /**
      * Constructor with all necessary parameters.
@@ -44,6 +48,13 @@ public class SignerLogic implements Runnable {
         options = anOptions;
     }
 
+    /**
+     * @return the buffering mode the last document was signed with, {@code null} when signing didn't start
+     */
+    public BufferingMode getBufferingMode() {
+        return bufferingMode;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -61,6 +72,7 @@ public class SignerLogic implements Runnable {
      * @return true when signing is finished successfully, false otherwise
      */
     public boolean signFile() {
+        options.setOutputSha256(null);
         final String outFile = options.getOutFileX();
         if (!validateInOutFiles(options.getInFile(), outFile)) {
             LOGGER.info(RES.get("console.skippingSigning"));
@@ -77,51 +89,201 @@ public class SignerLogic implements Runnable {
                 return false;
             }
 
-            if (!validateSigField()) {
+            final EngineConfig engineConfig = AppConfig.engineConfigFor(engine.id());
+            if (!prepare(engine, engineConfig, null)) {
                 return false;
             }
+            Linearization.warnIfLost(options);
 
-            final List<Mismatch> mismatches = EngineMismatchValidator.findMismatches(options, engine);
-            if (!mismatches.isEmpty()) {
-                LOGGER.severe(RES.get("console.engineMismatch", engine.id()));
-                for (Mismatch m : mismatches) {
-                    LOGGER.severe(RES.get("console.engineMismatch.option", m.option(), m.capability().name()));
-                }
-                return false;
+            try (MemoryAdmission.Ticket ticket = MemoryAdmission.shared().admit(engine, List.of(options))) {
+                bufferingMode = ticket.mode();
+                finished = engine.sign(options, engineConfig);
             }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+        } finally {
+            options.setResolvedSigFieldName(null);
+            LOGGER.info(RES.get("console.finished." + (finished ? "ok" : "error")));
+            options.fireSignerFinishedEvent(null);
+        }
+        return finished;
+    }
 
-            final EngineConfig engineConfig = AppConfig.engineConfigFor(engine.id());
+    /**
+     * Applies several signatures to the single file of this instance's options in one pass ({@code --signatures}):
+     * each signature is validated like for {@link #signFile()}, then the engine adds them as consecutive incremental
+     * updates, reading the input and writing the output once. The engine has to declare
+     * {@link Capability#MULTI_SIGNATURE}, all signatures have to use it and all but the first one have to append.
+     *
+     * @param signatures the options of the signatures, in signing order; their input and output file are the ones of
+     *            this instance's options
+     * @return true when all signatures were applied and the output written, false otherwise
+     */
+    public boolean signFile(List<? extends BasicSignerOptions> signatures) {
+        options.setOutputSha256(null);
+        if (!validateInOutFiles(options.getInFile(), options.getOutFileX())) {
+            LOGGER.info(RES.get("console.skippingSigning"));
+            return false;
+        }
 
-            // Fail fast on an LT/LTA request the engine isn't configured to satisfy (issue #432), before any
-            // key/PIN access or network round-trip, with the exact keys to set.
-            final DssLtTrustPreflight.Result preflight =
-                    DssLtTrustPreflight.check(options, engine, engineConfig);
-            if (preflight.hasIssues()) {
-                LOGGER.severe(RES.get("console.dss.ltPreflightFailed"));
-                if (preflight.onlineMissing()) {
-                    LOGGER.severe(RES.get("console.dss.ltPreflight.online"));
+        boolean finished = false;
+        try {
+            final SigningEngine engine;
+            try {
+                engine = EngineRegistry.getInstance().resolve(signatures.get(0));
+            } catch (RuntimeException e) {
+                LOGGER.severe(RES.get("console.engineNotFound",
+                        StringUtils.defaultString(signatures.get(0).getEngine())));
+                return false;
+            }
+            if (!engine.capabilities().contains(Capability.MULTI_SIGNATURE)) {
+                LOGGER.severe(RES.get("console.multiSign.unsupported", engine.id()));
+                return false;
+            }
+            final EngineConfig engineConfig = AppConfig.engineConfigFor(engine.id());
+            // read once; every resolved field is marked as taken, so "auto" and #N pick the next blank one
+            final List<SignatureFieldInfo> fields = needsFields(signatures)
+                    ? new ArrayList<>(new PdfExtraInfo(options).getSignatureFields())
+                    : null;
+            for (int i = 0; i < signatures.size(); i++) {
+                final BasicSignerOptions signature = signatures.get(i);
+                final String engineId = EngineRegistry.getInstance().resolve(signature).id();
+                if (!engine.id().equals(engineId)) {
+                    LOGGER.severe(RES.get("console.multiSign.engineDiffers", String.valueOf(i + 1), engineId,
+                            engine.id()));
+                    return false;
                 }
-                if (preflight.trustSourceMissing()) {
-                    LOGGER.severe(RES.get("console.dss.ltPreflight.trust"));
+                if (i > 0 && !signature.isAppendX()) {
+                    LOGGER.severe(RES.get("console.multiSign.appendOnly", String.valueOf(i + 1)));
+                    return false;
+                }
+                if (!new SignerLogic(signature).prepare(engine, engineConfig, fields)) {
+                    return false;
                 }
-                return false;
             }
+            Linearization.warnIfLost(signatures.get(0));
+            try (MemoryAdmission.Ticket ticket = MemoryAdmission.shared().admit(engine, signatures)) {
+                bufferingMode = ticket.mode();
+                finished = engine.signAll(signatures, engineConfig);
+            }
+            if (finished) {
+                // the last signature writes the output
+                options.setOutputSha256(signatures.get(signatures.size() - 1).getOutputSha256());
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
+        } finally {
+            for (BasicSignerOptions signature : signatures) {
+                signature.setResolvedSigFieldName(null);
+            }
+            LOGGER.info(RES.get("console.finished." + (finished ? "ok" : "error")));
+            options.fireSignerFinishedEvent(null);
+        }
+        return finished;
+    }
 
-            if (!resolveSigField()) {
-                return false;
+    private static boolean needsFields(List<? extends BasicSignerOptions> signatures) {
+        for (BasicSignerOptions signature : signatures) {
+            if (signature.isSigFieldSet()) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            finished = engine.sign(options, engineConfig);
+    /**
+     * Checks the options of one signature against the engine and resolves its signature field.
+     *
+     * @param fields the signature fields of the input, updated with the resolved field; {@code null} to read them
+     *            from the input
+     * @return true when signing can continue
+     */
+    private boolean prepare(SigningEngine engine, EngineConfig engineConfig, List<SignatureFieldInfo> fields) {
+        if (!validateSigField()) {
+            return false;
+        }
+
+        final List<Mismatch> mismatches = EngineMismatchValidator.findMismatches(options, engine);
+        if (!mismatches.isEmpty()) {
+            LOGGER.severe(RES.get("console.engineMismatch", engine.id()));
+            for (Mismatch m : mismatches) {
+                LOGGER.severe(RES.get("console.engineMismatch.option", m.option(), m.capability().name()));
+            }
+            return false;
+        }
+
+        // Fail fast on an LT/LTA request the engine isn't configured to satisfy (issue #432), before any
+        // key/PIN access or network round-trip, with the exact keys to set.
+        if (!passesLtPreflight(engine, engineConfig)) {
+            return false;
+        }
+
+        return resolveSigField(fields);
+    }
+
+    /**
+     * Extends the existing signatures of a single file to the selected PAdES level ({@code --augment}), using the
+     * resolved engine when it declares {@link Capability#AUGMENT_SIGNATURES}. No key is needed.
+     *
+     * @return true when the signatures were extended and the output written, false otherwise
+     */
+    public boolean augmentFile() {
+        options.setOutputSha256(null);
+        if (!validateInOutFiles(options.getInFile(), options.getOutFileX())) {
+            LOGGER.info(RES.get("console.skippingSigning"));
+            return false;
+        }
+
+        boolean finished = false;
+        try {
+            final SigningEngine engine;
+            try {
+                engine = EngineRegistry.getInstance().resolve(options);
+            } catch (RuntimeException e) {
+                LOGGER.severe(RES.get("console.engineNotFound", StringUtils.defaultString(options.getEngine())));
+                return false;
+            }
+            if (!engine.capabilities().contains(Capability.AUGMENT_SIGNATURES)) {
+                LOGGER.severe(RES.get("console.augment.unsupported", engine.id()));
+                return false;
+            }
+            final EngineConfig engineConfig = AppConfig.engineConfigFor(engine.id());
+            if (!passesLtPreflight(engine, engineConfig)) {
+                return false;
+            }
+            try (MemoryAdmission.Ticket ticket = MemoryAdmission.shared().admit(engine, List.of(options))) {
+                bufferingMode = ticket.mode();
+                finished = engine.augment(options, engineConfig);
+            }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, RES.get("console.exception"), e);
         } finally {
-            options.setResolvedSigFieldName(null);
             LOGGER.info(RES.get("console.finished." + (finished ? "ok" : "error")));
             options.fireSignerFinishedEvent(null);
         }
         return finished;
     }
 
+    /**
+     * Logs the settings to fix when the engine isn't configured for the selected LT / LTA level.
+     *
+     * @return true when signing can continue
+     */
+    private boolean passesLtPreflight(SigningEngine engine, EngineConfig engineConfig) {
+        final DssLtTrustPreflight.Result preflight = DssLtTrustPreflight.check(options, engine, engineConfig);
+        if (!preflight.hasIssues()) {
+            return true;
+        }
+        LOGGER.severe(RES.get("console.dss.ltPreflightFailed"));
+        if (preflight.onlineMissing()) {
+            LOGGER.severe(RES.get("console.dss.ltPreflight.online"));
+        }
+        if (preflight.trustSourceMissing()) {
+            LOGGER.severe(RES.get("console.dss.ltPreflight.trust"));
+        }
+        return false;
+    }
+
     /**
      * Fail-fast checks for {@code --sig-field} that need no I/O at all, so a wrong combination is reported
      * before any keystore or PIN access.
@@ -171,16 +333,23 @@ public class SignerLogic implements Runnable {
      * separate from the configured value so that {@code #N} / {@code auto} are re-resolved for every file of a
      * batch run. The visible flag the selection implies is set earlier, in {@link #validateSigField()}.
      *
+     * @param fields the signature fields of the input, the resolved one is replaced by a signed copy; {@code null} to
+     *            read them from the input
      * @return true when signing can continue
      */
-    private boolean resolveSigField() {
+    private boolean resolveSigField(List<SignatureFieldInfo> fields) {
         if (!options.isSigFieldSet()) {
             return true;
         }
         final String selector = options.getSigFieldName();
         try {
-            final SignatureFieldInfo field = new PdfExtraInfo(options).resolveSignatureField(selector);
+            final SignatureFieldInfo field = fields != null ? PdfExtraInfo.resolveSignatureField(fields, selector)
+                    : new PdfExtraInfo(options).resolveSignatureField(selector);
             options.setResolvedSigFieldName(field.name());
+            if (fields != null) {
+                fields.set(fields.indexOf(field), new SignatureFieldInfo(field.number(), field.name(), field.page(),
+                        field.llx(), field.lly(), field.urx(), field.ury(), true, field.hidden()));
+            }
             LOGGER.info(RES.get("console.sigField.using", field.name(), String.valueOf(field.page())));
             if (!field.hasVisibleRect()) {
                 LOGGER.info(RES.get("console.sigField.zeroSizeRect", field.name()));
@@ -19,6 +19,7 @@ import net.sf.jsignpdf.types.PrintRight;
 import net.sf.jsignpdf.types.RenderMode;
 import net.sf.jsignpdf.types.ServerAuthentication;
 import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.verify.VerifyTier;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -57,6 +58,26 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
 
     private boolean gui;
 
+    private String manifest;
+    private int parallelism = 1;
+    private String resultsFile;
+    private String journal;
+    private boolean resume;
+    private String revocationBundleOut;
+    private boolean augment;
+    private boolean verify;
+    private VerifyTier verifyTier = VerifyTier.FULL;
+    private String signatures;
+    private String watchDir;
+    private String watchErrorsDir;
+
+    /**
+     * The options parsed from the real command line when this instance holds the options of one manifest record (see
+     * {@link #forRecord(String[])}); {@code null} otherwise.
+     */
+    private SignerOptionsFromCmdLine recordBase;
+    private CommandLine recordLine;
+
     private StdinPasswordReader passwordReader;
     private PrintStream warningOut;
 
@@ -70,6 +91,25 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
         this.warningOut = warningOut;
     }
 
+    /**
+     * Creates the options of one {@code --manifest} record: the record arguments are parsed in front of this instance's
+     * command line, so they win over it. The advanced-config overrides ({@code -o}) are not re-applied and passwords the
+     * record doesn't set are taken over from this instance instead of being read from stdin again, as is the key cache.
+     *
+     * @param recordArgs the record converted to command line arguments; the first non-option argument is the input file
+     * @return new options instance for the record
+     * @throws ParseException when the record arguments can't be parsed
+     */
+    SignerOptionsFromCmdLine forRecord(String[] recordArgs) throws ParseException {
+        final SignerOptionsFromCmdLine result = new SignerOptionsFromCmdLine();
+        result.recordBase = this;
+        result.recordLine = new DefaultParser().parse(OPTS, recordArgs);
+        result.setCmdLine(ArrayUtils.addAll(recordArgs, getCmdLine()));
+        result.loadCmdLine();
+        result.setPrivateKeyCache(getPrivateKeyCache());
+        return result;
+    }
+
     /**
      * Parses options provided as command line arguments.
      * @throws ParseException
@@ -121,7 +161,9 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
         setListEngines(line.hasOption(ARG_LIST_ENGINES));
         setListSigFields(line.hasOption(ARG_LIST_SIG_FIELDS));
 
-        AppConfig.applyAdvancedOverrides(parseAdvancedOverrides(line));
+        if (recordBase == null) {
+            AppConfig.applyAdvancedOverrides(parseAdvancedOverrides(line));
+        }
 
         // signing engine selection (CLI override of advanced.properties)
         if (line.hasOption(ARG_ENGINE))
@@ -245,6 +287,36 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
             setProxyPort(getInt(line.getParsedOptionValue(ARG_PROXY_PORT_LONG), getProxyPort()));
 
         setGui(line.hasOption(ARG_GUI));
+        if (line.hasOption(ARG_MANIFEST))
+            setManifest(line.getOptionValue(ARG_MANIFEST));
+        if (line.hasOption(ARG_PARALLELISM_LONG))
+            setParallelism(Math.max(1, getInt(line.getParsedOptionValue(ARG_PARALLELISM_LONG), getParallelism())));
+        if (line.hasOption(ARG_RESULTS_LONG))
+            setResultsFile(line.getOptionValue(ARG_RESULTS_LONG));
+        if (line.hasOption(ARG_JOURNAL_LONG))
+            setJournal(line.getOptionValue(ARG_JOURNAL_LONG));
+        setResume(line.hasOption(ARG_RESUME_LONG));
+        if (isResume() && StringUtils.isEmpty(getJournal())) {
+            throw new ParseException(RES.get("console.journal.resumeWithoutJournal"));
+        }
+        if (line.hasOption(ARG_BUILD_REVOCATION_BUNDLE_LONG))
+            setRevocationBundleOut(line.getOptionValue(ARG_BUILD_REVOCATION_BUNDLE_LONG));
+        setAugment(line.hasOption(ARG_AUGMENT_LONG));
+        setVerify(line.hasOption(ARG_VERIFY_LONG));
+        if (line.hasOption(ARG_VERIFY_TIER_LONG)) {
+            final VerifyTier tier = VerifyTier.fromString(line.getOptionValue(ARG_VERIFY_TIER_LONG));
+            if (tier == null) {
+                throw new ParseException(
+                        RES.get("console.verify.unknownTier", line.getOptionValue(ARG_VERIFY_TIER_LONG)));
+            }
+            setVerifyTier(tier);
+        }
+        if (line.hasOption(ARG_SIGNATURES_LONG))
+            setSignatures(line.getOptionValue(ARG_SIGNATURES_LONG));
+        if (line.hasOption(ARG_WATCH_LONG))
+            setWatchDir(line.getOptionValue(ARG_WATCH_LONG));
+        if (line.hasOption(ARG_WATCH_ERRORS_LONG))
+            setWatchErrorsDir(line.getOptionValue(ARG_WATCH_ERRORS_LONG));
         if (ArrayUtils.isNotEmpty(files)) {
             setInFile(files[0]);
         }
@@ -271,6 +343,11 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
                 new PwdSlot(ARG_TSA_CERT_PWD, ARG_TSA_CERT_PWD_LONG, this::setTsaCertFilePwd),
                 new PwdSlot(ARG_TSA_PWD, ARG_TSA_PWD_LONG, this::setTsaPasswd));
 
+        if (recordBase != null) {
+            inheritPasswords(slots);
+            return;
+        }
+
         int total = 0;
         for (PwdSlot slot : slots) {
             if (line.hasOption(slot.shortArg()) && STDIN_PWD_SENTINEL.equals(line.getOptionValue(slot.shortArg()))) {
@@ -309,6 +386,24 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
         }
     }
 
+    /**
+     * Manifest-record variant of {@link #resolvePasswords(CommandLine)}: a password given in the record is taken literally,
+     * every other one comes from the already resolved command line options.
+     */
+    private void inheritPasswords(List<PwdSlot> slots) {
+        setKsPasswd(recordBase.getKsPasswd());
+        setKeyPasswd(recordBase.getKeyPasswd());
+        setPdfOwnerPwd(recordBase.getPdfOwnerPwd());
+        setPdfUserPwd(recordBase.getPdfUserPwd());
+        setTsaCertFilePwd(recordBase.getTsaCertFilePwd());
+        setTsaPasswd(recordBase.getTsaPasswd());
+        for (PwdSlot slot : slots) {
+            if (recordLine.hasOption(slot.shortArg())) {
+                slot.setter().accept(recordLine.getOptionValue(slot.shortArg()));
+            }
+        }
+    }
+
     private record PwdSlot(String shortArg, String longArg, Consumer<String> setter) {
     }
 
@@ -531,6 +626,29 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
                 .withLongOpt(ARG_PROXY_PORT_LONG).hasArg().withType(Number.class).withArgName("port").create());
 
         OPTS.addOption(OptionBuilder.withLongOpt(ARG_GUI).withDescription(RES.get("hlp.gui")).create());
+
+        // manifest-driven batch signing
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_MANIFEST_LONG).withDescription(RES.get("hlp.manifest")).hasArg()
+                .withArgName("file").create(ARG_MANIFEST));
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_PARALLELISM_LONG).withDescription(RES.get("hlp.parallelism")).hasArg()
+                .withType(Number.class).withArgName("threads").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_RESULTS_LONG).withDescription(RES.get("hlp.results")).hasArg()
+                .withArgName("file").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_JOURNAL_LONG).withDescription(RES.get("hlp.journal")).hasArg()
+                .withArgName("file").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_RESUME_LONG).withDescription(RES.get("hlp.resume")).create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_BUILD_REVOCATION_BUNDLE_LONG)
+                .withDescription(RES.get("hlp.buildRevocationBundle")).hasArg().withArgName("file").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_AUGMENT_LONG).withDescription(RES.get("hlp.augment")).create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_VERIFY_LONG).withDescription(RES.get("hlp.verify")).create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_VERIFY_TIER_LONG).withDescription(RES.get("hlp.verifyTier"))
+                .hasArg().withArgName("integrity|cms|full").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_SIGNATURES_LONG).withDescription(RES.get("hlp.signatures"))
+                .hasArg().withArgName("file").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_WATCH_LONG).withDescription(RES.get("hlp.watch")).hasArg()
+                .withArgName("dir").create());
+        OPTS.addOption(OptionBuilder.withLongOpt(ARG_WATCH_ERRORS_LONG).withDescription(RES.get("hlp.watchErrors"))
+                .hasArg().withArgName("dir").create());
     }
 
     /**
@@ -716,4 +834,100 @@ public class SignerOptionsFromCmdLine extends BasicSignerOptions {
         this.gui = gui;
     }
 
+    public String getManifest() {
+        return manifest;
+    }
+
+    public void setManifest(String manifest) {
+        this.manifest = manifest;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public String getResultsFile() {
+        return resultsFile;
+    }
+
+    public void setResultsFile(String resultsFile) {
+        this.resultsFile = resultsFile;
+    }
+
+    public String getJournal() {
+        return journal;
+    }
+
+    public void setJournal(String journal) {
+        this.journal = journal;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public String getRevocationBundleOut() {
+        return revocationBundleOut;
+    }
+
+    public void setRevocationBundleOut(String revocationBundleOut) {
+        this.revocationBundleOut = revocationBundleOut;
+    }
+
+    public boolean isAugment() {
+        return augment;
+    }
+
+    public void setAugment(boolean augment) {
+        this.augment = augment;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    public VerifyTier getVerifyTier() {
+        return verifyTier;
+    }
+
+    public void setVerifyTier(VerifyTier verifyTier) {
+        this.verifyTier = verifyTier;
+    }
+
+    public String getSignatures() {
+        return signatures;
+    }
+
+    public void setSignatures(String signatures) {
+        this.signatures = signatures;
+    }
+
+    public String getWatchDir() {
+        return watchDir;
+    }
+
+    public void setWatchDir(String watchDir) {
+        this.watchDir = watchDir;
+    }
+
+    public String getWatchErrorsDir() {
+        return watchErrorsDir;
+    }
+
+    public void setWatchErrorsDir(String watchErrorsDir) {
+        this.watchErrorsDir = watchErrorsDir;
+    }
+
 }
@@ -0,0 +1,261 @@
+package net.sf.jsignpdf.batch;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of a batch run, which makes an interrupted batch restartable. Every processed file adds one JSON
+ * line with the input, the output, the status and - for a signed file - the SHA-256 digest of the output, e.g.
+ * {@code {"in":"/data/a.pdf","out":"/data/a_signed.pdf","status":"signed","sha256":"9f86...","time":"2026-10-19T08:00:00Z"}}.
+ *
+ * <p>
+ * The lines are handed to the operating system as they are written, so they survive a crash of the JVM; the
+ * {@code fsync} which makes them survive a power loss is batched (every {@value #SYNC_EVERY_ENTRIES} entries or
+ * {@value #SYNC_INTERVAL_SECONDS} second, and on close). An entry lost in between only means the file is signed again on
+ * resume - outputs are written atomically, so there is never a half-written output the journal doesn't know about.
+ * </p>
+ * <p>
+ * When resuming, the journal is read once into a hash set of completed input/output pairs; {@link #isCompleted(String,
+ * String)} is then a constant-time lookup plus a check that the output is still there - neither the inputs nor the
+ * outputs are read or hashed again. A truncated last line (a crash in the middle of a write) is ignored.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class BatchJournal implements Closeable {
+
+    /**
+     * Journal entry status.
+     */
+    public enum Status {
+        SIGNED, FAILED;
+
+        String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final int SYNC_EVERY_ENTRIES = 64;
+    static final int SYNC_INTERVAL_SECONDS = 1;
+
+    private static final String KEY_IN = "in";
+    private static final String KEY_OUT = "out";
+    private static final String KEY_STATUS = "status";
+
+    private final File file;
+    private final FileChannel channel;
+    private final Set<String> completed;
+
+    private int unsyncedEntries;
+    private long lastSyncNanos = System.nanoTime();
+
+    private BatchJournal(File file, FileChannel channel, Set<String> completed) {
+        this.file = file;
+        this.channel = channel;
+        this.completed = completed;
+    }
+
+    /**
+     * Opens the journal.
+     *
+     * @param file the journal file
+     * @param resume {@code true} to load the existing entries and append to them; {@code false} starts a new journal,
+     *        replacing an existing file
+     * @return the journal
+     * @throws IOException when the journal can't be read or opened for writing
+     */
+    public static BatchJournal open(File file, boolean resume) throws IOException {
+        final Set<String> completed = new HashSet<>();
+        if (resume && file.isFile()) {
+            load(file, completed);
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final BatchJournal journal = new BatchJournal(file, channel, completed);
+            if (resume) {
+                journal.terminateTornLine();
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param in input file
+     * @param out output file
+     * @return {@code true} when the journal has the pair as signed (and not failed by a later entry) and the output
+     *         still exists
+     */
+    public boolean isCompleted(String in, String out) {
+        if (!completed.contains(key(in, out))) {
+            return false;
+        }
+        if (!new File(out).isFile()) {
+            LOGGER.fine(() -> "Signed according to the journal, but the output is gone: " + out);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of input/output pairs loaded from the journal as signed
+     */
+    public int completedCount() {
+        return completed.size();
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends an entry. The digest of a signed output is the one computed while it was written; only when the engine
+     * doesn't report it, the output is read and hashed here, outside the journal lock, so concurrent workers don't wait
+     * for each other's hashing.
+     *
+     * @param in input file
+     * @param out output file
+     * @param status the outcome
+     * @param sha256 the hex-encoded SHA-256 digest of the signed output, {@code null} when unknown
+     * @throws IOException when the output can't be read or the entry can't be written
+     */
+    public void record(String in, String out, Status status, String sha256) throws IOException {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"").append(KEY_IN).append("\":");
+        BatchResultWriter.appendJsonString(sb, normalize(in));
+        sb.append(",\"").append(KEY_OUT).append("\":");
+        BatchResultWriter.appendJsonString(sb, normalize(out));
+        sb.append(",\"").append(KEY_STATUS).append("\":\"").append(status.jsonName()).append('"');
+        if (status == Status.SIGNED) {
+            sb.append(",\"sha256\":\"").append(sha256 != null ? sha256 : sha256(new File(out))).append('"');
+        }
+        sb.append(",\"time\":\"").append(Instant.now()).append("\"}\n");
+        append(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Forces the pending entries to the disk and closes the journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (unsyncedEntries > 0) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private synchronized void append(byte[] entry) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(entry);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        unsyncedEntries++;
+        final long now = System.nanoTime();
+        if (unsyncedEntries >= SYNC_EVERY_ENTRIES || now - lastSyncNanos >= TimeUnit.SECONDS.toNanos(SYNC_INTERVAL_SECONDS)) {
+            channel.force(false);
+            unsyncedEntries = 0;
+            lastSyncNanos = now;
+        }
+    }
+
+    /**
+     * Starts a new line when the journal doesn't end with one, so the next entry isn't glued to a torn one.
+     */
+    private void terminateTornLine() throws IOException {
+        final long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        final ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            reader.read(last, size - 1);
+        }
+        if (last.get(0) != '\n') {
+            append(new byte[] { '\n' });
+        }
+    }
+
+    private static void load(File file, Set<String> completed) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                final Map<String, String> entry;
+                try {
+                    entry = new ManifestReader.JsonObjectParser(line).parse();
+                } catch (IllegalArgumentException e) {
+                    final int skipped = lineNumber;
+                    LOGGER.fine(() -> "Ignoring the unreadable journal line " + skipped + ": " + e.getMessage());
+                    continue;
+                }
+                final String in = entry.get(KEY_IN);
+                final String out = entry.get(KEY_OUT);
+                if (in == null || out == null) {
+                    continue;
+                }
+                if (Status.SIGNED.jsonName().equals(entry.get(KEY_STATUS))) {
+                    completed.add(key(in, out));
+                } else {
+                    completed.remove(key(in, out));
+                }
+            }
+        }
+    }
+
+    private static String key(String in, String out) {
+        return normalize(in) + '\u0000' + normalize(out);
+    }
+
+    private static String normalize(String path) {
+        return new File(path).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    static String sha256(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
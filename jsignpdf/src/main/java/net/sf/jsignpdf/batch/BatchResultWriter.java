@@ -0,0 +1,151 @@
+package net.sf.jsignpdf.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+import net.sf.jsignpdf.types.BufferingMode;
+
+/**
+ * Appends one JSON line per processed batch item to a results file, in the order the items finish. Every line is flushed
+ * right away, so the file can be followed while the batch runs. Safe for use from concurrent signing workers.
+ *
+ * <p>
+ * Line format:
+ * {@code {"line":12,"in":"a.pdf","out":"a_signed.pdf","status":"signed","millis":153,"buffering":"memory"}};
+ * {@code buffering} is the mode the document was staged with and the {@code message} member is added when there is
+ * something to explain.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class BatchResultWriter implements Closeable {
+
+    /**
+     * Outcome of one batch item.
+     */
+    public enum Status {
+        /** The document was signed. */
+        SIGNED,
+        /** The existing signatures of the document were extended ({@code --augment}). */
+        AUGMENTED,
+        /** Signing was attempted and failed (see the log). */
+        FAILED,
+        /** The record was not usable, signing wasn't attempted. */
+        INVALID,
+        /** The journal of a resumed batch already has the document as signed. */
+        SKIPPED;
+
+        String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Writer writer;
+
+    /**
+     * @param writer destination; closed by {@link #close()}
+     */
+    public BatchResultWriter(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+    }
+
+    /**
+     * Opens the results file for appending (UTF-8), creating it when it doesn't exist.
+     *
+     * @param file the results file
+     * @return the writer
+     * @throws IOException when the file can't be opened
+     */
+    public static BatchResultWriter open(File file) throws IOException {
+        return new BatchResultWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Writes and flushes one result line.
+     *
+     * @param line manifest line of the item (0 when the item doesn't come from a manifest)
+     * @param in input file, may be {@code null}
+     * @param out output file, may be {@code null}
+     * @param status the outcome
+     * @param millis signing duration in milliseconds
+     * @param buffering buffering mode the document was signed with, {@code null} when signing didn't start
+     * @param message optional detail, may be {@code null}
+     * @throws IOException when writing fails
+     */
+    public synchronized void write(int line, String in, String out, Status status, long millis, BufferingMode buffering,
+            String message) throws IOException {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"line\":").append(line);
+        appendMember(sb, "in", in);
+        appendMember(sb, "out", out);
+        appendMember(sb, "status", status.jsonName());
+        sb.append(",\"millis\":").append(millis);
+        if (buffering != null) {
+            appendMember(sb, "buffering", buffering.name().toLowerCase(Locale.ROOT));
+        }
+        appendMember(sb, "message", message);
+        sb.append('}');
+        writeLine(sb);
+    }
+
+    /**
+     * Writes and flushes one preformatted JSON line, for the modes with their own line format ({@code --verify}).
+     *
+     * @param json the JSON object, without the line break
+     * @throws IOException when writing fails
+     */
+    public synchronized void writeLine(CharSequence json) throws IOException {
+        writer.append(json);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static void appendMember(StringBuilder sb, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(",\"").append(name).append("\":");
+        appendJsonString(sb, value);
+    }
+
+    /**
+     * Appends {@code value} as a quoted and escaped JSON string.
+     *
+     * @param sb the destination
+     * @param value the string, not {@code null}
+     */
+    public static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,354 @@
+package net.sf.jsignpdf.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Streaming reader of batch-signing manifests. Records are parsed one at a time as the iterator advances, so a manifest
+ * with hundreds of thousands of entries never has to fit into memory.
+ *
+ * <p>
+ * Two formats are supported:
+ * </p>
+ * <ul>
+ * <li>JSON Lines - one flat JSON object per line, e.g. {@code {"in":"a.pdf","reason":"Approved","page":2}}. Values may be
+ * strings, numbers, booleans or {@code null} (meaning "not set").</li>
+ * <li>CSV - the first row names the columns, every following row is a record. Fields may be quoted with {@code "}
+ * (RFC 4180); an empty field means "not set".</li>
+ * </ul>
+ * <p>
+ * Blank lines are skipped. A record which can't be parsed is returned as an {@linkplain ManifestRecord#isValid() invalid}
+ * record, so a single broken line doesn't stop the batch.
+ * </p>
+ *
+ * @author Josef Cacek
+ */
+public final class ManifestReader implements Iterator<ManifestRecord>, Closeable {
+
+    /**
+     * Manifest file format.
+     */
+    public enum Format {
+        JSON_LINES, CSV;
+
+        /**
+         * @param fileName manifest file name
+         * @return {@link #CSV} for a {@code .csv} file, {@link #JSON_LINES} otherwise
+         */
+        public static Format forFile(String fileName) {
+            return StringUtils.endsWithIgnoreCase(fileName, ".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+
+    private List<String> header;
+    private int lineNumber;
+    private int csvRowStartLine;
+    private ManifestRecord next;
+
+    /**
+     * @param reader manifest content
+     * @param format manifest format
+     */
+    public ManifestReader(Reader reader, Format format) {
+        this.reader = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+        this.format = format;
+    }
+
+    /**
+     * Opens a UTF-8 manifest file, choosing the format by the file extension.
+     *
+     * @param file the manifest
+     * @return the reader
+     * @throws IOException when the file can't be opened
+     */
+    public static ManifestReader open(File file) throws IOException {
+        return new ManifestReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8),
+                Format.forFile(file.getName()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = format == Format.CSV ? readCsvRecord() : readJsonRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ManifestRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final ManifestRecord result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private ManifestRecord readJsonRecord() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            try {
+                return new ManifestRecord(lineNumber, new JsonObjectParser(line).parse(), null);
+            } catch (IllegalArgumentException e) {
+                return ManifestRecord.invalid(lineNumber, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private ManifestRecord readCsvRecord() throws IOException {
+        if (header == null) {
+            final List<String> names = readCsvRow();
+            if (names == null) {
+                return null;
+            }
+            header = new ArrayList<>(names.size());
+            for (String name : names) {
+                header.add(name.trim());
+            }
+        }
+        final List<String> row = readCsvRow();
+        if (row == null) {
+            return null;
+        }
+        final int startLine = csvRowStartLine;
+        if (row.size() > header.size()) {
+            return ManifestRecord.invalid(startLine,
+                    "the row has " + row.size() + " fields, the header only " + header.size());
+        }
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < row.size(); i++) {
+            if (!row.get(i).isEmpty()) {
+                values.put(header.get(i), row.get(i));
+            }
+        }
+        return new ManifestRecord(startLine, values, null);
+    }
+
+    /**
+     * Reads one CSV row, which may span several lines when a quoted field contains line breaks.
+     *
+     * @return the fields, or {@code null} at the end of the input
+     */
+    private List<String> readCsvRow() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+        csvRowStartLine = lineNumber;
+
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i >= line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // line break inside a quoted field
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted CSV field starting on line " + csvRowStartLine);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            final char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Minimal parser of a single-line, flat JSON object. Nested objects and arrays are rejected - a manifest record only
+     * carries option values. Also used to read back the {@link BatchJournal}.
+     */
+    static final class JsonObjectParser {
+
+        private final String text;
+        private int pos;
+
+        JsonObjectParser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> parse() {
+            final Map<String, String> result = new LinkedHashMap<>();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    final String key = readString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    final String value = readValue();
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                    skipWhitespace();
+                    final char c = read();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("expected ',' or '}'");
+                    }
+                }
+            }
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw error("unexpected content after the object");
+            }
+            return result;
+        }
+
+        private String readValue() {
+            final char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                throw error("nested objects and arrays are not supported");
+            }
+            final int start = pos;
+            while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            final String literal = text.substring(start, pos);
+            if ("null".equals(literal)) {
+                return null;
+            }
+            if ("true".equals(literal) || "false".equals(literal) || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return literal;
+            }
+            throw error("invalid value '" + literal + "'");
+        }
+
+        private String readString() {
+            expect('"');
+            final StringBuilder sb = new StringBuilder();
+            while (true) {
+                final char c = read();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                final char esc = read();
+                switch (esc) {
+                    case '"', '\\', '/' -> sb.append(esc);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("truncated \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid \\u escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("invalid escape '\\" + esc + "'");
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("unexpected end of line");
+            }
+            return text.charAt(pos);
+        }
+
+        private char read() {
+            final char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (read() != expected) {
+                pos--;
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("invalid JSON at column " + (pos + 1) + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package net.sf.jsignpdf.batch;
+
+import java.util.Map;
+
+/**
+ * One record of a batch-signing manifest: the option overrides for a single document, keyed by the command line option
+ * name, in manifest order.
+ *
+ * @param lineNumber the line on which the record starts (1-based)
+ * @param values the record values; empty when the record could not be parsed
+ * @param error the parse problem, or {@code null} for a valid record
+ * @author Josef Cacek
+ */
+public record ManifestRecord(int lineNumber, Map<String, String> values, String error) {
+
+    /** Manifest key holding the input PDF. */
+    public static final String KEY_IN = "in";
+    /** Manifest key holding the output PDF; when missing, the output name is built like for plain file arguments. */
+    public static final String KEY_OUT = "out";
+
+    static ManifestRecord invalid(int lineNumber, String error) {
+        return new ManifestRecord(lineNumber, Map.of(), error);
+    }
+
+    /**
+     * @return {@code true} when the record was parsed without problems
+     */
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * @return the input PDF of the record, or {@code null}
+     */
+    public String in() {
+        return values.get(KEY_IN);
+    }
+
+    /**
+     * @return the explicit output PDF of the record, or {@code null}
+     */
+    public String out() {
+        return values.get(KEY_OUT);
+    }
+}
@@ -2,6 +2,7 @@ package net.sf.jsignpdf.engine;
 
 import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.types.PadesLevel;
+import net.sf.jsignpdf.utils.AppConfig;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -72,7 +73,8 @@ public final class DssLtTrustPreflight {
         if (!ltOrLta || !engine.capabilities().contains(Capability.PADES_BASELINE_LT)) {
             return new Result(false, false, false, false);
         }
-        final boolean online = config.getBoolean(KEY_ONLINE_ENABLED, false);
+        // a revocation bundle provides the revocation data without online fetching
+        final boolean online = config.getBoolean(KEY_ONLINE_ENABLED, false) || AppConfig.revocationBundle() != null;
         final boolean customLotl = StringUtils.isNotBlank(config.getString(KEY_LOTL_URLS));
         final boolean trustSource = config.getBoolean(KEY_ALLOW_UNTRUSTED, false)
                 || config.getBoolean(KEY_EU_ENABLED, false)
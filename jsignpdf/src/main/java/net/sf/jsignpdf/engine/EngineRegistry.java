@@ -19,10 +19,18 @@ import net.sf.jsignpdf.utils.AppConfig;
  * {@link ServiceLoader} and resolves which one to use for a given invocation.
  *
  * <p>
- * Engines register themselves via a {@code META-INF/services/net.sf.jsignpdf.engine.SigningEngine}
- * file. The result is loaded once and cached for the JVM lifetime; duplicate ids are detected at
- * construction time, logged as a warning, and the first-loaded entry wins (deterministic by classpath
- * order).
+ * Engines register an {@link EngineDescriptor} via a
+ * {@code META-INF/services/net.sf.jsignpdf.engine.EngineDescriptor} file. The registry only instantiates
+ * the descriptors; the returned {@link SigningEngine}s answer {@code id()}, {@code displayName()} and
+ * {@code capabilities()} from them and create the real engine on the first {@code sign()} call. Listing
+ * the engines or signing with OpenPDF therefore never loads the DSS class graph. Engines registered the
+ * pre-3.2 way, via {@code META-INF/services/net.sf.jsignpdf.engine.SigningEngine}, are still supported
+ * but are instantiated eagerly.
+ * </p>
+ * <p>
+ * The result is loaded once and cached for the JVM lifetime; duplicate ids are detected at construction
+ * time, logged as a warning, and the first-loaded entry wins (descriptors first, then deterministic by
+ * classpath order).
  * </p>
  *
  * @author Josef Cacek
@@ -36,15 +44,13 @@ public final class EngineRegistry {
 
     private EngineRegistry() {
         final Map<String, SigningEngine> map = new LinkedHashMap<>();
-        for (SigningEngine engine : ServiceLoader.load(SigningEngine.class)) {
-            final String id = engine.id();
-            if (map.containsKey(id)) {
-                LOGGER.warning("Duplicate signing-engine id '" + id + "' from " + engine.getClass().getName()
-                        + " ignored; keeping " + map.get(id).getClass().getName());
-                continue;
-            }
-            map.put(id, engine);
-        }
+        ServiceLoader.load(EngineDescriptor.class).stream()
+                .forEach(provider -> register(map, new LazySigningEngine(provider)));
+        ServiceLoader.load(SigningEngine.class).stream().forEach(provider -> {
+            LOGGER.fine(() -> "Signing engine " + provider.type().getName()
+                    + " has no EngineDescriptor; instantiating it eagerly");
+            register(map, provider.get());
+        });
         this.byId = Collections.unmodifiableMap(map);
 
         final String defaultId = AppConfig.DEFAULT_ENGINE_ID;
@@ -53,6 +59,20 @@ public final class EngineRegistry {
         this.sorted = Collections.unmodifiableList(list);
     }
 
+    private static void register(Map<String, SigningEngine> map, SigningEngine engine) {
+        final String id = engine.id();
+        if (map.containsKey(id)) {
+            LOGGER.warning("Duplicate signing-engine id '" + id + "' from " + sourceName(engine)
+                    + " ignored; keeping " + sourceName(map.get(id)));
+            return;
+        }
+        map.put(id, engine);
+    }
+
+    private static String sourceName(SigningEngine engine) {
+        return engine instanceof LazySigningEngine lazy ? lazy.descriptorClassName() : engine.getClass().getName();
+    }
+
     /**
      * @return the shared registry instance
      */
@@ -0,0 +1,112 @@
+package net.sf.jsignpdf.engine;
+
+import static net.sf.jsignpdf.Constants.LOGGER;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.types.BufferingMode;
+
+/**
+ * {@link SigningEngine} handed out by the {@link EngineRegistry} for engines registered through an
+ * {@link EngineDescriptor}. The metadata calls are answered by the descriptor; the real engine is created
+ * on the first {@link #sign(BasicSignerOptions, EngineConfig)} or {@link #augment(BasicSignerOptions, EngineConfig)}
+ * call and reused afterwards.
+ *
+ * @author Josef Cacek
+ */
+final class LazySigningEngine implements SigningEngine {
+
+    private final ServiceLoader.Provider<EngineDescriptor> provider;
+    private final EngineDescriptor descriptor;
+    private volatile SigningEngine engine;
+
+    LazySigningEngine(ServiceLoader.Provider<EngineDescriptor> provider) {
+        this.provider = provider;
+        this.descriptor = provider.get();
+    }
+
+    @Override
+    public String id() {
+        return descriptor.id();
+    }
+
+    @Override
+    public String displayName() {
+        return descriptor.displayName();
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return descriptor.capabilities();
+    }
+
+    @Override
+    public boolean sign(BasicSignerOptions options, EngineConfig engineConfig) {
+        return engine().sign(options, engineConfig);
+    }
+
+    @Override
+    public boolean augment(BasicSignerOptions options, EngineConfig engineConfig) {
+        return engine().augment(options, engineConfig);
+    }
+
+    @Override
+    public boolean signAll(List<? extends BasicSignerOptions> signatures, EngineConfig engineConfig) {
+        return engine().signAll(signatures, engineConfig);
+    }
+
+    @Override
+    public double heapPerInputByte(BufferingMode mode) {
+        return engine().heapPerInputByte(mode);
+    }
+
+    @Override
+    public List<SignatureValidation> validate(File pdf, BasicSignerOptions options, EngineConfig engineConfig)
+            throws IOException {
+        return engine().validate(pdf, options, engineConfig);
+    }
+
+    /**
+     * @return the name of the descriptor class, used in diagnostics
+     */
+    String descriptorClassName() {
+        return provider.type().getName();
+    }
+
+    /**
+     * @return {@code true} once the real engine has been created
+     */
+    boolean isLoaded() {
+        return engine != null;
+    }
+
+    /**
+     * @return the real engine, created on the first call
+     */
+    SigningEngine engine() {
+        SigningEngine result = engine;
+        if (result == null) {
+            synchronized (this) {
+                result = engine;
+                if (result == null) {
+                    final long start = System.nanoTime();
+                    result = descriptor.createEngine();
+                    LOGGER.fine(() -> "Signing engine '" + descriptor.id() + "' loaded in "
+                            + (System.nanoTime() - start) / 1_000_000L + " ms");
+                    engine = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LazySigningEngine[" + descriptor.id() + (isLoaded() ? ", loaded" : "") + "]";
+    }
+}
@@ -0,0 +1,204 @@
+package net.sf.jsignpdf.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.batch.BatchResultWriter;
+import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.engine.SignatureValidation;
+import net.sf.jsignpdf.engine.SigningEngine;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Verifies the signatures of one document up to a {@link VerifyTier}. The cheap checks gate the expensive one: the
+ * signature dictionaries are found by the {@link SignatureDictionaryScanner} without parsing the document, the byte
+ * ranges re-hashed by {@link ByteRangeVerifier}, and only a document whose signatures are all intact is handed to the
+ * engine's full validation. Instances are immutable and safe
+ * to share by concurrent workers.
+ *
+ * @author Josef Cacek
+ */
+public final class DocumentVerifier {
+
+    /**
+     * Overall outcome for a document.
+     */
+    public enum Verdict {
+        /** All signatures passed every check of the tier. */
+        VALID,
+        /** The signatures are intact, but the engine couldn't establish their validity (chain, revocation). */
+        INDETERMINATE,
+        /** A signature was modified, doesn't verify or was rejected by the engine. */
+        INVALID,
+        /** The document has no signature. */
+        UNSIGNED,
+        /** The document couldn't be checked (see the message). */
+        FAILED;
+
+        String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Byte range check of one signature field.
+     *
+     * @param field fully qualified name of the signature field
+     * @param subFilter {@code /SubFilter} of the signature dictionary, may be {@code null}
+     * @param result the check
+     */
+    public record SignatureCheck(String field, String subFilter, ByteRangeVerifier.Result result) {
+    }
+
+    /**
+     * Outcome of {@link DocumentVerifier#verify(File)}.
+     *
+     * @param file the document
+     * @param verdict the overall outcome
+     * @param signatures the byte range checks, in document order
+     * @param validations the engine's verdicts, empty below {@link VerifyTier#FULL} or when the engine wasn't asked
+     * @param message why the document couldn't be checked, may be {@code null}
+     */
+    public record Report(File file, Verdict verdict, List<SignatureCheck> signatures,
+            List<SignatureValidation> validations, String message) {
+
+        /**
+         * Formats the report as one JSON line (without the line break), e.g.
+         * {@code {"file":"a.pdf","status":"valid","millis":41,"signatures":[...],"validation":[...]}}.
+         *
+         * @param millis verification duration in milliseconds
+         * @return the JSON
+         */
+        public String toJson(long millis) {
+            final StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"file\":");
+            BatchResultWriter.appendJsonString(sb, file.getPath());
+            sb.append(",\"status\":\"").append(verdict.jsonName()).append('"');
+            sb.append(",\"millis\":").append(millis);
+            if (message != null) {
+                sb.append(",\"message\":");
+                BatchResultWriter.appendJsonString(sb, message);
+            }
+            sb.append(",\"signatures\":[");
+            for (int i = 0; i < signatures.size(); i++) {
+                final SignatureCheck check = signatures.get(i);
+                final ByteRangeVerifier.Result result = check.result();
+                sb.append(i > 0 ? ",{" : "{");
+                appendMember(sb, "field", check.field(), false);
+                appendMember(sb, "subFilter", check.subFilter(), true);
+                appendMember(sb, "digest", result.digestAlgorithm(), true);
+                sb.append(",\"intact\":").append(result.intact());
+                if (result.cmsValid() != null) {
+                    sb.append(",\"cmsValid\":").append(result.cmsValid());
+                }
+                sb.append(",\"coversDocument\":").append(result.coversDocument());
+                appendMember(sb, "signer", result.signer(), true);
+                appendMember(sb, "problem", result.problem(), true);
+                sb.append('}');
+            }
+            sb.append(']');
+            if (!validations.isEmpty()) {
+                sb.append(",\"validation\":[");
+                for (int i = 0; i < validations.size(); i++) {
+                    final SignatureValidation validation = validations.get(i);
+                    sb.append(i > 0 ? ",{" : "{");
+                    appendMember(sb, "id", validation.id(), false);
+                    appendMember(sb, "signedBy", validation.signedBy(), true);
+                    sb.append(",\"indication\":\"").append(validation.indication().name().toLowerCase(Locale.ROOT))
+                            .append('"');
+                    appendMember(sb, "subIndication", validation.subIndication(), true);
+                    appendMember(sb, "level", validation.level(), true);
+                    sb.append('}');
+                }
+                sb.append(']');
+            }
+            return sb.append('}').toString();
+        }
+
+        private static void appendMember(StringBuilder sb, String name, String value, boolean comma) {
+            if (value == null) {
+                return;
+            }
+            sb.append(comma ? ",\"" : "\"").append(name).append("\":");
+            BatchResultWriter.appendJsonString(sb, value);
+        }
+    }
+
+    private final VerifyTier tier;
+    private final SigningEngine engine;
+    private final BasicSignerOptions options;
+    private final EngineConfig engineConfig;
+
+    /**
+     * @param tier how thoroughly to check
+     * @param engine the engine validating the signatures for {@link VerifyTier#FULL}, {@code null} for the other tiers
+     * @param options options providing the PDF owner password and the proxy settings for the engine
+     * @param engineConfig the configuration of {@code engine}, {@code null} when there is no engine
+     */
+    public DocumentVerifier(VerifyTier tier, SigningEngine engine, BasicSignerOptions options,
+            EngineConfig engineConfig) {
+        this.tier = tier;
+        this.engine = engine;
+        this.options = options;
+        this.engineConfig = engineConfig;
+    }
+
+    /**
+     * Checks all signatures of the document. Never throws for a broken document, the problem is reported as
+     * {@link Verdict#FAILED}.
+     *
+     * @param pdf the document
+     * @return the report
+     */
+    public Report verify(File pdf) {
+        final List<SignatureCheck> checks = new ArrayList<>();
+        try {
+            try (FileChannel channel = FileChannel.open(pdf.toPath(), StandardOpenOption.READ)) {
+                for (SignatureDictionaryScanner.Signature signature : SignatureDictionaryScanner.scan(channel)) {
+                    checks.add(new SignatureCheck(signature.field(), signature.subFilter(),
+                            ByteRangeVerifier.verify(channel, signature.byteRange(), signature.contents(),
+                                    signature.subFilter(), tier != VerifyTier.INTEGRITY)));
+                }
+            }
+            if (checks.isEmpty()) {
+                return new Report(pdf, Verdict.UNSIGNED, checks, List.of(), null);
+            }
+            for (SignatureCheck check : checks) {
+                if (!check.result().passed()) {
+                    return new Report(pdf, Verdict.INVALID, checks, List.of(), null);
+                }
+            }
+            if (tier != VerifyTier.FULL) {
+                return new Report(pdf, Verdict.VALID, checks, List.of(), null);
+            }
+            final List<SignatureValidation> validations = engine.validate(pdf, options, engineConfig);
+            return new Report(pdf, verdictOf(validations), checks, validations, null);
+        } catch (IOException | RuntimeException e) {
+            return new Report(pdf, Verdict.FAILED, checks, List.of(),
+                    StringUtils.defaultString(e.getMessage(), e.getClass().getName()));
+        }
+    }
+
+    private static Verdict verdictOf(List<SignatureValidation> validations) {
+        Verdict verdict = Verdict.VALID;
+        for (SignatureValidation validation : validations) {
+            switch (validation.indication()) {
+                case FAILED:
+                    return Verdict.INVALID;
+                case INDETERMINATE:
+                    verdict = Verdict.INDETERMINATE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return verdict;
+    }
+}
@@ -0,0 +1,41 @@
+package net.sf.jsignpdf.verify;
+
+import java.util.Locale;
+
+/**
+ * How thoroughly {@code --verify} checks the signatures of a document. Every tier includes the checks of the previous
+ * one.
+ *
+ * @author Josef Cacek
+ */
+public enum VerifyTier {
+
+    /** Re-hash the signed byte ranges and compare them with the digest the signature commits to. */
+    INTEGRITY,
+    /** Also verify the CMS signature value with the certificate it carries. */
+    CMS,
+    /** Also validate the certificate chain, trust anchor and revocation status with the signing engine. */
+    FULL;
+
+    /**
+     * Parses a case-insensitive configuration token ({@code integrity}, {@code cms}, {@code full}) into a
+     * {@link VerifyTier}.
+     *
+     * @param value the token, may be {@code null}
+     * @return the matching tier, or {@code null} when {@code value} is {@code null}, empty or unrecognised
+     */
+    public static VerifyTier fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String v = value.trim().toUpperCase(Locale.ENGLISH);
+        if (v.isEmpty()) {
+            return null;
+        }
+        try {
+            return VerifyTier.valueOf(v);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package net.sf.jsignpdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jsignpdf.utils.AdvancedConfig;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.PropertyStoreFactory;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for settling, dispatching and moving away the {@link HotFolderSigner} inputs.
+ */
+public class HotFolderSignerTest {
+
+    private static final long SETTLE_MILLIS = 300L;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final AdvancedConfig cfg = PropertyStoreFactory.getInstance().advancedConfig();
+
+    @After
+    public void restore() {
+        cfg.removeProperty(AppConfig.KEY_WATCH_SETTLE_MILLIS);
+    }
+
+    @Test
+    public void fileIsDispatchedOnceItSettled() throws Exception {
+        final HotFolderSigner signer = signer();
+        final Path file = write(tmp.getRoot().toPath().resolve("doc.pdf"), "a");
+        final List<Runnable> dispatched = new ArrayList<>();
+        signer.offer(file);
+        signer.dispatchSettled(dispatched::add);
+        assertTrue("Still within the quiet period", dispatched.isEmpty());
+
+        Thread.sleep(SETTLE_MILLIS / 2);
+        Files.write(file, "b".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Thread.sleep(SETTLE_MILLIS / 2 + 50L);
+        signer.dispatchSettled(dispatched::add);
+        assertTrue("The write starts the quiet period again", dispatched.isEmpty());
+
+        Thread.sleep(SETTLE_MILLIS + 50L);
+        signer.dispatchSettled(dispatched::add);
+        assertEquals(1, dispatched.size());
+        signer.dispatchSettled(dispatched::add);
+        assertEquals("Dispatched only once", 1, dispatched.size());
+    }
+
+    @Test
+    public void readOnlyFileIsDispatchedAfterTheQuietPeriod() throws Exception {
+        final HotFolderSigner signer = signer();
+        final Path file = write(tmp.getRoot().toPath().resolve("doc.pdf"), "a");
+        assertTrue(file.toFile().setWritable(false, false));
+        assertTrue(HotFolderSigner.isWriterDone(file));
+        final List<Runnable> dispatched = new ArrayList<>();
+        signer.offer(file);
+        Thread.sleep(SETTLE_MILLIS + 50L);
+        signer.dispatchSettled(dispatched::add);
+        assertEquals(1, dispatched.size());
+    }
+
+    @Test
+    public void onlyVisiblePdfFilesAreTaken() throws Exception {
+        final HotFolderSigner signer = signer();
+        final Path root = tmp.getRoot().toPath();
+        signer.offer(write(root.resolve("notes.txt"), "a"));
+        signer.offer(write(root.resolve(".doc.pdf"), "a"));
+        final Path removed = write(root.resolve("removed.pdf"), "a");
+        signer.offer(removed);
+        Files.delete(removed);
+        final List<Runnable> dispatched = new ArrayList<>();
+        Thread.sleep(SETTLE_MILLIS + 50L);
+        signer.dispatchSettled(dispatched::add);
+        assertTrue(dispatched.isEmpty());
+    }
+
+    @Test
+    public void movesTheFileUnderItsName() throws Exception {
+        final Path file = write(tmp.getRoot().toPath().resolve("doc.pdf"), "a");
+        final Path dir = tmp.newFolder("processed").toPath();
+        final Path moved = HotFolderSigner.moveTo(file, dir);
+        assertEquals(dir.resolve("doc.pdf"), moved);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void keepsTheFilesAlreadyThere() throws Exception {
+        final Path dir = tmp.newFolder("processed").toPath();
+        write(dir.resolve("doc.pdf"), "first");
+        write(dir.resolve("doc_1.pdf"), "second");
+        final Path moved = HotFolderSigner.moveTo(write(tmp.getRoot().toPath().resolve("doc.pdf"), "third"), dir);
+        assertEquals(dir.resolve("doc_2.pdf"), moved);
+        assertEquals("first", Files.readString(dir.resolve("doc.pdf")));
+        assertEquals("second", Files.readString(dir.resolve("doc_1.pdf")));
+        assertTrue(Files.exists(moved));
+    }
+
+    private HotFolderSigner signer() {
+        cfg.setProperty(AppConfig.KEY_WATCH_SETTLE_MILLIS, String.valueOf(SETTLE_MILLIS));
+        return new HotFolderSigner(new SignerOptionsFromCmdLine());
+    }
+
+    private static Path write(Path file, String content) throws Exception {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
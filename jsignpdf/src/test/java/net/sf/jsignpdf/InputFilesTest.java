@@ -0,0 +1,121 @@
+package net.sf.jsignpdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link InputFiles}.
+ */
+public class InputFilesTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = tmp.getRoot().toPath();
+        for (String name : List.of("a.pdf", "b.PDF", "notes.txt", "x/c.pdf", "x/y/d.pdf", "x/y/e.txt", "z/f.pdf")) {
+            final Path file = root.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.write(file, name.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void wildcardMatchesOneFolder() {
+        assertEquals(Set.of("a.pdf"), expand(root + "/*.pdf"));
+    }
+
+    @Test
+    public void doubleStarCrossesFolders() {
+        assertEquals(Set.of("a.pdf", "x/c.pdf", "x/y/d.pdf", "z/f.pdf"), expand(root + "/**/*.pdf"));
+    }
+
+    @Test
+    public void globInFolderPart() {
+        assertEquals(Set.of("x/c.pdf", "z/f.pdf"), expand(root + "/?/*.pdf"));
+    }
+
+    @Test
+    public void plainPathIsTakenAsIs() {
+        assertEquals(Set.of("missing.pdf"), expand(root + "/missing.pdf"));
+    }
+
+    @Test
+    public void fileListIsRead() throws Exception {
+        final Path list = root.resolve("list.txt");
+        Files.write(list, List.of("# the documents", root + "/a.pdf", "", "  " + root + "/x/**/*.pdf  "),
+                StandardCharsets.UTF_8);
+        assertEquals(Set.of("a.pdf", "x/c.pdf", "x/y/d.pdf"), expand("@" + list));
+    }
+
+    @Test
+    public void unreadableListIsCountedAndSkipped() {
+        final InputFiles inputs = new InputFiles(new String[] { "@" + root.resolve("nolist.txt"), root + "/a.pdf" });
+        try (Stream<File> files = inputs.stream()) {
+            assertEquals(1, files.count());
+        }
+        assertEquals(1, inputs.failures());
+    }
+
+    @Test
+    public void listIncludingItselfStops() throws Exception {
+        final Path list = root.resolve("list.txt");
+        Files.write(list, List.of(root + "/a.pdf", "@" + list), StandardCharsets.UTF_8);
+        final InputFiles inputs = new InputFiles(new String[] { "@" + list });
+        try (Stream<File> files = inputs.stream()) {
+            assertEquals(1, files.count());
+        }
+        assertEquals(1, inputs.failures());
+    }
+
+    @Test
+    public void filesAreReturnedLazily() throws Exception {
+        final InputFiles inputs = new InputFiles(new String[] { root + "/*.pdf", root + "/late/*.pdf" });
+        try (Stream<File> files = inputs.stream()) {
+            final Iterator<File> it = files.iterator();
+            assertEquals("a.pdf", it.next().getName());
+            // the second argument is expanded only when the first one is used up
+            Files.createDirectories(root.resolve("late"));
+            Files.write(root.resolve("late/g.pdf"), new byte[1]);
+            assertEquals("g.pdf", it.next().getName());
+            assertFalse(it.hasNext());
+        }
+    }
+
+    @Test
+    public void splitsGlobs() {
+        assertArrayEquals(new String[] { "in", "**/*.pdf" }, InputFiles.splitGlob("in/**/*.pdf"));
+        assertArrayEquals(new String[] { "", "*.pdf" }, InputFiles.splitGlob("*.pdf"));
+        assertArrayEquals(new String[] { "/", "*.pdf" }, InputFiles.splitGlob("/*.pdf"));
+        assertArrayEquals(new String[] { "/data", "a*/b.pdf" }, InputFiles.splitGlob("/data/a*/b.pdf"));
+        assertNull(InputFiles.splitGlob("/data/b.pdf"));
+    }
+
+    private Set<String> expand(String... args) {
+        try (Stream<File> files = new InputFiles(args).stream()) {
+            return files.map(file -> root.relativize(file.toPath().toAbsolutePath()).toString().replace('\\', '/'))
+                    .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+}
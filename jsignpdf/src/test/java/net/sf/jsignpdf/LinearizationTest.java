@@ -0,0 +1,67 @@
+package net.sf.jsignpdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link Linearization}.
+ */
+public class LinearizationTest {
+
+    private static final String HEADER = "%PDF-1.7\n%âãÏÓ\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void linearizedFileIsRecognized() throws Exception {
+        final File file = linearized(4000);
+        assertEquals(4000L, Linearization.declaredLength(file));
+        assertTrue(Linearization.isLinearized(file));
+    }
+
+    @Test
+    public void incrementalUpdateEndsTheLinearization() throws Exception {
+        final File file = linearized(4000);
+        Files.write(file.toPath(), "\n2 0 obj\n<</Type/Sig>>\nendobj\n".getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.APPEND);
+        assertEquals(4000L, Linearization.declaredLength(file));
+        assertFalse(Linearization.isLinearized(file));
+    }
+
+    @Test
+    public void plainFileIsNotLinearized() throws Exception {
+        final File file = write(HEADER + "1 0 obj\n<</Type/Catalog/Pages 2 0 R>>\nendobj\n", 0);
+        assertEquals(-1L, Linearization.declaredLength(file));
+        assertFalse(Linearization.isLinearized(file));
+    }
+
+    @Test
+    public void emptyFileIsNotLinearized() throws Exception {
+        assertEquals(-1L, Linearization.declaredLength(tmp.newFile()));
+    }
+
+    private File linearized(int length) throws Exception {
+        return write(HEADER + "1 0 obj\n<</Linearized 1/L " + length + "/O 3/E 1200/N 1/T 3800/H [ 600 120]>>\nendobj\n",
+                length);
+    }
+
+    private File write(String start, int length) throws Exception {
+        final byte[] bytes = start.getBytes(StandardCharsets.ISO_8859_1);
+        final byte[] content = new byte[Math.max(length, bytes.length)];
+        System.arraycopy(bytes, 0, content, 0, bytes.length);
+        final File file = tmp.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
@@ -0,0 +1,206 @@
+package net.sf.jsignpdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.jsignpdf.engine.Capability;
+import net.sf.jsignpdf.engine.EngineConfig;
+import net.sf.jsignpdf.engine.SigningEngine;
+import net.sf.jsignpdf.types.BufferingMode;
+import net.sf.jsignpdf.utils.AdvancedConfig;
+import net.sf.jsignpdf.utils.AppConfig;
+import net.sf.jsignpdf.utils.PropertyStoreFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MemoryAdmission}.
+ */
+public class MemoryAdmissionTest {
+
+    private static final long MIB = 1024L * 1024;
+
+    /** 4 bytes of heap per input byte in memory mode, 1 in temp mode. */
+    private static final SigningEngine ENGINE = new SigningEngine() {
+        @Override
+        public String id() {
+            return "test";
+        }
+
+        @Override
+        public String displayName() {
+            return "Test";
+        }
+
+        @Override
+        public Set<Capability> capabilities() {
+            return Set.of();
+        }
+
+        @Override
+        public boolean sign(BasicSignerOptions options, EngineConfig engineConfig) {
+            return true;
+        }
+
+        @Override
+        public double heapPerInputByte(BufferingMode mode) {
+            return mode == BufferingMode.TEMP ? 1.0 : 4.0;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void estimateGrowsWithTheDocument() throws Exception {
+        final BasicSignerOptions options = options(10 * MIB);
+        assertEquals(MemoryAdmission.BASE_BYTES + 40 * MIB,
+                MemoryAdmission.estimate(ENGINE, BufferingMode.MEMORY, List.of(options)));
+        assertEquals(MemoryAdmission.BASE_BYTES + 10 * MIB,
+                MemoryAdmission.estimate(ENGINE, BufferingMode.TEMP, List.of(options)));
+        // the second signature keeps one revision on the heap
+        assertEquals(MemoryAdmission.BASE_BYTES + 50 * MIB,
+                MemoryAdmission.estimate(ENGINE, BufferingMode.MEMORY, List.of(options, options)));
+        // ... but not in a staged mode, where the revision is a file
+        assertEquals(MemoryAdmission.BASE_BYTES + 10 * MIB,
+                MemoryAdmission.estimate(ENGINE, BufferingMode.TEMP, List.of(options, options)));
+    }
+
+    @Test
+    public void smallJobsRunInMemory() throws Exception {
+        final MemoryAdmission admission = new MemoryAdmission(200 * MIB);
+        final BasicSignerOptions options = options(MIB);
+        try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(options))) {
+            assertFalse(ticket.isDiverted());
+            assertNull(options.getBufferingMode());
+            assertEquals(200 * MIB - MemoryAdmission.BASE_BYTES - 4 * MIB, admission.available());
+        }
+        assertEquals(200 * MIB, admission.available());
+    }
+
+    @Test
+    public void jobLargerThanTheBudgetGoesToTemp() throws Exception {
+        final MemoryAdmission admission = new MemoryAdmission(100 * MIB);
+        final BasicSignerOptions options = options(30 * MIB);
+        try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(options))) {
+            assertTrue(ticket.isDiverted());
+            assertSame(BufferingMode.TEMP, options.getBufferingMode());
+        }
+        assertNull(options.getBufferingMode());
+        assertEquals(100 * MIB, admission.available());
+    }
+
+    @Test
+    public void largeJobNextToRunningOnesGoesToTemp() throws Exception {
+        final MemoryAdmission admission = new MemoryAdmission(200 * MIB);
+        try (MemoryAdmission.Ticket running = admission.admit(ENGINE, List.of(options(20 * MIB)))) {
+            final BasicSignerOptions options = options(25 * MIB);
+            try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(options))) {
+                assertTrue(ticket.isDiverted());
+                assertSame(BufferingMode.TEMP, options.getBufferingMode());
+            }
+        }
+    }
+
+    @Test
+    public void smallJobDoesNotOvertakeAWaitingOne() throws Exception {
+        final MemoryAdmission admission = new MemoryAdmission(100 * MIB);
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        final Thread large;
+        final Thread small;
+        try (MemoryAdmission.Ticket running = admission.admit(ENGINE, List.of(temp(10 * MIB)))) {
+            large = admitInBackground(admission, temp(60 * MIB), "large", admitted);
+            awaitWaiting(large);
+            small = admitInBackground(admission, temp(MIB), "small", admitted);
+            awaitWaiting(small);
+            assertEquals("The small job would fit, but it waits behind the large one",
+                    74 * MIB, admission.available());
+        }
+        large.join(10_000L);
+        small.join(10_000L);
+        assertEquals(List.of("large", "small"), admitted);
+        assertEquals(100 * MIB, admission.available());
+    }
+
+    @Test
+    public void autoModeIsDecidedPerDocument() throws Exception {
+        final AdvancedConfig cfg = PropertyStoreFactory.getInstance().advancedConfig();
+        cfg.setProperty(AppConfig.KEY_BUFFERING_MODE, "auto");
+        cfg.setProperty(AppConfig.KEY_BUFFERING_AUTO_THRESHOLD_MB, "8");
+        try {
+            final MemoryAdmission admission = new MemoryAdmission(0);
+            final BasicSignerOptions small = options(MIB);
+            try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(small))) {
+                assertSame(BufferingMode.MEMORY, ticket.mode());
+                assertSame(BufferingMode.MEMORY, small.getBufferingMode());
+            }
+            final BasicSignerOptions large = options(8 * MIB);
+            try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(large))) {
+                assertSame(BufferingMode.TEMP, ticket.mode());
+                assertFalse("Chosen by auto, not diverted by the budget", ticket.isDiverted());
+            }
+            assertNull(large.getBufferingMode());
+        } finally {
+            cfg.removeProperty(AppConfig.KEY_BUFFERING_MODE);
+            cfg.removeProperty(AppConfig.KEY_BUFFERING_AUTO_THRESHOLD_MB);
+        }
+    }
+
+    @Test
+    public void disabledBudgetAdmitsEverything() throws Exception {
+        final MemoryAdmission admission = new MemoryAdmission(0);
+        try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(options(100 * MIB)))) {
+            assertFalse(ticket.isDiverted());
+        }
+    }
+
+    private BasicSignerOptions temp(long size) throws Exception {
+        final BasicSignerOptions options = options(size);
+        options.setBufferingMode(BufferingMode.TEMP);
+        return options;
+    }
+
+    /**
+     * Admits the job in a new thread, records its name and releases the budget again.
+     */
+    private static Thread admitInBackground(MemoryAdmission admission, BasicSignerOptions options, String name,
+            List<String> admitted) {
+        final Thread thread = new Thread(() -> {
+            try (MemoryAdmission.Ticket ticket = admission.admit(ENGINE, List.of(options))) {
+                admitted.add(name);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10_000L;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertSame(Thread.State.WAITING, thread.getState());
+    }
+
+    private BasicSignerOptions options(long size) throws Exception {
+        final File file = tmp.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        final BasicSignerOptions options = new BasicSignerOptions();
+        options.setInFile(file.getPath());
+        return options;
+    }
+}
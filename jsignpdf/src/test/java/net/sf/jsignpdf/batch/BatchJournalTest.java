@@ -0,0 +1,109 @@
+package net.sf.jsignpdf.batch;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.jsignpdf.batch.BatchJournal.Status;
+
+/**
+ * Tests the batch journal: entries written by one run are picked up by a resumed run, a later failure overrides an
+ * earlier success and a torn last line doesn't break the journal.
+ */
+public class BatchJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Verifies that a resumed journal knows the signed pairs and that a new run starts over. */
+    @Test
+    public void testResume() throws IOException {
+        File journalFile = new File(folder.getRoot(), "journal.jsonl");
+        File outA = writeOutput("a_signed.pdf");
+        File outB = writeOutput("b_signed.pdf");
+        try (BatchJournal journal = BatchJournal.open(journalFile, false)) {
+            journal.record("a.pdf", outA.getPath(), Status.SIGNED, null);
+            journal.record("b.pdf", outB.getPath(), Status.SIGNED, null);
+            journal.record("b.pdf", outB.getPath(), Status.FAILED, null);
+            journal.record("c.pdf", "c_signed.pdf", Status.FAILED, null);
+        }
+        assertTrue(Files.readString(journalFile.toPath())
+                .contains("\"sha256\":\"" + BatchJournal.sha256(outA) + "\""));
+
+        try (BatchJournal journal = BatchJournal.open(journalFile, true)) {
+            assertEquals(1, journal.completedCount());
+            assertTrue(journal.isCompleted(new File("a.pdf").getAbsolutePath(), outA.getPath()));
+            assertTrue("paths are normalized", journal.isCompleted("./a.pdf", outA.getPath()));
+            assertFalse(journal.isCompleted("a.pdf", "other.pdf"));
+            assertFalse(journal.isCompleted("b.pdf", outB.getPath()));
+            assertFalse(journal.isCompleted("c.pdf", "c_signed.pdf"));
+        }
+
+        try (BatchJournal journal = BatchJournal.open(journalFile, false)) {
+            assertEquals(0, journal.completedCount());
+        }
+        assertEquals(0L, journalFile.length());
+    }
+
+    /** Verifies that a line torn by a crash is ignored and the next entry starts on a new line. */
+    @Test
+    public void testTornLine() throws IOException {
+        File journalFile = new File(folder.getRoot(), "journal.jsonl");
+        File outA = writeOutput("a_signed.pdf");
+        try (BatchJournal journal = BatchJournal.open(journalFile, false)) {
+            journal.record("a.pdf", outA.getPath(), Status.SIGNED, null);
+        }
+        Files.writeString(journalFile.toPath(), "{\"in\":\"b.pdf\",\"ou", StandardOpenOption.APPEND);
+
+        try (BatchJournal journal = BatchJournal.open(journalFile, true)) {
+            assertEquals(1, journal.completedCount());
+            journal.record("b.pdf", outA.getPath(), Status.SIGNED, null);
+        }
+        try (BatchJournal journal = BatchJournal.open(journalFile, true)) {
+            assertEquals(2, journal.completedCount());
+        }
+        List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+    }
+
+    /** Verifies that the digest computed while writing is recorded as it is, without hashing the output again. */
+    @Test
+    public void testGivenDigest() throws IOException {
+        File journalFile = new File(folder.getRoot(), "journal.jsonl");
+        File outA = writeOutput("a_signed.pdf");
+        try (BatchJournal journal = BatchJournal.open(journalFile, false)) {
+            journal.record("a.pdf", outA.getPath(), Status.SIGNED, "0123abcd");
+        }
+        assertTrue(Files.readString(journalFile.toPath()).contains("\"sha256\":\"0123abcd\""));
+    }
+
+    /** Verifies that a journaled output which was deleted since is signed again on resume. */
+    @Test
+    public void testDeletedOutput() throws IOException {
+        File journalFile = new File(folder.getRoot(), "journal.jsonl");
+        File outA = writeOutput("a_signed.pdf");
+        try (BatchJournal journal = BatchJournal.open(journalFile, false)) {
+            journal.record("a.pdf", outA.getPath(), Status.SIGNED, null);
+        }
+        Files.delete(outA.toPath());
+        try (BatchJournal journal = BatchJournal.open(journalFile, true)) {
+            assertEquals(1, journal.completedCount());
+            assertFalse(journal.isCompleted("a.pdf", outA.getPath()));
+        }
+    }
+
+    private File writeOutput(String name) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.writeString(file.toPath(), "%PDF-1.7 " + name);
+        return file;
+    }
+}
@@ -0,0 +1,102 @@
+package net.sf.jsignpdf.batch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.sf.jsignpdf.batch.ManifestReader.Format;
+
+/**
+ * Tests parsing of JSON Lines and CSV batch manifests.
+ */
+public class ManifestReaderTest {
+
+    /** Verifies that JSON values of all supported types are read and {@code null} means "not set". */
+    @Test
+    public void testJsonLinesValues() throws IOException {
+        List<ManifestRecord> records = readAll(Format.JSON_LINES,
+                "{\"in\":\"a.pdf\",\"reason\":\"Approved \\\"as is\\\"\\u0021\",\"page\":2,\"visible-signature\":true,\"location\":null}\n"
+                        + "\n" + "  { }  \n");
+
+        assertEquals(2, records.size());
+        ManifestRecord first = records.get(0);
+        assertTrue(first.isValid());
+        assertEquals(1, first.lineNumber());
+        assertEquals("a.pdf", first.in());
+        assertNull(first.out());
+        assertEquals(Map.of("in", "a.pdf", "reason", "Approved \"as is\"!", "page", "2", "visible-signature", "true"),
+                first.values());
+        assertEquals(3, records.get(1).lineNumber());
+        assertTrue(records.get(1).values().isEmpty());
+    }
+
+    /** Verifies that a broken line becomes an invalid record and the following lines are still read. */
+    @Test
+    public void testJsonLinesInvalidRecord() throws IOException {
+        List<ManifestRecord> records = readAll(Format.JSON_LINES,
+                "{\"in\":\"a.pdf\"\n{\"in\":{\"nested\":1}}\n{\"in\":\"b.pdf\"}\n");
+
+        assertEquals(3, records.size());
+        assertFalse(records.get(0).isValid());
+        assertFalse(records.get(1).isValid());
+        assertTrue(records.get(1).error().contains("nested"));
+        assertTrue(records.get(2).isValid());
+        assertEquals("b.pdf", records.get(2).in());
+    }
+
+    /** Verifies CSV quoting, embedded line breaks, empty cells and line numbering. */
+    @Test
+    public void testCsv() throws IOException {
+        List<ManifestRecord> records = readAll(Format.CSV, "in, out ,reason\n" //
+                + "a.pdf,,\"Approved, \"\"final\"\"\"\n" //
+                + "b.pdf,b-signed.pdf,\"two\nlines\"\n" //
+                + "c.pdf\n");
+
+        assertEquals(3, records.size());
+        assertEquals(Map.of("in", "a.pdf", "reason", "Approved, \"final\""), records.get(0).values());
+        assertEquals(2, records.get(0).lineNumber());
+        assertEquals("b-signed.pdf", records.get(1).out());
+        assertEquals("two\nlines", records.get(1).values().get("reason"));
+        assertEquals(3, records.get(1).lineNumber());
+        assertEquals(5, records.get(2).lineNumber());
+        assertEquals(Map.of("in", "c.pdf"), records.get(2).values());
+    }
+
+    /** Verifies that a CSV row with more fields than the header is reported as invalid. */
+    @Test
+    public void testCsvTooManyFields() throws IOException {
+        List<ManifestRecord> records = readAll(Format.CSV, "in\na.pdf,extra\nb.pdf\n");
+
+        assertEquals(2, records.size());
+        assertFalse(records.get(0).isValid());
+        assertTrue(records.get(1).isValid());
+    }
+
+    /** Verifies that an unterminated quoted CSV field fails the read. */
+    @Test(expected = UncheckedIOException.class)
+    public void testCsvUnterminatedQuote() throws IOException {
+        readAll(Format.CSV, "in\n\"a.pdf\n");
+    }
+
+    /** Verifies the format detection by the file extension. */
+    @Test
+    public void testFormatForFile() {
+        assertEquals(Format.CSV, Format.forFile("jobs.CSV"));
+        assertEquals(Format.JSON_LINES, Format.forFile("jobs.jsonl"));
+    }
+
+    private static List<ManifestRecord> readAll(Format format, String content) throws IOException {
+        List<ManifestRecord> result = new ArrayList<>();
+        try (ManifestReader reader = new ManifestReader(new StringReader(content), format)) {
+            reader.forEachRemaining(result::add);
+        }
+        return result;
+    }
+}
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
+import java.util.ServiceLoader;
 
 import org.junit.Test;
 
@@ -82,4 +83,26 @@ public class EngineRegistryTest {
         opts.setEngine("does-not-exist");
         assertThrows(IllegalArgumentException.class, () -> EngineRegistry.getInstance().resolve(opts));
     }
+
+    @Test
+    public void metadataDoesNotLoadEngine() {
+        ServiceLoader.load(EngineDescriptor.class).stream().forEach(provider -> {
+            LazySigningEngine engine = new LazySigningEngine(provider);
+            assertFalse(engine.id().isEmpty());
+            assertFalse(engine.displayName().isEmpty());
+            assertFalse(engine.capabilities().isEmpty());
+            assertFalse(engine.id() + " loaded by a metadata call", engine.isLoaded());
+        });
+    }
+
+    @Test
+    public void descriptorsMatchTheirEngines() {
+        for (SigningEngine engine : EngineRegistry.getInstance().listAll()) {
+            assertTrue(engine.id() + " is descriptor-backed", engine instanceof LazySigningEngine);
+            SigningEngine real = ((LazySigningEngine) engine).engine();
+            assertEquals(real.id(), engine.id());
+            assertEquals(real.displayName(), engine.displayName());
+            assertEquals(real.capabilities(), engine.capabilities());
+        }
+    }
 }
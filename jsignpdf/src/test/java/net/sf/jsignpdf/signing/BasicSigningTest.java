@@ -3,6 +3,7 @@ package net.sf.jsignpdf.signing;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.net.Proxy;
 
 import org.junit.Test;
 
@@ -53,4 +54,22 @@ public class BasicSigningTest extends SigningTestBase {
         assertTrue("Output file should exist", outFile.exists());
         assertTrue("Output should be larger than input", outFile.length() > inputSize);
     }
+
+    /**
+     * Verifies that a TSA URL option with separators only means no timestamp, also on the SOCKS proxy path which
+     * takes the first URL.
+     */
+    @Test
+    public void testSeparatorOnlyTsaUrlSignsWithoutTimestamp() throws Exception {
+        BasicSignerOptions options = createDefaultOptions();
+        options.setTimestamp(true);
+        options.setTsaUrl(" , ");
+        options.setProxyType(Proxy.Type.SOCKS);
+        options.setProxyHost("localhost");
+        options.setProxyPort(1);
+        ValidationResult result = signAndValidate(options);
+
+        assertEquals("Should have 1 signature", 1, result.signatureCount);
+        assertTrue("Signature should be cryptographically valid", result.signatureValid);
+    }
 }
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -54,4 +55,36 @@ public class MultipleSignaturesTest extends SigningTestBase {
         ValidationResult result2 = PdfSignatureValidator.validate(secondOutput, 1);
         assertTrue("Second signature should be valid", result2.signatureValid);
     }
+
+    /** Applies two signatures in one pass with the default engine and validates both. */
+    @Test
+    public void testDoubleSignInOnePass() throws Exception {
+        assertBothSignaturesValid(null);
+    }
+
+    /** Applies two signatures in one pass with the DSS engine and validates both. */
+    @Test
+    public void testDoubleSignInOnePassDss() throws Exception {
+        assertBothSignaturesValid("dss");
+    }
+
+    private void assertBothSignaturesValid(String engine) throws Exception {
+        BasicSignerOptions options1 = createDefaultOptions();
+        options1.setEngine(engine);
+        options1.setAppend(true);
+
+        BasicSignerOptions options2 = TestPrivateKey.RSA4096.toSignerOptions(Keystore.JKS);
+        options2.setEngine(engine);
+        options2.setInFile(options1.getInFile());
+        options2.setOutFile(options1.getOutFile());
+        options2.setAppend(true);
+
+        boolean success = new SignerLogic(options1).signFile(List.of(options1, options2));
+        assertTrue("Signing in one pass should succeed", success);
+
+        File output = new File(options1.getOutFileX());
+        assertEquals("Should have 2 signatures", 2, PdfSignatureValidator.getSignatureCount(output));
+        assertTrue("First signature should be valid", PdfSignatureValidator.validate(output, 0).signatureValid);
+        assertTrue("Second signature should be valid", PdfSignatureValidator.validate(output, 1).signatureValid);
+    }
 }
@@ -0,0 +1,111 @@
+package net.sf.jsignpdf.signing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import net.sf.jsignpdf.BasicSignerOptions;
+import net.sf.jsignpdf.signing.validation.PdfSignatureValidator.ValidationResult;
+import net.sf.jsignpdf.utils.AdvancedConfig;
+import net.sf.jsignpdf.utils.PropertyStoreFactory;
+
+/**
+ * Signing without append with {@code engine.openpdf.optimizeOverwrite=true}: the compacted document must still parse
+ * and carry a valid signature.
+ */
+public class OptimizeOverwriteSigningTest extends SigningTestBase {
+
+    private static final String KEY = "engine.openpdf.optimizeOverwrite";
+
+    private final AdvancedConfig cfg = PropertyStoreFactory.getInstance().advancedConfig();
+
+    @After
+    public void restore() {
+        cfg.removeProperty(KEY);
+    }
+
+    @Test
+    public void optimizedDocumentCarriesAValidSignature() throws Exception {
+        cfg.setProperty(KEY, "true");
+        BasicSignerOptions options = createDefaultOptions();
+        options.setAppend(false);
+
+        ValidationResult result = signAndValidate(options);
+
+        assertEquals("Should have 1 signature", 1, result.signatureCount);
+        assertTrue("ByteRange should start at 0", result.byteRangeStartsAtZero);
+        assertTrue("ByteRange should end at EOF", result.byteRangeEndsAtEof);
+        assertTrue("Signature should be cryptographically valid", result.signatureValid);
+        final String pdf = new String(Files.readAllBytes(new File(options.getOutFileX()).toPath()),
+                StandardCharsets.ISO_8859_1);
+        assertTrue("Objects should be packed into object streams", pdf.contains("/ObjStm"));
+    }
+
+    @Test
+    public void duplicateImagesAreMergedAndTheSignatureValidates() throws Exception {
+        cfg.setProperty(KEY, "true");
+        BasicSignerOptions options = createDefaultOptions();
+        options.setAppend(false);
+        writeWithDuplicateImages(new File(options.getInFile()));
+
+        ValidationResult result = signAndValidate(options);
+
+        assertTrue("Signature should be cryptographically valid", result.signatureValid);
+        try (PDDocument doc = Loader.loadPDF(new File(options.getOutFileX()))) {
+            COSDictionary xObjects = doc.getPage(0).getResources().getCOSObject().getCOSDictionary(COSName.XOBJECT);
+            COSObject first = xObjects.getCOSObject(COSName.getPDFName("Im1"));
+            COSObject second = xObjects.getCOSObject(COSName.getPDFName("Im2"));
+            assertEquals("Both names should refer to one image", first.getKey(), second.getKey());
+        }
+    }
+
+    @Test
+    public void appendModeIsNotAffected() throws Exception {
+        cfg.setProperty(KEY, "true");
+        BasicSignerOptions options = createDefaultOptions();
+        options.setAppend(true);
+
+        ValidationResult result = signAndValidate(options);
+
+        assertTrue("Signature should be cryptographically valid", result.signatureValid);
+        final byte[] in = Files.readAllBytes(new File(options.getInFile()).toPath());
+        final byte[] out = Files.readAllBytes(new File(options.getOutFileX()).toPath());
+        for (int i = 0; i < in.length; i++) {
+            assertEquals("The original revision must stay as it was", in[i], out[i]);
+        }
+    }
+
+    /**
+     * Two image XObjects with the same pixels, written separately, as some generators embed a logo on every page.
+     */
+    private static void writeWithDuplicateImages(File file) throws Exception {
+        BufferedImage pixels = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 16; x++) {
+            pixels.setRGB(x, x, 0xff0000);
+        }
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = new PDPage();
+            doc.addPage(page);
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                cs.drawImage(LosslessFactory.createFromImage(doc, pixels), 100, 600, 32, 32);
+                cs.drawImage(LosslessFactory.createFromImage(doc, pixels), 200, 600, 32, 32);
+            }
+            doc.save(file);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import net.sf.jsignpdf.BasicSignerOptions;
 import net.sf.jsignpdf.types.BufferingMode;
 
 /**
@@ -32,6 +33,8 @@ public class BufferingConfigTest {
     public void restore() {
         cfg.removeProperty(AppConfig.KEY_BUFFERING_MODE);
         cfg.removeProperty(AppConfig.KEY_BUFFERING_TEMP_DIR);
+        cfg.removeProperty(AppConfig.KEY_BUFFERING_AUTO_THRESHOLD_MB);
+        cfg.removeProperty(AppConfig.KEY_BUFFERING_OFFHEAP_DIR);
     }
 
     @Test
@@ -50,6 +53,9 @@ public class BufferingConfigTest {
 
         cfg.setProperty(AppConfig.KEY_BUFFERING_MODE, " Memory ");
         assertSame(BufferingMode.MEMORY, AppConfig.bufferingMode());
+
+        cfg.setProperty(AppConfig.KEY_BUFFERING_MODE, "offheap");
+        assertSame(BufferingMode.OFFHEAP, AppConfig.bufferingMode());
     }
 
     @Test
@@ -59,6 +65,30 @@ public class BufferingConfigTest {
                 BufferingMode.MEMORY, AppConfig.bufferingMode());
     }
 
+    @Test
+    public void autoDecidesByThresholdAndFreeHeap() {
+        final long mib = 1024L * 1024;
+        cfg.setProperty(AppConfig.KEY_BUFFERING_AUTO_THRESHOLD_MB, "10");
+        assertSame(BufferingMode.MEMORY, AppConfig.autoBufferingMode(mib, 4.0, 100 * mib));
+        assertSame("At the threshold the document goes to temporary files", BufferingMode.TEMP,
+                AppConfig.autoBufferingMode(10 * mib, 4.0, 1000 * mib));
+        assertSame("Below the threshold, but too large for the free heap", BufferingMode.TEMP,
+                AppConfig.autoBufferingMode(5 * mib, 4.0, 16 * mib));
+
+        cfg.setProperty(AppConfig.KEY_BUFFERING_AUTO_THRESHOLD_MB, "0");
+        assertSame("0 turns the threshold off", BufferingMode.MEMORY,
+                AppConfig.autoBufferingMode(500 * mib, 4.0, 4000 * mib));
+    }
+
+    @Test
+    public void engineNeverSeesAuto() throws Exception {
+        cfg.setProperty(AppConfig.KEY_BUFFERING_MODE, "auto");
+        assertSame(BufferingMode.AUTO, AppConfig.bufferingMode());
+        final BasicSignerOptions options = new BasicSignerOptions();
+        options.setInFile(tempFolder.newFile("small.pdf").getPath());
+        assertSame(BufferingMode.MEMORY, AppConfig.bufferingMode(options));
+    }
+
     @Test
     public void emptyTempDirMeansSystemDefault() throws IOException {
         cfg.setProperty(AppConfig.KEY_BUFFERING_TEMP_DIR, "");
@@ -96,4 +126,27 @@ public class BufferingConfigTest {
             // expected
         }
     }
+
+    @Test
+    public void offheapStagesInItsOwnDirectory() throws Exception {
+        File ram = tempFolder.newFolder("ram");
+        File disk = tempFolder.newFolder("disk");
+        cfg.setProperty(AppConfig.KEY_BUFFERING_OFFHEAP_DIR, ram.getAbsolutePath());
+        cfg.setProperty(AppConfig.KEY_BUFFERING_TEMP_DIR, disk.getAbsolutePath());
+        assertEquals(ram.getAbsolutePath(), AppConfig.bufferingDir(BufferingMode.OFFHEAP).getAbsolutePath());
+        assertEquals(disk.getAbsolutePath(), AppConfig.bufferingDir(BufferingMode.TEMP).getAbsolutePath());
+        assertNull(AppConfig.bufferingDir(BufferingMode.MEMORY));
+    }
+
+    @Test
+    public void missingOffheapDirIsRejected() {
+        File missing = new File(tempFolder.getRoot(), "no-shm");
+        cfg.setProperty(AppConfig.KEY_BUFFERING_OFFHEAP_DIR, missing.getAbsolutePath());
+        try {
+            AppConfig.bufferingOffheapDir();
+            fail("A missing buffering.offheapDir must not fall back to a directory on disk");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package net.sf.jsignpdf.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.sf.jsignpdf.types.OutputDurability;
+
+/**
+ * Covers {@link AppConfig#outputDurability()} / {@link AppConfig#outputPreallocate()}: the defaults must keep the
+ * historical write cost, and an unrecognised durability must degrade rather than fail the sign.
+ */
+public class OutputConfigTest {
+
+    private final AdvancedConfig cfg = PropertyStoreFactory.getInstance().advancedConfig();
+
+    @After
+    public void restore() {
+        cfg.removeProperty(AppConfig.KEY_OUTPUT_DURABILITY);
+        cfg.removeProperty(AppConfig.KEY_OUTPUT_PREALLOCATE);
+    }
+
+    @Test
+    public void defaultsKeepTheHistoricalWriteCost() {
+        assertSame(OutputDurability.NONE, AppConfig.outputDurability());
+        assertFalse(AppConfig.outputPreallocate());
+    }
+
+    @Test
+    public void durabilityIsReadCaseInsensitively() {
+        cfg.setProperty(AppConfig.KEY_OUTPUT_DURABILITY, " Full ");
+        assertSame(OutputDurability.FULL, AppConfig.outputDurability());
+        cfg.setProperty(AppConfig.KEY_OUTPUT_PREALLOCATE, "true");
+        assertTrue(AppConfig.outputPreallocate());
+    }
+
+    @Test
+    public void unknownDurabilityFallsBackToNone() {
+        cfg.setProperty(AppConfig.KEY_OUTPUT_DURABILITY, "fsync");
+        assertSame(OutputDurability.NONE, AppConfig.outputDurability());
+    }
+}